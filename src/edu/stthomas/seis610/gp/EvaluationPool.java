@@ -0,0 +1,499 @@
+package edu.stthomas.seis610.gp;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.logging.Logger;
+
+import edu.stthomas.seis610.tree.GeneticProgrammingTree;
+
+//=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+/**
+ * The EvaluationPool scores the fitness of a whole population across a pool of {@link EvaluationWorker} processes on
+ * the local host, while the breeding of the population stays within this process. The workers are launched (with the
+ * same class path as this JVM) the first time they are needed and connect back over a TCP socket of the loopback
+ * address. Each worker holds its own copy of the Settings (and therefore the training data), which is only sent again
+ * when the Settings change.
+ * <p>
+ * The distinct individuals of the population are encoded (see {@link edu.stthomas.seis610.tree.LinearGenome}) into
+ * batches of the batch size from the Settings, so that every round trip scores a number of individuals. Each worker
+ * gets up to the pipeline depth of batches at a time, so it never sits idle waiting for its next batch. The batches
+ * of a worker that dies are sent to the other workers, and a batch that a (stalled) worker has not answered within the
+ * timeout of the Settings is sent once more to another worker; whichever answer arrives first is used. The population
+ * is scored within this process once no worker is left.
+ * <p>
+ * Just like the {@link PopulationScorer} each distinct individual is scored by a single worker, once for every time it
+ * appears within the population and starting out with the same validity of its tree, which gives exactly the same
+ * fitness measurements as scoring the population one individual at a time.
+ *
+ * @version 1.2
+ */
+// =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+public class EvaluationPool {
+	private static final Logger Log = Logger.getLogger("Global");
+
+	/**
+	 * Define Constants for the types of the messages sent to the workers.
+	 */
+	static final int SETTINGS_MESSAGE = 1;
+	static final int EVALUATE_MESSAGE = 2;
+
+	/**
+	 * Define private variables for the Singleton Instance of this class.
+	 */
+	private static EvaluationPool xSingletonInstance = null;
+
+	private final Object xLock = new Object();
+	private final List<Worker> xWorkers = new ArrayList<Worker>();
+	private final LinkedList<Batch> xPendingBatches = new LinkedList<Batch>();
+	private ServerSocket xServerSocket;
+	private int xNextBatchId = 0;
+	private int xRemainingBatches = 0;
+
+	/**
+	 * Private default constructor for singleton instance of this class.
+	 */
+	private EvaluationPool() {
+	}
+
+	/**
+	 * Public static method to get the singleton instance of this class and build it (lazy instantiation) if it is not
+	 * already built.
+	 *
+	 * @return the singleton instance of this class
+	 */
+	public static synchronized EvaluationPool getInstance() {
+		if (xSingletonInstance == null) {
+			xSingletonInstance = new EvaluationPool();
+		}
+		return xSingletonInstance;
+	}
+
+	/**
+	 * Score the fitness of every individual within the population across the worker processes. The scoring is always
+	 * complete (never just a lower bound of the fitness).
+	 *
+	 * @param aPopulation the population of individuals to score
+	 */
+	public synchronized void score(List<GeneticProgrammingTree> aPopulation) {
+		// Count how many times each distinct individual appears within the population (keeping their order).
+		Map<GeneticProgrammingTree, Integer> occurrences = new IdentityHashMap<GeneticProgrammingTree, Integer>();
+		List<GeneticProgrammingTree> individuals = new ArrayList<GeneticProgrammingTree>(aPopulation.size());
+		for (GeneticProgrammingTree individual : aPopulation) {
+			Integer count = occurrences.get(individual);
+			if (count == null) {
+				individuals.add(individual);
+				count = 0;
+			}
+			occurrences.put(individual, count + 1);
+		}
+
+		Properties settings = GPSettings.getProperties();
+		try {
+			ensureWorkers(GPSettings.getEvaluationWorkers());
+			int batchSize = Math.max(GPSettings.getEvaluationBatchSize(), 1);
+			synchronized (xLock) {
+				xPendingBatches.clear();
+				for (int i = 0; i < individuals.size(); i += batchSize) {
+					List<GeneticProgrammingTree> batchIndividuals = individuals.subList(i,
+							Math.min(i + batchSize, individuals.size()));
+					xPendingBatches.add(new Batch(xNextBatchId++, batchIndividuals, occurrences));
+				}
+				xRemainingBatches = xPendingBatches.size();
+			}
+		} catch (IOException e) {
+			Log.warning("Unable to start the evaluation workers, scoring the population locally: " + e.getMessage());
+			for (GeneticProgrammingTree individual : aPopulation) {
+				individual.calculateFitness();
+			}
+			return;
+		}
+
+		dispatch(settings);
+	}
+
+	/**
+	 * Send the pending batches to the workers (keeping the pipeline of each worker filled) until all of the batches
+	 * are answered.
+	 *
+	 * @param aSettings the Settings the workers score the batches with
+	 */
+	private void dispatch(Properties aSettings) {
+		int depth = Math.max(GPSettings.getEvaluationPipelineDepth(), 1);
+		long timeout = Math.max(GPSettings.getEvaluationTimeout(), 1);
+		while (true) {
+			// Decide which batches go to which workers while holding the lock, but write them to the sockets outside of
+			// the lock so that the readers of the answers are never blocked by a full socket.
+			List<Worker> targets = new ArrayList<Worker>();
+			List<Batch> assignments = new ArrayList<Batch>();
+			List<Batch> orphans = null;
+			synchronized (xLock) {
+				if (xRemainingBatches == 0) {
+					return;
+				}
+				requeueDeadWorkers();
+				List<Worker> aliveWorkers = getAliveWorkers();
+				if (aliveWorkers.isEmpty()) {
+					orphans = new ArrayList<Batch>();
+					for (Batch batch : xPendingBatches) {
+						if (!batch.xDone) {
+							batch.xDone = true;
+							orphans.add(batch);
+						}
+					}
+					xPendingBatches.clear();
+					xRemainingBatches = 0;
+				} else {
+					long now = System.currentTimeMillis();
+					for (Worker worker : aliveWorkers) {
+						while (worker.xInFlight.size() < depth && !xPendingBatches.isEmpty()) {
+							Batch batch = xPendingBatches.removeFirst();
+							if (!batch.xDone) {
+								worker.xInFlight.put(batch.xId, batch);
+								batch.xSentTime = now;
+								targets.add(worker);
+								assignments.add(batch);
+							}
+						}
+					}
+					if (xPendingBatches.isEmpty()) {
+						redispatchStragglers(aliveWorkers, depth, timeout, now, targets, assignments);
+					}
+					if (assignments.isEmpty() && xRemainingBatches > 0) {
+						try {
+							xLock.wait(timeout);
+						} catch (InterruptedException e) {
+							Thread.currentThread().interrupt();
+						}
+					}
+				}
+			}
+
+			if (orphans != null) {
+				Log.warning("No evaluation workers left, scoring the remaining individuals locally.");
+				for (Batch batch : orphans) {
+					batch.scoreLocally();
+				}
+				return;
+			}
+			for (int i = 0; i < assignments.size(); i++) {
+				targets.get(i).send(assignments.get(i), aSettings);
+			}
+		}
+	}
+
+	/**
+	 * Send the batches that a worker has not answered within the timeout to one other worker (with room within its
+	 * pipeline). Each batch is only sent again once.
+	 */
+	private void redispatchStragglers(List<Worker> aAliveWorkers, int aDepth, long aTimeout, long aNow,
+			List<Worker> aTargets, List<Batch> aAssignments) {
+		for (Worker owner : aAliveWorkers) {
+			for (Batch batch : new ArrayList<Batch>(owner.xInFlight.values())) {
+				if (batch.xDone || batch.xRedispatched || aNow - batch.xSentTime < aTimeout) {
+					continue;
+				}
+				for (Worker worker : aAliveWorkers) {
+					if (worker != owner && worker.xInFlight.size() < aDepth) {
+						Log.fine("Batch " + batch.xId + " is not answered within " + aTimeout + "ms, sending it again.");
+						batch.xRedispatched = true;
+						worker.xInFlight.put(batch.xId, batch);
+						aTargets.add(worker);
+						aAssignments.add(batch);
+						break;
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Put the unanswered batches of the workers that died back at the front of the pending batches and drop the
+	 * workers. Must be called while holding the lock.
+	 */
+	private void requeueDeadWorkers() {
+		for (Iterator<Worker> iterator = xWorkers.iterator(); iterator.hasNext();) {
+			Worker worker = iterator.next();
+			if (!worker.xAlive) {
+				for (Batch batch : worker.xInFlight.values()) {
+					if (!batch.xDone) {
+						xPendingBatches.addFirst(batch);
+					}
+				}
+				worker.xInFlight.clear();
+				worker.close();
+				iterator.remove();
+			}
+		}
+	}
+
+	/**
+	 * @return the workers that are still alive
+	 */
+	private List<Worker> getAliveWorkers() {
+		List<Worker> aliveWorkers = new ArrayList<Worker>(xWorkers.size());
+		for (Worker worker : xWorkers) {
+			if (worker.xAlive) {
+				aliveWorkers.add(worker);
+			}
+		}
+		return aliveWorkers;
+	}
+
+	/**
+	 * Launch new worker processes until the number of workers from the Settings is alive (and stop any extra workers).
+	 *
+	 * @param aWorkerCount the number of workers to have alive
+	 * @throws IOException
+	 */
+	private void ensureWorkers(int aWorkerCount) throws IOException {
+		synchronized (xLock) {
+			requeueDeadWorkers();
+			while (xWorkers.size() > aWorkerCount) {
+				xWorkers.remove(xWorkers.size() - 1).close();
+			}
+			if (xWorkers.size() == aWorkerCount) {
+				return;
+			}
+		}
+
+		if (xServerSocket == null) {
+			xServerSocket = new ServerSocket(0, aWorkerCount, InetAddress.getLoopbackAddress());
+			xServerSocket.setSoTimeout(MigrationCoordinator.ACCEPT_TIMEOUT);
+		}
+		List<Process> processes = new ArrayList<Process>();
+		for (int i = xWorkers.size(); i < aWorkerCount; i++) {
+			processes.add(MigrationCoordinator.launch(EvaluationWorker.class, xServerSocket.getLocalPort()));
+		}
+		try {
+			for (Process process : processes) {
+				Socket socket = xServerSocket.accept();
+				socket.setTcpNoDelay(true);
+				Worker worker = new Worker(process, socket);
+				synchronized (xLock) {
+					xWorkers.add(worker);
+				}
+				worker.startReader();
+			}
+		} catch (IOException e) {
+			for (Process process : processes) {
+				process.destroy();
+			}
+			shutdown();
+			throw e;
+		}
+		Log.info("Started " + processes.size() + " evaluation workers on port " + xServerSocket.getLocalPort());
+	}
+
+	/**
+	 * Stop all of the worker processes.
+	 */
+	public synchronized void shutdown() {
+		synchronized (xLock) {
+			for (Worker worker : xWorkers) {
+				worker.close();
+			}
+			xWorkers.clear();
+		}
+		if (xServerSocket != null) {
+			try {
+				xServerSocket.close();
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+			xServerSocket = null;
+		}
+	}
+
+	// =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	/**
+	 * A batch of distinct individuals that is encoded once and can be sent to any of the workers.
+	 */
+	// =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	private static class Batch {
+		private final int xId;
+		private final List<GeneticProgrammingTree> xIndividuals;
+		private final int[] xCounts;
+		private final byte[] xPayload;
+		private long xSentTime;
+		private boolean xRedispatched = false;
+		private boolean xDone = false;
+
+		/**
+		 * @param aId the unique identifier of the batch
+		 * @param aIndividuals the distinct individuals of the batch
+		 * @param aOccurrences the number of times each of the individuals appears within the population
+		 */
+		private Batch(int aId, List<GeneticProgrammingTree> aIndividuals,
+				Map<GeneticProgrammingTree, Integer> aOccurrences) throws IOException {
+			xId = aId;
+			xIndividuals = aIndividuals;
+			xCounts = new int[aIndividuals.size()];
+
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			DataOutputStream output = new DataOutputStream(bytes);
+			output.writeInt(aIndividuals.size());
+			for (int i = 0; i < xCounts.length; i++) {
+				GeneticProgrammingTree individual = aIndividuals.get(i);
+				xCounts[i] = aOccurrences.get(individual);
+				IslandProcess.writeBytes(output, individual.getGenome().toByteArray());
+				output.writeBoolean(individual.isTreeValid());
+				output.writeInt(xCounts[i]);
+			}
+			output.flush();
+			xPayload = bytes.toByteArray();
+		}
+
+		/**
+		 * Score the individuals of the batch within this process.
+		 */
+		private void scoreLocally() {
+			for (int i = 0; i < xCounts.length; i++) {
+				for (int count = 0; count < xCounts[i]; count++) {
+					xIndividuals.get(i).calculateFitness();
+				}
+			}
+		}
+	}
+
+	// =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	/**
+	 * The connection to a worker process along with the batches it has not answered yet. The answers are read by a
+	 * (daemon) thread of its own.
+	 */
+	// =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	private class Worker implements Runnable {
+		private final Process xProcess;
+		private final Socket xSocket;
+		private final DataInputStream xInput;
+		private final DataOutputStream xOutput;
+		private final Map<Integer, Batch> xInFlight = new LinkedHashMap<Integer, Batch>();
+		private Properties xSettings = null;
+		private volatile boolean xAlive = true;
+
+		/**
+		 * @param aProcess the worker process
+		 * @param aSocket the socket connected to the worker process
+		 * @throws IOException
+		 */
+		private Worker(Process aProcess, Socket aSocket) throws IOException {
+			xProcess = aProcess;
+			xSocket = aSocket;
+			xInput = new DataInputStream(new BufferedInputStream(aSocket.getInputStream()));
+			xOutput = new DataOutputStream(new BufferedOutputStream(aSocket.getOutputStream()));
+		}
+
+		/**
+		 * Start the thread that reads the answers of the worker.
+		 */
+		private void startReader() {
+			Thread reader = new Thread(this, "EvaluationPool-reader-" + xSocket.getPort());
+			reader.setDaemon(true);
+			reader.start();
+		}
+
+		/**
+		 * Send the batch to the worker (preceded by the Settings when they differ from the ones it already has). A
+		 * failure to send marks the worker as dead.
+		 *
+		 * @param aBatch the batch to send
+		 * @param aSettings the Settings to score the batch with
+		 */
+		private void send(Batch aBatch, Properties aSettings) {
+			try {
+				if (!aSettings.equals(xSettings)) {
+					ByteArrayOutputStream settings = new ByteArrayOutputStream();
+					aSettings.store(settings, null);
+					xOutput.writeInt(SETTINGS_MESSAGE);
+					IslandProcess.writeBytes(xOutput, settings.toByteArray());
+					xSettings = aSettings;
+				}
+				xOutput.writeInt(EVALUATE_MESSAGE);
+				xOutput.writeInt(aBatch.xId);
+				xOutput.write(aBatch.xPayload);
+				xOutput.flush();
+			} catch (IOException e) {
+				died(e);
+			}
+		}
+
+		/**
+		 * Read the answers of the worker until it dies (or is closed).
+		 */
+		@Override
+		public void run() {
+			try {
+				while (true) {
+					// Read the whole answer before taking the lock, so the dispatching is never blocked by the socket.
+					int id = xInput.readInt();
+					double[] fitness = new double[xInput.readInt()];
+					boolean[] valid = new boolean[fitness.length];
+					for (int i = 0; i < fitness.length; i++) {
+						fitness[i] = xInput.readDouble();
+						valid[i] = xInput.readBoolean();
+					}
+
+					synchronized (xLock) {
+						Batch batch = xInFlight.remove(id);
+						if (batch != null && !batch.xDone && batch.xIndividuals.size() == fitness.length) {
+							for (int i = 0; i < fitness.length; i++) {
+								GeneticProgrammingTree individual = batch.xIndividuals.get(i);
+								if (!valid[i]) {
+									individual.setTreeInvalid();
+								}
+								individual.getFitness().setStandardizedFitness(fitness[i]);
+							}
+							batch.xDone = true;
+							xRemainingBatches--;
+						}
+						xLock.notifyAll();
+					}
+				}
+			} catch (IOException e) {
+				died(e);
+			}
+		}
+
+		/**
+		 * Mark the worker as dead, so that its unanswered batches are sent to the other workers.
+		 *
+		 * @param aException the reason the worker died
+		 */
+		private void died(IOException aException) {
+			synchronized (xLock) {
+				if (xAlive) {
+					Log.warning("Lost the connection to an evaluation worker: " + aException.getMessage());
+					xAlive = false;
+				}
+				xLock.notifyAll();
+			}
+		}
+
+		/**
+		 * Close the connection to the worker, which makes the worker process exit.
+		 */
+		private void close() {
+			xAlive = false;
+			try {
+				xSocket.close();
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+			xProcess.destroy();
+		}
+	}
+}
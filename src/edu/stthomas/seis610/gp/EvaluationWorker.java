@@ -0,0 +1,125 @@
+package edu.stthomas.seis610.gp;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.util.Properties;
+import java.util.logging.Logger;
+
+import edu.stthomas.seis610.tree.GeneticProgrammingTree;
+import edu.stthomas.seis610.tree.LinearGenome;
+import edu.stthomas.seis610.util.GPException;
+
+//=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+/**
+ * The EvaluationWorker scores the fitness of the batches of individuals that it gets from the {@link EvaluationPool}
+ * within its own process (JVM). The worker connects to the pool on the local host and then answers each batch (in the
+ * order they arrive) with the standardized fitness and the validity of each of its individuals, until the pool closes
+ * the connection.
+ * <p>
+ * Each individual is decoded from its linear genome, marked as invalid when its tree already was invalid within the
+ * pool, and then scored once for every time it appears within the population, just as it would have been scored
+ * within the pool itself.
+ *
+ * @version 1.2
+ */
+// =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+public class EvaluationWorker {
+	private static final Logger Log = Logger.getLogger("Global");
+
+	private final int xPort;
+
+	/**
+	 * Constructor to create a worker that connects to the pool on the port of the local host.
+	 *
+	 * @param aPort the port the pool listens on
+	 */
+	public EvaluationWorker(int aPort) {
+		xPort = aPort;
+	}
+
+	/**
+	 * Score the batches from the pool until it closes the connection.
+	 *
+	 * @throws GPException
+	 */
+	public void run() throws GPException {
+		try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), xPort)) {
+			socket.setTcpNoDelay(true);
+			DataInputStream input = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+			DataOutputStream output = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+
+			while (true) {
+				int message;
+				try {
+					message = input.readInt();
+				} catch (EOFException e) {
+					return;
+				}
+
+				switch (message) {
+				case EvaluationPool.SETTINGS_MESSAGE:
+					Properties settings = new Properties();
+					settings.load(new ByteArrayInputStream(IslandProcess.readBytes(input)));
+					GPSettings.setProperties(settings);
+					break;
+				case EvaluationPool.EVALUATE_MESSAGE:
+					evaluate(input, output);
+					break;
+				default:
+					throw new GPException("Unknown message from the evaluation pool: " + message);
+				}
+			}
+		} catch (IOException e) {
+			throw new GPException("Unable to exchange the batches with the evaluation pool: " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Score a batch of individuals and answer it with the standardized fitness and the validity of each individual.
+	 *
+	 * @param aInput the stream to read the batch from
+	 * @param aOutput the stream to write the answer to
+	 * @throws IOException
+	 * @throws GPException
+	 */
+	private void evaluate(DataInputStream aInput, DataOutputStream aOutput) throws IOException, GPException {
+		int id = aInput.readInt();
+		int size = aInput.readInt();
+		aOutput.writeInt(id);
+		aOutput.writeInt(size);
+		for (int i = 0; i < size; i++) {
+			GeneticProgrammingTree individual = new GeneticProgrammingTree(LinearGenome.fromByteArray(IslandProcess
+					.readBytes(aInput)));
+			individual.setTrainingData(GPSettings.getTrainingData());
+			if (!aInput.readBoolean()) {
+				individual.setTreeInvalid();
+			}
+			for (int count = aInput.readInt(); count > 0; count--) {
+				individual.calculateFitness();
+			}
+			aOutput.writeDouble(individual.getFitness().getStandardizedFitness());
+			aOutput.writeBoolean(individual.isTreeValid());
+		}
+		aOutput.flush();
+	}
+
+	/**
+	 * @param args the port the pool listens on
+	 */
+	public static void main(String args[]) {
+		try {
+			new EvaluationWorker(Integer.parseInt(args[0])).run();
+		} catch (GPException e) {
+			Log.severe("Problem encountered during the evaluation of the batches: " + e.getMessage());
+			e.printStackTrace();
+			System.exit(1);
+		}
+	}
+}
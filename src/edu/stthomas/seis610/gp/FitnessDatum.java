@@ -13,6 +13,7 @@ import java.util.logging.Logger;
 public class FitnessDatum implements Comparable<FitnessDatum>, Cloneable {
 	private static final Logger Log = Logger.getLogger("Global");
 	private Double xStandardizedFitness = new Double(Double.NaN);
+	private boolean xLowerBound = false;
 
 	/**
 	 * Default constructor for this class
@@ -55,6 +56,43 @@ public class FitnessDatum implements Comparable<FitnessDatum>, Cloneable {
 	 */
 	public void setStandardizedFitness(Double aInputValue) {
 		this.xStandardizedFitness = aInputValue;
+		this.xLowerBound = false;
+	}
+
+	/**
+	 * @param aInputValue the double value that the (not completely calculated) standardized fitness measurement is known
+	 *            to be at least
+	 */
+	public void setLowerBound(Double aInputValue) {
+		this.xStandardizedFitness = aInputValue;
+		this.xLowerBound = true;
+	}
+
+	/**
+	 * @return the indicator if the standardized fitness measurement is only a lower bound of the actual measurement
+	 *         because its calculation was stopped early
+	 */
+	public boolean isLowerBound() {
+		return xLowerBound;
+	}
+
+	/**
+	 * Determine if the comparison of this datum to another datum gives the same result as the comparison of their actual
+	 * fitness measurements. This is always the case unless one of them is a lower bound that is not already worse than
+	 * the (actual) measurement of the other datum.
+	 * 
+	 * @param otherDatum the other datum to be compared to this datum
+	 * @return the indicator if the comparison of the two datums can be trusted
+	 */
+	public boolean isComparable(FitnessDatum otherDatum) {
+		if (this.xLowerBound && otherDatum.xLowerBound) {
+			return false;
+		} else if (this.xLowerBound) {
+			return this.getValue() > otherDatum.getValue();
+		} else if (otherDatum.xLowerBound) {
+			return otherDatum.getValue() > this.getValue();
+		}
+		return true;
 	}
 
 	/**
@@ -62,6 +100,7 @@ public class FitnessDatum implements Comparable<FitnessDatum>, Cloneable {
 	 */
 	public void clear() {
 		xStandardizedFitness = Double.valueOf(0);
+		xLowerBound = false;
 	}
 
 	/**
@@ -70,6 +109,7 @@ public class FitnessDatum implements Comparable<FitnessDatum>, Cloneable {
 	 */
 	public void reset() {
 		xStandardizedFitness = Double.NaN;
+		xLowerBound = false;
 	}
 
 	/**
@@ -168,6 +208,7 @@ public class FitnessDatum implements Comparable<FitnessDatum>, Cloneable {
 
 			// Perform a deep clone (copy) of some of the values in the datum
 			newDatum.setStandardizedFitness(new Double(newDatum.getStandardizedFitness()));
+			newDatum.xLowerBound = xLowerBound;
 		} catch (CloneNotSupportedException e) {
 			e.printStackTrace();
 		}
@@ -176,7 +217,7 @@ public class FitnessDatum implements Comparable<FitnessDatum>, Cloneable {
 
 	@Override
 	public String toString() {
-		return "" + (isValid() ? xStandardizedFitness : "*Invalid");
+		return (xLowerBound ? ">" : "") + (isValid() ? xStandardizedFitness : "*Invalid");
 	}
 
 	/**
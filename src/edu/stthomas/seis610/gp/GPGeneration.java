@@ -1,15 +1,33 @@
 package edu.stthomas.seis610.gp;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Properties;
 import java.util.Vector;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 import java.util.logging.Logger;
 
 import edu.stthomas.seis610.tree.BinaryTreeNode;
 import edu.stthomas.seis610.tree.BinaryTreeNode.NodeType;
 import edu.stthomas.seis610.tree.GPTreeFactory;
 import edu.stthomas.seis610.tree.GeneticProgrammingTree;
+import edu.stthomas.seis610.tree.LinearGenome;
+import edu.stthomas.seis610.tree.OffHeapPopulationArena;
+import edu.stthomas.seis610.tree.PersistentNode;
+import edu.stthomas.seis610.tree.PopulationArena;
 import edu.stthomas.seis610.util.GPException;
+import edu.stthomas.seis610.util.RandomStream;
 
 //=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
 /**
@@ -32,12 +50,56 @@ public class GPGeneration {
 		NATURAL_SELECTION, TOURNAMENT_SELECTION;
 	};
 
+	/**
+	 * Define Constant for the Number of Breeding Units (reproduced individuals or cross-over pairs) of each Slice
+	 */
+	private static final int UNITS_PER_BREEDING_SLICE = 16;
+
 	private static final Logger Log = Logger.getLogger("Global");
+	private static final Map<Integer, ForkJoinPool> xBreedingPools = new HashMap<Integer, ForkJoinPool>();
+
+	/**
+	 * The (recycled) population arenas of each thread: one to encode a whole population into for scoring and breeding,
+	 * and one to hold the offspring of a cross-over operation.
+	 */
+	private static final ThreadLocal<PopulationArena> xPopulationArenas = new ThreadLocal<PopulationArena>() {
+		@Override
+		protected PopulationArena initialValue() {
+			return new PopulationArena(GPSettings.getPopulationSize(), GPSettings.getPopulationSize() * 16);
+		}
+	};
+
+	private static final ThreadLocal<PopulationArena> xOffspringArenas = new ThreadLocal<PopulationArena>() {
+		@Override
+		protected PopulationArena initialValue() {
+			return new PopulationArena(2, 64);
+		}
+	};
+
+	/**
+	 * The (recycled) off-heap population arenas of each thread, used in the same way as the population arenas.
+	 */
+	private static final ThreadLocal<OffHeapPopulationArena> xOffHeapPopulationArenas = new ThreadLocal<OffHeapPopulationArena>() {
+		@Override
+		protected OffHeapPopulationArena initialValue() {
+			return new OffHeapPopulationArena(GPSettings.getPopulationSize(), GPSettings.getPopulationSize() * 16);
+		}
+	};
+
+	private static final ThreadLocal<OffHeapPopulationArena> xOffHeapOffspringArenas = new ThreadLocal<OffHeapPopulationArena>() {
+		@Override
+		protected OffHeapPopulationArena initialValue() {
+			return new OffHeapPopulationArena(2, 64);
+		}
+	};
+
 	private Vector<GeneticProgrammingTree> xPopulation;
 
-	private Vector<GeneticProgrammingTree> xCrossoverIndividuals;
 	private Vector<GeneticProgrammingTree> xWorkingSetOfIndividuals;
-	private Vector<GeneticProgrammingTree> xTournamentIndividuals;
+	private volatile AtomicReferenceArray<GeneticProgrammingTree> xLivePopulation;
+	private volatile PopulationArena xBreedingArena;
+	private volatile OffHeapPopulationArena xOffHeapBreedingArena;
+	private volatile Map<GeneticProgrammingTree, Integer> xBreedingArenaIndexes;
 
 	/**
 	 * Default constructor for this class
@@ -46,10 +108,7 @@ public class GPGeneration {
 		Integer populationSize = GPSettings.getPopulationSize();
 
 		xPopulation = new Vector<GeneticProgrammingTree>(populationSize);
-
-		xCrossoverIndividuals = new Vector<GeneticProgrammingTree>(getCrossoverCount());
 		xWorkingSetOfIndividuals = new Vector<GeneticProgrammingTree>(getReproductionCount());
-		xTournamentIndividuals = new Vector<GeneticProgrammingTree>(GPSettings.getTournamentSize());
 	}
 
 	/**
@@ -120,6 +179,36 @@ public class GPGeneration {
 		return xPopulation;
 	}
 
+	/**
+	 * Encode the entire population of this generation into a (recycled) population arena. The individuals keep the same
+	 * order (index) within the arena as within the population.
+	 * 
+	 * @param aArena the population arena to clear and then fill with the individuals of this generation
+	 * @return the population arena that holds the encoded population
+	 */
+	public PopulationArena encodePopulation(PopulationArena aArena) {
+		aArena.clear();
+		for (GeneticProgrammingTree individual : xPopulation) {
+			aArena.add(individual.getRoot());
+		}
+		return aArena;
+	}
+
+	/**
+	 * Encode the entire population of this generation into a (recycled) off-heap population arena. The individuals keep
+	 * the same order (index) within the arena as within the population.
+	 * 
+	 * @param aArena the off-heap population arena to clear and then fill with the individuals of this generation
+	 * @return the off-heap population arena that holds the encoded population
+	 */
+	public OffHeapPopulationArena encodePopulation(OffHeapPopulationArena aArena) {
+		aArena.clear();
+		for (GeneticProgrammingTree individual : xPopulation) {
+			aArena.add(individual.getRoot());
+		}
+		return aArena;
+	}
+
 	/**
 	 * @param aPopulation represents the new population to assign to this generation
 	 */
@@ -131,9 +220,116 @@ public class GPGeneration {
 	 * Force all of the individuals within this population to have their trees scored for their fitness measurements.
 	 */
 	private void scoreFitness() {
+		scoreFitness(Double.POSITIVE_INFINITY);
+	}
+
+	/**
+	 * Force all of the individuals within this population to have their trees scored for their fitness measurements,
+	 * but allow the scoring of an individual to stop once it is worse than the cutoff. Such an individual only gets a
+	 * lower bound of its fitness, which is completed as soon as it takes part in a comparison that it might win.
+	 * 
+	 * The individuals are scored across a pool of worker processes when any workers are specified within the Settings
+	 * (which always score them completely), or across a pool of threads when more than one thread is specified, or
+	 * straight out of an (off-heap) population arena (also completely) when either arena is enabled.
+	 * 
+	 * @param aCutoff the standardized fitness beyond which the scoring of an individual can stop
+	 */
+	private void scoreFitness(double aCutoff) {
+		if (GPSettings.getEvaluationWorkers() > 0) {
+			EvaluationPool.getInstance().score(xPopulation);
+			return;
+		}
+		if (GPSettings.getScoringThreads() > 1) {
+			PopulationScorer.getInstance().score(xPopulation, aCutoff);
+			return;
+		}
+		if (GPSettings.isOffHeapArenaEnabled()) {
+			scoreFitness(encodePopulation(xOffHeapPopulationArenas.get()));
+			return;
+		}
+		if (GPSettings.isPopulationArenaEnabled()) {
+			scoreFitness(encodePopulation(xPopulationArenas.get()));
+			return;
+		}
 		for (GeneticProgrammingTree currentIndividual : xPopulation) {
-			currentIndividual.calculateFitness();
+			currentIndividual.calculateFitness(aCutoff);
+		}
+	}
+
+	/**
+	 * Score all of the individuals within this population by evaluating them directly out of the arena that holds the
+	 * encoded population. An individual that is already invalid evaluates to the max value for all of the training
+	 * data no matter what its expression is, so it is still scored by itself.
+	 * 
+	 * @param aArena the population arena that holds the encoded population
+	 */
+	private void scoreFitness(PopulationArena aArena) {
+		for (int i = 0; i < xPopulation.size(); i++) {
+			GeneticProgrammingTree currentIndividual = xPopulation.elementAt(i);
+			if (!currentIndividual.isTreeValid()) {
+				currentIndividual.calculateFitness();
+				continue;
+			}
+			currentIndividual.getFitness().setStandardizedFitness(
+					aArena.calculateFitness(i, TrainingColumns.getInstance(currentIndividual.getTrainingData())));
+			if (!aArena.isValid(i)) {
+				currentIndividual.setTreeInvalid();
+			}
+		}
+	}
+
+	/**
+	 * Score all of the individuals within this population by evaluating them directly out of the off-heap arena that
+	 * holds the encoded population (see {@link #scoreFitness(PopulationArena)}).
+	 * 
+	 * @param aArena the off-heap population arena that holds the encoded population
+	 */
+	private void scoreFitness(OffHeapPopulationArena aArena) {
+		for (int i = 0; i < xPopulation.size(); i++) {
+			GeneticProgrammingTree currentIndividual = xPopulation.elementAt(i);
+			if (!currentIndividual.isTreeValid()) {
+				currentIndividual.calculateFitness();
+				continue;
+			}
+			currentIndividual.getFitness().setStandardizedFitness(
+					aArena.calculateFitness(i, TrainingColumns.getInstance(currentIndividual.getTrainingData())));
+			if (!aArena.isValid(i)) {
+				currentIndividual.setTreeInvalid();
+			}
+		}
+	}
+
+	/**
+	 * Finish the scoring of all of the individuals within this population whose scoring was stopped early (and only
+	 * have a lower bound of their fitness measurements).
+	 */
+	private void completeFitness() {
+		Vector<GeneticProgrammingTree> lowerBounds = new Vector<GeneticProgrammingTree>();
+		for (GeneticProgrammingTree currentIndividual : xPopulation) {
+			if (currentIndividual.getFitness().isLowerBound()) {
+				lowerBounds.add(currentIndividual);
+			}
+		}
+		if (GPSettings.getScoringThreads() > 1) {
+			PopulationScorer.getInstance().score(lowerBounds, Double.POSITIVE_INFINITY);
+			return;
+		}
+		for (GeneticProgrammingTree currentIndividual : lowerBounds) {
+			currentIndividual.completeFitness();
+		}
+	}
+
+	/**
+	 * @param aPercentile the percentile (0.0 - 1.0) of the fitness to find
+	 * @return the standardized fitness at the percentile of the population for this generation
+	 */
+	private double getFitnessPercentile(double aPercentile) {
+		double[] fitness = new double[xPopulation.size()];
+		for (int i = 0; i < fitness.length; i++) {
+			fitness[i] = xPopulation.elementAt(i).getFitness().getValue();
 		}
+		Arrays.sort(fitness);
+		return fitness[(int) Math.round(Math.max(0.0, Math.min(1.0, aPercentile)) * (fitness.length - 1))];
 	}
 
 	/**
@@ -186,81 +382,246 @@ public class GPGeneration {
 		 */
 		GeneticProgrammingTree cloneOfBestIndividual = (GeneticProgrammingTree) getBestIndividual().clone();
 
+		/*
+		 * The best individual is carried forward (and re-evaluated) every generation, so compile it into bytecode when
+		 * requested. The compiled expression is shared with any later clones so this only happens for a new best.
+		 */
+		if (GPSettings.isBytecodeCompilationEnabled() && !cloneOfBestIndividual.isCompiled()) {
+			cloneOfBestIndividual.compile();
+		}
+
 		/*
 		 * Determine if we need to perform simple reproduction or if we have worked ourselves into a corner and we need
 		 * to inject some new DNA into the population. When injecting new DNA we want the biggest sample variety we can
-		 * generate so use the Ramped_Half_And_Half and set the tree height to as tall as possible.
+		 * generate so use the Ramped_Half_And_Half and set the tree height to as tall as possible. A single breeding
+		 * thread breeds the very same slices as any number of threads, so the next generation only depends upon the seed.
 		 */
-		if (!aInjectNewDNA) {
-			// Use reproduction to add individuals from the existing population into the next generation.
-			nextGeneration.getPopulation().addAll(reproduction());
-
-		} else {
-			// Generate new individuals with no relationship to the existing generation into the next generation.
-			int newPopulationCount = getReproductionCount();
-			int newPopulationHeight = GPSettings.getMaxHtOfCrossoverTree();
-			nextGeneration.getPopulation().addAll(
-					generateRampedHalfAndHalf(getReproductionCount(), GPSettings.getMaxHtOfCrossoverTree()));
-			Log.warning("Population injected with new DNA [method=RAMPED_HALF_AND_HALF]:  ActualSize=" + nextGeneration.getPopulation().size()
-					+ "  TargetSize=" + newPopulationCount + "  MaxHeight=" + newPopulationHeight);
-		}
-		nextGeneration.getPopulation().addAll(crossover());
-		nextGeneration.mutate();
+		nextGeneration.getPopulation().addAll(breed(aInjectNewDNA));
 
 		// Make sure an un-mutated version of the current best individual gets added to the next generation.
 		nextGeneration.getPopulation().add(cloneOfBestIndividual);
 
-		nextGeneration.scoreFitness();
+		/*
+		 * Poor offspring do not need to be completely scored when early abort is enabled, since the individuals of the
+		 * next generation only need to be told apart from those that are better than most of the current generation.
+		 */
+		if (GPSettings.isEarlyAbortEnabled()) {
+			nextGeneration.scoreFitness(getFitnessPercentile(GPSettings.getEarlyAbortPercentile()));
+		} else {
+			nextGeneration.scoreFitness();
+		}
 		return nextGeneration;
 	}
 
 	/**
-	 * @return the current best individual within the population for this generation
+	 * Generate new individuals with no relationship to the existing generation to take the place of the reproduced
+	 * individuals.
+	 * 
+	 * @return a list of newly generated individuals for the next generation of the population
+	 */
+	private Vector<GeneticProgrammingTree> injectNewDNA() {
+		int newPopulationCount = getReproductionCount();
+		int newPopulationHeight = GPSettings.getMaxHtOfCrossoverTree();
+		Vector<GeneticProgrammingTree> newIndividuals = generateRampedHalfAndHalf(newPopulationCount,
+				newPopulationHeight);
+		Log.warning("Population injected with new DNA [method=RAMPED_HALF_AND_HALF]:  ActualSize="
+				+ newIndividuals.size() + "  TargetSize=" + newPopulationCount + "  MaxHeight=" + newPopulationHeight);
+		return newIndividuals;
+	}
+
+	/**
+	 * Breed the individuals of the next generation (other than the best individual) across a pool of threads (or on the
+	 * calling thread when only a single breeding thread is specified within the Settings). The work is split into fixed
+	 * slices of breeding units (a reproduced individual or a cross-over pair), and each slice runs its own tournament
+	 * selections, cross-over and mutation with its own random stream split off from the random stream of the run. The
+	 * slices (and their random streams) do not depend upon the number of threads, so the next generation is the same
+	 * for a seed no matter how many threads breed it.
+	 * <p>
+	 * The individuals of this generation are only read by the slices: their fitness is completed before the slices
+	 * start, and a reproduced individual is cloned before it gets mutated.
+	 * 
+	 * @param aInjectNewDNA the indicator if new individuals take the place of the reproduced individuals
+	 * @return a list of the bred individuals for the next generation of the population
 	 * @throws GPException
 	 */
-	public GeneticProgrammingTree getBestIndividual() {
-		GeneticProgrammingTree bestIndividual = xPopulation.firstElement();
-		for (GeneticProgrammingTree currentIndividual : xPopulation) {
-			if (currentIndividual.getFitness().compareTo(bestIndividual.getFitness()) < 0) {
-				bestIndividual = currentIndividual;
+	private Vector<GeneticProgrammingTree> breed(boolean aInjectNewDNA) throws GPException {
+		// Any individual can win a tournament, so complete all of their fitness measurements up front.
+		completeFitness();
+
+		// Build the (lazily cached) representation of every individual that the slices copy from.
+		for (GeneticProgrammingTree individual : xPopulation) {
+			buildRepresentation(individual);
+		}
+
+		// The reproduced individuals are only drawn within the slices when they come from tournaments.
+		List<GeneticProgrammingTree> reproduced = null;
+		if (aInjectNewDNA) {
+			reproduced = injectNewDNA();
+		} else if (ReproductionMethod.valueOf(GPSettings.getReproductionMethod()) == ReproductionMethod.NATURAL_SELECTION) {
+			reproduced = new Vector<GeneticProgrammingTree>(naturalSelection(getReproductionCount()));
+		}
+		int reproductionUnits = (reproduced != null) ? reproduced.size() : getReproductionCount();
+		int breedingUnits = reproductionUnits + (getCrossoverCount() + 1) / 2;
+
+		// The cross-over operations of the slices copy the parents out of the arena that holds the encoded population.
+		if (GPSettings.isOffHeapArenaEnabled() || GPSettings.isPopulationArenaEnabled()) {
+			Map<GeneticProgrammingTree, Integer> arenaIndexes = new IdentityHashMap<GeneticProgrammingTree, Integer>();
+			for (int i = 0; i < xPopulation.size(); i++) {
+				arenaIndexes.put(xPopulation.elementAt(i), i);
 			}
+			if (GPSettings.isOffHeapArenaEnabled()) {
+				xOffHeapBreedingArena = encodePopulation(xOffHeapPopulationArenas.get());
+			} else {
+				xBreedingArena = encodePopulation(xPopulationArenas.get());
+			}
+			xBreedingArenaIndexes = arenaIndexes;
 		}
 
-		return bestIndividual;
+		List<BreedingSlice> slices = new ArrayList<BreedingSlice>();
+		Properties settings = GPSettings.getThreadSettings();
+		RandomStream randomStream = GPSettings.getRandomStream();
+		for (int unit = 0; unit < breedingUnits; unit += UNITS_PER_BREEDING_SLICE) {
+			slices.add(new BreedingSlice(settings, randomStream.split(), unit, Math.min(unit
+					+ UNITS_PER_BREEDING_SLICE, breedingUnits), reproductionUnits, reproduced));
+		}
+
+		Vector<GeneticProgrammingTree> offspring = new Vector<GeneticProgrammingTree>();
+		int threads = Math.max(GPSettings.getBreedingThreads(), 1);
+		try {
+			if (threads == 1) {
+				// A single thread breeds the slices in order on the calling thread, so independent runs (islands or the
+				// jobs of a sweep) never have to wait for each other on a shared pool.
+				for (BreedingSlice slice : slices) {
+					offspring.addAll(slice.call());
+				}
+			} else {
+				for (Future<Vector<GeneticProgrammingTree>> slice : getBreedingPool(threads).invokeAll(slices)) {
+					offspring.addAll(slice.get());
+				}
+			}
+		} catch (InterruptedException | ExecutionException e) {
+			throw new GPException("Unable to breed the next generation: " + e.getMessage());
+		} finally {
+			xBreedingArena = null;
+			xOffHeapBreedingArena = null;
+			xBreedingArenaIndexes = null;
+		}
+		return offspring;
+	}
+
+	/**
+	 * Build the (lazily cached) representation of the individual that the cross-over operations copy from, so that any
+	 * number of threads can read the individual at the same time.
+	 * 
+	 * @param aIndividual the individual to build the representation of
+	 */
+	private static void buildRepresentation(GeneticProgrammingTree aIndividual) {
+		if (GPSettings.isLinearGenomeEnabled()) {
+			aIndividual.getGenome();
+		} else if (GPSettings.isPersistentTreesEnabled()) {
+			aIndividual.getPersistentRoot();
+		} else {
+			aIndividual.getRoot();
+		}
 	}
 
 	/**
-	 * Starts to populate the next generation of individuals using the technique specified within the Settings. It will
-	 * either choose to perform a version of natural selection where top-n individuals are selected or a form of a
-	 * tournament selection where groups of random individuals are chosen to compete and the best from each tournament
-	 * are selected to be a part of the next generation.
+	 * Evolve this population in place as a steady-state population rather than breeding a whole new generation. Each of
+	 * the threads from the Settings repeatedly selects parents by tournament from the live population, breeds and scores
+	 * a single offspring (or the pair of a cross-over) and puts it in the place of the loser of an inverse tournament
+	 * (the worst of the randomly drawn individuals). There is no barrier between the offspring, so a thread that breeds
+	 * or scores a large tree never holds up the other threads.
 	 * <p>
-	 * Note: No attempt is made to clone or make a copy of the individuals selected from either technique since we are
-	 * not modifying the structure of the individuals at all. We are safe allowing a reference to existing individual to
-	 * be used and passed along to the next generation instead.
+	 * The live population is an array of atomic references: an offspring only takes the place of the loser while the
+	 * loser is still within its slot (otherwise another inverse tournament is held), and the best individual is never
+	 * replaced. Every offspring is completely scored and has its representation built before it enters the population,
+	 * so the other threads only ever read it. Each thread draws from its own random stream split off from the random
+	 * stream of the run, but the order of the replacements depends upon the scheduling of the threads, so only a single
+	 * thread gives the same results for a seed.
 	 * 
-	 * @return a list of individuals for the next generation of the population chosen based upon the reproduction
-	 *         technique
+	 * @param aBirths the number of offspring to breed (the size of the population is worth a generation)
+	 * @param aFitnessGoal the fitness that stops the evolution as soon as any offspring reaches it
+	 * @return the number of offspring bred
+	 * @throws GPException
 	 */
-	public Vector<GeneticProgrammingTree> reproduction() {
-		ReproductionMethod reproductionMethod = ReproductionMethod.valueOf(GPSettings.getReproductionMethod());
-		int reproductionCount = getReproductionCount();
-		xWorkingSetOfIndividuals.clear(); // Clear the cached variable
-		if (reproductionMethod == ReproductionMethod.NATURAL_SELECTION) {
-			// Use natural selection to extract the Top-N individuals from the population.
-			List<GeneticProgrammingTree> lst = naturalSelection(reproductionCount);
-			Log.finer("Natural Selection [size=" + lst.size() + "]:  Tree=" + lst);
-
-			xWorkingSetOfIndividuals.addAll(lst);
-		} else if (reproductionMethod == ReproductionMethod.TOURNAMENT_SELECTION) {
-			// Use a tournament selection technique to find the fittest individuals from a number of different random
-			// selections (tournaments) of different individuals.
-			for (int i = 0; i < reproductionCount; i++) {
-				xWorkingSetOfIndividuals.add(tournamentSelection());
+	public int evolveSteadyState(int aBirths, FitnessDatum aFitnessGoal) throws GPException {
+		// The individuals are read by all of the threads, so complete their fitness and build their representation.
+		completeFitness();
+		for (GeneticProgrammingTree individual : xPopulation) {
+			buildRepresentation(individual);
+		}
+
+		// Build the (lazily loaded) shared training data values before any of the threads need them.
+		GPSettings.getTrainingData();
+		if (xPopulation.firstElement().getTrainingData() != null) {
+			TrainingColumns.getInstance(xPopulation.firstElement().getTrainingData());
+		}
+
+		int threads = Math.max(GPSettings.getSteadyStateThreads(), 1);
+		AtomicInteger births = new AtomicInteger(aBirths);
+		AtomicReference<GeneticProgrammingTree> bestIndividual = new AtomicReference<GeneticProgrammingTree>(
+				getBestIndividual());
+		List<SteadyStateBreeder> breeders = new ArrayList<SteadyStateBreeder>(threads);
+		Properties settings = GPSettings.getThreadSettings();
+		RandomStream randomStream = GPSettings.getRandomStream();
+		for (int i = 0; i < threads; i++) {
+			breeders.add(new SteadyStateBreeder(settings, randomStream.split(), births, bestIndividual, aFitnessGoal));
+		}
+
+		int bred = 0;
+		xLivePopulation = new AtomicReferenceArray<GeneticProgrammingTree>(
+				xPopulation.toArray(new GeneticProgrammingTree[xPopulation.size()]));
+		try {
+			if (threads == 1) {
+				// A single breeder evolves the population on the calling thread (just like a single breeding thread).
+				bred = breeders.get(0).call();
+			} else {
+				for (Future<Integer> breeder : getBreedingPool(threads).invokeAll(breeders)) {
+					bred += breeder.get();
+				}
 			}
+		} catch (InterruptedException | ExecutionException e) {
+			throw new GPException("Unable to evolve the steady-state population: " + e.getMessage());
+		} finally {
+			for (int i = 0; i < xPopulation.size(); i++) {
+				xPopulation.set(i, xLivePopulation.get(i));
+			}
+			xLivePopulation = null;
 		}
+		return bred;
+	}
 
-		return xWorkingSetOfIndividuals;
+	/**
+	 * Get the pool of threads to breed the population with. One pool is kept for each number of threads, so that the
+	 * generational breeding and the steady-state evolution (which take their number of threads from different Settings)
+	 * can take turns without rebuilding their pools every time.
+	 * 
+	 * @param aParallelism the number of threads of the pool
+	 * @return the pool of threads
+	 */
+	private static synchronized ForkJoinPool getBreedingPool(int aParallelism) {
+		ForkJoinPool breedingPool = xBreedingPools.get(aParallelism);
+		if (breedingPool == null) {
+			breedingPool = new ForkJoinPool(aParallelism);
+			xBreedingPools.put(aParallelism, breedingPool);
+		}
+		return breedingPool;
+	}
+
+	/**
+	 * @return the current best individual within the population for this generation
+	 * @throws GPException
+	 */
+	public GeneticProgrammingTree getBestIndividual() {
+		GeneticProgrammingTree bestIndividual = xPopulation.firstElement();
+		for (GeneticProgrammingTree currentIndividual : xPopulation) {
+			if (currentIndividual.compareTo(bestIndividual) < 0) {
+				bestIndividual = currentIndividual;
+			}
+		}
+		bestIndividual.completeFitness();
+
+		return bestIndividual;
 	}
 
 	/**
@@ -278,36 +639,31 @@ public class GPGeneration {
 		return xPopulation.subList(0, aTopIndividuals);
 	}
 
-	/**
-	 * Choose the best (fittest) individual from a randomly selected list of individuals to compete in a tournament to
-	 * find and return the best individual.
-	 * 
-	 * @return the best individual from a randomly selected list of individuals within the population
-	 */
-	private GeneticProgrammingTree tournamentSelection() {
-		return tournamentSelection(0);
-	}
-
 	/**
 	 * Recursive method to find the best (fittest) individual from a randomly selected list of individuals to compete in
 	 * a tournament to return the best valid individual. If the fittest individual selected is not valid, then it will
 	 * recursively request another tournament be performed until a valid winner is determined.
 	 * 
+	 * @param aContestants the (cached) list to hold the individuals competing in the tournament
 	 * @param aRecursionLevel the current level of recursion to prevent excessive (runaway) processing
 	 * @return the best individual from a randomly selected list of individuals within the population
 	 */
-	private GeneticProgrammingTree tournamentSelection(int aRecursionLevel) {
-		int tournamentSize = GPSettings.getTournamentSize();
-		xTournamentIndividuals.clear(); // Clear the cached variable
-		for (int i = 0; i < tournamentSize; i++) {
+	private GeneticProgrammingTree tournamentSelection(Vector<GeneticProgrammingTree> aContestants,
+			int aRecursionLevel) {
+		// Draw all of the contestants at once (the same random numbers as drawing them one at a time).
+		int[] draws = GPSettings.getRandomStream().nextInts(xPopulation.size(), new int[GPSettings.getTournamentSize()]);
+		aContestants.clear(); // Clear the cached variable
+		AtomicReferenceArray<GeneticProgrammingTree> livePopulation = xLivePopulation;
+		for (int draw : draws) {
 			// Copy a reference to the individual over to the tournament list so we can easily determine the winner
 			// without making any changes to the overall population.
-			xTournamentIndividuals.add(xPopulation.elementAt(GPSettings.getRandomInt(xPopulation.size())));
+			aContestants.add((livePopulation != null) ? livePopulation.get(draw) : xPopulation.elementAt(draw));
 		}
 		// Sort the entire population of tournament individuals based upon the fitness measurement and simply return the
 		// top (first) entry back.
-		Collections.sort(xTournamentIndividuals);
-		GeneticProgrammingTree bestIndividual = xTournamentIndividuals.firstElement();
+		Collections.sort(aContestants);
+		GeneticProgrammingTree bestIndividual = aContestants.firstElement();
+		bestIndividual.completeFitness();
 		// If the winner of the tournament does not contain a valid tree or if the fitness measurement is not valid for
 		// some reason, then recursively request a new tournament take place to determine the best individual.
 		if (!bestIndividual.getFitness().isValid() || !bestIndividual.isTreeValid()) {
@@ -317,30 +673,13 @@ public class GPGeneration {
 				Log.warning("Recursion level too deep for tournament selection. Generating new tree from factory.");
 				bestIndividual = GPTreeFactory.generateGrowTree(GPSettings.getMaxHtOfInitTree());
 			} else {
-				bestIndividual = tournamentSelection(++aRecursionLevel);
+				bestIndividual = tournamentSelection(aContestants, ++aRecursionLevel);
 			}
 		}
 
 		return bestIndividual;
 	}
 
-	/**
-	 * Choose a random sampling of individuals and perform crossover operations against those individuals and add the
-	 * results back for the next generation.
-	 * 
-	 * @return a list of the individuals involved in the crossover operation for the next generation of the population
-	 */
-	private Vector<GeneticProgrammingTree> crossover() throws GPException {
-		int crossoverCount = getCrossoverCount();
-		xCrossoverIndividuals.clear(); // Clear the cached variable
-		while (xCrossoverIndividuals.size() < crossoverCount) {
-			GeneticProgrammingTree parent1 = tournamentSelection();
-			GeneticProgrammingTree parent2 = tournamentSelection();
-			crossoverOperation(parent1, parent2, xCrossoverIndividuals);
-		}
-		return xCrossoverIndividuals;
-	}
-
 	/**
 	 * @param aParentX the source of the X chromosome in the crossover operation
 	 * @param aParentY the source of the X chromosome in the crossover operation
@@ -348,6 +687,28 @@ public class GPGeneration {
 	 */
 	private void crossoverOperation(GeneticProgrammingTree aParentX, GeneticProgrammingTree aParentY,
 			Vector<GeneticProgrammingTree> aCrosssoverList) throws GPException {
+		// A parent generated by the tournament itself (rather than drawn from the population) is not in the arena.
+		Map<GeneticProgrammingTree, Integer> arenaIndexes = xBreedingArenaIndexes;
+		if (arenaIndexes != null && arenaIndexes.containsKey(aParentX) && arenaIndexes.containsKey(aParentY)) {
+			OffHeapPopulationArena offHeapArena = xOffHeapBreedingArena;
+			if (offHeapArena != null) {
+				crossoverArena(offHeapArena, arenaIndexes.get(aParentX), arenaIndexes.get(aParentY), aParentX,
+						aParentY, aCrosssoverList);
+			} else {
+				crossoverArena(xBreedingArena, arenaIndexes.get(aParentX), arenaIndexes.get(aParentY), aParentX,
+						aParentY, aCrosssoverList);
+			}
+			return;
+		}
+		if (GPSettings.isLinearGenomeEnabled()) {
+			crossoverGenomes(aParentX, aParentY, aCrosssoverList);
+			return;
+		}
+		if (GPSettings.isPersistentTreesEnabled()) {
+			crossoverPersistentTrees(aParentX, aParentY, aCrosssoverList);
+			return;
+		}
+
 		// Generate deep copies of each of the parent individuals before we start making any changes.
 		GeneticProgrammingTree offspring1 = (GeneticProgrammingTree) aParentX.clone();
 		GeneticProgrammingTree offspring2 = (GeneticProgrammingTree) aParentY.clone();
@@ -397,14 +758,15 @@ public class GPGeneration {
 		}
 
 		// Check the resulting trees to determine if they are too large and they exceed the height limit from the
-		// settings. If so then simply generate a new tree to take their place instead.
-		if (offspring1.getHeight() <= GPSettings.getMaxHtOfCrossoverTree()) {
+		// settings (or are always invalid when those are rejected). If so then simply generate a new tree to take their
+		// place instead.
+		if (offspring1.getHeight() <= GPSettings.getMaxHtOfCrossoverTree() && !isRejected(offspring1)) {
 			aCrosssoverList.add(offspring1);
 		} else {
 			// Log.warning("Height of crossover operation is too large, generating a new tree from the factory instead.");
 			aCrosssoverList.add(GPTreeFactory.generateGrowTree(GPSettings.getMaxHtOfInitTree()));
 		}
-		if (offspring2.getHeight() <= GPSettings.getMaxHtOfCrossoverTree()) {
+		if (offspring2.getHeight() <= GPSettings.getMaxHtOfCrossoverTree() && !isRejected(offspring2)) {
 			aCrosssoverList.add(offspring2);
 		} else {
 			// Log.warning("Height of crossover operation is too large, generating a new tree from the factory instead.");
@@ -413,36 +775,198 @@ public class GPGeneration {
 	}
 
 	/**
-	 * Selects a random individual from the population and mutates the expression node tree contained within that
-	 * individual.
-	 * <p>
-	 * Note: No attempt is made to make sure that the individual selected from the population is valid or not. For all
-	 * that we know the mutation may make the currently invalid node tree valid and this could end up being the best
-	 * individual of the whole series. It is safer to simply allow all individuals to participate in the mutation
-	 * lottery.
+	 * Perform the cross-over operation by copying ranges of the nodes of the parents out of the arena that holds the
+	 * encoded population into the (recycled) offspring arena of this thread, so that only the offspring within the
+	 * height limit are ever built into expression trees. The same random numbers are drawn (and the same nodes get
+	 * selected) as {@link #crossoverOperation}, so the offspring are identical.
+	 * 
+	 * @param aArena the population arena that holds the parents
+	 * @param aIndividualX the index of the X parent within the arena
+	 * @param aIndividualY the index of the Y parent within the arena
+	 * @param aParentX the source of the X chromosome in the crossover operation
+	 * @param aParentY the source of the X chromosome in the crossover operation
+	 * @param aCrosssoverList the list that will contain the results of the crossover operation
 	 */
-	public void mutate() {
-		StringBuffer outputBuf = new StringBuffer();
-		outputBuf.append("\n");
-		int mutateCount = (int) (getPopulation().size() * GPSettings.getMutationProbability());
-		for (int i = 0; i < mutateCount; i++) {
-			// Always skip entry zero in the population!! Make sure that the best individual from the last run is
-			// brought along untouched!
-			// Integer mutateIndex = GPSettings.getRandomInt(getPopulation().size() - 1) + 1;
-			Integer mutateIndex = GPSettings.getRandomInt(getPopulation().size());
-			try {
-				outputBuf.append("Mutate BEFORE=" + fornmatIndividual(mutateIndex));
-				getPopulation().elementAt(mutateIndex).mutate();
-				outputBuf.append("  AFTER=" + fornmatIndividual(mutateIndex) + "\n");
-			} catch (GPException e) {
-				// When an error occurs during the evaluation, then simply add in the biggest standardized fitness value
-				// into the datum.
-				Log.severe("Attempting to mutate index=" + mutateIndex + " tree=\""
-						+ getPopulation().elementAt(mutateIndex) + "\"");
-				e.printStackTrace();
+	private void crossoverArena(PopulationArena aArena, int aIndividualX, int aIndividualY,
+			GeneticProgrammingTree aParentX, GeneticProgrammingTree aParentY,
+			Vector<GeneticProgrammingTree> aCrosssoverList) throws GPException {
+		int crossoverPoint1 = aArena.getRandomNode(aIndividualX);
+		int crossoverPoint2 = aArena.getRandomNode(aIndividualY);
+
+		PopulationArena offspringArena = xOffspringArenas.get();
+		offspringArena.clear();
+		addOffspring(offspringArena, offspringArena.crossover(aArena, aIndividualX, crossoverPoint1, aArena,
+				aIndividualY, crossoverPoint2), aParentX, aCrosssoverList);
+		addOffspring(offspringArena, offspringArena.crossover(aArena, aIndividualY, crossoverPoint2, aArena,
+				aIndividualX, crossoverPoint1), aParentY, aCrosssoverList);
+	}
+
+	/**
+	 * Add the offspring of a cross-over operation to the list, unless it is too large and exceeds the height limit from
+	 * the settings (or is always invalid when those are rejected). In that case simply generate a new tree to take its
+	 * place instead.
+	 * 
+	 * @param aArena the population arena that holds the offspring
+	 * @param aIndividual the index of the offspring within the arena
+	 * @param aParent the parent whose training data the offspring inherits
+	 * @param aCrosssoverList the list that will contain the results of the crossover operation
+	 */
+	private void addOffspring(PopulationArena aArena, int aIndividual, GeneticProgrammingTree aParent,
+			Vector<GeneticProgrammingTree> aCrosssoverList) throws GPException {
+		if (aArena.getHeight(aIndividual) <= GPSettings.getMaxHtOfCrossoverTree()) {
+			GeneticProgrammingTree offspring = aArena.toTree(aIndividual);
+			offspring.setTrainingData(aParent.getTrainingData());
+			if (!isRejected(offspring)) {
+				aCrosssoverList.add(offspring);
+				return;
+			}
+		}
+		aCrosssoverList.add(GPTreeFactory.generateGrowTree(GPSettings.getMaxHtOfInitTree()));
+	}
+
+	/**
+	 * Perform the cross-over operation by copying ranges of the node records of the parents out of the off-heap arena
+	 * that holds the encoded population (see {@link #crossoverArena(PopulationArena, int, int, GeneticProgrammingTree,
+	 * GeneticProgrammingTree, Vector)}).
+	 * 
+	 * @param aArena the off-heap population arena that holds the parents
+	 * @param aIndividualX the index of the X parent within the arena
+	 * @param aIndividualY the index of the Y parent within the arena
+	 * @param aParentX the source of the X chromosome in the crossover operation
+	 * @param aParentY the source of the X chromosome in the crossover operation
+	 * @param aCrosssoverList the list that will contain the results of the crossover operation
+	 */
+	private void crossoverArena(OffHeapPopulationArena aArena, int aIndividualX, int aIndividualY,
+			GeneticProgrammingTree aParentX, GeneticProgrammingTree aParentY,
+			Vector<GeneticProgrammingTree> aCrosssoverList) throws GPException {
+		int crossoverPoint1 = aArena.getRandomNode(aIndividualX);
+		int crossoverPoint2 = aArena.getRandomNode(aIndividualY);
+
+		OffHeapPopulationArena offspringArena = xOffHeapOffspringArenas.get();
+		offspringArena.clear();
+		addOffspring(offspringArena, offspringArena.crossover(aArena, aIndividualX, crossoverPoint1, aArena,
+				aIndividualY, crossoverPoint2), aParentX, aCrosssoverList);
+		addOffspring(offspringArena, offspringArena.crossover(aArena, aIndividualY, crossoverPoint2, aArena,
+				aIndividualX, crossoverPoint1), aParentY, aCrosssoverList);
+	}
+
+	/**
+	 * Add the offspring of a cross-over operation to the list, unless it is too large and exceeds the height limit from
+	 * the settings (or is always invalid when those are rejected). In that case simply generate a new tree to take its
+	 * place instead.
+	 * 
+	 * @param aArena the off-heap population arena that holds the offspring
+	 * @param aIndividual the index of the offspring within the arena
+	 * @param aParent the parent whose training data the offspring inherits
+	 * @param aCrosssoverList the list that will contain the results of the crossover operation
+	 */
+	private void addOffspring(OffHeapPopulationArena aArena, int aIndividual, GeneticProgrammingTree aParent,
+			Vector<GeneticProgrammingTree> aCrosssoverList) throws GPException {
+		if (aArena.getHeight(aIndividual) <= GPSettings.getMaxHtOfCrossoverTree()) {
+			GeneticProgrammingTree offspring = aArena.toTree(aIndividual);
+			offspring.setTrainingData(aParent.getTrainingData());
+			if (!isRejected(offspring)) {
+				aCrosssoverList.add(offspring);
+				return;
+			}
+		}
+		aCrosssoverList.add(GPTreeFactory.generateGrowTree(GPSettings.getMaxHtOfInitTree()));
+	}
+
+	/**
+	 * Perform the cross-over operation by splicing the linear genomes of the parents rather than deep copying the
+	 * parents and relinking their nodes. The same random numbers are drawn (and the same nodes get selected) as
+	 * {@link #crossoverOperation}, so the offspring are identical.
+	 * 
+	 * @param aParentX the source of the X chromosome in the crossover operation
+	 * @param aParentY the source of the X chromosome in the crossover operation
+	 * @param aCrosssoverList the list that will contain the results of the crossover operation
+	 */
+	private void crossoverGenomes(GeneticProgrammingTree aParentX, GeneticProgrammingTree aParentY,
+			Vector<GeneticProgrammingTree> aCrosssoverList) throws GPException {
+		LinearGenome genomeX = aParentX.getGenome();
+		LinearGenome genomeY = aParentY.getGenome();
+		int crossoverPoint1 = genomeX.getPrefixIndex(GPSettings.getRandomInt(genomeX.size()));
+		int crossoverPoint2 = genomeY.getPrefixIndex(GPSettings.getRandomInt(genomeY.size()));
+
+		addOffspring(genomeX.splice(crossoverPoint1, genomeY, crossoverPoint2), aParentX, aCrosssoverList);
+		addOffspring(genomeY.splice(crossoverPoint2, genomeX, crossoverPoint1), aParentY, aCrosssoverList);
+	}
+
+	/**
+	 * Add the offspring of a cross-over operation to the list, unless it is too large and exceeds the height limit from
+	 * the settings (or is always invalid when those are rejected). In that case simply generate a new tree to take its
+	 * place instead.
+	 * 
+	 * @param aGenome the linear genome of the offspring
+	 * @param aParent the parent whose training data the offspring inherits
+	 * @param aCrosssoverList the list that will contain the results of the crossover operation
+	 */
+	private void addOffspring(LinearGenome aGenome, GeneticProgrammingTree aParent,
+			Vector<GeneticProgrammingTree> aCrosssoverList) throws GPException {
+		if (aGenome.getHeight() <= GPSettings.getMaxHtOfCrossoverTree()) {
+			GeneticProgrammingTree offspring = new GeneticProgrammingTree(aGenome);
+			offspring.setTrainingData(aParent.getTrainingData());
+			offspring.getFitness().reset();
+			if (!isRejected(offspring)) {
+				aCrosssoverList.add(offspring);
+				return;
+			}
+		}
+		aCrosssoverList.add(GPTreeFactory.generateGrowTree(GPSettings.getMaxHtOfInitTree()));
+	}
+
+	/**
+	 * Perform the cross-over operation by swapping subtrees of the persistent trees of the parents. Only the nodes along
+	 * the paths from the cross-over points up to the roots are rebuilt, every other subtree is shared with the parents.
+	 * The same random numbers are drawn (and the same nodes get selected) as {@link #crossoverOperation}, so the
+	 * offspring are identical.
+	 * 
+	 * @param aParentX the source of the X chromosome in the crossover operation
+	 * @param aParentY the source of the X chromosome in the crossover operation
+	 * @param aCrosssoverList the list that will contain the results of the crossover operation
+	 */
+	private void crossoverPersistentTrees(GeneticProgrammingTree aParentX, GeneticProgrammingTree aParentY,
+			Vector<GeneticProgrammingTree> aCrosssoverList) {
+		PersistentNode rootX = aParentX.getPersistentRoot();
+		PersistentNode rootY = aParentY.getPersistentRoot();
+		int crossoverPoint1 = GPSettings.getRandomInt(rootX.size());
+		int crossoverPoint2 = GPSettings.getRandomInt(rootY.size());
+		PersistentNode subtree1 = rootX.getNode(crossoverPoint1);
+		PersistentNode subtree2 = rootY.getNode(crossoverPoint2);
+
+		addOffspring(rootX.replace(crossoverPoint1, subtree2), aParentX, aCrosssoverList);
+		addOffspring(rootY.replace(crossoverPoint2, subtree1), aParentY, aCrosssoverList);
+	}
+
+	/**
+	 * Add the offspring of a cross-over operation to the list, unless it is too large and exceeds the height limit from
+	 * the settings (or is always invalid when those are rejected). In that case simply generate a new tree to take its
+	 * place instead.
+	 * 
+	 * @param aRoot the persistent tree of the offspring
+	 * @param aParent the parent whose training data the offspring inherits
+	 * @param aCrosssoverList the list that will contain the results of the crossover operation
+	 */
+	private void addOffspring(PersistentNode aRoot, GeneticProgrammingTree aParent,
+			Vector<GeneticProgrammingTree> aCrosssoverList) {
+		if (aRoot.getHeight() <= GPSettings.getMaxHtOfCrossoverTree()) {
+			GeneticProgrammingTree offspring = new GeneticProgrammingTree(aRoot);
+			offspring.setTrainingData(aParent.getTrainingData());
+			if (!isRejected(offspring)) {
+				aCrosssoverList.add(offspring);
+				return;
 			}
 		}
-		Log.fine(outputBuf.toString());
+		aCrosssoverList.add(GPTreeFactory.generateGrowTree(GPSettings.getMaxHtOfInitTree()));
+	}
+
+	/**
+	 * @param aOffspring the offspring of a cross-over operation
+	 * @return the indicator if the offspring is always invalid and those are rejected within the Settings
+	 */
+	private static boolean isRejected(GeneticProgrammingTree aOffspring) {
+		return GPSettings.isRejectInvalidOffspringEnabled() && aOffspring.isAlwaysInvalid();
 	}
 
 	/**
@@ -469,4 +993,193 @@ public class GPGeneration {
 		}
 		return outputBuf.toString();
 	}
+
+	// =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	/**
+	 * A slice of the breeding units of the next generation. Each slice owns its random stream and all of its scratch
+	 * lists, and carries the snapshot of the Settings (if any) of the thread that breeds the generation, so the slices
+	 * can be bred on any thread in any order.
+	 */
+	// =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	private class BreedingSlice implements Callable<Vector<GeneticProgrammingTree>> {
+		private final Properties xSettings;
+		private final RandomStream xRandomStream;
+		private final int xFirstUnit;
+		private final int xEndUnit;
+		private final int xReproductionUnits;
+		private final List<GeneticProgrammingTree> xReproduced;
+		private final Vector<GeneticProgrammingTree> xContestants = new Vector<GeneticProgrammingTree>();
+
+		/**
+		 * @param aSettings the snapshot of the Settings to breed the slice with (or null to read the Settings)
+		 * @param aRandomStream the random stream of the slice
+		 * @param aFirstUnit the index of the first breeding unit of the slice
+		 * @param aEndUnit the index after the last breeding unit of the slice
+		 * @param aReproductionUnits the number of breeding units (at the start) that reproduce an individual
+		 * @param aReproduced the reproduced individuals (or null when they are drawn from tournaments)
+		 */
+		private BreedingSlice(Properties aSettings, RandomStream aRandomStream, int aFirstUnit, int aEndUnit,
+				int aReproductionUnits, List<GeneticProgrammingTree> aReproduced) {
+			xSettings = aSettings;
+			xRandomStream = aRandomStream;
+			xFirstUnit = aFirstUnit;
+			xEndUnit = aEndUnit;
+			xReproductionUnits = aReproductionUnits;
+			xReproduced = aReproduced;
+		}
+
+		@Override
+		public Vector<GeneticProgrammingTree> call() throws GPException {
+			// A slice may run on the calling thread, so give the calling thread its Settings and random stream back
+			// afterwards.
+			Properties callerSettings = GPSettings.getThreadSettings();
+			RandomStream callerRandomStream = GPSettings.getThreadRandomStream();
+			GPSettings.setThreadSettings(xSettings);
+			GPSettings.setThreadRandomStream(xRandomStream);
+			try {
+				Vector<GeneticProgrammingTree> offspring = new Vector<GeneticProgrammingTree>();
+				int reproducedCount = 0;
+				for (int unit = xFirstUnit; unit < xEndUnit; unit++) {
+					if (unit < xReproductionUnits) {
+						offspring.add((xReproduced != null) ? xReproduced.get(unit) : tournamentSelection(xContestants,
+								0));
+						reproducedCount++;
+					} else {
+						GeneticProgrammingTree parent1 = tournamentSelection(xContestants, 0);
+						GeneticProgrammingTree parent2 = tournamentSelection(xContestants, 0);
+						crossoverOperation(parent1, parent2, offspring);
+					}
+				}
+
+				// Every offspring enters the mutation lottery, but a reproduced individual is still shared with this
+				// generation (or the other slices), so it is mutated as a copy.
+				double mutationProbability = GPSettings.getMutationProbability();
+				for (int i = 0; i < offspring.size(); i++) {
+					if (xRandomStream.nextDouble() < mutationProbability) {
+						if (i < reproducedCount) {
+							offspring.set(i, (GeneticProgrammingTree) offspring.get(i).clone());
+						}
+						offspring.get(i).mutate();
+					}
+				}
+				return offspring;
+			} finally {
+				GPSettings.setThreadRandomStream(callerRandomStream);
+				GPSettings.setThreadSettings(callerSettings);
+			}
+		}
+	}
+
+	// =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	/**
+	 * A thread of the steady-state evolution that keeps breeding offspring into the live population until all of the
+	 * births are used up or the fitness goal is reached. Each breeder owns its random stream and all of its scratch
+	 * lists, and carries the snapshot of the Settings (if any) of the thread that evolves the population.
+	 */
+	// =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	private class SteadyStateBreeder implements Callable<Integer> {
+		private final Properties xSettings;
+		private final RandomStream xRandomStream;
+		private final AtomicInteger xBirths;
+		private final AtomicReference<GeneticProgrammingTree> xBestIndividual;
+		private final FitnessDatum xFitnessGoal;
+		private final Vector<GeneticProgrammingTree> xContestants = new Vector<GeneticProgrammingTree>();
+		private final Vector<GeneticProgrammingTree> xOffspring = new Vector<GeneticProgrammingTree>();
+
+		/**
+		 * @param aSettings the snapshot of the Settings to breed with (or null to read the Settings)
+		 * @param aRandomStream the random stream of the breeder
+		 * @param aBirths the number of offspring left to breed (shared by all of the breeders)
+		 * @param aBestIndividual the best individual of the live population (shared by all of the breeders)
+		 * @param aFitnessGoal the fitness that stops the evolution as soon as any offspring reaches it
+		 */
+		private SteadyStateBreeder(Properties aSettings, RandomStream aRandomStream, AtomicInteger aBirths,
+				AtomicReference<GeneticProgrammingTree> aBestIndividual, FitnessDatum aFitnessGoal) {
+			xSettings = aSettings;
+			xRandomStream = aRandomStream;
+			xBirths = aBirths;
+			xBestIndividual = aBestIndividual;
+			xFitnessGoal = aFitnessGoal;
+		}
+
+		@Override
+		public Integer call() throws GPException {
+			// A breeder may run on the calling thread, so give the calling thread its Settings and random stream back
+			// afterwards.
+			Properties callerSettings = GPSettings.getThreadSettings();
+			RandomStream callerRandomStream = GPSettings.getThreadRandomStream();
+			GPSettings.setThreadSettings(xSettings);
+			GPSettings.setThreadRandomStream(xRandomStream);
+			try {
+				int bred = 0;
+				double crossoverProbability = GPSettings.getCrossoverProbability();
+				double mutationProbability = GPSettings.getMutationProbability();
+				while (xBestIndividual.get().getFitness().compareTo(xFitnessGoal) >= 0 && xBirths.getAndDecrement() > 0) {
+					xOffspring.clear();
+					if (xRandomStream.nextDouble() < crossoverProbability) {
+						GeneticProgrammingTree parent1 = tournamentSelection(xContestants, 0);
+						GeneticProgrammingTree parent2 = tournamentSelection(xContestants, 0);
+						crossoverOperation(parent1, parent2, xOffspring);
+						// The second offspring of the pair needs a birth of its own.
+						if (xOffspring.size() > 1 && xBirths.getAndDecrement() <= 0) {
+							xOffspring.setSize(1);
+						}
+					} else {
+						// The winner is still part of the live population, so it is reproduced as a copy.
+						xOffspring.add((GeneticProgrammingTree) tournamentSelection(xContestants, 0).clone());
+					}
+
+					for (GeneticProgrammingTree offspring : xOffspring) {
+						if (xRandomStream.nextDouble() < mutationProbability) {
+							offspring.mutate();
+						}
+						// Only new (or changed) trees need to be scored, a plain copy keeps the fitness of its parent.
+						if (!offspring.getFitness().isValid()) {
+							offspring.calculateFitness();
+						}
+						buildRepresentation(offspring);
+						replaceLoser(offspring);
+						bred++;
+					}
+				}
+				return bred;
+			} finally {
+				GPSettings.setThreadRandomStream(callerRandomStream);
+				GPSettings.setThreadSettings(callerSettings);
+			}
+		}
+
+		/**
+		 * Put the offspring in the place of the loser of an inverse tournament, which is held again whenever another
+		 * thread replaced the loser first. A better offspring becomes the best individual before it enters the
+		 * population, so the best individual can never be chosen as the loser.
+		 * 
+		 * @param aOffspring the (scored) offspring to put into the live population
+		 */
+		private void replaceLoser(GeneticProgrammingTree aOffspring) {
+			GeneticProgrammingTree bestIndividual = xBestIndividual.get();
+			while (aOffspring.compareTo(bestIndividual) < 0
+					&& !xBestIndividual.compareAndSet(bestIndividual, aOffspring)) {
+				bestIndividual = xBestIndividual.get();
+			}
+
+			AtomicReferenceArray<GeneticProgrammingTree> livePopulation = xLivePopulation;
+			int[] draws = new int[GPSettings.getTournamentSize()];
+			while (true) {
+				int loserIndex = -1;
+				GeneticProgrammingTree loser = null;
+				bestIndividual = xBestIndividual.get();
+				for (int draw : xRandomStream.nextInts(livePopulation.length(), draws)) {
+					GeneticProgrammingTree contestant = livePopulation.get(draw);
+					if (contestant != bestIndividual && (loser == null || contestant.compareTo(loser) > 0)) {
+						loser = contestant;
+						loserIndex = draw;
+					}
+				}
+				if (loser != null && livePopulation.compareAndSet(loserIndex, loser, aOffspring)) {
+					return;
+				}
+			}
+		}
+	}
 }
@@ -3,12 +3,20 @@ package edu.stthomas.seis610.gp;
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
 import java.text.NumberFormat;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Date;
+import java.util.List;
+import java.util.Properties;
 import java.util.Vector;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.logging.ConsoleHandler;
 import java.util.logging.Handler;
@@ -19,6 +27,7 @@ import edu.stthomas.seis610.gp.GPGeneration.GenerationMethod;
 import edu.stthomas.seis610.tree.GeneticProgrammingTree;
 import edu.stthomas.seis610.util.GPException;
 import edu.stthomas.seis610.util.GPSimpleFormatter;
+import edu.stthomas.seis610.util.RandomStream;
 
 class GPMain extends java.lang.Thread {
 	private static final Logger Log = Logger.getLogger("Global");
@@ -28,9 +37,10 @@ class GPMain extends java.lang.Thread {
 	private static final int MAX_GP_TIME = 1000 * 60 * 15; // 15 minutes
 	private static final int MAX_GP_SAMPLES_TIME = 1000 * 60 * 1200; // 180 minutes
 	private static final int MAX_SAMPLE_SIZE = 100;
-	private static final int RESTART_POPULATION_THRESHOLD = 10;
+	static final int RESTART_POPULATION_THRESHOLD = 10;
 
 	private GPGeneration xGeneration;
+	private StringBuilder xCsvRecords; // The results of a single (sweep) job, or null to write them to the CSV file
 	private static File xCsvFile;
 
 	/**
@@ -123,45 +133,84 @@ class GPMain extends java.lang.Thread {
 		 */
 		writeCsv(true);
 
+		/*
+		 * Turn every sample of every combination of settings into an independent job with its own snapshot of the
+		 * Settings and its own random stream (split off in the order of the jobs), so that the jobs can run side by
+		 * side on a work-stealing pool sized to the machine. The jobs already keep every core busy, so each job breeds
+		 * and scores on its own thread. The breeding slices would carry the snapshot of the job onto a pool of breeding
+		 * threads, but the scoring threads, islands and worker processes would not see the snapshot at all.
+		 */
+		Properties baseSettings = GPSettings.getProperties();
+		baseSettings.setProperty(GPSettings._SCORING_THREADS, "1");
+		baseSettings.setProperty(GPSettings._BREEDING_THREADS, "1");
+		baseSettings.setProperty(GPSettings._STEADY_STATE_THREADS, "0");
+		baseSettings.setProperty(GPSettings._ISLAND_COUNT, "1");
+		baseSettings.setProperty(GPSettings._EVALUATION_WORKERS, "0");
+
+		// Build the (lazily loaded) shared lists of the Settings before any of the jobs need them.
+		GPSettings.getOperators();
+		GPSettings.getOperands();
+		TrainingColumns.getInstance(GPSettings.getTrainingData());
+
+		GPSettings.recycleRandomGenerator();
+		RandomStream randomStream = GPSettings.getRandomStream();
+		ForkJoinPool pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+		List<Future<String>> jobs = new ArrayList<Future<String>>();
 		for (GenerationMethod genMethod : generationMethods) {
-			// Update the Generation Method as we process the different permutations.
-			GPSettings.setGenerationMethod(genMethod);
-
 			for (Integer populationSize : populationSizes) {
-				// Update the Population Size as we process the different permutations.
-				GPSettings.setPopulationSize(populationSize);
-
 				for (Integer tournamentSize : tournamentSizes) {
-					// Update the Tournament Size as we process the different permutations.
-					GPSettings.setTournamentSize(tournamentSize);
-
 					/*
 					 * Create a number of permutations (samples) for each combination of settings so we can get a good
 					 * average.
 					 */
 					for (int i = 0; i < MAX_SAMPLE_SIZE; i++) {
-						/*
-						 * Perform the GP processing with a new Random Generator (each time).
-						 */
-						GPSettings.recycleRandomGenerator();
-						processGP();
-
-						/*
-						 * Test for the thread to be finished.
-						 */
-						if (isInterrupted()) {
-							threadMessage("Thread has been notified that it is interrupted and should prepare to finish.");
-							return;
-						}
+						Properties settings = new Properties();
+						settings.putAll(baseSettings);
+						settings.setProperty(GPSettings._GENERATION_METHOD, genMethod.name());
+						settings.setProperty(GPSettings._POPULATION_SIZE, populationSize.toString());
+						settings.setProperty(GPSettings._TOURNAMENT_SIZE, tournamentSize.toString());
+						jobs.add(pool.submit(new SweepJob(settings, randomStream.split())));
 					}
-					writeCsv(false); // Simply add a blank line to the CSV file between samples.
 				}
 			}
 		}
 
+		/*
+		 * Stream the results of the jobs into the CSV file in the order of the jobs (as soon as all of the jobs before
+		 * them are finished), no matter in which order they actually finish.
+		 */
+		try {
+			for (int i = 0; i < jobs.size(); i++) {
+				try {
+					writeCsvRecords(jobs.get(i).get());
+				} catch (ExecutionException e) {
+					Log.log(Level.SEVERE, "Problem encountered during sweep job " + i, e.getCause());
+				}
+				if ((i + 1) % MAX_SAMPLE_SIZE == 0) {
+					writeCsv(false); // Simply add a blank line to the CSV file between samples.
+				}
+
+				/*
+				 * Test for the thread to be finished.
+				 */
+				if (isInterrupted()) {
+					threadMessage("Thread has been notified that it is interrupted and should prepare to finish.");
+					return;
+				}
+			}
+		} catch (InterruptedException e) {
+			threadMessage("Thread has been notified that it is interrupted and should prepare to finish.");
+		} finally {
+			pool.shutdownNow();
+		}
 	}
 
 	public void processGP() {
+		if (GPSettings.getIslandCount() > 1) {
+			processIslands();
+			return;
+		}
+
 		int duplicateIndividualCnt = 0, injectNewDNACount = 0;
 		int injectNewDNAThreshold = (int) Math.round(GPSettings.getMaxGenerations() * 0.001);
 
@@ -196,7 +245,8 @@ class GPMain extends java.lang.Thread {
 
 			// Loop until we find the best individual
 			while (minFitness.compareTo(fitnessGoal) >= 0 && generationCount < maxGenerations
-					&& ((System.currentTimeMillis() - gpStartTime) <= MAX_GP_TIME)) {
+					&& ((System.currentTimeMillis() - gpStartTime) <= MAX_GP_TIME)
+					&& !Thread.currentThread().isInterrupted()) {
 
 				/*
 				 * Determine how to generate the next population. If we have reached an interval of close to 1% of total
@@ -235,7 +285,12 @@ class GPMain extends java.lang.Thread {
 					 * generation as a source of DNA for the next generation as we keep making progress towards our
 					 * goal.
 					 */
-					xGeneration = xGeneration.nextGeneration(false);
+					if (GPSettings.getSteadyStateThreads() > 0) {
+						// Breed a generation's worth of offspring into the live population instead.
+						xGeneration.evolveSteadyState(GPSettings.getPopulationSize(), fitnessGoal);
+					} else {
+						xGeneration = xGeneration.nextGeneration(false);
+					}
 					Log.fine("Generation " + generationCount + ": [size=" + xGeneration.getPopulation().size()
 							+ "]: \n" + xGeneration);
 				}
@@ -269,6 +324,62 @@ class GPMain extends java.lang.Thread {
 			Log.info("Final Generation " + generationCount + ": [height=" + currentBestIndividual.getHeight()
 					+ " fitness=" + currentBestIndividual.getFitness() + " isValid="
 					+ currentBestIndividual.isTreeValid() + "]  " + currentBestIndividual.toString());
+			if (GPSettings.isSimplificationEnabled()) {
+				Log.info("Simplified Final Individual: " + currentBestIndividual.toSimplifiedString());
+			}
+			Log.info("It took " + calculateElapsedTime(timeElapsed) + " (mm:ss.mili) to find the best individual!");
+			Log.info("End of GP Program...\n\n");
+
+			writeCsvResults(generationCount, currentBestIndividual, firstBestIndividual, timeElapsed);
+		} catch (GPException e) {
+			Log.severe("Problem encountered during main line processing: " + e.getMessage());
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Perform the GP processing with a number of islands (sub-populations) that evolve side by side on their own
+	 * threads and only exchange their top individuals at a migration every so many generations (see
+	 * {@link IslandModel}).
+	 */
+	public void processIslands() {
+		IslandModel islands = new IslandModel();
+		long gpStartTime = System.currentTimeMillis();
+		try {
+			Log.info("Starting the GP Program with " + GPSettings.getIslandCount() + " islands...");
+
+			Integer generationCount = 1;
+			Integer maxGenerations = GPSettings.getMaxGenerations();
+			int migrationInterval = Math.max(GPSettings.getMigrationInterval(), 1);
+			FitnessDatum fitnessGoal = new FitnessDatum(GPSettings.getFitnessMarginOfError());
+
+			// Process the first generation of every island...
+			islands.init();
+			GeneticProgrammingTree currentBestIndividual = islands.getBestIndividual();
+			GeneticProgrammingTree firstBestIndividual = currentBestIndividual;
+			Log.info("First Generation " + generationCount + ": [height=" + currentBestIndividual.getHeight()
+					+ " fitness=" + currentBestIndividual.getFitness() + "]  " + currentBestIndividual.toString());
+
+			// Loop (one migration interval at a time) until any of the islands finds the best individual
+			while (currentBestIndividual.getFitness().compareTo(fitnessGoal) >= 0 && generationCount < maxGenerations
+					&& ((System.currentTimeMillis() - gpStartTime) <= MAX_GP_TIME)
+					&& !Thread.currentThread().isInterrupted()) {
+				generationCount += islands.evolve(Math.min(migrationInterval, maxGenerations - generationCount),
+						fitnessGoal);
+				currentBestIndividual = islands.getBestIndividual();
+
+				Log.fine("Generation " + generationCount + ": [height=" + currentBestIndividual.getHeight()
+						+ " fitness=" + currentBestIndividual.getFitness() + "]  " + currentBestIndividual.toString());
+			}
+			long timeElapsed = System.currentTimeMillis() - gpStartTime;
+
+			Log.info("Final Generation " + generationCount + ": [height=" + currentBestIndividual.getHeight()
+					+ " fitness=" + currentBestIndividual.getFitness() + " isValid="
+					+ currentBestIndividual.isTreeValid() + "]  " + currentBestIndividual.toString());
+			if (GPSettings.isSimplificationEnabled()) {
+				Log.info("Simplified Final Individual: " + currentBestIndividual.toSimplifiedString());
+			}
+			Log.info("The islands were started over " + islands.getRestartCount() + " times.");
 			Log.info("It took " + calculateElapsedTime(timeElapsed) + " (mm:ss.mili) to find the best individual!");
 			Log.info("End of GP Program...\n\n");
 
@@ -276,13 +387,15 @@ class GPMain extends java.lang.Thread {
 		} catch (GPException e) {
 			Log.severe("Problem encountered during main line processing: " + e.getMessage());
 			e.printStackTrace();
+		} finally {
+			islands.shutdown();
 		}
 	}
 
 	public void writeCsvResults(Integer aGenerationCnt, GeneticProgrammingTree aFinalIndividual,
 			GeneticProgrammingTree aFirstBestIndividual, long aElapsedTime) {
 		try {
-			FileWriter csvWriter = new FileWriter(xCsvFile, true);
+			Writer csvWriter = (xCsvRecords != null) ? new StringWriter() : new FileWriter(xCsvFile, true);
 
 			// Write the number of generations it took to find the best plan
 			csvWriter.append(aGenerationCnt.toString());
@@ -352,7 +465,27 @@ class GPMain extends java.lang.Thread {
 			// Write a new line character at the end of this record.
 			csvWriter.append(NEWLINE);
 
-			// Make sure the results are written and flushed out to the file.
+			// Make sure the results are written and flushed out to the file (or kept for the sweep job).
+			csvWriter.flush();
+			csvWriter.close();
+			if (xCsvRecords != null) {
+				xCsvRecords.append(csvWriter.toString());
+			}
+		} catch (IOException ex) {
+			Log.log(Level.SEVERE, "Error attempting to write the CSV ", ex);
+			ex.printStackTrace();
+		}
+	}
+
+	/**
+	 * Append the (already formatted) records to the CSV file.
+	 * 
+	 * @param aRecords the records to append
+	 */
+	public void writeCsvRecords(String aRecords) {
+		try {
+			FileWriter csvWriter = new FileWriter(xCsvFile, true);
+			csvWriter.append(aRecords);
 			csvWriter.flush();
 			csvWriter.close();
 		} catch (IOException ex) {
@@ -410,4 +543,40 @@ class GPMain extends java.lang.Thread {
 			ex.printStackTrace();
 		}
 	}
+
+	// =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	/**
+	 * A single sample of a combination of settings within the parameter sweep. The job runs the GP processing with its
+	 * own snapshot of the Settings and its own random stream on whichever thread of the pool picks it up, and returns
+	 * its results as CSV records rather than writing them to the CSV file itself.
+	 */
+	// =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	private static class SweepJob implements Callable<String> {
+		private final Properties xSettings;
+		private final RandomStream xRandomStream;
+
+		/**
+		 * @param aSettings the snapshot of the Settings of the job (never changed once the job is created)
+		 * @param aRandomStream the random stream of the job
+		 */
+		private SweepJob(Properties aSettings, RandomStream aRandomStream) {
+			xSettings = aSettings;
+			xRandomStream = aRandomStream;
+		}
+
+		@Override
+		public String call() {
+			GPSettings.setThreadSettings(xSettings);
+			GPSettings.setThreadRandomStream(xRandomStream);
+			try {
+				GPMain job = new GPMain();
+				job.xCsvRecords = new StringBuilder();
+				job.processGP();
+				return job.xCsvRecords.toString();
+			} finally {
+				GPSettings.setThreadRandomStream(null);
+				GPSettings.setThreadSettings(null);
+			}
+		}
+	}
 }
@@ -7,11 +7,14 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.util.Enumeration;
 import java.util.Properties;
-import java.util.Random;
 import java.util.Vector;
 
 import edu.stthomas.seis610.gp.GPGeneration.GenerationMethod;
 import edu.stthomas.seis610.gp.GPGeneration.ReproductionMethod;
+import edu.stthomas.seis610.gp.IslandModel.MigrationTopology;
+import edu.stthomas.seis610.tree.FitnessCache.EvictionPolicy;
+import edu.stthomas.seis610.tree.GeneticProgrammingTree.EvaluationMode;
+import edu.stthomas.seis610.util.RandomStream;
 
 //=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
 /**
@@ -27,15 +30,19 @@ public class GPSettings extends Properties {
 	/**
 	 * Define private variables for the Singleton Instance of this class.
 	 */
-	private static GPSettings xSingletonInstance = null;
+	private static volatile GPSettings xSingletonInstance = null;
 	private static final long serialVersionUID = 1L;
 	private static final String xInitialPropertiesFile = "init.gp.properties";
 	private static OutputStream xOutputStream;
 
-	private Random xRandomGenerator;
+	private static final ThreadLocal<RandomStream> xThreadRandomStream = new ThreadLocal<RandomStream>();
+	private static final ThreadLocal<Properties> xThreadSettings = new ThreadLocal<Properties>();
+
+	private RandomStream xRandomStream;
 	private Vector<String> xOperators;
 	private Vector<String> xOperands;
 	private Vector<TrainingData> xTrainingData;
+	private int xTrainingDataVersion;
 
 	/**
 	 * Define Constants for the Property Names for the different Settings
@@ -55,6 +62,33 @@ public class GPSettings extends Properties {
 	public final static String _GENERATION_METHOD = new String("treeGenerationMethod");
 	public final static String _REPRODUCTION_METHOD = new String("reproductionMethod");
 	public final static String _INPUT_TRAINING_DATA = new String("trainingDataInput");
+	public final static String _EVALUATION_MODE = new String("evaluationMode");
+	public final static String _BYTECODE_COMPILATION = new String("bytecodeCompilation");
+	public final static String _COMPILATION_THRESHOLD = new String("compilationThreshold");
+	public final static String _LINEAR_GENOME = new String("linearGenome");
+	public final static String _PERSISTENT_TREES = new String("persistentTrees");
+	public final static String _POPULATION_ARENA = new String("populationArena");
+	public final static String _OFF_HEAP_ARENA = new String("offHeapArena");
+	public final static String _FITNESS_CACHE = new String("fitnessCache");
+	public final static String _FITNESS_CACHE_SIZE = new String("fitnessCacheSize");
+	public final static String _FITNESS_CACHE_EVICTION = new String("fitnessCacheEviction");
+	public final static String _SUBEXPRESSION_CACHE_SIZE = new String("subexpressionCacheSize");
+	public final static String _SIMPLIFICATION = new String("simplification");
+	public final static String _EARLY_ABORT = new String("earlyAbort");
+	public final static String _EARLY_ABORT_PERCENTILE = new String("earlyAbortPercentile");
+	public final static String _INTERVAL_ANALYSIS = new String("intervalAnalysis");
+	public final static String _REJECT_INVALID_OFFSPRING = new String("rejectInvalidOffspring");
+	public final static String _SCORING_THREADS = new String("scoringThreads");
+	public final static String _BREEDING_THREADS = new String("breedingThreads");
+	public final static String _STEADY_STATE_THREADS = new String("steadyStateThreads");
+	public final static String _ISLAND_COUNT = new String("islandCount");
+	public final static String _MIGRATION_INTERVAL = new String("migrationInterval");
+	public final static String _MIGRATION_SIZE = new String("migrationSize");
+	public final static String _MIGRATION_TOPOLOGY = new String("migrationTopology");
+	public final static String _EVALUATION_WORKERS = new String("evaluationWorkers");
+	public final static String _EVALUATION_BATCH_SIZE = new String("evaluationBatchSize");
+	public final static String _EVALUATION_PIPELINE_DEPTH = new String("evaluationPipelineDepth");
+	public final static String _EVALUATION_TIMEOUT = new String("evaluationTimeout");
 
 	/**
 	 * Define Default (Constant) Values for the Settings
@@ -75,6 +109,33 @@ public class GPSettings extends Properties {
 	public final static String _DEFAULT_REPRODUCTION_METHOD = new String("TOURNAMENT_SELECTION");
 //	public final static String _DEFAULT_INPUT_TRAINING_DATA = new String("-5,-4,-3,-2,-1,0,1,2,3,4,5");
 	public final static String _DEFAULT_INPUT_TRAINING_DATA = new String("20001,15313.5,3961.5,1105.5,3,1.5,365.5,4803,7939,147425.5");
+	public final static String _DEFAULT_EVALUATION_MODE = new String("BATCH");
+	public final static String _DEFAULT_BYTECODE_COMPILATION = new String("false");
+	public final static String _DEFAULT_COMPILATION_THRESHOLD = new String("3");
+	public final static String _DEFAULT_LINEAR_GENOME = new String("false");
+	public final static String _DEFAULT_PERSISTENT_TREES = new String("false");
+	public final static String _DEFAULT_POPULATION_ARENA = new String("false");
+	public final static String _DEFAULT_OFF_HEAP_ARENA = new String("false");
+	public final static String _DEFAULT_FITNESS_CACHE = new String("false");
+	public final static String _DEFAULT_FITNESS_CACHE_SIZE = new String("10000");
+	public final static String _DEFAULT_FITNESS_CACHE_EVICTION = new String("LRU");
+	public final static String _DEFAULT_SUBEXPRESSION_CACHE_SIZE = new String("50000");
+	public final static String _DEFAULT_SIMPLIFICATION = new String("false");
+	public final static String _DEFAULT_EARLY_ABORT = new String("false");
+	public final static String _DEFAULT_EARLY_ABORT_PERCENTILE = new String("0.5");
+	public final static String _DEFAULT_INTERVAL_ANALYSIS = new String("false");
+	public final static String _DEFAULT_REJECT_INVALID_OFFSPRING = new String("false");
+	public final static String _DEFAULT_SCORING_THREADS = new String("1");
+	public final static String _DEFAULT_BREEDING_THREADS = new String("1");
+	public final static String _DEFAULT_STEADY_STATE_THREADS = new String("0");
+	public final static String _DEFAULT_ISLAND_COUNT = new String("1");
+	public final static String _DEFAULT_MIGRATION_INTERVAL = new String("10");
+	public final static String _DEFAULT_MIGRATION_SIZE = new String("2");
+	public final static String _DEFAULT_MIGRATION_TOPOLOGY = new String("RING");
+	public final static String _DEFAULT_EVALUATION_WORKERS = new String("0");
+	public final static String _DEFAULT_EVALUATION_BATCH_SIZE = new String("32");
+	public final static String _DEFAULT_EVALUATION_PIPELINE_DEPTH = new String("2");
+	public final static String _DEFAULT_EVALUATION_TIMEOUT = new String("10000");
 
 
 	/**
@@ -92,11 +153,8 @@ public class GPSettings extends Properties {
 
 		// Construct the Random Number Generator to use for the GP algorithm. Seed the random generator with value
 		// extracted from the properties file as long as the seed value exists within the properties.
-		xRandomGenerator = new Random();
 		Long randomSeed = getRandomSeed();
-		if (randomSeed != null) {
-			xRandomGenerator.setSeed(randomSeed);
-		}
+		xRandomStream = (randomSeed != null) ? new RandomStream(randomSeed) : new RandomStream();
 
 		// Construct the vector stubs for the operators and the operands that will be populated later.
 		xOperators = new Vector<String>();
@@ -114,7 +172,11 @@ public class GPSettings extends Properties {
 	 */
 	public static GPSettings getInstance() {
 		if (xSingletonInstance == null) {
-			xSingletonInstance = new GPSettings();
+			synchronized (GPSettings.class) {
+				if (xSingletonInstance == null) {
+					xSingletonInstance = new GPSettings();
+				}
+			}
 		}
 		return xSingletonInstance;
 	}
@@ -124,18 +186,114 @@ public class GPSettings extends Properties {
 	 * @return a random integer value bounded by the parameter
 	 */
 	public static Integer getRandomInt(int aBoundedValue) {
-		return getInstance().xRandomGenerator.nextInt(aBoundedValue);
+		return getRandomStream().nextInt(aBoundedValue);
+	}
+
+	/**
+	 * Get the random stream to draw from on the current thread. This is the stream assigned to the thread (see
+	 * {@link #setThreadRandomStream(RandomStream)}), or the random stream of the run for any other thread.
+	 * 
+	 * @return the random stream of the current thread
+	 */
+	public static RandomStream getRandomStream() {
+		RandomStream stream = xThreadRandomStream.get();
+		return (stream != null) ? stream : getInstance().xRandomStream;
+	}
+
+	/**
+	 * @return the random stream assigned to the current thread (or null when it draws from the random stream of the run)
+	 */
+	public static RandomStream getThreadRandomStream() {
+		return xThreadRandomStream.get();
+	}
+
+	/**
+	 * Assign a random stream (usually split off from the random stream of the run) to the current thread, so that a
+	 * worker thread draws its random numbers without any contention and in a reproducible order.
+	 * 
+	 * @param aStream the random stream for the current thread (or null to draw from the random stream of the run)
+	 */
+	public static void setThreadRandomStream(RandomStream aStream) {
+		if (aStream == null) {
+			xThreadRandomStream.remove();
+		} else {
+			xThreadRandomStream.set(aStream);
+		}
+	}
+
+	/**
+	 * @return the snapshot of the property values assigned to the current thread (or null when it reads the Settings)
+	 */
+	public static Properties getThreadSettings() {
+		return xThreadSettings.get();
+	}
+
+	/**
+	 * Assign a snapshot of the property values to the current thread, so that a job can run with its own Settings side
+	 * by side with other jobs without any of them changing the Settings of the others. Every property is read from (and
+	 * updated within) the snapshot on the current thread, but the lists of operators, operands and training data are
+	 * still shared (and must be built before the jobs start), so the properties behind them cannot be updated.
+	 * 
+	 * @param aSettings the property values for the current thread (or null to read the Settings again)
+	 */
+	public static void setThreadSettings(Properties aSettings) {
+		if (aSettings == null) {
+			xThreadSettings.remove();
+		} else {
+			xThreadSettings.set(aSettings);
+		}
+	}
+
+	/**
+	 * Lookup the property within the snapshot of the property values assigned to the current thread (see
+	 * {@link #setThreadSettings(Properties)}), or within the Settings for any other thread.
+	 * 
+	 * @param aKey the property name (key) to lookup for the property
+	 * @return the value of the property (or null when it does not exist)
+	 */
+	@Override
+	public String getProperty(String aKey) {
+		Properties settings = xThreadSettings.get();
+		return (settings != null) ? settings.getProperty(aKey) : super.getProperty(aKey);
+	}
+
+	/**
+	 * Update the property within the snapshot of the property values assigned to the current thread (see
+	 * {@link #setThreadSettings(Properties)}) rather than within the Settings, so that the other jobs never see it. The
+	 * snapshot is never written into the output properties file.
+	 * 
+	 * @param aKey the property name (key) to update in the snapshot
+	 * @param aValue the value for this property
+	 * @return true when the current thread has a snapshot (and it has been updated), false otherwise
+	 */
+	private static boolean setThreadProperty(String aKey, String aValue) {
+		Properties settings = xThreadSettings.get();
+		if (settings == null) {
+			return false;
+		}
+		settings.setProperty(aKey, aValue);
+		return true;
+	}
+
+	/**
+	 * Make sure that the current thread does not have a snapshot of the property values before a property is updated
+	 * that the shared lists of operators, operands and training data (or the shared random generator) are built from.
+	 * 
+	 * @param aKey the property name (key) to update
+	 */
+	private static void checkSharedProperty(String aKey) {
+		if (xThreadSettings.get() != null) {
+			throw new IllegalStateException("Unable to update the shared property " + aKey
+					+ " from a thread with its own snapshot of the Settings.");
+		}
 	}
 
 	/**
 	 * Recycle the random generator associated with this settings.
 	 */
 	public static void recycleRandomGenerator() {
-		getInstance().xRandomGenerator = new Random();
 		Long randomSeed = getInstance().getRandomSeed();
-		if (randomSeed != null) {
-			getInstance().xRandomGenerator.setSeed(randomSeed);
-		}
+		getInstance().xRandomStream = (randomSeed != null) ? new RandomStream(randomSeed) : new RandomStream();
 	}
 
 	/**
@@ -198,6 +356,7 @@ public class GPSettings extends Properties {
 	 * @param aOperatorValue the operator value to add to the operator property
 	 */
 	public static void addOperators(String aOperatorValue) {
+		checkSharedProperty(_OPERATORS);
 		getInstance().setOperatorProperty(aOperatorValue);
 	}
 
@@ -219,6 +378,7 @@ public class GPSettings extends Properties {
 	 * @param aOperandValue the operand value to add to the operand property
 	 */
 	public static void addOperands(String aOperandValue) {
+		checkSharedProperty(_OPERANDS);
 		getInstance().setOperandProperty(aOperandValue);
 	}
 
@@ -240,12 +400,13 @@ public class GPSettings extends Properties {
 	public static void setRandomSeed(String aRandomSeedValue) {
 		// Make sure that we update the already instantiated random number generator with the new seed value along with
 		// updating the property settings.
+		checkSharedProperty(_RANDOM_SEED);
 		if (aRandomSeedValue.compareTo("null") == 0) {
 			// Reset the random number generator to make sure that the seed is the default null value.
-			getInstance().xRandomGenerator = new Random();			
+			getInstance().xRandomStream = new RandomStream();
 		}
 		else {
-			getInstance().xRandomGenerator.setSeed(Long.parseLong(aRandomSeedValue));;						
+			getInstance().xRandomStream.setSeed(Long.parseLong(aRandomSeedValue));
 		}
 		setStringProperty(_RANDOM_SEED, aRandomSeedValue);
 	}
@@ -373,8 +534,49 @@ public class GPSettings extends Properties {
 	 * @param aTrainingVals a comma separated string of the new input training values
 	 */
 	public static void setTrainingInputString(String aTrainingVals) {
+		checkSharedProperty(_INPUT_TRAINING_DATA);
 		setStringProperty(_INPUT_TRAINING_DATA, aTrainingVals);
 		getInstance().xTrainingData.clear();
+		getInstance().xTrainingDataVersion++;
+	}
+
+	/**
+	 * @return a copy of all of the property values that have been assigned to the Settings (or to the current thread)
+	 */
+	public static Properties getProperties() {
+		Properties settings = xThreadSettings.get();
+		Properties properties = new Properties();
+		properties.putAll((settings != null) ? settings : getInstance());
+		return properties;
+	}
+
+	/**
+	 * Replace all of the property values of the Settings (for example with those of another process) unless they are
+	 * already the same. The lists of operators, operands and training data are rebuilt from the new values the next time
+	 * they are needed.
+	 * 
+	 * @param aProperties the new property values of the Settings
+	 */
+	public static void setProperties(Properties aProperties) {
+		GPSettings settings = getInstance();
+		synchronized (settings) {
+			if (settings.equals(aProperties)) {
+				return;
+			}
+			settings.clear();
+			settings.putAll(aProperties);
+			settings.xOperators.clear();
+			settings.xOperands.clear();
+			settings.xTrainingData.clear();
+			settings.xTrainingDataVersion++;
+		}
+	}
+
+	/**
+	 * @return the version of the training data, which changes every time new input training values are assigned
+	 */
+	public static int getTrainingDataVersion() {
+		return getInstance().xTrainingDataVersion;
 	}
 
 	/**
@@ -384,6 +586,396 @@ public class GPSettings extends Properties {
 		return getInstance().getTrainingDataProperty();
 	}
 
+	/**
+	 * @return the mode to use when evaluating the fitness of the GP trees
+	 */
+	public static String getEvaluationMode() {
+		return getInstance().getProperty(_EVALUATION_MODE, _DEFAULT_EVALUATION_MODE);
+	}
+
+	/**
+	 * @param aMode the mode to use when evaluating the fitness of the GP trees
+	 */
+	public static void setEvaluationMode(EvaluationMode aMode) {
+		setStringProperty(_EVALUATION_MODE, aMode.name());
+	}
+
+	/**
+	 * @return the indicator if the best individual of each generation should be compiled into bytecode
+	 */
+	public static boolean isBytecodeCompilationEnabled() {
+		return Boolean.parseBoolean(getInstance().getProperty(_BYTECODE_COMPILATION, _DEFAULT_BYTECODE_COMPILATION));
+	}
+
+	/**
+	 * @param aEnabled the indicator if the best individual of each generation should be compiled into bytecode
+	 */
+	public static void setBytecodeCompilationEnabled(boolean aEnabled) {
+		setStringProperty(_BYTECODE_COMPILATION, Boolean.toString(aEnabled));
+	}
+
+	/**
+	 * @return the number of evaluations before the TIERED evaluation mode compiles a GP tree into bytecode
+	 */
+	public static Integer getCompilationThreshold() {
+		return getInstance().getIntProperty(_COMPILATION_THRESHOLD, _DEFAULT_COMPILATION_THRESHOLD);
+	}
+
+	/**
+	 * @param aCompilationThreshold the number of evaluations before the TIERED evaluation mode compiles a GP tree
+	 */
+	public static void setCompilationThreshold(Integer aCompilationThreshold) {
+		setIntProperty(_COMPILATION_THRESHOLD, aCompilationThreshold);
+	}
+
+	/**
+	 * @return the indicator if cross-over and mutation should splice the linear genomes of the GP trees
+	 */
+	public static boolean isLinearGenomeEnabled() {
+		return Boolean.parseBoolean(getInstance().getProperty(_LINEAR_GENOME, _DEFAULT_LINEAR_GENOME));
+	}
+
+	/**
+	 * @param aEnabled the indicator if cross-over and mutation should splice the linear genomes of the GP trees
+	 */
+	public static void setLinearGenomeEnabled(boolean aEnabled) {
+		setStringProperty(_LINEAR_GENOME, Boolean.toString(aEnabled));
+	}
+
+	/**
+	 * @return the indicator if cloning, cross-over and mutation should share the (immutable) subtrees of the GP trees
+	 */
+	public static boolean isPersistentTreesEnabled() {
+		return Boolean.parseBoolean(getInstance().getProperty(_PERSISTENT_TREES, _DEFAULT_PERSISTENT_TREES));
+	}
+
+	/**
+	 * @param aEnabled the indicator if cloning, cross-over and mutation should share the subtrees of the GP trees
+	 */
+	public static void setPersistentTreesEnabled(boolean aEnabled) {
+		setStringProperty(_PERSISTENT_TREES, Boolean.toString(aEnabled));
+	}
+
+	/**
+	 * @return the indicator if cross-over and scoring should work on the population encoded within a population arena
+	 */
+	public static boolean isPopulationArenaEnabled() {
+		return Boolean.parseBoolean(getInstance().getProperty(_POPULATION_ARENA, _DEFAULT_POPULATION_ARENA));
+	}
+
+	/**
+	 * @param aEnabled the indicator if cross-over and scoring should work on the population within a population arena
+	 */
+	public static void setPopulationArenaEnabled(boolean aEnabled) {
+		setStringProperty(_POPULATION_ARENA, Boolean.toString(aEnabled));
+	}
+
+	/**
+	 * @return the indicator if cross-over and scoring should work on the population encoded within off-heap memory
+	 */
+	public static boolean isOffHeapArenaEnabled() {
+		return Boolean.parseBoolean(getInstance().getProperty(_OFF_HEAP_ARENA, _DEFAULT_OFF_HEAP_ARENA));
+	}
+
+	/**
+	 * @param aEnabled the indicator if cross-over and scoring should work on the population within off-heap memory
+	 */
+	public static void setOffHeapArenaEnabled(boolean aEnabled) {
+		setStringProperty(_OFF_HEAP_ARENA, Boolean.toString(aEnabled));
+	}
+
+	/**
+	 * @return the indicator if the fitness of previously evaluated GP trees should be cached
+	 */
+	public static boolean isFitnessCacheEnabled() {
+		return Boolean.parseBoolean(getInstance().getProperty(_FITNESS_CACHE, _DEFAULT_FITNESS_CACHE));
+	}
+
+	/**
+	 * @param aEnabled the indicator if the fitness of previously evaluated GP trees should be cached
+	 */
+	public static void setFitnessCacheEnabled(boolean aEnabled) {
+		setStringProperty(_FITNESS_CACHE, Boolean.toString(aEnabled));
+	}
+
+	/**
+	 * @return the max number of GP trees whose fitness is cached
+	 */
+	public static Integer getFitnessCacheSize() {
+		return getInstance().getIntProperty(_FITNESS_CACHE_SIZE, _DEFAULT_FITNESS_CACHE_SIZE);
+	}
+
+	/**
+	 * @param aFitnessCacheSize the max number of GP trees whose fitness is cached
+	 */
+	public static void setFitnessCacheSize(Integer aFitnessCacheSize) {
+		setIntProperty(_FITNESS_CACHE_SIZE, aFitnessCacheSize);
+	}
+
+	/**
+	 * @return the policy to use when evicting GP trees from a full fitness cache
+	 */
+	public static String getFitnessCacheEviction() {
+		return getInstance().getProperty(_FITNESS_CACHE_EVICTION, _DEFAULT_FITNESS_CACHE_EVICTION);
+	}
+
+	/**
+	 * @param aPolicy the policy to use when evicting GP trees from a full fitness cache
+	 */
+	public static void setFitnessCacheEviction(EvictionPolicy aPolicy) {
+		setStringProperty(_FITNESS_CACHE_EVICTION, aPolicy.name());
+	}
+
+	/**
+	 * @return the max number of distinct subexpressions shared by the SHARED evaluation mode
+	 */
+	public static Integer getSubexpressionCacheSize() {
+		return getInstance().getIntProperty(_SUBEXPRESSION_CACHE_SIZE, _DEFAULT_SUBEXPRESSION_CACHE_SIZE);
+	}
+
+	/**
+	 * @param aSubexpressionCacheSize the max number of distinct subexpressions shared by the SHARED evaluation mode
+	 */
+	public static void setSubexpressionCacheSize(Integer aSubexpressionCacheSize) {
+		setIntProperty(_SUBEXPRESSION_CACHE_SIZE, aSubexpressionCacheSize);
+	}
+
+	/**
+	 * @return the indicator if the GP trees should be simplified before they are evaluated and reported
+	 */
+	public static boolean isSimplificationEnabled() {
+		return Boolean.parseBoolean(getInstance().getProperty(_SIMPLIFICATION, _DEFAULT_SIMPLIFICATION));
+	}
+
+	/**
+	 * @param aEnabled the indicator if the GP trees should be simplified before they are evaluated and reported
+	 */
+	public static void setSimplificationEnabled(boolean aEnabled) {
+		setStringProperty(_SIMPLIFICATION, Boolean.toString(aEnabled));
+	}
+
+	/**
+	 * @return the indicator if the evaluation of the GP trees should stop once they are worse than the cutoff
+	 */
+	public static boolean isEarlyAbortEnabled() {
+		return Boolean.parseBoolean(getInstance().getProperty(_EARLY_ABORT, _DEFAULT_EARLY_ABORT));
+	}
+
+	/**
+	 * @param aEnabled the indicator if the evaluation of the GP trees should stop once they are worse than the cutoff
+	 */
+	public static void setEarlyAbortEnabled(boolean aEnabled) {
+		setStringProperty(_EARLY_ABORT, Boolean.toString(aEnabled));
+	}
+
+	/**
+	 * @return the percentile (0.0 - 1.0) of the fitness of the previous generation used as the early abort cutoff
+	 */
+	public static Double getEarlyAbortPercentile() {
+		return getInstance().getDoubleProperty(_EARLY_ABORT_PERCENTILE, _DEFAULT_EARLY_ABORT_PERCENTILE);
+	}
+
+	/**
+	 * @param aEarlyAbortPercentile the percentile (0.0 - 1.0) of the fitness of the previous generation used as the
+	 *            early abort cutoff
+	 */
+	public static void setEarlyAbortPercentile(Double aEarlyAbortPercentile) {
+		setDoubleProperty(_EARLY_ABORT_PERCENTILE, aEarlyAbortPercentile);
+	}
+
+	/**
+	 * @return the indicator if the GP trees should be analyzed for being always invalid before they are evaluated
+	 */
+	public static boolean isIntervalAnalysisEnabled() {
+		return Boolean.parseBoolean(getInstance().getProperty(_INTERVAL_ANALYSIS, _DEFAULT_INTERVAL_ANALYSIS));
+	}
+
+	/**
+	 * @param aEnabled the indicator if the GP trees should be analyzed for being always invalid before they are
+	 *            evaluated
+	 */
+	public static void setIntervalAnalysisEnabled(boolean aEnabled) {
+		setStringProperty(_INTERVAL_ANALYSIS, Boolean.toString(aEnabled));
+	}
+
+	/**
+	 * @return the indicator if the offspring of cross-over and mutation that are always invalid should be rejected
+	 */
+	public static boolean isRejectInvalidOffspringEnabled() {
+		return Boolean.parseBoolean(getInstance().getProperty(_REJECT_INVALID_OFFSPRING,
+				_DEFAULT_REJECT_INVALID_OFFSPRING));
+	}
+
+	/**
+	 * @param aEnabled the indicator if the offspring of cross-over and mutation that are always invalid should be
+	 *            rejected
+	 */
+	public static void setRejectInvalidOffspringEnabled(boolean aEnabled) {
+		setStringProperty(_REJECT_INVALID_OFFSPRING, Boolean.toString(aEnabled));
+	}
+
+	/**
+	 * @return the number of threads used to score the fitness of the population of each generation (1 scores the
+	 *         population on the calling thread)
+	 */
+	public static Integer getScoringThreads() {
+		return getInstance().getIntProperty(_SCORING_THREADS, _DEFAULT_SCORING_THREADS);
+	}
+
+	/**
+	 * @param aScoringThreads the number of threads used to score the fitness of the population of each generation
+	 */
+	public static void setScoringThreads(Integer aScoringThreads) {
+		setIntProperty(_SCORING_THREADS, aScoringThreads);
+	}
+
+	/**
+	 * @return the number of threads used to breed (select, cross-over and mutate) the population of the next generation
+	 *         (1 breeds the population one individual at a time on the calling thread)
+	 */
+	public static Integer getBreedingThreads() {
+		return getInstance().getIntProperty(_BREEDING_THREADS, _DEFAULT_BREEDING_THREADS);
+	}
+
+	/**
+	 * @param aBreedingThreads the number of threads used to breed the population of the next generation
+	 */
+	public static void setBreedingThreads(Integer aBreedingThreads) {
+		setIntProperty(_BREEDING_THREADS, aBreedingThreads);
+	}
+
+	/**
+	 * @return the number of threads that evolve the population as a steady-state population, replacing individuals in
+	 *         place rather than breeding whole generations (0 breeds whole generations)
+	 */
+	public static Integer getSteadyStateThreads() {
+		return getInstance().getIntProperty(_STEADY_STATE_THREADS, _DEFAULT_STEADY_STATE_THREADS);
+	}
+
+	/**
+	 * @param aSteadyStateThreads the number of threads that evolve the population as a steady-state population
+	 */
+	public static void setSteadyStateThreads(Integer aSteadyStateThreads) {
+		setIntProperty(_STEADY_STATE_THREADS, aSteadyStateThreads);
+	}
+
+	/**
+	 * @return the number of islands (sub-populations) that evolve side by side on their own threads (1 evolves a single
+	 *         population)
+	 */
+	public static Integer getIslandCount() {
+		return getInstance().getIntProperty(_ISLAND_COUNT, _DEFAULT_ISLAND_COUNT);
+	}
+
+	/**
+	 * @param aIslandCount the number of islands (sub-populations) that evolve side by side on their own threads
+	 */
+	public static void setIslandCount(Integer aIslandCount) {
+		setIntProperty(_ISLAND_COUNT, aIslandCount);
+	}
+
+	/**
+	 * @return the number of generations each island evolves between two migrations
+	 */
+	public static Integer getMigrationInterval() {
+		return getInstance().getIntProperty(_MIGRATION_INTERVAL, _DEFAULT_MIGRATION_INTERVAL);
+	}
+
+	/**
+	 * @param aMigrationInterval the number of generations each island evolves between two migrations
+	 */
+	public static void setMigrationInterval(Integer aMigrationInterval) {
+		setIntProperty(_MIGRATION_INTERVAL, aMigrationInterval);
+	}
+
+	/**
+	 * @return the number of top individuals each island sends to each of its neighbours at every migration
+	 */
+	public static Integer getMigrationSize() {
+		return getInstance().getIntProperty(_MIGRATION_SIZE, _DEFAULT_MIGRATION_SIZE);
+	}
+
+	/**
+	 * @param aMigrationSize the number of top individuals each island sends to each of its neighbours at every
+	 *            migration
+	 */
+	public static void setMigrationSize(Integer aMigrationSize) {
+		setIntProperty(_MIGRATION_SIZE, aMigrationSize);
+	}
+
+	/**
+	 * @return the topology that decides which islands the individuals migrate to
+	 */
+	public static String getMigrationTopology() {
+		return getInstance().getProperty(_MIGRATION_TOPOLOGY, _DEFAULT_MIGRATION_TOPOLOGY);
+	}
+
+	/**
+	 * @param aTopology the topology that decides which islands the individuals migrate to
+	 */
+	public static void setMigrationTopology(MigrationTopology aTopology) {
+		setStringProperty(_MIGRATION_TOPOLOGY, aTopology.name());
+	}
+
+	/**
+	 * @return the number of worker processes used to evaluate the fitness of the population of each generation (0
+	 *         evaluates the population within this process)
+	 */
+	public static Integer getEvaluationWorkers() {
+		return getInstance().getIntProperty(_EVALUATION_WORKERS, _DEFAULT_EVALUATION_WORKERS);
+	}
+
+	/**
+	 * @param aEvaluationWorkers the number of worker processes used to evaluate the fitness of the population of each
+	 *            generation
+	 */
+	public static void setEvaluationWorkers(Integer aEvaluationWorkers) {
+		setIntProperty(_EVALUATION_WORKERS, aEvaluationWorkers);
+	}
+
+	/**
+	 * @return the number of individuals sent to a worker process within a single batch
+	 */
+	public static Integer getEvaluationBatchSize() {
+		return getInstance().getIntProperty(_EVALUATION_BATCH_SIZE, _DEFAULT_EVALUATION_BATCH_SIZE);
+	}
+
+	/**
+	 * @param aBatchSize the number of individuals sent to a worker process within a single batch
+	 */
+	public static void setEvaluationBatchSize(Integer aBatchSize) {
+		setIntProperty(_EVALUATION_BATCH_SIZE, aBatchSize);
+	}
+
+	/**
+	 * @return the number of batches that can be on their way to (or evaluated by) a worker process at the same time
+	 */
+	public static Integer getEvaluationPipelineDepth() {
+		return getInstance().getIntProperty(_EVALUATION_PIPELINE_DEPTH, _DEFAULT_EVALUATION_PIPELINE_DEPTH);
+	}
+
+	/**
+	 * @param aPipelineDepth the number of batches that can be on their way to a worker process at the same time
+	 */
+	public static void setEvaluationPipelineDepth(Integer aPipelineDepth) {
+		setIntProperty(_EVALUATION_PIPELINE_DEPTH, aPipelineDepth);
+	}
+
+	/**
+	 * @return the time (in milliseconds) after which a batch that a worker process has not answered yet is also sent to
+	 *         another worker process
+	 */
+	public static Integer getEvaluationTimeout() {
+		return getInstance().getIntProperty(_EVALUATION_TIMEOUT, _DEFAULT_EVALUATION_TIMEOUT);
+	}
+
+	/**
+	 * @param aTimeout the time (in milliseconds) after which an unanswered batch is also sent to another worker process
+	 */
+	public static void setEvaluationTimeout(Integer aTimeout) {
+		setIntProperty(_EVALUATION_TIMEOUT, aTimeout);
+	}
+
 	/**
 	 * @param aKey the property name (key) to lookup for the property
 	 * @param aDefaultValue the default value to use if no property exists
@@ -459,6 +1051,9 @@ public class GPSettings extends Properties {
 	 * @param aValue the numeric (integer) value for this property
 	 */
 	private static void setIntProperty(String aKey, Integer aValue) {
+		if (setThreadProperty(aKey, "" + aValue)) {
+			return;
+		}
 		try {
 			try {
 				xOutputStream = new FileOutputStream(new File(xInitialPropertiesFile));
@@ -491,6 +1086,9 @@ public class GPSettings extends Properties {
 	 * @param aValue the floating point (double) value for this property
 	 */
 	private static void setDoubleProperty(String aKey, Double aValue) {
+		if (setThreadProperty(aKey, "" + aValue)) {
+			return;
+		}
 		try {
 			try {
 				xOutputStream = new FileOutputStream(new File(xInitialPropertiesFile));
@@ -523,6 +1121,9 @@ public class GPSettings extends Properties {
 	 * @param aValue the string value for this property
 	 */
 	private static void setStringProperty(String aKey, String aValue) {
+		if (setThreadProperty(aKey, aValue)) {
+			return;
+		}
 		try {
 			try {
 				xOutputStream = new FileOutputStream(new File(xInitialPropertiesFile));
@@ -0,0 +1,412 @@
+package edu.stthomas.seis610.gp;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Vector;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.logging.Logger;
+
+import edu.stthomas.seis610.tree.GeneticProgrammingTree;
+import edu.stthomas.seis610.util.GPException;
+import edu.stthomas.seis610.util.RandomStream;
+
+//=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+/**
+ * The IslandModel evolves a number of islands (sub-populations) side by side, each as an independent generation on its
+ * own thread with the population size from the Settings. The islands only meet at a migration every so many
+ * generations, where each island sends copies of its top individuals to its neighbours in the migration topology:
+ * <ul>
+ * <li>RING: each island sends to the next island (and the last island to the first one).</li>
+ * <li>RANDOM: each island sends to a single other island that is drawn at random for every migration.</li>
+ * <li>FULLY_CONNECTED: each island sends to every other island.</li>
+ * </ul>
+ * Each island has a mailbox with a slot for every other island. The emigrants are simply set into the slot of the
+ * sending island (no locking) and the receiving island takes them out again at the start of the next migration
+ * interval, where they take the place of its worst individuals. The mailbox has two sets of slots that take turns
+ * between the intervals, so an island that finishes an interval early can never post its emigrants into a slot that a
+ * slower island is still about to empty for the same interval. Every island also draws from its own random stream,
+ * which is split off from the stream of the run in the order of the islands, so a seeded run gives exactly the same
+ * results however the threads of the islands get scheduled.
+ * <p>
+ * An island that stalls injects new DNA or starts over on its own, the same way as a single population does within
+ * {@link GPMain}, but the migrants from the other islands usually keep an island from stalling for very long.
+ *
+ * @version 1.2
+ */
+// =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+public class IslandModel {
+	/**
+	 * Define Enumeration to Describe the types of Migration Topologies
+	 */
+	public enum MigrationTopology {
+		RING, RANDOM, FULLY_CONNECTED;
+	};
+
+	private static final Logger Log = Logger.getLogger("Global");
+
+	private final Island[] xIslands;
+	private final MigrationTopology xTopology;
+	private final int xMigrationSize;
+	private final ExecutorService xExecutor;
+	private int xIntervalCount;
+
+	/**
+	 * Default constructor for this class, which builds the islands from the Settings and splits their random streams
+	 * off from the random stream of the current thread.
+	 */
+	public IslandModel() {
+		this(GPSettings.getRandomStream());
+	}
+
+	/**
+	 * Constructor to build the islands from the Settings and split their random streams off from the random stream.
+	 *
+	 * @param aRandomStream the random stream of the run
+	 */
+	public IslandModel(RandomStream aRandomStream) {
+		xTopology = MigrationTopology.valueOf(GPSettings.getMigrationTopology());
+		xMigrationSize = GPSettings.getMigrationSize();
+
+		// Build the (lazily loaded) shared lists of the Settings before any of the islands need them.
+		GPSettings.getOperators();
+		GPSettings.getOperands();
+		GPSettings.getTrainingData();
+
+		xIslands = new Island[Math.max(GPSettings.getIslandCount(), 1)];
+		for (int i = 0; i < xIslands.length; i++) {
+			xIslands[i] = new Island(i, aRandomStream.split());
+		}
+		xExecutor = Executors.newFixedThreadPool(xIslands.length);
+	}
+
+	/**
+	 * Populate the initial generation of every island.
+	 *
+	 * @throws GPException
+	 */
+	public void init() throws GPException {
+		List<Callable<Integer>> tasks = new ArrayList<Callable<Integer>>(xIslands.length);
+		for (final Island island : xIslands) {
+			tasks.add(new Callable<Integer>() {
+				@Override
+				public Integer call() {
+					GPSettings.setThreadRandomStream(island.xRandomStream);
+					try {
+						island.init();
+						return 0;
+					} finally {
+						GPSettings.setThreadRandomStream(null);
+					}
+				}
+			});
+		}
+		invokeAll(tasks);
+	}
+
+	/**
+	 * Evolve every island for a migration interval and send the emigrants of each island to its neighbours at the end.
+	 * An island stops evolving as soon as it reaches the fitness goal.
+	 *
+	 * @param aGenerations the number of generations of the migration interval
+	 * @param aFitnessGoal the fitness that ends the run once an island gets below it
+	 * @return the number of generations until the first island reached the fitness goal (or the whole interval)
+	 * @throws GPException
+	 */
+	public int evolve(final int aGenerations, final FitnessDatum aFitnessGoal) throws GPException {
+		final int turn = xIntervalCount++ % 2;
+		List<Callable<Integer>> tasks = new ArrayList<Callable<Integer>>(xIslands.length);
+		for (final Island island : xIslands) {
+			tasks.add(new Callable<Integer>() {
+				@Override
+				public Integer call() throws GPException {
+					GPSettings.setThreadRandomStream(island.xRandomStream);
+					try {
+						island.receiveImmigrants(1 - turn);
+						int generations = island.evolve(aGenerations, aFitnessGoal);
+						island.sendEmigrants(turn);
+						return generations;
+					} finally {
+						GPSettings.setThreadRandomStream(null);
+					}
+				}
+			});
+		}
+		return Collections.min(invokeAll(tasks));
+	}
+
+	/**
+	 * Run the tasks of the islands and wait for all of them to finish (which is where the islands meet).
+	 *
+	 * @param aTasks the tasks of the islands (in the order of the islands)
+	 * @return the results of the tasks
+	 * @throws GPException
+	 */
+	private List<Integer> invokeAll(List<Callable<Integer>> aTasks) throws GPException {
+		List<Integer> results = new ArrayList<Integer>(aTasks.size());
+		try {
+			for (Future<Integer> task : xExecutor.invokeAll(aTasks)) {
+				results.add(task.get());
+			}
+		} catch (InterruptedException | ExecutionException e) {
+			throw new GPException("Unable to evolve the islands: " + e.getMessage());
+		}
+		return results;
+	}
+
+	/**
+	 * @return the best individual of all of the islands
+	 */
+	public GeneticProgrammingTree getBestIndividual() {
+		GeneticProgrammingTree bestIndividual = xIslands[0].xBestIndividual;
+		for (Island island : xIslands) {
+			if (island.xBestIndividual.compareTo(bestIndividual) < 0) {
+				bestIndividual = island.xBestIndividual;
+			}
+		}
+		return bestIndividual;
+	}
+
+	/**
+	 * Get the top individuals of all of the islands together, for example to send them on to the islands of another
+	 * process. Must not be invoked while the islands are evolving.
+	 *
+	 * @param aCount the number of individuals to get
+	 * @return the top individuals of all of the islands (best first)
+	 */
+	public List<GeneticProgrammingTree> getEmigrants(int aCount) {
+		List<GeneticProgrammingTree> emigrants = new ArrayList<GeneticProgrammingTree>();
+		for (Island island : xIslands) {
+			Vector<GeneticProgrammingTree> population = island.xGeneration.getPopulation();
+			Collections.sort(population);
+			emigrants.addAll(population.subList(0, Math.min(aCount, population.size())));
+		}
+		Collections.sort(emigrants);
+		emigrants = new ArrayList<GeneticProgrammingTree>(emigrants.subList(0, Math.min(aCount, emigrants.size())));
+		for (GeneticProgrammingTree emigrant : emigrants) {
+			emigrant.completeFitness();
+		}
+		return emigrants;
+	}
+
+	/**
+	 * Let individuals from outside of this model (for example from the islands of another process) take the place of
+	 * the worst individuals of the islands, dealing them out to the islands in turn. Must not be invoked while the
+	 * islands are evolving.
+	 *
+	 * @param aImmigrants the scored individuals that immigrate into the islands
+	 */
+	public void addImmigrants(List<GeneticProgrammingTree> aImmigrants) {
+		for (int i = 0; i < xIslands.length && i < aImmigrants.size(); i++) {
+			List<GeneticProgrammingTree> immigrants = new ArrayList<GeneticProgrammingTree>();
+			for (int j = i; j < aImmigrants.size(); j += xIslands.length) {
+				immigrants.add(aImmigrants.get(j));
+			}
+			xIslands[i].immigrate(immigrants);
+		}
+	}
+
+	/**
+	 * @return the current generation of each of the islands
+	 */
+	public List<GPGeneration> getGenerations() {
+		List<GPGeneration> generations = new ArrayList<GPGeneration>(xIslands.length);
+		for (Island island : xIslands) {
+			generations.add(island.xGeneration);
+		}
+		return generations;
+	}
+
+	/**
+	 * @return the number of times an island has thrown its population away and started over from scratch
+	 */
+	public int getRestartCount() {
+		int restartCount = 0;
+		for (Island island : xIslands) {
+			restartCount += island.xRestartCount;
+		}
+		return restartCount;
+	}
+
+	/**
+	 * Stop the threads of the islands once the run is over.
+	 */
+	public void shutdown() {
+		xExecutor.shutdown();
+	}
+
+	// =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	/**
+	 * A single island with its own generation, random stream and mailbox. An island is only ever evolved by one thread
+	 * at a time, and the other islands only ever touch its mailbox.
+	 */
+	// =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	private class Island {
+		private final int xIndex;
+		private final RandomStream xRandomStream;
+		private final AtomicReferenceArray<List<GeneticProgrammingTree>> xMailbox;
+		private GPGeneration xGeneration;
+		private GeneticProgrammingTree xBestIndividual;
+		private int xDuplicateIndividualCnt;
+		private int xInjectNewDNACount;
+		private int xRestartCount;
+
+		/**
+		 * @param aIndex the index of the island
+		 * @param aRandomStream the random stream of the island
+		 */
+		private Island(int aIndex, RandomStream aRandomStream) {
+			xIndex = aIndex;
+			xRandomStream = aRandomStream;
+			xMailbox = new AtomicReferenceArray<List<GeneticProgrammingTree>>(2 * xIslands.length);
+		}
+
+		/**
+		 * Populate the initial generation of the island.
+		 */
+		private void init() {
+			xGeneration = new GPGeneration();
+			xGeneration.init();
+			xBestIndividual = xGeneration.getBestIndividual();
+		}
+
+		/**
+		 * Evolve the island for a number of generations (see {@link GPMain#processGP()} for when new DNA is injected
+		 * or the population is started over).
+		 *
+		 * @param aGenerations the number of generations to evolve
+		 * @param aFitnessGoal the fitness at which the island stops evolving
+		 * @return the number of generations it took to reach the fitness goal (or the number of generations)
+		 * @throws GPException
+		 */
+		private int evolve(int aGenerations, FitnessDatum aFitnessGoal) throws GPException {
+			int injectNewDNAThreshold = Math.max((int) Math.round(GPSettings.getMaxGenerations() * 0.001), 1);
+
+			for (int generation = 1; generation <= aGenerations; generation++) {
+				if (xInjectNewDNACount > GPMain.RESTART_POPULATION_THRESHOLD) {
+					Log.warning("Island " + xIndex + " was abandoned and recreated from scratch because "
+							+ xDuplicateIndividualCnt + " generations have made no progress!");
+					xGeneration = new GPGeneration();
+					xGeneration.init();
+					xInjectNewDNACount = 0;
+					xRestartCount++;
+				} else if ((xDuplicateIndividualCnt / injectNewDNAThreshold) > xInjectNewDNACount) {
+					xGeneration = xGeneration.nextGeneration(true);
+					xInjectNewDNACount++;
+				} else {
+					xGeneration = xGeneration.nextGeneration(false);
+				}
+
+				GeneticProgrammingTree previousBestIndividual = xBestIndividual;
+				xBestIndividual = xGeneration.getBestIndividual();
+				if (xBestIndividual.compareTo(previousBestIndividual) == 0) {
+					xDuplicateIndividualCnt++;
+				} else {
+					xDuplicateIndividualCnt = 0;
+					xInjectNewDNACount = 0;
+				}
+
+				if (xBestIndividual.getFitness().compareTo(aFitnessGoal) < 0) {
+					return generation;
+				}
+			}
+			return aGenerations;
+		}
+
+		/**
+		 * Send copies of the top individuals of the island to each of its neighbours in the migration topology. Each
+		 * neighbour gets its own copies since the receiving islands may mutate them on their own threads.
+		 *
+		 * @param aTurn the set of slots (0 or 1) of the mailboxes for the current interval
+		 */
+		private void sendEmigrants(int aTurn) {
+			if (xIslands.length < 2 || xMigrationSize <= 0) {
+				return;
+			}
+
+			Vector<GeneticProgrammingTree> population = xGeneration.getPopulation();
+			Collections.sort(population);
+			List<GeneticProgrammingTree> emigrants = population.subList(0, Math.min(xMigrationSize, population.size()));
+			for (GeneticProgrammingTree emigrant : emigrants) {
+				emigrant.completeFitness();
+			}
+
+			switch (xTopology) {
+			case RING:
+				xIslands[(xIndex + 1) % xIslands.length].post(aTurn, xIndex, emigrants);
+				break;
+			case RANDOM:
+				xIslands[(xIndex + 1 + xRandomStream.nextInt(xIslands.length - 1)) % xIslands.length].post(aTurn,
+						xIndex, emigrants);
+				break;
+			case FULLY_CONNECTED:
+				for (Island island : xIslands) {
+					if (island != this) {
+						island.post(aTurn, xIndex, emigrants);
+					}
+				}
+				break;
+			}
+		}
+
+		/**
+		 * Put copies of the emigrants of another island into the slot of that island within the mailbox.
+		 *
+		 * @param aTurn the set of slots (0 or 1) of the mailbox for the current interval
+		 * @param aSender the index of the sending island
+		 * @param aEmigrants the emigrants of the sending island
+		 */
+		private void post(int aTurn, int aSender, List<GeneticProgrammingTree> aEmigrants) {
+			List<GeneticProgrammingTree> immigrants = new ArrayList<GeneticProgrammingTree>(aEmigrants.size());
+			for (GeneticProgrammingTree emigrant : aEmigrants) {
+				immigrants.add((GeneticProgrammingTree) emigrant.clone());
+			}
+			xMailbox.set(aTurn * xIslands.length + aSender, immigrants);
+		}
+
+		/**
+		 * Take the immigrants out of the mailbox and let the best of them take the place of the worst individuals of
+		 * the island (but never more than half of the population).
+		 *
+		 * @param aTurn the set of slots (0 or 1) of the mailbox that was filled during the previous interval
+		 */
+		private void receiveImmigrants(int aTurn) {
+			List<GeneticProgrammingTree> immigrants = new ArrayList<GeneticProgrammingTree>();
+			for (int i = 0; i < xIslands.length; i++) {
+				List<GeneticProgrammingTree> arrivals = xMailbox.getAndSet(aTurn * xIslands.length + i, null);
+				if (arrivals != null) {
+					immigrants.addAll(arrivals);
+				}
+			}
+			immigrate(immigrants);
+		}
+
+		/**
+		 * Let the best of the immigrants take the place of the worst individuals of the island (but never more than
+		 * half of the population).
+		 *
+		 * @param aImmigrants the scored individuals that immigrate into the island
+		 */
+		private void immigrate(List<GeneticProgrammingTree> aImmigrants) {
+			if (aImmigrants.isEmpty()) {
+				return;
+			}
+
+			Vector<GeneticProgrammingTree> population = xGeneration.getPopulation();
+			Collections.sort(population);
+			Collections.sort(aImmigrants);
+			int count = Math.min(aImmigrants.size(), population.size() / 2);
+			for (int i = 0; i < count; i++) {
+				population.set(population.size() - 1 - i, aImmigrants.get(i));
+			}
+			Log.fine("Island " + xIndex + " received " + count + " immigrants.");
+
+			xBestIndividual = xGeneration.getBestIndividual();
+		}
+	}
+}
@@ -0,0 +1,160 @@
+package edu.stthomas.seis610.gp;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.logging.Logger;
+
+import edu.stthomas.seis610.tree.GeneticProgrammingTree;
+import edu.stthomas.seis610.tree.LinearGenome;
+import edu.stthomas.seis610.util.GPException;
+import edu.stthomas.seis610.util.RandomStream;
+
+//=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+/**
+ * The IslandProcess hosts the islands of an {@link IslandModel} within its own process (JVM), so that a run can be
+ * sized by the number of processes and each process only has to collect the garbage of its own islands. The process
+ * connects to the {@link MigrationCoordinator} on the local host, which assigns it the seed of its random stream and
+ * the Settings of the run. After every migration interval the process reports its best individual and sends its top
+ * individuals as emigrants, and the coordinator answers with the number of generations of the next interval (none once
+ * the run is over) along with the immigrants from the other processes.
+ * <p>
+ * The individuals are transferred in the compact binary format of their linear genomes (see
+ * {@link LinearGenome#toByteArray()}) and are scored again by the receiving process.
+ *
+ * @version 1.2
+ */
+// =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+public class IslandProcess {
+	private static final Logger Log = Logger.getLogger("Global");
+
+	private final int xPort;
+
+	/**
+	 * Constructor to create a process that connects to the coordinator on the port of the local host.
+	 *
+	 * @param aPort the port the coordinator listens on
+	 */
+	public IslandProcess(int aPort) {
+		xPort = aPort;
+	}
+
+	/**
+	 * Evolve the islands of this process until the coordinator ends the run.
+	 *
+	 * @throws GPException
+	 */
+	public void run() throws GPException {
+		try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), xPort)) {
+			socket.setTcpNoDelay(true);
+			DataInputStream input = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+			DataOutputStream output = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+
+			// Take on the identity, the seed and the Settings of the run that are assigned by the coordinator.
+			int index = input.readInt();
+			long seed = input.readLong();
+			Properties settings = new Properties();
+			settings.load(new ByteArrayInputStream(readBytes(input)));
+			GPSettings.setProperties(settings);
+			Log.info("Island process " + index + " connected to the coordinator on port " + xPort);
+
+			FitnessDatum fitnessGoal = new FitnessDatum(GPSettings.getFitnessMarginOfError());
+			int migrationSize = GPSettings.getMigrationSize();
+			IslandModel islands = new IslandModel(new RandomStream(seed));
+			try {
+				islands.init();
+				int generations = 0;
+				do {
+					if (generations > 0) {
+						generations = islands.evolve(generations, fitnessGoal);
+					}
+
+					// Report the best individual and the emigrants (after an interval) of the islands.
+					GeneticProgrammingTree bestIndividual = islands.getBestIndividual();
+					output.writeInt(generations);
+					writeBytes(output, bestIndividual.getGenome().toByteArray());
+					List<GeneticProgrammingTree> emigrants = (generations > 0) ? islands.getEmigrants(migrationSize)
+							: new ArrayList<GeneticProgrammingTree>();
+					output.writeInt(emigrants.size());
+					for (GeneticProgrammingTree emigrant : emigrants) {
+						writeBytes(output, emigrant.getGenome().toByteArray());
+					}
+					output.flush();
+
+					// Wait for the next interval (and the immigrants from the other processes).
+					generations = input.readInt();
+					List<GeneticProgrammingTree> immigrants = new ArrayList<GeneticProgrammingTree>();
+					for (int i = input.readInt(); i > 0; i--) {
+						immigrants.add(decode(readBytes(input)));
+					}
+					islands.addImmigrants(immigrants);
+				} while (generations > 0);
+			} finally {
+				islands.shutdown();
+			}
+			Log.info("Island process " + index + " finished.");
+		} catch (IOException e) {
+			throw new GPException("Unable to exchange the migrants with the coordinator: " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Decode an individual from the binary format of its genome and score its fitness.
+	 *
+	 * @param aBytes the binary format of the genome of the individual
+	 * @return the scored individual
+	 * @throws GPException
+	 */
+	static GeneticProgrammingTree decode(byte[] aBytes) throws GPException {
+		GeneticProgrammingTree individual = new GeneticProgrammingTree(LinearGenome.fromByteArray(aBytes));
+		individual.setTrainingData(GPSettings.getTrainingData());
+		individual.calculateFitness();
+		return individual;
+	}
+
+	/**
+	 * Write a block of bytes preceded by its length.
+	 *
+	 * @param aOutput the stream to write to
+	 * @param aBytes the bytes to write
+	 * @throws IOException
+	 */
+	static void writeBytes(DataOutputStream aOutput, byte[] aBytes) throws IOException {
+		aOutput.writeInt(aBytes.length);
+		aOutput.write(aBytes);
+	}
+
+	/**
+	 * Read a block of bytes preceded by its length.
+	 *
+	 * @param aInput the stream to read from
+	 * @return the bytes read
+	 * @throws IOException
+	 */
+	static byte[] readBytes(DataInputStream aInput) throws IOException {
+		byte[] bytes = new byte[aInput.readInt()];
+		aInput.readFully(bytes);
+		return bytes;
+	}
+
+	/**
+	 * @param args the port the coordinator listens on
+	 */
+	public static void main(String args[]) {
+		try {
+			new IslandProcess(Integer.parseInt(args[0])).run();
+		} catch (GPException e) {
+			Log.severe("Problem encountered during island processing: " + e.getMessage());
+			e.printStackTrace();
+			System.exit(1);
+		}
+	}
+}
@@ -0,0 +1,282 @@
+package edu.stthomas.seis610.gp;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Logger;
+
+import edu.stthomas.seis610.gp.IslandModel.MigrationTopology;
+import edu.stthomas.seis610.tree.GeneticProgrammingTree;
+import edu.stthomas.seis610.util.GPException;
+import edu.stthomas.seis610.util.RandomStream;
+
+//=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+/**
+ * The MigrationCoordinator runs the islands of a run across a number of {@link IslandProcess}es on the local host. It
+ * listens on a TCP socket of the loopback address only, assigns each process its index (in the order the processes
+ * connect), the seed of its random stream and the Settings of the run, and then steps all of the processes through the
+ * migration intervals together:
+ * <ol>
+ * <li>Each process reports its best individual and sends its top individuals as emigrants.</li>
+ * <li>The coordinator keeps the global best individual and decides whether the run is over (the fitness goal or the
+ * max number of generations is reached).</li>
+ * <li>Each process gets the number of generations of the next interval (none once the run is over) along with the
+ * emigrants of its neighbours in the migration topology of the Settings.</li>
+ * </ol>
+ * The processes are always read and answered in the order of their index, so a seeded run gives the same results no
+ * matter which of the processes connects first. Within each process the islands migrate between each other as well
+ * (see {@link IslandModel}).
+ *
+ * @version 1.2
+ */
+// =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+public class MigrationCoordinator {
+	private static final Logger Log = Logger.getLogger("Global");
+	static final int ACCEPT_TIMEOUT = 1000 * 60; // 1 minute
+
+	private final ServerSocket xServerSocket;
+	private final int xProcessCount;
+	private final List<Process> xProcesses = new ArrayList<Process>();
+	private GeneticProgrammingTree xFirstBestIndividual;
+	private int xGenerationCount;
+
+	/**
+	 * Constructor to create a coordinator that listens on a free port of the loopback address.
+	 *
+	 * @param aProcessCount the number of island processes of the run
+	 * @throws IOException
+	 */
+	public MigrationCoordinator(int aProcessCount) throws IOException {
+		xProcessCount = Math.max(aProcessCount, 1);
+		xServerSocket = new ServerSocket(0, xProcessCount, InetAddress.getLoopbackAddress());
+		xServerSocket.setSoTimeout(ACCEPT_TIMEOUT);
+	}
+
+	/**
+	 * @return the port the coordinator listens on
+	 */
+	public int getPort() {
+		return xServerSocket.getLocalPort();
+	}
+
+	/**
+	 * @return the best individual of the first generation of all of the processes
+	 */
+	public GeneticProgrammingTree getFirstBestIndividual() {
+		return xFirstBestIndividual;
+	}
+
+	/**
+	 * @return the number of generations of the run
+	 */
+	public int getGenerationCount() {
+		return xGenerationCount;
+	}
+
+	/**
+	 * Launch the island processes as separate JVMs (with the same class path as this JVM) that connect back to this
+	 * coordinator.
+	 *
+	 * @throws IOException
+	 */
+	public void launchProcesses() throws IOException {
+		for (int i = 0; i < xProcessCount; i++) {
+			xProcesses.add(launch(IslandProcess.class, getPort()));
+		}
+	}
+
+	/**
+	 * Launch a separate JVM (with the same class path as this JVM) that runs the main class against the port of the
+	 * local host.
+	 *
+	 * @param aMainClass the class whose main method the JVM runs
+	 * @param aPort the port the main class connects back to
+	 * @return the launched process
+	 * @throws IOException
+	 */
+	static Process launch(Class<?> aMainClass, int aPort) throws IOException {
+		String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+		ProcessBuilder builder = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+				aMainClass.getName(), Integer.toString(aPort));
+		return builder.inheritIO().start();
+	}
+
+	/**
+	 * Coordinate the island processes until the run is over.
+	 *
+	 * @return the best individual of all of the processes
+	 * @throws GPException
+	 */
+	public GeneticProgrammingTree run() throws GPException {
+		List<Socket> sockets = new ArrayList<Socket>(xProcessCount);
+		try {
+			int maxGenerations = GPSettings.getMaxGenerations();
+			int migrationInterval = Math.max(GPSettings.getMigrationInterval(), 1);
+			MigrationTopology topology = MigrationTopology.valueOf(GPSettings.getMigrationTopology());
+			FitnessDatum fitnessGoal = new FitnessDatum(GPSettings.getFitnessMarginOfError());
+			RandomStream randomStream = GPSettings.getRandomStream();
+
+			ByteArrayOutputStream settings = new ByteArrayOutputStream();
+			GPSettings.getProperties().store(settings, null);
+
+			// Assign each of the processes its index, seed and the Settings in the order they connect.
+			List<DataInputStream> inputs = new ArrayList<DataInputStream>(xProcessCount);
+			List<DataOutputStream> outputs = new ArrayList<DataOutputStream>(xProcessCount);
+			for (int i = 0; i < xProcessCount; i++) {
+				Socket socket = xServerSocket.accept();
+				socket.setTcpNoDelay(true);
+				sockets.add(socket);
+				inputs.add(new DataInputStream(new BufferedInputStream(socket.getInputStream())));
+				outputs.add(new DataOutputStream(new BufferedOutputStream(socket.getOutputStream())));
+				outputs.get(i).writeInt(i);
+				outputs.get(i).writeLong(randomStream.nextLong());
+				IslandProcess.writeBytes(outputs.get(i), settings.toByteArray());
+				outputs.get(i).flush();
+			}
+			Log.info("Coordinating " + xProcessCount + " island processes on port " + getPort() + "...");
+
+			GeneticProgrammingTree bestIndividual = null;
+			xGenerationCount = 1;
+			while (true) {
+				// Collect the reports of all of the processes (and the global best individual).
+				int generations = Integer.MAX_VALUE;
+				List<List<byte[]>> emigrants = new ArrayList<List<byte[]>>(xProcessCount);
+				for (DataInputStream input : inputs) {
+					generations = Math.min(generations, input.readInt());
+					GeneticProgrammingTree processBestIndividual = IslandProcess.decode(IslandProcess.readBytes(input));
+					if (bestIndividual == null || processBestIndividual.compareTo(bestIndividual) < 0) {
+						bestIndividual = processBestIndividual;
+					}
+					List<byte[]> processEmigrants = new ArrayList<byte[]>();
+					for (int i = input.readInt(); i > 0; i--) {
+						processEmigrants.add(IslandProcess.readBytes(input));
+					}
+					emigrants.add(processEmigrants);
+				}
+				if (xFirstBestIndividual == null) {
+					xFirstBestIndividual = bestIndividual;
+				}
+				xGenerationCount += generations;
+				Log.fine("Generation " + xGenerationCount + ": [height=" + bestIndividual.getHeight() + " fitness="
+						+ bestIndividual.getFitness() + "]  " + bestIndividual.toString());
+
+				// Start the next interval of all of the processes, unless the run is over.
+				int nextGenerations = 0;
+				if (bestIndividual.getFitness().compareTo(fitnessGoal) >= 0 && xGenerationCount < maxGenerations) {
+					nextGenerations = Math.min(migrationInterval, maxGenerations - xGenerationCount);
+				}
+				List<List<byte[]>> immigrants = route(emigrants, topology, randomStream);
+				for (int i = 0; i < xProcessCount; i++) {
+					outputs.get(i).writeInt(nextGenerations);
+					List<byte[]> processImmigrants = (nextGenerations > 0) ? immigrants.get(i)
+							: new ArrayList<byte[]>();
+					outputs.get(i).writeInt(processImmigrants.size());
+					for (byte[] immigrant : processImmigrants) {
+						IslandProcess.writeBytes(outputs.get(i), immigrant);
+					}
+					outputs.get(i).flush();
+				}
+				if (nextGenerations == 0) {
+					return bestIndividual;
+				}
+			}
+		} catch (IOException e) {
+			throw new GPException("Unable to coordinate the island processes: " + e.getMessage());
+		} finally {
+			for (Socket socket : sockets) {
+				try {
+					socket.close();
+				} catch (IOException e) {
+					e.printStackTrace();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Route the emigrants of each process to its neighbours in the migration topology.
+	 *
+	 * @param aEmigrants the emigrants of each of the processes
+	 * @param aTopology the topology that decides which processes the emigrants migrate to
+	 * @param aRandomStream the random stream to draw the neighbours of the random topology from
+	 * @return the immigrants of each of the processes
+	 */
+	private List<List<byte[]>> route(List<List<byte[]>> aEmigrants, MigrationTopology aTopology,
+			RandomStream aRandomStream) {
+		List<List<byte[]>> immigrants = new ArrayList<List<byte[]>>(xProcessCount);
+		for (int i = 0; i < xProcessCount; i++) {
+			immigrants.add(new ArrayList<byte[]>());
+		}
+		if (xProcessCount < 2) {
+			return immigrants;
+		}
+
+		for (int i = 0; i < xProcessCount; i++) {
+			switch (aTopology) {
+			case RING:
+				immigrants.get((i + 1) % xProcessCount).addAll(aEmigrants.get(i));
+				break;
+			case RANDOM:
+				immigrants.get((i + 1 + aRandomStream.nextInt(xProcessCount - 1)) % xProcessCount).addAll(
+						aEmigrants.get(i));
+				break;
+			case FULLY_CONNECTED:
+				for (int j = 0; j < xProcessCount; j++) {
+					if (j != i) {
+						immigrants.get(j).addAll(aEmigrants.get(i));
+					}
+				}
+				break;
+			}
+		}
+		return immigrants;
+	}
+
+	/**
+	 * Stop listening and wait for the launched island processes to finish.
+	 */
+	public void close() {
+		try {
+			xServerSocket.close();
+			for (Process process : xProcesses) {
+				process.waitFor();
+			}
+		} catch (IOException | InterruptedException e) {
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * @param args the number of island processes to launch (2 when missing)
+	 */
+	public static void main(String args[]) {
+		long startTime = System.currentTimeMillis();
+		MigrationCoordinator coordinator = null;
+		try {
+			coordinator = new MigrationCoordinator((args.length > 0) ? Integer.parseInt(args[0]) : 2);
+			coordinator.launchProcesses();
+			GeneticProgrammingTree bestIndividual = coordinator.run();
+			Log.info("Final Generation " + coordinator.getGenerationCount() + ": [height="
+					+ bestIndividual.getHeight() + " fitness=" + bestIndividual.getFitness() + " isValid="
+					+ bestIndividual.isTreeValid() + "]  " + bestIndividual.toString());
+			Log.info("It took " + (System.currentTimeMillis() - startTime)
+					+ " milliseconds to find the best individual!");
+		} catch (IOException | GPException e) {
+			Log.severe("Problem encountered during the coordination of the island processes: " + e.getMessage());
+			e.printStackTrace();
+		} finally {
+			if (coordinator != null) {
+				coordinator.close();
+			}
+		}
+	}
+}
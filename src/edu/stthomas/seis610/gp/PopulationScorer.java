@@ -0,0 +1,176 @@
+package edu.stthomas.seis610.gp;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import edu.stthomas.seis610.tree.GeneticProgrammingTree;
+
+//=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+/**
+ * The PopulationScorer scores the fitness of a whole population across a ForkJoin pool with the number of threads from
+ * the Settings. The population is split into chunks by the size of the trees (rather than by the number of
+ * individuals), since the cost of evaluating an individual grows with the number of nodes within its tree.
+ * <p>
+ * Evaluating an individual only changes that individual itself, but reproduction passes references to the same
+ * individual along to the next generation, so the same individual can appear more than once within a population. Each
+ * distinct individual is therefore scored by only one thread, once for every time it appears within the population,
+ * which gives exactly the same fitness measurements as scoring the population one individual at a time.
+ *
+ * @version 1.2
+ */
+// =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+public class PopulationScorer {
+
+	/**
+	 * Define Constant for the Number of Chunks per Thread (so that idle threads can steal the remaining work)
+	 */
+	private static final int CHUNKS_PER_THREAD = 8;
+
+	/**
+	 * Define private variables for the Singleton Instance of this class.
+	 */
+	private static PopulationScorer xSingletonInstance = null;
+
+	private ForkJoinPool xPool;
+
+	/**
+	 * Private default constructor for singleton instance of this class.
+	 */
+	private PopulationScorer() {
+	}
+
+	/**
+	 * Public static method to get the singleton instance of this class and build it (lazy instantiation) if it is not
+	 * already built.
+	 *
+	 * @return the singleton instance of this class
+	 */
+	public static synchronized PopulationScorer getInstance() {
+		if (xSingletonInstance == null) {
+			xSingletonInstance = new PopulationScorer();
+		}
+		return xSingletonInstance;
+	}
+
+	/**
+	 * Get the pool of threads to score the population with, replacing it whenever the number of threads within the
+	 * Settings changes.
+	 *
+	 * @param aParallelism the number of threads of the pool
+	 * @return the pool of threads
+	 */
+	private synchronized ForkJoinPool getPool(int aParallelism) {
+		if (xPool == null || xPool.getParallelism() != aParallelism) {
+			if (xPool != null) {
+				xPool.shutdown();
+			}
+			xPool = new ForkJoinPool(aParallelism);
+		}
+		return xPool;
+	}
+
+	/**
+	 * Score the fitness of every individual within the population, but allow the scoring of an individual to stop once
+	 * it is worse than the cutoff (see {@link GeneticProgrammingTree#calculateFitness(double)}).
+	 *
+	 * @param aPopulation the population of individuals to score
+	 * @param aCutoff the standardized fitness beyond which the scoring of an individual can stop
+	 */
+	public void score(List<GeneticProgrammingTree> aPopulation, double aCutoff) {
+		// Count how many times each distinct individual appears within the population (keeping their order).
+		Map<GeneticProgrammingTree, Integer> occurrences = new IdentityHashMap<GeneticProgrammingTree, Integer>();
+		List<GeneticProgrammingTree> individuals = new ArrayList<GeneticProgrammingTree>(aPopulation.size());
+		for (GeneticProgrammingTree individual : aPopulation) {
+			Integer count = occurrences.get(individual);
+			if (count == null) {
+				individuals.add(individual);
+				count = 0;
+			}
+			occurrences.put(individual, count + 1);
+		}
+
+		// The cost of each individual is the size of its tree for every time it gets scored, which is summed up so the
+		// cost of any range of individuals is simply the difference of two sums.
+		int[] counts = new int[individuals.size()];
+		long[] costs = new long[individuals.size() + 1];
+		for (int i = 0; i < counts.length; i++) {
+			counts[i] = occurrences.get(individuals.get(i));
+			costs[i + 1] = costs[i] + (long) counts[i] * individuals.get(i).getSize();
+		}
+
+		// Build the (lazily loaded) shared training data values before any of the threads need them.
+		GPSettings.getTrainingData();
+		for (GeneticProgrammingTree individual : individuals) {
+			if (individual.getTrainingData() != null) {
+				TrainingColumns.getInstance(individual.getTrainingData());
+				break;
+			}
+		}
+
+		int parallelism = GPSettings.getScoringThreads();
+		long threshold = Math.max(costs[counts.length] / (parallelism * CHUNKS_PER_THREAD), 1);
+		getPool(parallelism).invoke(new ScoringTask(individuals, counts, costs, 0, counts.length, threshold, aCutoff));
+	}
+
+	// =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	/**
+	 * Score a range of the distinct individuals, splitting the range in half (by the cost of the individuals) until it
+	 * is small enough to be scored by a single thread.
+	 */
+	// =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	private static class ScoringTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private final List<GeneticProgrammingTree> xIndividuals;
+		private final int[] xCounts;
+		private final long[] xCosts;
+		private final int xStart;
+		private final int xEnd;
+		private final long xThreshold;
+		private final double xCutoff;
+
+		/**
+		 * @param aIndividuals the distinct individuals of the population
+		 * @param aCounts the number of times each of the individuals appears within the population
+		 * @param aCosts the running sum of the cost of the individuals (one longer than the individuals)
+		 * @param aStart the index of the first individual of the range
+		 * @param aEnd the index after the last individual of the range
+		 * @param aThreshold the cost below which a range is no longer split
+		 * @param aCutoff the standardized fitness beyond which the scoring of an individual can stop
+		 */
+		private ScoringTask(List<GeneticProgrammingTree> aIndividuals, int[] aCounts, long[] aCosts, int aStart,
+				int aEnd, long aThreshold, double aCutoff) {
+			xIndividuals = aIndividuals;
+			xCounts = aCounts;
+			xCosts = aCosts;
+			xStart = aStart;
+			xEnd = aEnd;
+			xThreshold = aThreshold;
+			xCutoff = aCutoff;
+		}
+
+		@Override
+		protected void compute() {
+			if (xEnd - xStart > 1 && xCosts[xEnd] - xCosts[xStart] > xThreshold) {
+				// Split where the running sum reaches half of the cost of the range (but never leave a half empty).
+				int middle = Arrays.binarySearch(xCosts, xStart + 1, xEnd, (xCosts[xStart] + xCosts[xEnd]) / 2);
+				middle = Math.max(xStart + 1, Math.min(xEnd - 1, (middle < 0) ? -middle - 1 : middle));
+				invokeAll(new ScoringTask(xIndividuals, xCounts, xCosts, xStart, middle, xThreshold, xCutoff),
+						new ScoringTask(xIndividuals, xCounts, xCosts, middle, xEnd, xThreshold, xCutoff));
+				return;
+			}
+
+			for (int i = xStart; i < xEnd; i++) {
+				GeneticProgrammingTree individual = xIndividuals.get(i);
+				for (int count = 0; count < xCounts[i]; count++) {
+					individual.calculateFitness(xCutoff);
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,114 @@
+package edu.stthomas.seis610.gp;
+
+import java.util.Vector;
+
+//=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+/**
+ * A column oriented (primitive array) copy of a list of training data values. The input (X) and expected output (Y)
+ * values of all of the training data are held in two parallel arrays so that an expression can be evaluated over the
+ * entire training set at once.
+ * <p>
+ * Note: The most recently requested columns are cached and are only rebuilt when a different list of training data is
+ * passed in or when the training data within the Settings has changed. Changes made directly to the contents of the
+ * list are not detected.
+ *
+ * @version 1.2
+ */
+// =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+public class TrainingColumns {
+	private static volatile TrainingColumns xCachedColumns;
+
+	private final Vector<TrainingData> xTrainingData;
+	private final int xTrainingDataVersion;
+	private final double[] xInputs;
+	private final double[] xOutputs;
+	private final boolean xInputsFinite;
+	private final double xMinInput;
+	private final double xMaxInput;
+
+	/**
+	 * Constructor to create the columns for the list of training data values.
+	 *
+	 * @param aTrainingData the list of training data values to copy into the columns
+	 * @param aTrainingDataVersion the version of the training data within the Settings
+	 */
+	private TrainingColumns(Vector<TrainingData> aTrainingData, int aTrainingDataVersion) {
+		xTrainingData = aTrainingData;
+		xTrainingDataVersion = aTrainingDataVersion;
+		xInputs = new double[aTrainingData.size()];
+		xOutputs = new double[aTrainingData.size()];
+		boolean inputsFinite = true;
+		double minInput = Double.POSITIVE_INFINITY;
+		double maxInput = Double.NEGATIVE_INFINITY;
+		for (int i = 0; i < xInputs.length; i++) {
+			xInputs[i] = aTrainingData.elementAt(i).getInputData();
+			xOutputs[i] = aTrainingData.elementAt(i).getOutputData();
+			inputsFinite &= !Double.isInfinite(xInputs[i]) && !Double.isNaN(xInputs[i]);
+			minInput = Math.min(minInput, xInputs[i]);
+			maxInput = Math.max(maxInput, xInputs[i]);
+		}
+		xInputsFinite = inputsFinite;
+		xMinInput = minInput;
+		xMaxInput = maxInput;
+	}
+
+	/**
+	 * Public static method to get the columns for a list of training data values and build them (lazy instantiation) if
+	 * they are not already cached.
+	 *
+	 * @param aTrainingData the list of training data values
+	 * @return the columns that represent the training data values
+	 */
+	public static TrainingColumns getInstance(Vector<TrainingData> aTrainingData) {
+		int trainingDataVersion = GPSettings.getTrainingDataVersion();
+		TrainingColumns columns = xCachedColumns;
+		if (columns == null || columns.xTrainingData != aTrainingData
+				|| columns.xTrainingDataVersion != trainingDataVersion || columns.size() != aTrainingData.size()) {
+			columns = new TrainingColumns(aTrainingData, trainingDataVersion);
+			xCachedColumns = columns;
+		}
+		return columns;
+	}
+
+	/**
+	 * @return the number of training data values within the columns
+	 */
+	public int size() {
+		return xInputs.length;
+	}
+
+	/**
+	 * @return the column of input training values (X); must not be modified
+	 */
+	public double[] getInputs() {
+		return xInputs;
+	}
+
+	/**
+	 * @return the column of expected output training values (Y); must not be modified
+	 */
+	public double[] getOutputs() {
+		return xOutputs;
+	}
+
+	/**
+	 * @return the indicator if all of the input training values are finite (neither infinite nor NaN)
+	 */
+	public boolean areInputsFinite() {
+		return xInputsFinite;
+	}
+
+	/**
+	 * @return the smallest input training value (positive infinity when there are no training data values)
+	 */
+	public double getMinInput() {
+		return xMinInput;
+	}
+
+	/**
+	 * @return the largest input training value (negative infinity when there are no training data values)
+	 */
+	public double getMaxInput() {
+		return xMaxInput;
+	}
+}
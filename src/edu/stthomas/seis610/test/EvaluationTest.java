@@ -0,0 +1,485 @@
+package edu.stthomas.seis610.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Vector;
+import java.util.logging.ConsoleHandler;
+import java.util.logging.Handler;
+import java.util.logging.Logger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import edu.stthomas.seis610.gp.FitnessDatum;
+import edu.stthomas.seis610.gp.GPSettings;
+import edu.stthomas.seis610.gp.TrainingColumns;
+import edu.stthomas.seis610.tree.BinaryTreeNode;
+import edu.stthomas.seis610.tree.BinaryTreeNode.NodeType;
+import edu.stthomas.seis610.tree.FitnessCache;
+import edu.stthomas.seis610.tree.FitnessCache.EvictionPolicy;
+import edu.stthomas.seis610.tree.GPTreeFactory;
+import edu.stthomas.seis610.tree.GeneticProgrammingTree;
+import edu.stthomas.seis610.tree.GeneticProgrammingTree.EvaluationMode;
+import edu.stthomas.seis610.tree.IntervalAnalyzer;
+import edu.stthomas.seis610.tree.OffHeapPopulationArena;
+import edu.stthomas.seis610.tree.OperandNode;
+import edu.stthomas.seis610.tree.OperatorNode;
+import edu.stthomas.seis610.tree.PopulationArena;
+import edu.stthomas.seis610.tree.PostfixProgram;
+import edu.stthomas.seis610.tree.SubexpressionCache;
+import edu.stthomas.seis610.tree.TieredEvaluator;
+import edu.stthomas.seis610.util.GPException;
+import edu.stthomas.seis610.util.GPSimpleFormatter;
+
+public class EvaluationTest {
+	private static final Logger toLog = Logger.getLogger(EvaluationTest.class.getName());
+	private String xSavedTrainingInput;
+
+	@BeforeClass
+	public static void setUpBeforeClass() throws Exception {
+		// Specify to only use a simple (text) formatter for the logging.
+		Handler myHandler = new ConsoleHandler();
+		myHandler.setFormatter(new GPSimpleFormatter());
+		toLog.addHandler(myHandler);
+		toLog.setUseParentHandlers(false);
+	}
+
+	@Before
+	public void initialize() throws Exception {
+		GPSettings.setRandomSeed("12345");
+		xSavedTrainingInput = GPSettings.getTrainingInputString();
+		GPSettings.setTrainingInputString("-5,-1,0,1,5");
+	}
+
+	@After
+	public void cleanup() throws Exception {
+		GPSettings.setEvaluationMode(EvaluationMode.valueOf(GPSettings._DEFAULT_EVALUATION_MODE));
+		GPSettings.setSimplificationEnabled(Boolean.parseBoolean(GPSettings._DEFAULT_SIMPLIFICATION));
+		GPSettings.setIntervalAnalysisEnabled(Boolean.parseBoolean(GPSettings._DEFAULT_INTERVAL_ANALYSIS));
+		GPSettings.setTrainingInputString(xSavedTrainingInput);
+	}
+
+	/**
+	 * Build the expression tree: (x*x)/x which divides by zero for the training value x=0.
+	 */
+	private static GeneticProgrammingTree buildDivideByZeroIndividual() throws GPException {
+		OperatorNode root = new OperatorNode("DIV");
+		root.setNodeType(NodeType.ROOT);
+
+		BinaryTreeNode secondLevel = new OperatorNode("MUL");
+		root.setLeftChild(secondLevel);
+		root.getLeftChild().setNodeType(NodeType.LEFT);
+		root.getLeftChild().setParent(root);
+		root.setRightChild(new OperandNode("x"));
+		root.getRightChild().setNodeType(NodeType.RIGHT);
+		root.getRightChild().setParent(root);
+
+		secondLevel.setLeftChild(new OperandNode("x"));
+		secondLevel.getLeftChild().setNodeType(NodeType.LEFT);
+		secondLevel.getLeftChild().setParent(secondLevel);
+		secondLevel.setRightChild(new OperandNode("x"));
+		secondLevel.getRightChild().setNodeType(NodeType.RIGHT);
+		secondLevel.getRightChild().setParent(secondLevel);
+
+		GeneticProgrammingTree individual = new GeneticProgrammingTree(root);
+		individual.setTrainingData(GPSettings.getTrainingData());
+		return individual;
+	}
+
+	/**
+	 * Build the expression tree: (x POW 2) + ((3-5)*x) which exercises the constant folding and strength reduction of
+	 * the compiled expressions.
+	 */
+	private static GeneticProgrammingTree buildPowerIndividual() throws GPException {
+		OperatorNode root = new OperatorNode("ADD");
+		root.setNodeType(NodeType.ROOT);
+
+		OperatorNode power = new OperatorNode("POW");
+		setChildren(power, new OperandNode("x"), new OperandNode("2"));
+		OperatorNode difference = new OperatorNode("SUB");
+		setChildren(difference, new OperandNode("3"), new OperandNode("5"));
+		OperatorNode product = new OperatorNode("MUL");
+		setChildren(product, difference, new OperandNode("x"));
+		setChildren(root, power, product);
+
+		GeneticProgrammingTree individual = new GeneticProgrammingTree(root);
+		individual.setTrainingData(GPSettings.getTrainingData());
+		return individual;
+	}
+
+	private static void setChildren(BinaryTreeNode aParent, BinaryTreeNode aLeft, BinaryTreeNode aRight)
+			throws GPException {
+		aParent.setLeftChild(aLeft);
+		aLeft.setNodeType(NodeType.LEFT);
+		aLeft.setParent(aParent);
+		aParent.setRightChild(aRight);
+		aRight.setNodeType(NodeType.RIGHT);
+		aRight.setParent(aParent);
+	}
+
+	/**
+	 * @param aMode the evaluation mode to use
+	 * @param aIndividual the individual to calculate the fitness for
+	 * @return the fitness of a fresh copy of the individual calculated with the evaluation mode
+	 */
+	private static FitnessDatum calculateFitness(EvaluationMode aMode, GeneticProgrammingTree aIndividual) {
+		GPSettings.setEvaluationMode(aMode);
+		GeneticProgrammingTree copy = (GeneticProgrammingTree) aIndividual.clone();
+		copy.reset();
+		copy.calculateFitness();
+		toLog.info(aMode + "[valid=" + copy.isTreeValid() + "]: " + copy + "  fitness=" + copy.getFitness());
+		return copy.getFitness();
+	}
+
+	@Test
+	public void testDivideByZeroFitness() throws GPException {
+		GeneticProgrammingTree individual = buildDivideByZeroIndividual();
+		FitnessDatum expectedFitness = calculateFitness(EvaluationMode.INTERPRETED, individual);
+		for (EvaluationMode mode : EvaluationMode.values()) {
+			assertEquals(mode.toString(), expectedFitness, calculateFitness(mode, individual));
+		}
+
+		for (EvaluationMode mode : EvaluationMode.values()) {
+			GPSettings.setEvaluationMode(mode);
+			GeneticProgrammingTree copy = (GeneticProgrammingTree) individual.clone();
+			copy.reset();
+			copy.calculateFitness();
+			assertEquals(mode + "_isValid", false, copy.isTreeValid());
+		}
+	}
+
+	/**
+	 * @param aIndividual the individual to calculate the fitness for
+	 * @return a fresh copy of the individual that has been compiled into bytecode and had its fitness calculated
+	 */
+	private static GeneticProgrammingTree calculateCompiledFitness(GeneticProgrammingTree aIndividual) {
+		GeneticProgrammingTree copy = (GeneticProgrammingTree) aIndividual.clone();
+		copy.reset();
+		assertEquals("isCompiled", true, copy.compile());
+		copy.calculateFitness();
+		toLog.info("COMPILED[valid=" + copy.isTreeValid() + "]: " + copy + "  fitness=" + copy.getFitness());
+		return copy;
+	}
+
+	@Test
+	public void testCompiledFitness() throws GPException {
+		GeneticProgrammingTree individual = buildDivideByZeroIndividual();
+		FitnessDatum expectedFitness = calculateFitness(EvaluationMode.INTERPRETED, individual);
+		GeneticProgrammingTree compiled = calculateCompiledFitness(individual);
+		assertEquals(expectedFitness, compiled.getFitness());
+		assertEquals("isValid", false, compiled.isTreeValid());
+
+		individual = buildPowerIndividual();
+		expectedFitness = calculateFitness(EvaluationMode.INTERPRETED, individual);
+		GPSettings.setEvaluationMode(EvaluationMode.BATCH);
+		assertEquals(expectedFitness, calculateCompiledFitness(individual).getFitness());
+
+		for (int i = 0; i < 50; i++) {
+			individual = GPTreeFactory.generateGrowTree(GPSettings.getMaxHtOfInitTree());
+			expectedFitness = calculateFitness(EvaluationMode.INTERPRETED, individual);
+			GPSettings.setEvaluationMode(EvaluationMode.BATCH);
+			assertEquals("COMPILED[" + i + "]", expectedFitness, calculateCompiledFitness(individual).getFitness());
+		}
+	}
+
+	@Test
+	public void testTieredFitness() throws Exception {
+		Integer savedThreshold = GPSettings.getCompilationThreshold();
+		GPSettings.setCompilationThreshold(2);
+		try {
+			GeneticProgrammingTree individual = buildDivideByZeroIndividual();
+			FitnessDatum expectedFitness = calculateFitness(EvaluationMode.INTERPRETED, individual);
+			PostfixProgram program = individual.getProgram();
+			TieredEvaluator tieredEvaluator = TieredEvaluator.getInstance();
+
+			// Keep evaluating copies of the same individual until the background compilation has finished.
+			for (int i = 0; i < 100 && !tieredEvaluator.isCompiled(program); i++) {
+				assertEquals("TIERED[" + i + "]", expectedFitness, calculateFitness(EvaluationMode.TIERED, individual));
+				Thread.sleep(10);
+			}
+			assertEquals("isCompiled", true, tieredEvaluator.isCompiled(program));
+			assertEquals("COMPILED", expectedFitness, calculateFitness(EvaluationMode.TIERED, individual));
+		} finally {
+			GPSettings.setCompilationThreshold(savedThreshold);
+		}
+	}
+
+	@Test
+	public void testFitnessCache() throws GPException {
+		GeneticProgrammingTree individual = buildDivideByZeroIndividual();
+		FitnessDatum expectedFitness = calculateFitness(EvaluationMode.INTERPRETED, individual);
+		FitnessCache cache = FitnessCache.getInstance();
+		GPSettings.setFitnessCacheEnabled(true);
+		GPSettings.setFitnessCacheSize(2);
+		GPSettings.setFitnessCacheEviction(EvictionPolicy.FIFO);
+		try {
+			cache.clear();
+			long misses = cache.getMissCount();
+			long hits = cache.getHitCount();
+			assertEquals("miss", expectedFitness, calculateFitness(EvaluationMode.BATCH, individual));
+			assertEquals("hit", expectedFitness, calculateFitness(EvaluationMode.BATCH, individual));
+			assertEquals("missCount", misses + 1, cache.getMissCount());
+			assertEquals("hitCount", hits + 1, cache.getHitCount());
+
+			// The cached fitness must also mark the tree as invalid just like the evaluation did.
+			GeneticProgrammingTree copy = (GeneticProgrammingTree) individual.clone();
+			copy.reset();
+			copy.calculateFitness();
+			assertEquals("hit_isValid", false, copy.isTreeValid());
+
+			// Changing the training data must not use the fitness calculated against the old training data.
+			GPSettings.setTrainingInputString("-3,2,4");
+			individual.setTrainingData(GPSettings.getTrainingData());
+			GPSettings.setFitnessCacheEnabled(false);
+			expectedFitness = calculateFitness(EvaluationMode.INTERPRETED, individual);
+			GPSettings.setFitnessCacheEnabled(true);
+			assertEquals("newTrainingData", expectedFitness, calculateFitness(EvaluationMode.BATCH, individual));
+			assertEquals("newTrainingData_missCount", misses + 2, cache.getMissCount());
+
+			// The cache never holds more than its max size.
+			for (int i = 0; i < 10; i++) {
+				individual = GPTreeFactory.generateGrowTree(GPSettings.getMaxHtOfInitTree());
+				expectedFitness = calculateFitness(EvaluationMode.INTERPRETED, individual);
+				assertEquals("cached[" + i + "]", expectedFitness, calculateFitness(EvaluationMode.BATCH, individual));
+				assertEquals("size[" + i + "]", true, cache.size() <= 2);
+			}
+		} finally {
+			GPSettings.setFitnessCacheEnabled(false);
+			GPSettings.setFitnessCacheSize(Integer.valueOf(GPSettings._DEFAULT_FITNESS_CACHE_SIZE));
+			GPSettings.setFitnessCacheEviction(EvictionPolicy.valueOf(GPSettings._DEFAULT_FITNESS_CACHE_EVICTION));
+			cache.clear();
+		}
+	}
+
+	@Test
+	public void testIncrementalFitness() throws GPException {
+		GPSettings.setEvaluationMode(EvaluationMode.INCREMENTAL);
+		GeneticProgrammingTree individual = GPTreeFactory.generateFullTree(GPSettings.getMaxHtOfInitTree());
+		individual.calculateFitness();
+
+		// Keep mutating copies of the individual, which reuse the output columns of the nodes that did not change.
+		for (int i = 0; i < 50; i++) {
+			GeneticProgrammingTree offspring = (GeneticProgrammingTree) individual.clone();
+			offspring.mutate();
+			offspring.calculateFitness();
+			FitnessDatum expectedFitness = calculateFitness(EvaluationMode.INTERPRETED, offspring);
+			assertEquals("INCREMENTAL[" + i + "]", expectedFitness, offspring.getFitness());
+			assertEquals("INCREMENTAL[" + i + "]_isValid", isValid(offspring), offspring.isTreeValid());
+			GPSettings.setEvaluationMode(EvaluationMode.INCREMENTAL);
+			individual = offspring;
+		}
+	}
+
+	/**
+	 * @param aIndividual the individual to check
+	 * @return the indicator if a fresh copy of the individual is still valid after being evaluated by the interpreter
+	 */
+	private static boolean isValid(GeneticProgrammingTree aIndividual) {
+		GeneticProgrammingTree copy = (GeneticProgrammingTree) aIndividual.clone();
+		copy.reset();
+		copy.calculateInterpretedFitness();
+		return copy.isTreeValid();
+	}
+
+	@Test
+	public void testSharedFitness() throws GPException {
+		SubexpressionCache cache = SubexpressionCache.getInstance();
+		GeneticProgrammingTree individual = buildPowerIndividual();
+		FitnessDatum expectedFitness = calculateFitness(EvaluationMode.INTERPRETED, individual);
+		assertEquals("SHARED", expectedFitness, calculateFitness(EvaluationMode.SHARED, individual));
+
+		// Another individual with the same subtrees does not need to evaluate any of them again.
+		long evaluationCount = cache.getEvaluationCount();
+		assertEquals("SHARED_copy", expectedFitness, calculateFitness(EvaluationMode.SHARED, individual));
+		assertEquals("evaluationCount", evaluationCount, cache.getEvaluationCount());
+
+		// Sharing the (x POW 2) subtree only needs to evaluate the new constant and the new root.
+		OperatorNode root = new OperatorNode("SUB");
+		root.setNodeType(NodeType.ROOT);
+		setChildren(root, (BinaryTreeNode) individual.getRoot().getLeftChild().clone(), new OperandNode("-7"));
+		GeneticProgrammingTree sibling = new GeneticProgrammingTree(root);
+		sibling.setTrainingData(GPSettings.getTrainingData());
+		expectedFitness = calculateFitness(EvaluationMode.INTERPRETED, sibling);
+		assertEquals("SHARED_sibling", expectedFitness, calculateFitness(EvaluationMode.SHARED, sibling));
+		assertEquals("evaluationCount_sibling", evaluationCount + 2, cache.getEvaluationCount());
+	}
+
+	@Test
+	public void testSimplification() throws GPException {
+		// (x-x)+(3*0) simplifies down to a single constant.
+		OperatorNode root = new OperatorNode("ADD");
+		root.setNodeType(NodeType.ROOT);
+		OperatorNode difference = new OperatorNode("SUB");
+		setChildren(difference, new OperandNode("x"), new OperandNode("x"));
+		OperatorNode product = new OperatorNode("MUL");
+		setChildren(product, new OperandNode("3"), new OperandNode("0"));
+		setChildren(root, difference, product);
+		GeneticProgrammingTree individual = new GeneticProgrammingTree(root);
+		individual.setTrainingData(GPSettings.getTrainingData());
+		assertEquals("size", 1, individual.getSimplifiedRoot().size());
+
+		// The division by zero (x*x)/x must be kept while (3-5) gets folded.
+		assertEquals("size_divideByZero", 5, buildDivideByZeroIndividual().getSimplifiedRoot().size());
+		assertEquals("size_power", 7, buildPowerIndividual().getSimplifiedRoot().size());
+
+		for (int i = 0; i < 100; i++) {
+			individual = (i == 0) ? buildDivideByZeroIndividual() : GPTreeFactory.generateGrowTree(GPSettings
+					.getMaxHtOfInitTree());
+			GPSettings.setSimplificationEnabled(false);
+			FitnessDatum expectedFitness = calculateFitness(EvaluationMode.INTERPRETED, individual);
+			boolean expectedValid = isValid(individual);
+			GPSettings.setSimplificationEnabled(true);
+			for (EvaluationMode mode : EvaluationMode.values()) {
+				GPSettings.setEvaluationMode(mode);
+				GeneticProgrammingTree copy = (GeneticProgrammingTree) individual.clone();
+				copy.reset();
+				copy.calculateFitness();
+				assertEquals(mode + "[" + i + "]", expectedFitness, copy.getFitness());
+				assertEquals(mode + "[" + i + "]_isValid", expectedValid, copy.isTreeValid());
+			}
+		}
+	}
+
+	@Test
+	public void testIntervalAnalysis() throws GPException {
+		// x/(3-3) divides by zero for every input while (x*x)/x only divides by zero for an input of zero.
+		OperatorNode root = new OperatorNode("DIV");
+		root.setNodeType(NodeType.ROOT);
+		OperatorNode difference = new OperatorNode("SUB");
+		setChildren(difference, new OperandNode("3"), new OperandNode("3"));
+		setChildren(root, new OperandNode("x"), difference);
+		GeneticProgrammingTree individual = new GeneticProgrammingTree(root);
+		individual.setTrainingData(GPSettings.getTrainingData());
+		assertTrue("alwaysInvalid", individual.isAlwaysInvalid());
+		assertTrue("alwaysInvalid_power", buildPowerIndividual().isAlwaysInvalid());
+		assertFalse("alwaysInvalid_divideByZero", buildDivideByZeroIndividual().isAlwaysInvalid());
+
+		IntervalAnalyzer analyzer = new IntervalAnalyzer(-5.0, 5.0);
+		analyzer.analyze(buildDivideByZeroIndividual().getRoot());
+		assertTrue("maybeInvalid_divideByZero", analyzer.isMaybeInvalid());
+		root = new OperatorNode("ADD");
+		root.setNodeType(NodeType.ROOT);
+		OperatorNode product = new OperatorNode("MUL");
+		setChildren(product, new OperandNode("x"), new OperandNode("2"));
+		setChildren(root, product, new OperandNode("1"));
+		IntervalAnalyzer.Interval range = analyzer.analyze(root);
+		assertEquals("low", -9.0, range.getLow(), 0.0);
+		assertEquals("high", 11.0, range.getHigh(), 0.0);
+		assertFalse("maybeInvalid", analyzer.isMaybeInvalid());
+
+		for (int i = 0; i < 100; i++) {
+			individual = (i == 0) ? buildPowerIndividual() : GPTreeFactory.generateGrowTree(GPSettings
+					.getMaxHtOfInitTree());
+			GPSettings.setIntervalAnalysisEnabled(false);
+			FitnessDatum expectedFitness = calculateFitness(EvaluationMode.INTERPRETED, individual);
+			boolean expectedValid = isValid(individual);
+			GPSettings.setIntervalAnalysisEnabled(true);
+			for (EvaluationMode mode : EvaluationMode.values()) {
+				GPSettings.setEvaluationMode(mode);
+				GeneticProgrammingTree copy = (GeneticProgrammingTree) individual.clone();
+				copy.reset();
+				copy.calculateFitness();
+				assertEquals(mode + "[" + i + "]", expectedFitness, copy.getFitness());
+				assertEquals(mode + "[" + i + "]_isValid", expectedValid, copy.isTreeValid());
+			}
+		}
+	}
+
+	@Test
+	public void testPopulationArena() throws GPException {
+		TrainingColumns columns = TrainingColumns.getInstance(GPSettings.getTrainingData());
+		PopulationArena arena = new PopulationArena(4, 16);
+		Vector<GeneticProgrammingTree> population = new Vector<GeneticProgrammingTree>();
+		for (int i = 0; i < 50; i++) {
+			GeneticProgrammingTree individual = GPTreeFactory.generateGrowTree(GPSettings.getMaxHtOfInitTree());
+			population.add(individual);
+			assertEquals("add[" + i + "]", i, arena.add(individual.getRoot()));
+			assertEquals("toTree[" + i + "]", individual.toString(), arena.toTree(i).toString());
+			assertEquals("height[" + i + "]", individual.getHeight().intValue(), arena.getHeight(i));
+
+			FitnessDatum expectedFitness = calculateFitness(EvaluationMode.INTERPRETED, individual);
+			arena.calculateFitness(i, columns);
+			assertEquals("fitness[" + i + "]", expectedFitness.getStandardizedFitness(), arena.getFitness(i), 0.0);
+		}
+
+		// Cross-over within the arena must match splicing the nodes of the expression trees.
+		PopulationArena nextArena = new PopulationArena(1, 1);
+		for (int i = 0; i + 1 < population.size(); i += 2) {
+			int nodeX = arena.getRandomNode(i);
+			int nodeY = arena.getRandomNode(i + 1);
+			GeneticProgrammingTree offspring = (GeneticProgrammingTree) population.get(i).clone();
+			BinaryTreeNode pointX = offspring.getPostOrderList().get(nodeX);
+			BinaryTreeNode pointY = (BinaryTreeNode) population.get(i + 1).getPostOrderList().get(nodeY).clone();
+			if (pointX.getParent() == null) {
+				offspring.setRoot(pointY);
+			} else if (pointX.getNodeType() == NodeType.LEFT) {
+				pointX.getParent().setLeftChild(pointY);
+			} else {
+				pointX.getParent().setRightChild(pointY);
+			}
+			int child = nextArena.crossover(arena, i, nodeX, arena, i + 1, nodeY);
+			assertEquals("crossover[" + i + "]", offspring.toString(), nextArena.toTree(child).toString());
+			assertEquals("crossoverHeight[" + i + "]", offspring.getHeight().intValue(), nextArena.getHeight(child));
+		}
+
+		arena.clear();
+		assertEquals(0, arena.getIndividualCount());
+		assertEquals(0, arena.copy(nextArena, 0));
+		assertEquals(nextArena.toTree(0).toString(), arena.toTree(0).toString());
+	}
+
+	@Test
+	public void testOffHeapPopulationArena() throws GPException {
+		TrainingColumns columns = TrainingColumns.getInstance(GPSettings.getTrainingData());
+		PopulationArena arena = new PopulationArena(4, 16);
+		OffHeapPopulationArena offHeapArena = new OffHeapPopulationArena(4, 16);
+		for (int i = 0; i < 50; i++) {
+			GeneticProgrammingTree individual = GPTreeFactory.generateGrowTree(GPSettings.getMaxHtOfInitTree());
+			arena.add(individual.getRoot());
+			assertEquals("add[" + i + "]", i, offHeapArena.add(individual.getRoot()));
+			assertEquals("toTree[" + i + "]", individual.toString(), offHeapArena.toTree(i).toString());
+			assertEquals("fitness[" + i + "]", arena.calculateFitness(i, columns),
+					offHeapArena.calculateFitness(i, columns), 0.0);
+			assertEquals("isValid[" + i + "]", arena.isValid(i), offHeapArena.isValid(i));
+			assertEquals("getHeight[" + i + "]", arena.getHeight(i), offHeapArena.getHeight(i));
+		}
+
+		// Cross-over and mutation must produce the same offspring as the (on heap) population arena.
+		PopulationArena nextArena = new PopulationArena(1, 1);
+		OffHeapPopulationArena nextOffHeapArena = new OffHeapPopulationArena(1, 1);
+		for (int i = 0; i + 1 < arena.getIndividualCount(); i += 2) {
+			int nodeX = arena.getRandomNode(i);
+			int nodeY = arena.getRandomNode(i + 1);
+			int child = nextArena.crossover(arena, i, nodeX, arena, i + 1, nodeY);
+			nextOffHeapArena.crossover(offHeapArena, i, nodeX, offHeapArena, i + 1, nodeY);
+			assertEquals("crossover[" + i + "]", nextArena.toTree(child).toString(), nextOffHeapArena.toTree(child)
+					.toString());
+
+			BinaryTreeNode subtree = GPTreeFactory.generateGrowSubtree(2);
+			child = nextArena.mutate(arena, i, nodeY % arena.getSize(i), subtree);
+			nextOffHeapArena.mutate(offHeapArena, i, nodeY % arena.getSize(i), subtree);
+			assertEquals("mutate[" + i + "]", nextArena.toTree(child).toString(), nextOffHeapArena.toTree(child)
+					.toString());
+		}
+
+		offHeapArena.clear();
+		assertEquals(0, offHeapArena.getIndividualCount());
+		assertEquals(0, offHeapArena.copy(nextOffHeapArena, 0));
+		assertEquals(nextArena.toTree(0).toString(), offHeapArena.toTree(0).toString());
+	}
+
+	@Test
+	public void testGeneratedTreeFitness() {
+		for (int i = 0; i < 50; i++) {
+			GeneticProgrammingTree individual = GPTreeFactory.generateGrowTree(GPSettings.getMaxHtOfInitTree());
+			FitnessDatum expectedFitness = calculateFitness(EvaluationMode.INTERPRETED, individual);
+			for (EvaluationMode mode : EvaluationMode.values()) {
+				assertEquals(mode + "[" + i + "]", expectedFitness, calculateFitness(mode, individual));
+			}
+		}
+	}
+}
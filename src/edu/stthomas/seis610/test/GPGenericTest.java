@@ -1,7 +1,9 @@
 package edu.stthomas.seis610.test;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 import java.util.ArrayList;
@@ -23,6 +25,7 @@ import edu.stthomas.seis610.tree.GPTreeFactory;
 import edu.stthomas.seis610.tree.GeneticProgrammingTree;
 import edu.stthomas.seis610.tree.OperandNode;
 import edu.stthomas.seis610.tree.OperatorNode;
+import edu.stthomas.seis610.tree.PersistentNode;
 import edu.stthomas.seis610.util.GPException;
 import edu.stthomas.seis610.util.GPSimpleFormatter;
 
@@ -116,7 +119,7 @@ public class GPGenericTest {
 	@Test
 	public void testHeight() {
 		toLog.info("minus[height=" + minus.getHeight() + "]: " + new GeneticProgrammingTree(minus));
-		assertEquals(minus.getHeight(), new Integer(1));
+		assertEquals(minus.getHeight(), 1);
 	}
 	
 	@Test
@@ -178,6 +181,52 @@ public class GPGenericTest {
 		assertEquals("anyIndividual", anyIndividualTree, anyIndividual.toString());
 	}
 	
+	@Test
+	public void testSubtreeIndex() throws GPException {
+		GeneticProgrammingTree individual = GPTreeFactory.generateFullTree(3);
+		GeneticProgrammingTree donor = GPTreeFactory.generateGrowTree(4);
+
+		// Splice a subtree of the donor into the individual and make sure the cached sizes and heights follow along.
+		BinaryTreeNode splicePoint = individual.getRoot().getLeftChild().getRightChild();
+		BinaryTreeNode subtree = (BinaryTreeNode) donor.getRoot().clone();
+		splicePoint.getParent().setRightChild(subtree);
+		subtree.setNodeType(NodeType.RIGHT);
+		subtree.setParent(splicePoint.getParent());
+
+		List<BinaryTreeNode> postOrderList = individual.getPostOrderList();
+		toLog.info("spliceIndividual[height=" + individual.getHeight() + "]: " + individual);
+		assertEquals(postOrderList.size(), individual.getRoot().getSubtreeSize());
+		assertEquals(individual.getHeight(), new Integer(Math.max(3, 2 + donor.getHeight())));
+		for (int i = 0; i < postOrderList.size(); i++) {
+			assertSame(postOrderList.get(i), individual.getRoot().getNode(i));
+		}
+	}
+
+	@Test
+	public void testStructuralHash() throws GPException {
+		GeneticProgrammingTree copy = (GeneticProgrammingTree) perfectIndividual.clone();
+		assertEquals(perfectIndividual.getRoot(), copy.getRoot());
+		assertEquals(perfectIndividual.getStructuralHash(), copy.getStructuralHash());
+		assertTrue(perfectIndividual.isSameExpression(copy));
+		assertEquals(perfectIndividual.getStructuralHash(), PersistentNode.valueOf(copy.getRoot()).hashCode());
+
+		// Changing a leaf deep within the copy must be reflected all of the way up to the root.
+		BinaryTreeNode leaf = copy.getRoot().getLeftChild().getLeftChild().getRightChild();
+		OperandNode newLeaf = new OperandNode("3");
+		leaf.getParent().setRightChild(newLeaf);
+		newLeaf.setNodeType(NodeType.RIGHT);
+		newLeaf.setParent(leaf.getParent());
+		assertFalse(perfectIndividual.isSameExpression(copy));
+		assertFalse(perfectIndividual.getRoot().equals(copy.getRoot()));
+		assertEquals(PersistentNode.valueOf(copy.getRoot()).hashCode(), copy.getStructuralHash());
+
+		// Changing it back makes the expressions the same again.
+		newLeaf.setVariable(true);
+		assertEquals(perfectIndividual.getStructuralHash(), copy.getStructuralHash());
+		assertTrue(perfectIndividual.isSameExpression(copy));
+		assertFalse(anyIndividual.isSameExpression(copy));
+	}
+
 	@Test
 	public void testDeepCopy() {
 		GeneticProgrammingTree copy = (GeneticProgrammingTree) anyIndividual.clone();
@@ -188,9 +237,9 @@ public class GPGenericTest {
 		assertNotSame(anyIndividual.getRoot().getLeftChild(), copy.getRoot().getLeftChild());
 		assertNotSame(anyIndividual.getRoot().getRightChild(), copy.getRoot().getRightChild());
 		
-		// Test an OperatorNode
+		// Test an OperatorNode (the operator types are immutable enums so they are shared by the copy)
 		assertEquals(anyIndividual.getRoot().getData(), copy.getRoot().getData());
-		assertNotSame(anyIndividual.getRoot().getData(), copy.getRoot().getData());
+		assertSame(((OperatorNode) anyIndividual.getRoot()).getOperator(), ((OperatorNode) copy.getRoot()).getOperator());
 	
 		// Test an OperandNode
 		assertEquals(anyIndividual.getRoot().getRightChild().getData(), copy.getRoot().getRightChild().getData());
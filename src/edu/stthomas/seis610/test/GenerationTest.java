@@ -1,27 +1,43 @@
 package edu.stthomas.seis610.test;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 
 import java.util.Collections;
+import java.util.Properties;
 import java.util.Vector;
 import java.util.logging.ConsoleHandler;
 import java.util.logging.Handler;
 import java.util.logging.Logger;
 
+import org.junit.After;
 import org.junit.Before;
 import org.junit.BeforeClass;
 import org.junit.Test;
 
+import edu.stthomas.seis610.gp.EvaluationPool;
 import edu.stthomas.seis610.gp.FitnessDatum;
 import edu.stthomas.seis610.gp.GPGeneration;
 import edu.stthomas.seis610.gp.GPGeneration.GenerationMethod;
 import edu.stthomas.seis610.gp.GPGeneration.ReproductionMethod;
 import edu.stthomas.seis610.gp.GPSettings;
+import edu.stthomas.seis610.gp.IslandModel;
+import edu.stthomas.seis610.gp.IslandProcess;
+import edu.stthomas.seis610.gp.IslandModel.MigrationTopology;
+import edu.stthomas.seis610.gp.MigrationCoordinator;
+import edu.stthomas.seis610.tree.GPTreeFactory;
 import edu.stthomas.seis610.tree.GeneticProgrammingTree;
+import edu.stthomas.seis610.tree.LinearGenome;
+import edu.stthomas.seis610.tree.PersistentNode;
+import edu.stthomas.seis610.util.GPException;
 import edu.stthomas.seis610.util.GPSimpleFormatter;
 
 public class GenerationTest {
 	private static final Logger toLog = Logger.getLogger("Global");
+	private Integer xSavedPopulationSize;
+	private String xSavedTrainingInput;
 
 	@BeforeClass
 	public static void setUpBeforeClass() throws Exception {
@@ -41,6 +57,9 @@ public class GenerationTest {
 
 	@Before
 	public void initialize() throws Exception {
+		xSavedPopulationSize = GPSettings.getPopulationSize();
+		xSavedTrainingInput = GPSettings.getTrainingInputString();
+
 		/*
 		 * Resetting the Random Seed before each test allows us a way to predict the behavior of the random number
 		 * generator and generate very predictable expression trees regardless of which order the tests are ran.
@@ -49,6 +68,21 @@ public class GenerationTest {
 		GPSettings.setPopulationSize(3);
 	}
 
+	@After
+	public void cleanup() throws Exception {
+		GPSettings.setPopulationSize(xSavedPopulationSize);
+		GPSettings.setTrainingInputString(xSavedTrainingInput);
+	}
+
+	/**
+	 * Use a wider range of training values (x=-5..5) for the tests that evolve a population over a number of
+	 * generations, and reload the (shared) training data values for the new input string.
+	 */
+	private static void useWideTrainingData() {
+		GPSettings.setTrainingInputString("-5,-4,-3,-2,-1,0,1,2,3,4,5");
+		GPSettings.getTrainingData();
+	}
+
 	@Test
 	public void testGPGeneration() {
 		Integer expectedValue = new Integer(0);
@@ -468,301 +502,531 @@ public class GenerationTest {
 	}
 
 	@Test
-	public void testReproduction_NaturalSelection() {
+	public void testReproduction_NaturalSelection() throws GPException {
+		Double savedMutationProbability = GPSettings.getMutationProbability();
 		GPSettings.setPopulationSize(12);
 		GPSettings.setMaxHtOfInitTree(4);
 		GPSettings.setCrossoverProbability(0.70);
+		GPSettings.setMutationProbability(0.0);
 		GPSettings.setGenerationMethod(GenerationMethod.FULL);
 		GPSettings.setReproductionMethod(ReproductionMethod.NATURAL_SELECTION);
 
 		String testLabel = GPSettings.getReproductionMethod().toLowerCase() + "Reproduction";
 
-		GPGeneration testGeneration = new GPGeneration();
-		testGeneration.init();
-		toLog.info(testLabel + "[size=" + testGeneration.getPopulation().size() + "]: \n" + testGeneration);
-
-		GPGeneration newGeneration = new GPGeneration();
-		Vector<GeneticProgrammingTree> newRepro = new Vector<GeneticProgrammingTree>();
-		newRepro.addAll(testGeneration.reproduction());
-		newGeneration.setPopulation(newRepro);
-		toLog.info(testLabel + "_newGeneration[size=" + newGeneration.getPopulation().size() + "]: \n" + newGeneration);
-
-		/*
-		 * Test for the First Tree in the Selection:
-		 */
-		String treeDump = new String("(((5--4)/(-3*-3))-((-5*x)-(2/9)))*(((-2/-8)-(-9+5))+((-6+-2)+(0+1)))");
-		Integer treeHeight = new Integer(4);
-		FitnessDatum fitnessScore = new FitnessDatum(Double.parseDouble("167.86111111111111"));
-		toLog.info(testLabel + "[0]: Height=" + newGeneration.getPopulation().firstElement().getHeight()
-				+ "  [Compare=" + treeHeight + "]");
-		toLog.info(testLabel + "[0]: Fitness=" + newGeneration.getPopulation().firstElement().getFitness()
-				+ "  [Compare=" + fitnessScore + "]");
-		toLog.info(testLabel + "[0]: \"" + newGeneration.getPopulation().firstElement() + "\"  [Compare=\"" + treeDump
-				+ "\"]\n");
-		assertEquals((testLabel + "[0]_Height: "), treeHeight, newGeneration.getPopulation().firstElement().getHeight());
-		assertEquals((testLabel + "[0]_Fitness: "), fitnessScore, newGeneration.getPopulation().firstElement()
-				.getFitness());
-		assertEquals((testLabel + "[0]: "), treeDump, newGeneration.getPopulation().firstElement().toString());
-
-		/*
-		 * Test for the Second Tree in the Population:
-		 */
-		treeDump = new String("(((1+4)+(x-7))*((7*-1)+(0-3)))+(((-9*3)/(6*-5))+((9+7)*(x-4)))");
-		treeHeight = new Integer(4);
-		fitnessScore = new FitnessDatum(Double.parseDouble("238.99999999999997"));
-		toLog.info(testLabel + "[1]: Height=" + newGeneration.getPopulation().elementAt(1).getHeight() + "  [Compare="
-				+ treeHeight + "]");
-		toLog.info(testLabel + "[1]: Fitness=" + newGeneration.getPopulation().elementAt(1).getFitness()
-				+ "  [Compare=" + fitnessScore + "]");
-		toLog.info(testLabel + "[1]: \"" + newGeneration.getPopulation().elementAt(1) + "\"  [Compare=\"" + treeDump
-				+ "\"]\n");
-		assertEquals((testLabel + "[1]_Height: "), treeHeight, newGeneration.getPopulation().elementAt(1).getHeight());
-		assertEquals((testLabel + "[1]_Fitness: "), fitnessScore, newGeneration.getPopulation().elementAt(1)
-				.getFitness());
-		assertEquals((testLabel + "[1]: "), treeDump, newGeneration.getPopulation().elementAt(1).toString());
-
-		/*
-		 * Test for the Third Tree in the Population:
-		 */
-		treeDump = new String("(((6*8)+(5*x))-((2*-3)+(x-x)))-(((-9*-7)/(-2+-1))/((7*-1)*(8*9)))");
-		treeHeight = new Integer(4);
-		fitnessScore = new FitnessDatum(Double.parseDouble("246.29166666666669"));
-		toLog.info(testLabel + "[2]: Height=" + newGeneration.getPopulation().elementAt(2).getHeight() + "  [Compare="
-				+ treeHeight + "]");
-		toLog.info(testLabel + "[2]: Fitness=" + newGeneration.getPopulation().elementAt(2).getFitness()
-				+ "  [Compare=" + fitnessScore + "]");
-		toLog.info(testLabel + "[2]: \"" + newGeneration.getPopulation().elementAt(2) + "\"  [Compare=\"" + treeDump
-				+ "\"]\n");
-		assertEquals((testLabel + "[2]_Height: "), treeHeight, newGeneration.getPopulation().elementAt(2).getHeight());
-		assertEquals((testLabel + "[2]_Fitness: "), fitnessScore, newGeneration.getPopulation().elementAt(2)
-				.getFitness());
-		assertEquals((testLabel + "[2]: "), treeDump, newGeneration.getPopulation().elementAt(2).toString());
-
-		/*
-		 * Test for the Forth Tree in the Population:
-		 */
-		treeDump = new String("(((3+-8)-(x-1))-((2--1)-(x--8)))+(((-4*9)/(-4/-6))+((-6*3)*(x/3)))");
-		treeHeight = new Integer(4);
-		fitnessScore = new FitnessDatum(Double.parseDouble("288.5"));
-		toLog.info(testLabel + "[3]: Height=" + newGeneration.getPopulation().elementAt(3).getHeight() + "  [Compare="
-				+ treeHeight + "]");
-		toLog.info(testLabel + "[3]: Fitness=" + newGeneration.getPopulation().elementAt(3).getFitness()
-				+ "  [Compare=" + fitnessScore + "]");
-		toLog.info(testLabel + "[3]: \"" + newGeneration.getPopulation().elementAt(3) + "\"  [Compare=\"" + treeDump
-				+ "\"]\n");
-		assertEquals((testLabel + "[3]_Height: "), treeHeight, newGeneration.getPopulation().elementAt(3).getHeight());
-		assertEquals((testLabel + "[3]_Fitness: "), fitnessScore, newGeneration.getPopulation().elementAt(3)
-				.getFitness());
-		assertEquals((testLabel + "[3]: "), treeDump, newGeneration.getPopulation().elementAt(3).toString());
+		try {
+			GPGeneration testGeneration = new GPGeneration();
+			testGeneration.init();
+			toLog.info(testLabel + "[size=" + testGeneration.getPopulation().size() + "]: \n" + testGeneration);
+			Vector<GeneticProgrammingTree> topIndividuals = new Vector<GeneticProgrammingTree>(
+					testGeneration.getPopulation());
+			Collections.sort(topIndividuals);
+
+			GPGeneration newGeneration = testGeneration.nextGeneration(false);
+			toLog.info(testLabel + "_newGeneration[size=" + newGeneration.getPopulation().size() + "]: \n"
+					+ newGeneration);
+
+			/*
+			 * The Top-4 (30% of 12) Individuals are Reproduced (as they are) at the Front of the Next Generation:
+			 */
+			for (int i = 0; i < 4; i++) {
+				toLog.info(testLabel + "[" + i + "]: \"" + newGeneration.getPopulation().elementAt(i) + "\"  [Compare=\""
+						+ topIndividuals.elementAt(i) + "\"]");
+				assertSame((testLabel + "[" + i + "]: "), topIndividuals.elementAt(i), newGeneration.getPopulation()
+						.elementAt(i));
+			}
+		} finally {
+			GPSettings.setMutationProbability(savedMutationProbability);
+		}
 	}
 
 	@Test
-	public void testReproduction_TournamentSelection() {
+	public void testReproduction_TournamentSelection() throws GPException {
+		Double savedMutationProbability = GPSettings.getMutationProbability();
 		GPSettings.setPopulationSize(50);
 		GPSettings.setMaxHtOfInitTree(4);
 		GPSettings.setTournamentSize(6);
 		GPSettings.setCrossoverProbability(0.90);
+		GPSettings.setMutationProbability(0.0);
 		GPSettings.setGenerationMethod(GenerationMethod.FULL);
 		GPSettings.setReproductionMethod(ReproductionMethod.TOURNAMENT_SELECTION);
 
 		String testLabel = GPSettings.getReproductionMethod().toLowerCase() + "Reproduction";
 
-		GPGeneration testGeneration = new GPGeneration();
-		testGeneration.init();
-		// toLog.info(testLabel + "[size=" + testGeneration.getPopulation().size() + "]: \n" + testGeneration);
+		try {
+			GPGeneration testGeneration = new GPGeneration();
+			testGeneration.init();
+			// toLog.info(testLabel + "[size=" + testGeneration.getPopulation().size() + "]: \n" + testGeneration);
+
+			GPGeneration newGeneration = testGeneration.nextGeneration(false);
+			toLog.info(testLabel + "_newGeneration[size=" + newGeneration.getPopulation().size() + "]: \n"
+					+ newGeneration);
+
+			/*
+			 * The 5 (10% of 50) Winners of the Tournaments are Valid Individuals of the Current Generation and are
+			 * Reproduced (as they are) at the Front of the Next Generation:
+			 */
+			for (int i = 0; i < 5; i++) {
+				GeneticProgrammingTree winner = newGeneration.getPopulation().elementAt(i);
+				toLog.info(testLabel + "[" + i + "]: Fitness=" + winner.getFitness() + "  \"" + winner + "\"");
+				assertTrue((testLabel + "[" + i + "]_Reproduced: "), testGeneration.getPopulation().contains(winner));
+				assertTrue((testLabel + "[" + i + "]_isValid: "), winner.isTreeValid());
+			}
+		} finally {
+			GPSettings.setMutationProbability(savedMutationProbability);
+		}
+	}
 
-		GPGeneration newGeneration = new GPGeneration();
-		Vector<GeneticProgrammingTree> newRepro = new Vector<GeneticProgrammingTree>();
-		newRepro.addAll(testGeneration.reproduction());
-		Collections.sort(newRepro);
-		newGeneration.setPopulation(newRepro);
-		toLog.info(testLabel + "_newGeneration[size=" + newGeneration.getPopulation().size() + "]: \n" + newGeneration);
+	/**
+	 * @return the string representations of the individuals of the next generation bred from a fresh generation
+	 */
+	private Vector<String> breedNextGeneration() throws GPException {
+		Integer savedPopulationSize = GPSettings.getPopulationSize();
+		Double savedMutationProbability = GPSettings.getMutationProbability();
+		GenerationMethod savedGenerationMethod = GenerationMethod.valueOf(GPSettings.getGenerationMethod());
+		ReproductionMethod savedReproductionMethod = ReproductionMethod.valueOf(GPSettings.getReproductionMethod());
+		GPSettings.setPopulationSize(20);
+		GPSettings.setMutationProbability(0.5);
+		GPSettings.setGenerationMethod(GenerationMethod.RAMPED_HALF_AND_HALF);
+		GPSettings.setReproductionMethod(ReproductionMethod.TOURNAMENT_SELECTION);
+		try {
+			GPSettings.setRandomSeed("12345");
+			GPGeneration testGeneration = new GPGeneration();
+			testGeneration.init();
+			Vector<String> population = new Vector<String>();
+			for (GeneticProgrammingTree individual : testGeneration.nextGeneration(false).getPopulation()) {
+				population.add(individual.toString() + "  fitness=" + individual.getFitness());
+			}
+			return population;
+		} finally {
+			GPSettings.setPopulationSize(savedPopulationSize);
+			GPSettings.setMutationProbability(savedMutationProbability);
+			GPSettings.setGenerationMethod(savedGenerationMethod);
+			GPSettings.setReproductionMethod(savedReproductionMethod);
+		}
+	}
 
-		/*
-		 * Test for the First Tree in the Selection:
-		 */
-		String treeDump = new String("(((-4*-5)/(8+9))/((-8-5)*(1/-5)))/(((-8-9)-(-8*-7))-((-1-8)+(4+x)))");
-		Integer treeHeight = new Integer(4);
-		FitnessDatum fitnessScore = new FitnessDatum(Double.parseDouble("24.520037959463608"));
-		toLog.info(testLabel + "[0]: Height=" + newGeneration.getPopulation().firstElement().getHeight()
-				+ "  [Compare=" + treeHeight + "]");
-		toLog.info(testLabel + "[0]: Fitness=" + newGeneration.getPopulation().firstElement().getFitness()
-				+ "  [Compare=" + fitnessScore + "]");
-		toLog.info(testLabel + "[0]: \"" + newGeneration.getPopulation().firstElement() + "\"  [Compare=\"" + treeDump
-				+ "\"]\n");
-		assertEquals((testLabel + "[0]_Height: "), treeHeight, newGeneration.getPopulation().firstElement().getHeight());
-		assertEquals((testLabel + "[0]_Fitness: "), fitnessScore, newGeneration.getPopulation().firstElement()
-				.getFitness());
-		assertEquals((testLabel + "[0]: "), treeDump, newGeneration.getPopulation().firstElement().toString());
+	@Test
+	public void testLinearGenome() throws GPException {
+		Vector<String> expectedPopulation = breedNextGeneration();
+		GPSettings.setLinearGenomeEnabled(true);
+		try {
+			Vector<String> genomePopulation = breedNextGeneration();
+			toLog.info("linearGenome[size=" + genomePopulation.size() + "]: " + genomePopulation);
+			assertEquals("linearGenome_Population", expectedPopulation, genomePopulation);
+		} finally {
+			GPSettings.setLinearGenomeEnabled(false);
+		}
+
+		// The binary format must round trip back into the exact same expression tree.
+		GeneticProgrammingTree individual = GPTreeFactory.generateGrowTree(GPSettings.getMaxHtOfCrossoverTree());
+		LinearGenome genome = LinearGenome.fromByteArray(individual.getGenome().toByteArray());
+		assertEquals("linearGenome_Binary", individual.toString(), new GeneticProgrammingTree(genome).toString());
+		assertEquals("linearGenome_Height", individual.getHeight().intValue(), genome.getHeight());
+
+		// The tree of a genome answers from the genome alone, and must agree with the expression tree it decodes into.
+		GeneticProgrammingTree genomeTree = new GeneticProgrammingTree(genome);
+		assertEquals("linearGenome_LazyHeight", individual.getHeight(), genomeTree.getHeight());
+		assertEquals("linearGenome_LazySize", individual.getSize(), genomeTree.getSize());
+		assertEquals("linearGenome_LazyHash", individual.getStructuralHash(), genomeTree.getStructuralHash());
+		assertEquals("linearGenome_LazyProgram", individual.getProgram(), genomeTree.getProgram());
+		assertTrue("linearGenome_LazySame", genomeTree.isSameExpression(individual));
+		assertEquals("linearGenome_LazyString", individual.toString(), genomeTree.toString());
+	}
 
-		/*
-		 * Test for the Second Tree in the Population:
-		 */
-		treeDump = new String("(((6--4)+(-8+-8))+((1*-1)/(-8*-9)))/(((4*-5)*(3--5))+((-8/-1)-(6*x)))");
-		treeHeight = new Integer(4);
-		fitnessScore = new FitnessDatum(Double.parseDouble("24.536481149407052"));
-		toLog.info(testLabel + "[1]: Height=" + newGeneration.getPopulation().elementAt(1).getHeight() + "  [Compare="
-				+ treeHeight + "]");
-		toLog.info(testLabel + "[1]: Fitness=" + newGeneration.getPopulation().elementAt(1).getFitness()
-				+ "  [Compare=" + fitnessScore + "]");
-		toLog.info(testLabel + "[1]: \"" + newGeneration.getPopulation().elementAt(1) + "\"  [Compare=\"" + treeDump
-				+ "\"]\n");
-		assertEquals((testLabel + "[1]_Height: "), treeHeight, newGeneration.getPopulation().elementAt(1).getHeight());
-		assertEquals((testLabel + "[1]_Fitness: "), fitnessScore, newGeneration.getPopulation().elementAt(1)
-				.getFitness());
-		assertEquals((testLabel + "[1]: "), treeDump, newGeneration.getPopulation().elementAt(1).toString());
+	@Test
+	public void testPersistentTrees() throws GPException {
+		Vector<String> expectedPopulation = breedNextGeneration();
+		GPSettings.setPersistentTreesEnabled(true);
+		try {
+			Vector<String> persistentPopulation = breedNextGeneration();
+			toLog.info("persistentTrees[size=" + persistentPopulation.size() + "]: " + persistentPopulation);
+			assertEquals("persistentTrees_Population", expectedPopulation, persistentPopulation);
+
+			// Clones share the whole persistent tree, and a replacement only rebuilds the path up to the root.
+			GeneticProgrammingTree individual = GPTreeFactory.generateFullTree(3);
+			GeneticProgrammingTree clone = (GeneticProgrammingTree) individual.clone();
+			assertSame("persistentTrees_Clone", individual.getPersistentRoot(), clone.getPersistentRoot());
+			assertEquals("persistentTrees_CloneString", individual.toString(), clone.toString());
+
+			PersistentNode root = individual.getPersistentRoot();
+			PersistentNode offspring = root.replace(0, PersistentNode.variable());
+			assertSame("persistentTrees_Shared", root.getRightChild(), offspring.getRightChild());
+			assertSame("persistentTrees_Flyweight", PersistentNode.variable(), offspring.getNode(0));
+			assertSame("persistentTrees_Flyweight", PersistentNode.constant(7), PersistentNode.constant(7));
+			assertEquals("persistentTrees_Size", root.size(), offspring.size());
+		} finally {
+			GPSettings.setPersistentTreesEnabled(false);
+		}
+	}
 
-		/*
-		 * Test for the Third Tree in the Population:
-		 */
-		treeDump = new String("(((8/1)+(0-0))-((4*-7)-(7*1)))/(((-4--3)/(2+9))+((8--4)*(-4*9)))");
-		treeHeight = new Integer(4);
-		fitnessScore = new FitnessDatum(Double.parseDouble("24.7985482852935"));
-		toLog.info(testLabel + "[2]: Height=" + newGeneration.getPopulation().elementAt(2).getHeight() + "  [Compare="
-				+ treeHeight + "]");
-		toLog.info(testLabel + "[2]: Fitness=" + newGeneration.getPopulation().elementAt(2).getFitness()
-				+ "  [Compare=" + fitnessScore + "]");
-		toLog.info(testLabel + "[2]: \"" + newGeneration.getPopulation().elementAt(2) + "\"  [Compare=\"" + treeDump
-				+ "\"]\n");
-		assertEquals((testLabel + "[2]_Height: "), treeHeight, newGeneration.getPopulation().elementAt(2).getHeight());
-		assertEquals((testLabel + "[2]_Fitness: "), fitnessScore, newGeneration.getPopulation().elementAt(2)
-				.getFitness());
-		assertEquals((testLabel + "[2]: "), treeDump, newGeneration.getPopulation().elementAt(2).toString());
+	/**
+	 * @return a fresh generation initialized from the random seed of the tests
+	 */
+	private static GPGeneration initGeneration() {
+		GPSettings.setRandomSeed("12345");
+		GPGeneration generation = new GPGeneration();
+		generation.init();
+		return generation;
+	}
 
-		/*
-		 * Test for the Forth Tree in the Population:
-		 */
-		treeDump = new String("(((-4*-1)+(3--3))+((8*2)-(3--5)))/(((5/-5)-(-2--7))*((9+x)-(2*-7)))");
-		treeHeight = new Integer(4);
-		fitnessScore = new FitnessDatum(Double.parseDouble("24.904738377564463"));
-		toLog.info(testLabel + "[3]: Height=" + newGeneration.getPopulation().elementAt(3).getHeight() + "  [Compare="
-				+ treeHeight + "]");
-		toLog.info(testLabel + "[3]: Fitness=" + newGeneration.getPopulation().elementAt(3).getFitness()
-				+ "  [Compare=" + fitnessScore + "]");
-		toLog.info(testLabel + "[3]: \"" + newGeneration.getPopulation().elementAt(3) + "\"  [Compare=\"" + treeDump
-				+ "\"]\n");
-		assertEquals((testLabel + "[3]_Height: "), treeHeight, newGeneration.getPopulation().elementAt(3).getHeight());
-		assertEquals((testLabel + "[3]_Fitness: "), fitnessScore, newGeneration.getPopulation().elementAt(3)
-				.getFitness());
-		assertEquals((testLabel + "[3]: "), treeDump, newGeneration.getPopulation().elementAt(3).toString());
+	/**
+	 * Evolve the generation by tournament selection over five generations, injecting new DNA into the fourth one.
+	 * 
+	 * @param aGeneration the initialized generation to evolve from
+	 * @return the string representations (with their complete fitness) of the individuals of every generation
+	 */
+	private static Vector<String> evolveGenerations(GPGeneration aGeneration) throws GPException {
+		ReproductionMethod savedReproductionMethod = ReproductionMethod.valueOf(GPSettings.getReproductionMethod());
+		GPSettings.setReproductionMethod(ReproductionMethod.TOURNAMENT_SELECTION);
+		try {
+			Vector<String> population = new Vector<String>();
+			GPGeneration generation = aGeneration;
+			for (int i = 0; i < 5; i++) {
+				generation = generation.nextGeneration(i == 3);
+				for (GeneticProgrammingTree individual : generation.getPopulation()) {
+					individual.completeFitness();
+					population.add(individual + "  fitness=" + individual.getFitness() + "  isValid="
+							+ individual.isTreeValid());
+				}
+			}
+			return population;
+		} finally {
+			GPSettings.setReproductionMethod(savedReproductionMethod);
+		}
+	}
 
-		/*
-		 * Test for the Fifth Tree in the Population:
-		 */
-		treeDump = new String("(((2/5)-(-1/-1))+((6/9)-(5/2)))+(((-9-4)/(7*7))-((7*-1)-(-6/1)))");
-		treeHeight = new Integer(4);
-		fitnessScore = new FitnessDatum(Double.parseDouble("31.993197278911566"));
-		toLog.info(testLabel + "[4]: Height=" + newGeneration.getPopulation().elementAt(4).getHeight() + "  [Compare="
-				+ treeHeight + "]");
-		toLog.info(testLabel + "[4]: Fitness=" + newGeneration.getPopulation().elementAt(4).getFitness()
-				+ "  [Compare=" + fitnessScore + "]");
-		toLog.info(testLabel + "[4]: \"" + newGeneration.getPopulation().elementAt(4) + "\"  [Compare=\"" + treeDump
-				+ "\"]\n");
-		assertEquals((testLabel + "[4]_Height: "), treeHeight, newGeneration.getPopulation().elementAt(4).getHeight());
-		assertEquals((testLabel + "[4]_Fitness: "), fitnessScore, newGeneration.getPopulation().elementAt(4)
-				.getFitness());
-		assertEquals((testLabel + "[4]: "), treeDump, newGeneration.getPopulation().elementAt(4).toString());
+	@Test
+	public void testEarlyAbort() throws GPException {
+		GPSettings.setPopulationSize(40);
+		useWideTrainingData();
+		try {
+			Vector<String> expectedPopulation = evolveGenerations(initGeneration());
+			GPSettings.setEarlyAbortEnabled(true);
+			Vector<String> earlyAbortPopulation = evolveGenerations(initGeneration());
+			assertEquals("earlyAbort_Population", expectedPopulation, earlyAbortPopulation);
+
+			// The poor offspring of the next generation only get a lower bound of their fitness.
+			int lowerBoundCount = 0;
+			for (GeneticProgrammingTree individual : initGeneration().nextGeneration(false).getPopulation()) {
+				lowerBoundCount += individual.getFitness().isLowerBound() ? 1 : 0;
+			}
+			toLog.info("earlyAbort[lowerBoundCount=" + lowerBoundCount + "]: " + earlyAbortPopulation.lastElement());
+			assertTrue("earlyAbort_LowerBounds", lowerBoundCount > 0);
+		} finally {
+			GPSettings.setEarlyAbortEnabled(false);
+		}
 	}
 
 	@Test
-	public void testMutate() {
-		GPSettings.setPopulationSize(10);
-		GPSettings.setMaxHtOfInitTree(3);
-		GPSettings.setGenerationMethod(GenerationMethod.FULL);
-		GPSettings.setMutationProbability(0.50);
-		GPSettings.setMaxHtOfMutationSubtree(2);
+	public void testParallelScoring() throws GPException {
+		GPSettings.setPopulationSize(40);
+		useWideTrainingData();
+		try {
+			Vector<String> expectedPopulation = evolveGenerations(initGeneration());
+			GPSettings.setScoringThreads(4);
+			Vector<String> parallelPopulation = evolveGenerations(initGeneration());
+			assertEquals("parallelScoring_Population", expectedPopulation, parallelPopulation);
+		} finally {
+			GPSettings.setScoringThreads(Integer.parseInt(GPSettings._DEFAULT_SCORING_THREADS));
+		}
+	}
 
-		String testLabel = "Mutation";
+	@Test
+	public void testParallelBreeding() throws GPException {
+		GPSettings.setPopulationSize(100);
+		useWideTrainingData();
+		try {
+			Vector<String> expectedPopulation = evolveGenerations(initGeneration());
+			for (int breedingThreads : new int[] { 2, 4 }) {
+				GPSettings.setBreedingThreads(breedingThreads);
+				Vector<String> population = evolveGenerations(initGeneration());
+				toLog.info("parallelBreeding[threads=" + breedingThreads + "]: " + population.firstElement());
+				assertEquals("parallelBreeding_Population[threads=" + breedingThreads + "]", expectedPopulation,
+						population);
+			}
+		} finally {
+			GPSettings.setBreedingThreads(Integer.parseInt(GPSettings._DEFAULT_BREEDING_THREADS));
+		}
+	}
 
-		GPGeneration mutateGen = new GPGeneration();
-		mutateGen.init();
-		Vector<GeneticProgrammingTree> mutatePop = mutateGen.getPopulation();
+	@Test
+	public void testPopulationArena() throws GPException {
+		GPSettings.setPopulationSize(100);
+		useWideTrainingData();
+		try {
+			Vector<String> expectedPopulation = evolveGenerations(initGeneration());
+			GPSettings.setPopulationArenaEnabled(true);
+			for (int breedingThreads : new int[] { 1, 2 }) {
+				GPSettings.setBreedingThreads(breedingThreads);
+				Vector<String> population = evolveGenerations(initGeneration());
+				toLog.info("populationArena[threads=" + breedingThreads + "]: " + population.firstElement());
+				assertEquals("populationArena_Population[threads=" + breedingThreads + "]", expectedPopulation,
+						population);
+			}
+		} finally {
+			GPSettings.setPopulationArenaEnabled(false);
+			GPSettings.setBreedingThreads(Integer.parseInt(GPSettings._DEFAULT_BREEDING_THREADS));
+		}
+	}
 
-		toLog.info(testLabel + "_BEFORE" + "[size=" + mutatePop.size() + "]: \n" +
-				mutateGen);
+	@Test
+	public void testOffHeapArena() throws GPException {
+		GPSettings.setPopulationSize(100);
+		useWideTrainingData();
+		try {
+			Vector<String> expectedPopulation = evolveGenerations(initGeneration());
+			GPSettings.setOffHeapArenaEnabled(true);
+			for (int breedingThreads : new int[] { 1, 2 }) {
+				GPSettings.setBreedingThreads(breedingThreads);
+				Vector<String> population = evolveGenerations(initGeneration());
+				toLog.info("offHeapArena[threads=" + breedingThreads + "]: " + population.firstElement());
+				assertEquals("offHeapArena_Population[threads=" + breedingThreads + "]", expectedPopulation,
+						population);
+			}
+		} finally {
+			GPSettings.setOffHeapArenaEnabled(false);
+			GPSettings.setBreedingThreads(Integer.parseInt(GPSettings._DEFAULT_BREEDING_THREADS));
+		}
+	}
 
-		mutateGen.mutate();
-		toLog.info(testLabel + "_AFTER" + "[size=" + mutatePop.size() + "]: \n" +
-				 mutateGen);
+	@Test
+	public void testThreadSettings() throws Exception {
+		Integer savedTournamentSize = GPSettings.getTournamentSize();
+		GPSettings.setPopulationSize(100);
+		GPSettings.setBreedingThreads(2);
+		useWideTrainingData();
+		try {
+			GPSettings.setTournamentSize(3);
+			Vector<String> expectedPopulation = evolveGenerations(initGeneration());
+
+			// Evolve the same seeded run on a thread with its own snapshot of the Settings, whose tournament size the
+			// breeding threads have to use rather than the (different) tournament size of the Settings.
+			final Properties snapshot = GPSettings.getProperties();
+			GPSettings.setTournamentSize(7);
+			GPSettings.setRandomSeed("12345");
+			final Vector<Vector<String>> snapshotPopulation = new Vector<Vector<String>>();
+			final Vector<Exception> failures = new Vector<Exception>();
+			Thread job = new Thread() {
+				@Override
+				public void run() {
+					GPSettings.setThreadSettings(snapshot);
+					try {
+						GPGeneration generation = new GPGeneration();
+						generation.init();
+						snapshotPopulation.add(evolveGenerations(generation));
+					} catch (GPException e) {
+						failures.add(e);
+					} finally {
+						GPSettings.setThreadSettings(null);
+					}
+				}
+			};
+			job.start();
+			job.join();
+			assertEquals("threadSettings_Failures", 0, failures.size());
+			assertEquals("threadSettings_Population", expectedPopulation, snapshotPopulation.firstElement());
+			assertFalse("threadSettings_TournamentSize", expectedPopulation.equals(evolveGenerations(initGeneration())));
+		} finally {
+			GPSettings.setTournamentSize(savedTournamentSize);
+			GPSettings.setBreedingThreads(Integer.parseInt(GPSettings._DEFAULT_BREEDING_THREADS));
+		}
+	}
 
-		/*
-		 * Test for the First Tree in the Mutated Selection:
-		 */
-		String treeDump = new String("((-1/6)*(6+-6))-((8+-7)+(-3-3))");
-		Integer treeHeight = new Integer(3);
-		FitnessDatum fitnessScore = new FitnessDatum(Double.parseDouble("29.5"));
-		toLog.info(testLabel + "[0]: Height=" + mutatePop.firstElement().getHeight() + "  [Compare=" + treeHeight + "]");
-		toLog.info(testLabel + "[0]: Fitness_Mutated=" + mutatePop.firstElement().getFitness() + "  [Compare=*Invalid]");
-		assertEquals((testLabel + "[0]_Fitness_Mutated: "), "*Invalid", mutatePop.firstElement().getFitness().toString());
-		mutatePop.firstElement().calculateFitness();
-		toLog.info(testLabel + "[0]: Fitness_Recalculated=" + mutatePop.firstElement().getFitness() + "  [Compare="	+ fitnessScore + "]");
-		toLog.info(testLabel + "[0]: \"" + mutatePop.firstElement() + "\"  [Compare=\"" + treeDump + "\"]\n");
-		assertEquals((testLabel + "[0]_Height: "), treeHeight, mutatePop.firstElement().getHeight());
-		assertEquals((testLabel + "[0]_Fitness_Recalculated: "), fitnessScore, mutatePop.firstElement().getFitness());
-		assertEquals((testLabel + "[0]: "), treeDump, mutatePop.firstElement().toString());
+	@Test
+	public void testIslandModel() throws GPException {
+		GPSettings.setPopulationSize(50);
+		GPSettings.setIslandCount(4);
+		GPSettings.setMigrationTopology(MigrationTopology.FULLY_CONNECTED);
+		useWideTrainingData();
+		try {
+			FitnessDatum fitnessGoal = new FitnessDatum(0.0);
+			Vector<Vector<String>> runs = new Vector<Vector<String>>();
+			for (int run = 0; run < 2; run++) {
+				GPSettings.setRandomSeed("12345");
+				IslandModel islands = new IslandModel();
+				Vector<String> populations = new Vector<String>();
+				try {
+					islands.init();
+					for (int i = 0; i < 3; i++) {
+						assertEquals("islandModel_Generations", 3, islands.evolve(3, fitnessGoal));
+					}
+					assertEquals("islandModel_Islands", 4, islands.getGenerations().size());
+					for (GPGeneration generation : islands.getGenerations()) {
+						for (GeneticProgrammingTree individual : generation.getPopulation()) {
+							populations.add(individual + "  fitness=" + individual.getFitness());
+						}
+					}
+					populations.add("best=" + islands.getBestIndividual().getFitness());
+				} finally {
+					islands.shutdown();
+				}
+				runs.add(populations);
+			}
+			toLog.info("islandModel[size=" + runs.firstElement().size() + "]: " + runs.firstElement().lastElement());
+			assertEquals("islandModel_Population", runs.firstElement(), runs.lastElement());
+		} finally {
+			GPSettings.setIslandCount(Integer.parseInt(GPSettings._DEFAULT_ISLAND_COUNT));
+			GPSettings.setMigrationTopology(MigrationTopology.valueOf(GPSettings._DEFAULT_MIGRATION_TOPOLOGY));
+		}
+	}
 
-		/*
-		 * Test for the Third Tree in the Mutated Selection:
-		 */
-		treeDump = new String("((-4/-3)*(3/2))*((7--7)*(9/9))");
-		treeHeight = new Integer(3);
-		fitnessScore = new FitnessDatum(Double.parseDouble("116.5"));
-		toLog.info(testLabel + "[2]: Height=" + mutatePop.elementAt(2).getHeight() + "  [Compare=" + treeHeight + "]");
-		toLog.info(testLabel + "[2]: Fitness_Mutated=" + mutatePop.elementAt(2).getFitness() + "  [Compare=*Invalid]");
-		assertEquals((testLabel + "[2]_Fitness_Mutated: "), "*Invalid", mutatePop.elementAt(2).getFitness().toString());
-		mutatePop.elementAt(2).calculateFitness();
-		toLog.info(testLabel + "[2]: Fitness_Recalculated=" + mutatePop.elementAt(2).getFitness() + "  [Compare=" + fitnessScore + "]");
-		toLog.info(testLabel + "[2]: \"" + mutatePop.elementAt(2) + "\"  [Compare=\"" + treeDump + "\"]\n");
-		assertEquals((testLabel + "[2]_Height: "), treeHeight, mutatePop.elementAt(2).getHeight());
-		assertEquals((testLabel + "[2]_Fitness_Recalculated: "), fitnessScore, mutatePop.elementAt(2).getFitness());
-		assertEquals((testLabel + "[2]: "), treeDump, mutatePop.elementAt(2).toString());
+	@Test
+	public void testMigrationCoordinator() throws Exception {
+		Integer savedMaxGenerations = GPSettings.getMaxGenerations();
+		GPSettings.setPopulationSize(50);
+		GPSettings.setMaxGenerations(7);
+		GPSettings.setMigrationInterval(3);
+		useWideTrainingData();
+		try {
+			Vector<String> results = new Vector<String>();
+			for (int run = 0; run < 2; run++) {
+				GPSettings.setRandomSeed("12345");
+				final MigrationCoordinator coordinator = new MigrationCoordinator(2);
+				final Vector<Exception> failures = new Vector<Exception>();
+				Vector<Thread> processes = new Vector<Thread>();
+				for (int i = 0; i < 2; i++) {
+					// Run the island processes on threads of this JVM (sharing the very same Settings).
+					processes.add(new Thread() {
+						@Override
+						public void run() {
+							try {
+								new IslandProcess(coordinator.getPort()).run();
+							} catch (GPException e) {
+								failures.add(e);
+							}
+						}
+					});
+					processes.lastElement().start();
+				}
+				GeneticProgrammingTree bestIndividual = coordinator.run();
+				for (Thread process : processes) {
+					process.join();
+				}
+				coordinator.close();
+				assertEquals("migrationCoordinator_Failures", 0, failures.size());
+				assertTrue("migrationCoordinator_Generations", coordinator.getGenerationCount() <= 7);
+				assertTrue("migrationCoordinator_First",
+						bestIndividual.compareTo(coordinator.getFirstBestIndividual()) <= 0);
+				results.add(coordinator.getGenerationCount() + ": " + bestIndividual + "  fitness="
+						+ bestIndividual.getFitness());
+			}
+			toLog.info("migrationCoordinator[generation " + results.firstElement() + "]");
+			assertEquals("migrationCoordinator_Best", results.firstElement(), results.lastElement());
+		} finally {
+			GPSettings.setMigrationInterval(Integer.parseInt(GPSettings._DEFAULT_MIGRATION_INTERVAL));
+			GPSettings.setMaxGenerations(savedMaxGenerations);
+		}
+	}
 
-		/*
-		 * Test for the Fifth Tree in the Mutated Selection:
-		 */
-		treeDump = new String("-1*(-8*8)");
-		treeHeight = new Integer(2);
-		fitnessScore = new FitnessDatum(Double.parseDouble("296.5"));
-		toLog.info(testLabel + "[4]: Height=" + mutatePop.elementAt(4).getHeight() + "  [Compare=" + treeHeight + "]");
-		toLog.info(testLabel + "[4]: Fitness_Mutated=" + mutatePop.elementAt(4).getFitness() + "  [Compare=*Invalid]");
-		assertEquals((testLabel + "[4]_Fitness_Mutated: "), "*Invalid", mutatePop.elementAt(4).getFitness().toString());
-		mutatePop.elementAt(4).calculateFitness();
-		toLog.info(testLabel + "[4]: Fitness_Recalculated=" + mutatePop.elementAt(4).getFitness() + "  [Compare=" + fitnessScore + "]");
-		toLog.info(testLabel + "[4]: \"" + mutatePop.elementAt(4) + "\"  [Compare=\"" + treeDump + "\"]\n");
-		assertEquals((testLabel + "[4]_Height: "), treeHeight, mutatePop.elementAt(4).getHeight());
-		assertEquals((testLabel + "[4]_Fitness_Recalculated: "), fitnessScore, mutatePop.elementAt(4).getFitness());
-		assertEquals((testLabel + "[4]: "), treeDump, mutatePop.elementAt(4).toString());
+	@Test
+	public void testEvaluationPool() throws Exception {
+		GPSettings.setPopulationSize(50);
+		useWideTrainingData();
+		try {
+			// Score the same seeded run within this JVM and then across (small batches to) the worker processes.
+			Vector<String> expectedPopulation = evolveGenerations(initGeneration());
+			GPSettings.setEvaluationWorkers(2);
+			GPSettings.setEvaluationBatchSize(7);
+			Vector<String> workerPopulation = evolveGenerations(initGeneration());
+			assertEquals("evaluationPool_Population", expectedPopulation, workerPopulation);
+		} finally {
+			EvaluationPool.getInstance().shutdown();
+			GPSettings.setEvaluationWorkers(Integer.parseInt(GPSettings._DEFAULT_EVALUATION_WORKERS));
+			GPSettings.setEvaluationBatchSize(Integer.parseInt(GPSettings._DEFAULT_EVALUATION_BATCH_SIZE));
+		}
+	}
 
-		/*
-		 * Test for the Seventh Tree in the Mutated Selection:
-		 */
-		treeDump = new String("((-2+2)/(((-4-5)*-4)*-3))-((1+-5)*(-8+7))");
-		treeHeight = new Integer(5);
-		fitnessScore = new FitnessDatum(Double.parseDouble("43.5"));
-		toLog.info(testLabel + "[6]: Height=" + mutatePop.elementAt(6).getHeight() + "  [Compare=" + treeHeight + "]");
-		toLog.info(testLabel + "[6]: Fitness_Mutated=" + mutatePop.elementAt(6).getFitness() + "  [Compare=*Invalid]");
-		assertEquals((testLabel + "[6]_Fitness_Mutated: "), "*Invalid", mutatePop.elementAt(6).getFitness().toString());
-		mutatePop.elementAt(6).calculateFitness();
-		toLog.info(testLabel + "[6]: Fitness_Recalculated=" + mutatePop.elementAt(6).getFitness() + "  [Compare=" + fitnessScore + "]");
-		toLog.info(testLabel + "[6]: \"" + mutatePop.elementAt(6) + "\"  [Compare=\"" + treeDump + "\"]\n");
-		assertEquals((testLabel + "[6]_Height: "), treeHeight, mutatePop.elementAt(6).getHeight());
-		assertEquals((testLabel + "[6]_Fitness_Recalculated: "), fitnessScore, mutatePop.elementAt(6).getFitness());
-		assertEquals((testLabel + "[6]: "), treeDump, mutatePop.elementAt(6).toString());
+	@Test
+	public void testSteadyState() throws Exception {
+		GPSettings.setPopulationSize(50);
+		useWideTrainingData();
+		FitnessDatum fitnessGoal = new FitnessDatum(0.0); // Never reached, so every birth gets bred
+		try {
+			// A single thread gives the same live population for a seed.
+			Vector<String> results = new Vector<String>();
+			GPSettings.setSteadyStateThreads(1);
+			for (int run = 0; run < 2; run++) {
+				GPGeneration generation = initGeneration();
+				assertEquals("steadyState_Births", 250, generation.evolveSteadyState(250, fitnessGoal));
+				results.add(generation.toString());
+			}
+			assertEquals("steadyState_Population", results.firstElement(), results.lastElement());
+
+			// Any number of threads keeps the size of the population and never loses the best individual.
+			GPSettings.setSteadyStateThreads(4);
+			GPGeneration generation = initGeneration();
+			int populationSize = generation.getPopulation().size();
+			GeneticProgrammingTree firstBestIndividual = generation.getBestIndividual();
+			assertEquals("steadyState_ThreadedBirths", 500, generation.evolveSteadyState(500, fitnessGoal));
+			assertEquals("steadyState_Size", populationSize, generation.getPopulation().size());
+			assertTrue("steadyState_Best", generation.getBestIndividual().compareTo(firstBestIndividual) <= 0);
+		} finally {
+			GPSettings.setSteadyStateThreads(Integer.parseInt(GPSettings._DEFAULT_STEADY_STATE_THREADS));
+		}
+	}
 
-		/*
-		 * Test for the Eighth Tree in the Mutated Selection:
-		 */
-		treeDump = new String("((1/5)/(-6+3))/((-9--3)+(-5*-6))");
-		treeHeight = new Integer(3);
-		fitnessScore = new FitnessDatum(Double.parseDouble("24.508333333333333"));
-		toLog.info(testLabel + "[7]: Height=" + mutatePop.elementAt(7).getHeight() + "  [Compare=" + treeHeight + "]");
-		toLog.info(testLabel + "[7]: Fitness_Mutated=" + mutatePop.elementAt(7).getFitness() + "  [Compare=*Invalid]");
-		assertEquals((testLabel + "[7]_Fitness_Mutated: "), "*Invalid", mutatePop.elementAt(7).getFitness().toString());
-		mutatePop.elementAt(7).calculateFitness();
-		toLog.info(testLabel + "[7]: Fitness_Recalculated=" + mutatePop.elementAt(7).getFitness() + "  [Compare=" + fitnessScore + "]");
-		toLog.info(testLabel + "[7]: \"" + mutatePop.elementAt(7) + "\"  [Compare=\"" + treeDump + "\"]\n");
-		assertEquals((testLabel + "[7]_Height: "), treeHeight, mutatePop.elementAt(7).getHeight());
-		assertEquals((testLabel + "[7]_Fitness_Recalculated: "), fitnessScore, mutatePop.elementAt(7).getFitness());
-		assertEquals((testLabel + "[7]: "), treeDump, mutatePop.elementAt(7).toString());
+	@Test
+	public void testMutate() throws GPException {
+		Double savedMutationProbability = GPSettings.getMutationProbability();
+		Double savedCrossoverProbability = GPSettings.getCrossoverProbability();
+		ReproductionMethod savedReproductionMethod = ReproductionMethod.valueOf(GPSettings.getReproductionMethod());
+		GPSettings.setPopulationSize(10);
+		GPSettings.setMaxHtOfInitTree(3);
+		GPSettings.setCrossoverProbability(0.50);
+		GPSettings.setGenerationMethod(GenerationMethod.FULL);
+		GPSettings.setReproductionMethod(ReproductionMethod.NATURAL_SELECTION);
+		GPSettings.setMutationProbability(1.0);
+		GPSettings.setMaxHtOfMutationSubtree(2);
+
+		String testLabel = "Mutation";
+
+		try {
+			GPGeneration mutateGen = new GPGeneration();
+			mutateGen.init();
+			Vector<GeneticProgrammingTree> topIndividuals = new Vector<GeneticProgrammingTree>(
+					mutateGen.getPopulation());
+			Collections.sort(topIndividuals);
+			Vector<String> topIndividualDumps = new Vector<String>();
+			for (GeneticProgrammingTree individual : topIndividuals) {
+				topIndividualDumps.add(individual.toString());
+			}
+			toLog.info(testLabel + "_BEFORE" + "[size=" + mutateGen.getPopulation().size() + "]: \n" + mutateGen);
+
+			Vector<GeneticProgrammingTree> mutatePop = mutateGen.nextGeneration(false).getPopulation();
+			toLog.info(testLabel + "_AFTER" + "[size=" + mutatePop.size() + "]: \n" + mutatePop);
+
+			/*
+			 * The Reproduced Individuals are Mutated as Copies, so the Current Generation is Left Untouched:
+			 */
+			for (int i = 0; i < topIndividuals.size(); i++) {
+				assertEquals((testLabel + "_Current[" + i + "]: "), topIndividualDumps.elementAt(i), topIndividuals
+						.elementAt(i).toString());
+			}
+			int changedCount = 0;
+			for (int i = 0; i < 5; i++) {
+				assertTrue((testLabel + "[" + i + "]_Copy: "), mutatePop.elementAt(i) != topIndividuals.elementAt(i));
+				changedCount += mutatePop.elementAt(i).isSameExpression(topIndividuals.elementAt(i)) ? 0 : 1;
+			}
+			toLog.info(testLabel + "_Changed=" + changedCount + "  [Compare=>0]");
+			assertTrue((testLabel + "_Changed: "), changedCount > 0);
+
+			/*
+			 * Every Mutated Individual is Scored from Scratch (nothing is kept from before the mutation):
+			 */
+			for (int i = 0; i < mutatePop.size(); i++) {
+				GeneticProgrammingTree individual = mutatePop.elementAt(i);
+				GeneticProgrammingTree rescored = new GeneticProgrammingTree(individual.getPersistentRoot());
+				rescored.setTrainingData(individual.getTrainingData());
+				rescored.calculateFitness();
+				toLog.info(testLabel + "[" + i + "]: Fitness=" + individual.getFitness() + "  [Compare="
+						+ rescored.getFitness() + "]");
+				assertEquals((testLabel + "[" + i + "]_Fitness: "), rescored.getFitness(), individual.getFitness());
+				assertEquals((testLabel + "[" + i + "]_isValid: "), rescored.isTreeValid(), individual.isTreeValid());
+			}
+		} finally {
+			GPSettings.setMutationProbability(savedMutationProbability);
+			GPSettings.setCrossoverProbability(savedCrossoverProbability);
+			GPSettings.setReproductionMethod(savedReproductionMethod);
+		}
 	}
 }
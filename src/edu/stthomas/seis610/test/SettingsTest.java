@@ -3,6 +3,8 @@ package edu.stthomas.seis610.test;
 import static org.junit.Assert.assertEquals;
 
 import java.util.Arrays;
+import java.util.Properties;
+import java.util.Random;
 import java.util.Vector;
 import java.util.logging.ConsoleHandler;
 import java.util.logging.Handler;
@@ -17,6 +19,7 @@ import edu.stthomas.seis610.gp.GPGeneration.ReproductionMethod;
 import edu.stthomas.seis610.gp.GPSettings;
 import edu.stthomas.seis610.gp.TrainingData;
 import edu.stthomas.seis610.util.GPSimpleFormatter;
+import edu.stthomas.seis610.util.RandomStream;
 
 public class SettingsTest {
 	private static final Logger toLog = Logger.getLogger(GPGenericTest.class.getName());
@@ -308,4 +311,76 @@ public class SettingsTest {
 		assertEquals((updString + GPSettings._INPUT_TRAINING_DATA + ".Y"), Arrays.asList(updYOperands).toString(), vectorValues.toString());
 	}
 
+	@Test
+	public void testRandomStream() throws InterruptedException {
+		// The stream of the run gives exactly the same numbers as the legacy java.util.Random for the same seed.
+		Random expectedRandom = new Random(12345);
+		for (int bound : new int[] { 1, 2, 3, 7, 16, 100, 1000, Integer.MAX_VALUE }) {
+			for (int i = 0; i < 100; i++) {
+				assertEquals("nextInt[" + bound + "]", expectedRandom.nextInt(bound), GPSettings.getRandomInt(bound)
+						.intValue());
+			}
+		}
+		assertEquals("nextLong", expectedRandom.nextLong(), GPSettings.getRandomStream().nextLong());
+
+		// Splitting the streams in the same order always gives the same child streams, no matter which thread uses them.
+		RandomStream parent = new RandomStream(42);
+		RandomStream expectedParent = new RandomStream(42);
+		final RandomStream child = parent.split();
+		RandomStream expectedChild = expectedParent.split();
+		final int[] childDraws = new int[50];
+		Thread worker = new Thread() {
+			@Override
+			public void run() {
+				GPSettings.setThreadRandomStream(child);
+				for (int i = 0; i < childDraws.length; i++) {
+					childDraws[i] = GPSettings.getRandomInt(1000);
+				}
+			}
+		};
+		worker.start();
+		worker.join();
+		assertEquals("childDraws", Arrays.toString(expectedChild.nextInts(1000, new int[childDraws.length])),
+				Arrays.toString(childDraws));
+		assertEquals("parent", expectedParent.nextLong(), parent.nextLong());
+		assertEquals("runStream", expectedRandom.nextInt(100), GPSettings.getRandomInt(100).intValue());
+	}
+
+	@Test
+	public void testThreadSettings() throws InterruptedException {
+		final int populationSize = GPSettings.getPopulationSize();
+		final Properties snapshot = GPSettings.getProperties();
+		snapshot.setProperty(GPSettings._POPULATION_SIZE, Integer.toString(populationSize + 17));
+		final int[] threadSizes = new int[4];
+		final boolean[] sharedRejected = new boolean[1];
+		Thread worker = new Thread() {
+			@Override
+			public void run() {
+				GPSettings.setThreadSettings(snapshot);
+				threadSizes[0] = GPSettings.getPopulationSize();
+				threadSizes[1] = Integer.parseInt(GPSettings.getProperties().getProperty(GPSettings._POPULATION_SIZE));
+				GPSettings.setPopulationSize(populationSize + 23);
+				threadSizes[2] = GPSettings.getPopulationSize();
+				try {
+					GPSettings.setTrainingInputString("1,2,3");
+				} catch (IllegalStateException e) {
+					sharedRejected[0] = true;
+				}
+				GPSettings.setThreadSettings(null);
+				threadSizes[3] = GPSettings.getPopulationSize();
+			}
+		};
+		worker.start();
+		worker.join();
+
+		// Only the thread that is bound to the snapshot sees it (and its updates), and only until it is released again.
+		assertEquals("threadSize", populationSize + 17, threadSizes[0]);
+		assertEquals("threadProperties", populationSize + 17, threadSizes[1]);
+		assertEquals("threadUpdatedSize", populationSize + 23, threadSizes[2]);
+		assertEquals("snapshotSize", Integer.toString(populationSize + 23),
+				snapshot.getProperty(GPSettings._POPULATION_SIZE));
+		assertEquals("sharedRejected", true, sharedRejected[0]);
+		assertEquals("releasedSize", populationSize, threadSizes[3]);
+		assertEquals("populationSize", populationSize, GPSettings.getPopulationSize().intValue());
+	}
 }
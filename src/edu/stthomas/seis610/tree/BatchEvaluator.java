@@ -0,0 +1,256 @@
+package edu.stthomas.seis610.tree;
+
+import java.util.Arrays;
+
+import edu.stthomas.seis610.gp.TrainingColumns;
+
+//=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+/**
+ * Evaluates a compiled postfix program column-wise over the entire training set at once. Rather than executing the
+ * whole program once per training datum, each instruction computes its result for all of the training inputs into a
+ * column (double array) on the stack, so that every operator turns into a tight loop over primitive arrays. The
+ * standardized fitness (error) is summed up while the final (root) instruction is being computed so the result column
+ * of the root never needs to be stored.
+ * <p>
+ * The evaluation rules match those of {@link GeneticProgrammingTree#calculateFitness()}: once a training datum marks
+ * the tree as invalid, all of the following training data evaluate to the max value.
+ * <p>
+ * Note: The columns are reused between evaluations so an evaluator must not be shared between threads.
+ *
+ * @version 1.2
+ */
+// =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+public class BatchEvaluator {
+	private double[][] xBuffers = new double[0][];
+	private double[][] xStack = new double[0][];
+	private boolean xValid = true;
+	private int xFirstZeroDivisor;
+
+	/**
+	 * @return the indicator if the expression tree remained valid during the last evaluation
+	 */
+	public boolean isValid() {
+		return xValid;
+	}
+
+	/**
+	 * Evaluate the program over all of the training data and calculate its total standardized fitness.
+	 *
+	 * @param aProgram the compiled program of the expression tree to evaluate
+	 * @param aColumns the columns of the training data to evaluate the program against
+	 * @param aValid the indicator if the expression tree is still valid before the evaluation starts
+	 * @return the total standardized fitness of the expression tree
+	 */
+	public double evaluate(PostfixProgram aProgram, TrainingColumns aColumns, boolean aValid) {
+		final int size = aColumns.size();
+		final double[] inputs = aColumns.getInputs();
+		final double[] outputs = aColumns.getOutputs();
+
+		if (!aValid || size == 0) {
+			// An invalid tree simply evaluates to the max value for all of the training data.
+			xValid = aValid;
+			return reduce(null, Double.MAX_VALUE, outputs, size, -1);
+		}
+
+		ensureCapacity(aProgram.getMaxStackDepth(), size);
+		int firstInvalid = aProgram.isAlwaysInvalid() ? 0 : size;
+		int last = aProgram.getLength() - 1;
+		int top = -1;
+		for (int pc = 0; pc < last; pc++) {
+			int opcode = aProgram.getOpcode(pc);
+			switch (opcode) {
+			case PostfixProgram.OP_CONSTANT:
+				top++;
+				Arrays.fill(xBuffers[top], 0, size, aProgram.getConstant(pc));
+				xStack[top] = xBuffers[top];
+				break;
+			case PostfixProgram.OP_VARIABLE:
+				// No need to copy the inputs, simply refer to the column of the training data.
+				xStack[++top] = inputs;
+				break;
+			case PostfixProgram.OP_SIN:
+			case PostfixProgram.OP_COS:
+				firstInvalid = Math.min(firstInvalid,
+						applyOperator(opcode, xStack[top], null, xBuffers[top], size));
+				xStack[top] = xBuffers[top];
+				break;
+			default:
+				top--;
+				firstInvalid = Math.min(firstInvalid,
+						applyOperator(opcode, xStack[top], xStack[top + 1], xBuffers[top], size));
+				xStack[top] = xBuffers[top];
+			}
+		}
+
+		double standardizedFitness;
+		int opcode = aProgram.getOpcode(last);
+		switch (opcode) {
+		case PostfixProgram.OP_CONSTANT:
+			standardizedFitness = reduce(null, aProgram.getConstant(last), outputs, size, firstInvalid);
+			break;
+		case PostfixProgram.OP_VARIABLE:
+			standardizedFitness = reduce(inputs, 0, outputs, size, firstInvalid);
+			break;
+		case PostfixProgram.OP_ADD:
+		case PostfixProgram.OP_SUB:
+		case PostfixProgram.OP_MUL:
+		case PostfixProgram.OP_DIV:
+			// Fuse the root operator with the summation of the standardized fitness.
+			standardizedFitness = reduceOperator(opcode, xStack[0], xStack[1], outputs, size, firstInvalid);
+			firstInvalid = Math.min(firstInvalid, xFirstZeroDivisor);
+			break;
+		default:
+			// Unary and power operators are rare at the root, compute the column and then sum it up.
+			firstInvalid = Math.min(firstInvalid,
+					applyOperator(opcode, xStack[0], (top > 0 ? xStack[1] : null), xBuffers[0], size));
+			standardizedFitness = reduce(xBuffers[0], 0, outputs, size, firstInvalid);
+		}
+		xValid = (firstInvalid >= size);
+		return standardizedFitness;
+	}
+
+	/**
+	 * Make sure that there are enough columns (and each column is large enough) for the evaluation.
+	 *
+	 * @param aDepth the number of columns needed
+	 * @param aSize the number of training data values within each column
+	 */
+	private void ensureCapacity(int aDepth, int aSize) {
+		if (xBuffers.length < aDepth) {
+			xBuffers = Arrays.copyOf(xBuffers, aDepth);
+			xStack = new double[aDepth][];
+		}
+		for (int i = 0; i < aDepth; i++) {
+			if (xBuffers[i] == null || xBuffers[i].length < aSize) {
+				xBuffers[i] = new double[aSize];
+			}
+		}
+	}
+
+	/**
+	 * Compute the result column of a single operator.
+	 *
+	 * @param aOpcode the opcode of the operator
+	 * @param aLeft the column of the left operand
+	 * @param aRight the column of the right operand (null for unary operators)
+	 * @param aResult the column to store the results into (may be the same as the left operand)
+	 * @param aSize the number of training data values within each column
+	 * @return the index of the first training datum that divided by zero (or the size when none did)
+	 */
+	static int applyOperator(int aOpcode, double[] aLeft, double[] aRight, double[] aResult, int aSize) {
+		int firstZeroDivisor = aSize;
+		switch (aOpcode) {
+		case PostfixProgram.OP_ADD:
+			for (int i = 0; i < aSize; i++) {
+				aResult[i] = aLeft[i] + aRight[i];
+			}
+			break;
+		case PostfixProgram.OP_SUB:
+			for (int i = 0; i < aSize; i++) {
+				aResult[i] = aLeft[i] - aRight[i];
+			}
+			break;
+		case PostfixProgram.OP_MUL:
+			for (int i = 0; i < aSize; i++) {
+				aResult[i] = aLeft[i] * aRight[i];
+			}
+			break;
+		case PostfixProgram.OP_DIV:
+			for (int i = 0; i < aSize; i++) {
+				if (aRight[i] != 0) {
+					aResult[i] = aLeft[i] / aRight[i];
+				} else {
+					aResult[i] = Double.MAX_VALUE;
+					firstZeroDivisor = Math.min(firstZeroDivisor, i);
+				}
+			}
+			break;
+		case PostfixProgram.OP_SIN:
+			for (int i = 0; i < aSize; i++) {
+				aResult[i] = Math.sin(aLeft[i]);
+			}
+			break;
+		case PostfixProgram.OP_COS:
+			for (int i = 0; i < aSize; i++) {
+				aResult[i] = Math.cos(aLeft[i]);
+			}
+			break;
+		case PostfixProgram.OP_POW:
+			for (int i = 0; i < aSize; i++) {
+				aResult[i] = Math.pow(aLeft[i], Math.min(aRight[i], 20));
+			}
+			break;
+		}
+		return firstZeroDivisor;
+	}
+
+	/**
+	 * Compute the root operator and sum up the standardized fitness in the same pass over the columns.
+	 *
+	 * @param aOpcode the opcode of the (binary) root operator
+	 * @param aLeft the column of the left operand
+	 * @param aRight the column of the right operand
+	 * @param aOutputs the column of expected output training values
+	 * @param aSize the number of training data values within each column
+	 * @param aFirstInvalid the index of the first training datum that marked the tree invalid within the subtrees
+	 * @return the total standardized fitness of the expression tree
+	 */
+	private double reduceOperator(int aOpcode, double[] aLeft, double[] aRight, double[] aOutputs, int aSize,
+			int aFirstInvalid) {
+		double standardizedFitness = 0.0;
+		int firstInvalid = aFirstInvalid;
+		for (int i = 0; i < aSize; i++) {
+			double output;
+			if (i > firstInvalid) {
+				output = Double.MAX_VALUE;
+			} else {
+				switch (aOpcode) {
+				case PostfixProgram.OP_ADD:
+					output = aLeft[i] + aRight[i];
+					break;
+				case PostfixProgram.OP_SUB:
+					output = aLeft[i] - aRight[i];
+					break;
+				case PostfixProgram.OP_MUL:
+					output = aLeft[i] * aRight[i];
+					break;
+				default:
+					if (aRight[i] != 0) {
+						output = aLeft[i] / aRight[i];
+					} else {
+						output = Double.MAX_VALUE;
+						firstInvalid = i;
+					}
+				}
+			}
+			double fitness = Math.abs(aOutputs[i] - output);
+			if (!Double.isNaN(fitness)) {
+				standardizedFitness += fitness;
+			}
+		}
+		xFirstZeroDivisor = firstInvalid;
+		return standardizedFitness;
+	}
+
+	/**
+	 * Sum up the standardized fitness of a result column.
+	 *
+	 * @param aResults the result column of the expression tree (null when the result is the same constant value)
+	 * @param aConstant the constant result of the expression tree when there is no result column
+	 * @param aOutputs the column of expected output training values
+	 * @param aSize the number of training data values within each column
+	 * @param aFirstInvalid the index of the first training datum that marked the tree invalid
+	 * @return the total standardized fitness of the expression tree
+	 */
+	static double reduce(double[] aResults, double aConstant, double[] aOutputs, int aSize, int aFirstInvalid) {
+		double standardizedFitness = 0.0;
+		for (int i = 0; i < aSize; i++) {
+			double output = (i > aFirstInvalid) ? Double.MAX_VALUE : (aResults == null ? aConstant : aResults[i]);
+			double fitness = Math.abs(aOutputs[i] - output);
+			if (!Double.isNaN(fitness)) {
+				standardizedFitness += fitness;
+			}
+		}
+		return standardizedFitness;
+	}
+}
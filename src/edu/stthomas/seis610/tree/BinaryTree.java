@@ -51,14 +51,29 @@ public abstract class BinaryTree implements Cloneable {
 	 * @return the indicator if the expressions within the node tree are valid
 	 */
 	public Boolean isTreeValid() {
-		return xRoot.isTreeNodeValid();
+		return getRoot().isTreeNodeValid();
 	}
 
 	/**
 	 * @return an integer count of the height of the subtree
 	 */
 	public Integer getHeight() {
-		return xRoot.getHeight();
+		return getRoot().getHeight();
+	}
+
+	/**
+	 * @return the structural hash of the expression tree (equal expression trees always have the same hash)
+	 */
+	public int getStructuralHash() {
+		return getRoot().hashCode();
+	}
+
+	/**
+	 * @param aTree the other tree to compare against
+	 * @return true if both trees represent the same expression (the same operators and operands in the same positions)
+	 */
+	public boolean isSameExpression(BinaryTree aTree) {
+		return getRoot().equals(aTree.getRoot());
 	}
 
 	/**
@@ -69,7 +84,7 @@ public abstract class BinaryTree implements Cloneable {
 	 * @throws GPException
 	 */
 	public Double evaluate(TrainingData aTrainingDatum) throws GPException {
-		return xRoot.evaluateOutput(aTrainingDatum);
+		return getRoot().evaluateOutput(aTrainingDatum);
 	}
 
 	/**
@@ -78,9 +93,10 @@ public abstract class BinaryTree implements Cloneable {
 	 * @return a randomly selected node from the expression tree
 	 */
 	public BinaryTreeNode getRandomTreeNode() {
-		List<BinaryTreeNode> treeNodes = getPostOrderList();
-		Integer randomPosition = GPSettings.getRandomInt(treeNodes.size());
-		return treeNodes.get(randomPosition);
+		// Descend to the node with the random (post-order) rank using the cached subtree sizes, rather than building the
+		// list of all of the nodes within the tree.
+		Integer randomPosition = GPSettings.getRandomInt(getRoot().getSubtreeSize());
+		return getRoot().getNode(randomPosition);
 	}
 
 	/**
@@ -175,12 +191,19 @@ public abstract class BinaryTree implements Cloneable {
 		}
 	}
 
+	/**
+	 * @return a deep copy of the root node of the expression tree to assign to a clone of this tree
+	 */
+	protected BinaryTreeNode cloneRoot() {
+		return (BinaryTreeNode) getRoot().clone();
+	}
+
 	@Override
 	public Object clone() {
 		BinaryTree newTree = null;
 		try {
 			newTree = (BinaryTree) super.clone();
-			newTree.setRoot((BinaryTreeNode) getRoot().clone());
+			newTree.setRoot(cloneRoot());
 		} catch (CloneNotSupportedException e) {
 			e.printStackTrace();
 		}
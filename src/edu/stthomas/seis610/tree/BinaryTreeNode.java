@@ -1,5 +1,6 @@
 package edu.stthomas.seis610.tree;
 
+import edu.stthomas.seis610.gp.TrainingColumns;
 import edu.stthomas.seis610.gp.TrainingData;
 import edu.stthomas.seis610.util.GPException;
 
@@ -22,18 +23,26 @@ public abstract class BinaryTreeNode implements Cloneable {
 		ROOT, LEFT, RIGHT
 	};
 
-	protected Object xData;
 	protected BinaryTreeNode xLeftChild;
 	protected BinaryTreeNode xRightChild;
 	protected BinaryTreeNode xParent;
 	protected boolean xValidTreeNode;
 	protected NodeType xNodeType;
+	protected int xSubtreeSize = 1;
+	protected int xSubtreeHeight = 0;
+	protected int xStructuralHash = 0;
+
+	/**
+	 * The output column of the subtree over the training data, cached by the {@link IncrementalEvaluator}.
+	 */
+	protected double[] xOutputs;
+	protected int xFirstInvalid;
+	protected TrainingColumns xOutputColumns;
 
 	/**
 	 * Default constructor for this class.
 	 */
 	public BinaryTreeNode() {
-		xData = null;
 		xLeftChild = null;
 		xRightChild = null;
 		xParent = null;
@@ -41,18 +50,12 @@ public abstract class BinaryTreeNode implements Cloneable {
 	}
 
 	/**
+	 * The payload of each node is held in a primitive (or enum) field by the subclasses, so this method only provides a
+	 * generic (boxed) view of it for comparisons and display.
+	 * 
 	 * @returns the generic data object associated with this node
 	 */
-	public Object getData() {
-		return xData;
-	}
-
-	/**
-	 * @param aData the generic data object to assign to this node
-	 */
-	public void setData(Object aData) {
-		this.xData = aData;
-	}
+	abstract public Object getData();
 
 	/**
 	 * @returns the left child (or null) associated with this node
@@ -67,6 +70,7 @@ public abstract class BinaryTreeNode implements Cloneable {
 	 */
 	public void setLeftChild(BinaryTreeNode aChild) throws GPException {
 		this.xLeftChild = aChild;
+		updateSubtreeIndex();
 	}
 
 	/**
@@ -82,6 +86,7 @@ public abstract class BinaryTreeNode implements Cloneable {
 	 */
 	public void setRightChild(BinaryTreeNode aChild) throws GPException {
 		this.xRightChild = aChild;
+		updateSubtreeIndex();
 	}
 
 	/**
@@ -146,15 +151,63 @@ public abstract class BinaryTreeNode implements Cloneable {
 	 */
 	@Override
 	public boolean equals(Object aObject) {
-		return equals((BinaryTreeNode) aObject);
+		return (aObject instanceof BinaryTreeNode) && equals((BinaryTreeNode) aObject);
 	}
 
 	/**
+	 * Two nodes are equal when the subtrees starting at them represent the same expression: the same operators and
+	 * operands in the same positions. The cached structural hashes and sizes are compared first so that different
+	 * subtrees are almost always rejected without walking them.
+	 * 
 	 * @param aNode the other node to compare against
-	 * @returns true if the contents of the data in this node matches another node
+	 * @returns true if the subtree of this node matches the subtree of another node
 	 */
 	public boolean equals(BinaryTreeNode aNode) {
-		return this.getData().equals(aNode.getData());
+		if (this == aNode) {
+			return true;
+		}
+		if (aNode == null || xStructuralHash != aNode.xStructuralHash || xSubtreeSize != aNode.xSubtreeSize
+				|| !getData().equals(aNode.getData())) {
+			return false;
+		}
+		return (hasLeftChild() ? getLeftChild().equals(aNode.getLeftChild()) : !aNode.hasLeftChild())
+				&& (hasRightChild() ? getRightChild().equals(aNode.getRightChild()) : !aNode.hasRightChild());
+	}
+
+	/**
+	 * @returns the structural hash of the subtree starting at this node
+	 */
+	@Override
+	public int hashCode() {
+		return xStructuralHash;
+	}
+
+	/**
+	 * @returns the hash of the payload (operator or operand) of this node on its own
+	 */
+	protected abstract int getDataHash();
+
+	/**
+	 * Combine the hash of the payload of a node with the structural hashes of its children. The same function is used
+	 * by the {@link PersistentNode} so that both representations of an expression hash to the same value.
+	 * 
+	 * @param aOpcode the opcode (the same opcodes as the {@link PostfixProgram}) of the node
+	 * @param aConstant the constant operand value (only meaningful for {@link PostfixProgram#OP_CONSTANT})
+	 * @returns the hash of the payload of the node
+	 */
+	static int getDataHash(int aOpcode, double aConstant) {
+		long bits = Double.doubleToLongBits(aConstant);
+		return 31 * aOpcode + (int) (bits ^ (bits >>> 32));
+	}
+
+	/**
+	 * @param aDataHash the hash of the payload of the node
+	 * @param aLeftHash the structural hash of the left child (0 if there is none)
+	 * @param aRightHash the structural hash of the right child (0 if there is none)
+	 * @returns the structural hash of the subtree
+	 */
+	static int getStructuralHash(int aDataHash, int aLeftHash, int aRightHash) {
+		return 31 * (31 * aDataHash + aLeftHash) + aRightHash;
 	}
 
 	/**
@@ -169,6 +222,85 @@ public abstract class BinaryTreeNode implements Cloneable {
 	 */
 	public void setParent(BinaryTreeNode aNode) {
 		this.xParent = aNode;
+		if (aNode != null) {
+			aNode.updateSubtreeIndex();
+		}
+	}
+
+	/**
+	 * Recalculate the cached size, height and structural hash of the subtree starting at this node from those of its
+	 * children, and then walk up the tree through the parents until we reach a node whose cached values did not change
+	 * (or the root). This must be done whenever the children or the payload of a node change, which is why the child,
+	 * parent and payload setters invoke it.
+	 */
+	protected void updateSubtreeIndex() {
+		clearOutputs();
+		BinaryTreeNode node = this;
+		while (node != null) {
+			int size = 1;
+			int height = 0;
+			int leftHash = 0;
+			int rightHash = 0;
+			if (node.hasLeftChild()) {
+				size += node.xLeftChild.xSubtreeSize;
+				height = 1 + node.xLeftChild.xSubtreeHeight;
+				leftHash = node.xLeftChild.xStructuralHash;
+			}
+			if (node.hasRightChild()) {
+				size += node.xRightChild.xSubtreeSize;
+				height = Math.max(height, 1 + node.xRightChild.xSubtreeHeight);
+				rightHash = node.xRightChild.xStructuralHash;
+			}
+			int hash = getStructuralHash(node.getDataHash(), leftHash, rightHash);
+			if (size == node.xSubtreeSize && height == node.xSubtreeHeight && hash == node.xStructuralHash) {
+				break;
+			}
+			node.xSubtreeSize = size;
+			node.xSubtreeHeight = height;
+			node.xStructuralHash = hash;
+			node = node.xParent;
+		}
+	}
+
+	/**
+	 * Discard the cached output columns of this node and of all of the nodes above it, since they all depend upon the
+	 * subtree that has changed. The walk stops at the first node without an output column because the nodes above it
+	 * cannot have one either (the output columns are always computed from the bottom up).
+	 */
+	protected void clearOutputs() {
+		for (BinaryTreeNode node = this; node != null && node.xOutputs != null; node = node.xParent) {
+			node.xOutputs = null;
+			node.xOutputColumns = null;
+		}
+	}
+
+	/**
+	 * @returns an integer count of the number of nodes within the subtree (including this node)
+	 */
+	public int getSubtreeSize() {
+		return xSubtreeSize;
+	}
+
+	/**
+	 * Find a node within the subtree by its index in "post-order" (the order used by
+	 * {@link BinaryTree#getPostOrderList()}) by descending from this node using the cached subtree sizes.
+	 * 
+	 * @param aPostOrderIndex the index of the node in post-order
+	 * @returns the node at the index
+	 */
+	public BinaryTreeNode getNode(int aPostOrderIndex) {
+		BinaryTreeNode node = this;
+		int index = aPostOrderIndex;
+		while (index != node.xSubtreeSize - 1) {
+			// The left subtree comes first, followed by the right subtree and finally the node itself.
+			if (node.hasLeftChild() && index < node.xLeftChild.xSubtreeSize) {
+				node = node.xLeftChild;
+			} else {
+				index -= node.hasLeftChild() ? node.xLeftChild.xSubtreeSize : 0;
+				node = node.xRightChild;
+			}
+		}
+		return node;
 	}
 
 	/**
@@ -190,47 +322,65 @@ public abstract class BinaryTreeNode implements Cloneable {
 		BinaryTreeNode newNode = null;
 
 		try {
+			// The payload of the node is either primitive or immutable, so the shallow copy of it is all that is needed.
+			// The cached subtree index and (never modified) output columns are just as valid for the copy, so the
+			// children are assigned directly rather than through the setters that would discard them. The copy starts
+			// out detached from the parent of this node.
 			newNode = (BinaryTreeNode) super.clone();
-			if (newNode instanceof OperatorNode) {
-				newNode.setData(new String((String) newNode.getData()));				
-			}
-			else if (!((OperandNode)newNode).isVariable()) {
-				newNode.setData(new Double((Double) newNode.getData()));
-			}
+			newNode.xParent = null;
 			if (hasLeftChild()) {
-				newNode.setLeftChild((BinaryTreeNode) getLeftChild().clone());
-				newNode.getLeftChild().setParent(newNode);
+				newNode.xLeftChild = (BinaryTreeNode) getLeftChild().clone();
+				newNode.xLeftChild.xParent = newNode;
 			}
 			if (hasRightChild()) {
-				newNode.setRightChild((BinaryTreeNode) getRightChild().clone());
-				newNode.getRightChild().setParent(newNode);
+				newNode.xRightChild = (BinaryTreeNode) getRightChild().clone();
+				newNode.xRightChild.xParent = newNode;
 			}
 		} catch (CloneNotSupportedException e) {
 			e.printStackTrace();
-		} catch (GPException e) {
-			e.printStackTrace();
 		}
 		return newNode;
 	}
 
+	/**
+	 * Evaluate the expression represented by this node and return the result of that expression. When the evaluation
+	 * does not produce a valid result (or the node is already invalid), set the indicator that the tree will not produce
+	 * a valid result.
+	 * 
+	 * In the case of an invalid node, simply return a large (max) value back to the caller.
+	 * 
+	 * @param aTrainingDatum the input training value (X) to use during the evaluation of the function
+	 * @returns the evaluated result of the expression based upon the the type of operator in this node
+	 * @throws GPException
+	 */
+	public double evaluateOutput(TrainingData aTrainingDatum) throws GPException {
+		boolean[] valid = { isTreeNodeValid() };
+		double output = valid[0] ? evaluateOutput(aTrainingDatum, valid) : Double.MAX_VALUE;
+		if (!valid[0]) {
+			setTreeNodeInvalid();
+		}
+		return output;
+	}
+
 	/**
 	 * Recursively evaluate the expression represented by this node and return the result of that expression back up the
-	 * tree. Make sure to protect against an invalid division (divide by zero) and set the indicator that the tree will
-	 * not produce a valid result.
+	 * tree, without changing any of the nodes (so the same tree can be read by several threads at once). Make sure to
+	 * protect against an invalid division (divide by zero) and clear the valid indicator of the evaluation instead.
 	 * 
 	 * @param aTrainingDatum the input training value (X) to use during the evaluation of the function
+	 * @param aValid the (single element) indicator if the evaluation produced a valid result; it is only ever cleared
 	 * @returns the evaluated result of the expression based upon the the type of operator in this node
 	 * @throws GPException
 	 */
-	abstract public Double evaluateOutput(TrainingData aTrainingDatum) throws GPException;
+	abstract public double evaluateOutput(TrainingData aTrainingDatum, boolean[] aValid) throws GPException;
 
 	/**
 	 * @returns an integer count of the height of the subtree
 	 */
-	abstract public Integer getHeight();
+	abstract public int getHeight();
 
 	/**
 	 * @returns an integer count of the number of children this node contains
 	 */
-	abstract public Integer getNumberOfChildren();
+	abstract public int getNumberOfChildren();
 }
@@ -0,0 +1,57 @@
+package edu.stthomas.seis610.tree;
+
+//=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+/**
+ * The base class of the expressions that have been compiled into JVM bytecode by the {@link ExpressionCompiler}. Each
+ * compiled expression is its own (generated) class whose {@link #execute(double, double[])} method contains the
+ * straight-line code of the expression, so the JIT compiler can optimize it like any other hand written method.
+ * <p>
+ * The static helper methods below are invoked by the generated code for the operators that need more than a single
+ * bytecode instruction; they are small enough to always be inlined.
+ *
+ * @version 1.2
+ */
+// =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+public abstract class CompiledExpression {
+
+	/**
+	 * Default constructor for this class (invoked by the generated subclasses).
+	 */
+	public CompiledExpression() {
+	}
+
+	/**
+	 * Evaluate the compiled expression against a single input value.
+	 *
+	 * @param aInput the input value (X) to use during the evaluation of the function
+	 * @param aResult the array to return the result of the expression in (aResult[0])
+	 * @return true if the evaluation was valid, false if it would have marked the tree as invalid
+	 */
+	public abstract boolean execute(double aInput, double[] aResult);
+
+	/**
+	 * @param aDivisor the divisor of a division operator
+	 * @return 1 if the divisor can be used for a valid division, 0 if it would divide by zero
+	 */
+	public static int isValidDivisor(double aDivisor) {
+		return (aDivisor != 0) ? 1 : 0;
+	}
+
+	/**
+	 * @param aLeft the dividend of the division operator
+	 * @param aRight the divisor of the division operator
+	 * @return the result of the division, or the max value when dividing by zero
+	 */
+	public static double divide(double aLeft, double aRight) {
+		return (aRight != 0) ? aLeft / aRight : Double.MAX_VALUE;
+	}
+
+	/**
+	 * @param aLeft the base of the exponent operator
+	 * @param aRight the exponent of the exponent operator (capped at 20)
+	 * @return the result of the exponent operator
+	 */
+	public static double power(double aLeft, double aRight) {
+		return Math.pow(aLeft, Math.min(aRight, 20));
+	}
+}
@@ -0,0 +1,547 @@
+package edu.stthomas.seis610.tree;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Array;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Logger;
+
+//=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+/**
+ * Compiles an expression node tree (through its postfix program) into a brand new JVM class (a subclass of {@link CompiledExpression}) whose execute
+ * method is the straight-line bytecode of the expression. Once the JIT compiler has seen the generated method a few
+ * times it becomes native arithmetic code, which makes this backend worth the cost of generating a class for the long
+ * lived individuals of the population (such as the best individual that is carried into every generation).
+ * <p>
+ * Before any bytecode is generated the expression goes through a couple of simple optimizations:
+ * <ul>
+ * <li>Constant subtrees (no variable within them) are folded into a single constant.</li>
+ * <li>Exponents with a constant of 0, 1 or 2 are turned into a constant, the base itself or a multiplication.</li>
+ * <li>Multiplications by the constant 2 are turned into an addition and divisions by a non-zero constant skip the
+ * divide by zero check.</li>
+ * </ul>
+ * All of these produce exactly the same results as {@link PostfixProgram#execute(double, double[])}, including the
+ * rules for when an evaluation marks the tree as invalid.
+ * <p>
+ * When running on a JVM that supports hidden classes the expression is defined as a hidden class (so it can be unloaded
+ * as soon as the individual is gone), otherwise it is defined by its own small class loader.
+ *
+ * @version 1.2
+ */
+// =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+public class ExpressionCompiler {
+	private static final Logger Log = Logger.getLogger("Global");
+
+	private static final String GENERATED_CLASS = "edu/stthomas/seis610/tree/GeneratedExpression";
+	private static final String SUPER_CLASS = "edu/stthomas/seis610/tree/CompiledExpression";
+	private static final int MAX_CODE_LENGTH = 65535;
+
+	/**
+	 * Define Constants for the Local Variable Slots of the Generated execute(double, double[]) Method
+	 */
+	private static final int LOCAL_INPUT = 1;
+	private static final int LOCAL_RESULT = 3;
+	private static final int LOCAL_VALID = 4;
+
+	private static Method xDefineHiddenClass;
+	private static Object xHiddenClassOptions;
+
+	static {
+		// Hidden classes are only available on newer JVMs, so look them up reflectively and simply fall back to a class
+		// loader per expression when they are not available.
+		try {
+			Class<?> optionClass = Class.forName("java.lang.invoke.MethodHandles$Lookup$ClassOption");
+			xHiddenClassOptions = Array.newInstance(optionClass, 0);
+			xDefineHiddenClass = MethodHandles.Lookup.class.getMethod("defineHiddenClass", byte[].class,
+					boolean.class, xHiddenClassOptions.getClass());
+		} catch (ClassNotFoundException | NoSuchMethodException e) {
+			xDefineHiddenClass = null;
+		}
+	}
+
+	private final ConstantPool xPool = new ConstantPool();
+	private final ByteArrayOutputStream xCode = new ByteArrayOutputStream();
+	private boolean xAlwaysInvalid = false;
+	private int xStackDepth = 0;
+	private int xMaxStackDepth = 0;
+
+	/**
+	 * Private constructor, expressions are only compiled through {@link #compile(BinaryTreeNode)}.
+	 */
+	private ExpressionCompiler() {
+	}
+
+	/**
+	 * Compile the expression node tree (or subtree) starting at the passed in node into a new class.
+	 *
+	 * @param aRoot the root node of the expression tree to compile
+	 * @return the newly compiled expression, or null if the expression could not be compiled
+	 */
+	public static CompiledExpression compile(BinaryTreeNode aRoot) {
+		return compile(PostfixProgram.compile(aRoot));
+	}
+
+	/**
+	 * Compile the postfix program of an expression tree into a new class. Since programs are immutable this can safely
+	 * be done on a different thread than the one that owns the expression tree.
+	 *
+	 * @param aProgram the postfix program of the expression tree to compile
+	 * @return the newly compiled expression, or null if the expression could not be compiled
+	 */
+	public static CompiledExpression compile(PostfixProgram aProgram) {
+		try {
+			byte[] classBytes = new ExpressionCompiler().generate(aProgram);
+			if (classBytes == null) {
+				return null;
+			}
+			return (CompiledExpression) defineClass(classBytes).getDeclaredConstructor().newInstance();
+		} catch (Exception e) {
+			Log.warning("Unable to compile the expression into bytecode: " + e);
+			return null;
+		}
+	}
+
+	/**
+	 * @param aClassBytes the class file of the generated expression
+	 * @return the newly defined class of the generated expression
+	 * @throws Exception
+	 */
+	private static Class<?> defineClass(byte[] aClassBytes) throws Exception {
+		if (xDefineHiddenClass != null) {
+			Object lookup = xDefineHiddenClass.invoke(MethodHandles.lookup(), aClassBytes, false, xHiddenClassOptions);
+			return ((MethodHandles.Lookup) lookup).lookupClass();
+		}
+		return new ExpressionClassLoader(ExpressionCompiler.class.getClassLoader()).define(aClassBytes);
+	}
+
+	/**
+	 * Generate the class file for the postfix program of an expression tree.
+	 *
+	 * @param aProgram the postfix program of the expression tree to compile
+	 * @return the class file of the generated expression, or null if the expression is too large for a single method
+	 * @throws IOException
+	 */
+	private byte[] generate(PostfixProgram aProgram) throws IOException {
+		Expression expression = optimize(aProgram);
+
+		// Generate: boolean execute(double aInput, double[] aResult) { valid = ?; aResult[0] = <expr>; return valid; }
+		emitByte(xAlwaysInvalid ? 0x03 : 0x04); // iconst_0 or iconst_1
+		emitByte(0x36); // istore
+		emitByte(LOCAL_VALID);
+		emitByte(0x19); // aload
+		emitByte(LOCAL_RESULT);
+		emitByte(0x03); // iconst_0
+		adjustStack(2);
+		emit(expression);
+		emitByte(0x52); // dastore
+		emitByte(0x15); // iload
+		emitByte(LOCAL_VALID);
+		emitByte(0xac); // ireturn
+		if (xCode.size() > MAX_CODE_LENGTH) {
+			return null;
+		}
+
+		int thisClass = xPool.getClass(GENERATED_CLASS);
+		int superClass = xPool.getClass(SUPER_CLASS);
+		int superInit = xPool.getMethod(SUPER_CLASS, "<init>", "()V");
+		int initName = xPool.getUtf8("<init>");
+		int initDescriptor = xPool.getUtf8("()V");
+		int executeName = xPool.getUtf8("execute");
+		int executeDescriptor = xPool.getUtf8("(D[D)Z");
+		int codeAttribute = xPool.getUtf8("Code");
+
+		ByteArrayOutputStream classBytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(classBytes);
+		out.writeInt(0xCAFEBABE);
+		out.writeShort(0); // minor version
+		out.writeShort(49); // major version (no stack map frames are needed)
+		xPool.write(out);
+		out.writeShort(0x1000 | 0x0020 | 0x0010 | 0x0001); // synthetic, super, final, public
+		out.writeShort(thisClass);
+		out.writeShort(superClass);
+		out.writeShort(0); // interfaces
+		out.writeShort(0); // fields
+		out.writeShort(2); // methods
+
+		// public <init>() { super(); }
+		byte[] initCode = { 0x2a, (byte) 0xb7, (byte) (superInit >> 8), (byte) superInit, (byte) 0xb1 };
+		writeMethod(out, initName, initDescriptor, codeAttribute, 1, 1, initCode);
+
+		// public boolean execute(double aInput, double[] aResult)
+		writeMethod(out, executeName, executeDescriptor, codeAttribute, xMaxStackDepth, LOCAL_VALID + 1,
+				xCode.toByteArray());
+
+		out.writeShort(0); // attributes
+		out.flush();
+		return classBytes.toByteArray();
+	}
+
+	/**
+	 * Write a single public method (with its code attribute) into the class file.
+	 */
+	private static void writeMethod(DataOutputStream aOut, int aName, int aDescriptor, int aCodeAttribute,
+			int aMaxStack, int aMaxLocals, byte[] aCode) throws IOException {
+		aOut.writeShort(0x0001); // public
+		aOut.writeShort(aName);
+		aOut.writeShort(aDescriptor);
+		aOut.writeShort(1); // attributes
+		aOut.writeShort(aCodeAttribute);
+		aOut.writeInt(12 + aCode.length);
+		aOut.writeShort(aMaxStack);
+		aOut.writeShort(aMaxLocals);
+		aOut.writeInt(aCode.length);
+		aOut.write(aCode);
+		aOut.writeShort(0); // exception table
+		aOut.writeShort(0); // attributes
+	}
+
+	/**
+	 * Build the optimized expression for the program by replaying its instructions against a stack of expressions.
+	 * Constant subtrees are folded and the operators with constant operands are strength reduced where the result is
+	 * exactly the same.
+	 *
+	 * @param aProgram the postfix program of the expression tree
+	 * @return the optimized expression that represents the program
+	 */
+	private Expression optimize(PostfixProgram aProgram) {
+		Expression[] stack = new Expression[aProgram.getMaxStackDepth()];
+		int top = -1;
+		for (int pc = 0; pc < aProgram.getLength(); pc++) {
+			int opcode = aProgram.getOpcode(pc);
+			switch (opcode) {
+			case PostfixProgram.OP_CONSTANT:
+			case PostfixProgram.OP_VARIABLE:
+				stack[++top] = new Expression(opcode, aProgram.getConstant(pc), null, null);
+				break;
+			case PostfixProgram.OP_SIN:
+			case PostfixProgram.OP_COS:
+				stack[top] = optimize(opcode, stack[top], null);
+				break;
+			default:
+				top--;
+				stack[top] = optimize(opcode, stack[top], stack[top + 1]);
+			}
+		}
+		return stack[0];
+	}
+
+	/**
+	 * @param aOpcode the opcode of the operator
+	 * @param aLeft the optimized expression of the left operand
+	 * @param aRight the optimized expression of the right operand (null for unary operators)
+	 * @return the optimized expression that represents the operator
+	 */
+	private Expression optimize(int aOpcode, Expression aLeft, Expression aRight) {
+		if (aOpcode == PostfixProgram.OP_SIN || aOpcode == PostfixProgram.OP_COS || aOpcode == PostfixProgram.OP_POW) {
+			// These operators always mark the tree as invalid.
+			xAlwaysInvalid = true;
+		}
+
+		if (aOpcode == PostfixProgram.OP_DIV && aRight.isConstant() && aRight.xConstant == 0) {
+			// Always divides by zero, which results in the max value and marks the tree as invalid.
+			xAlwaysInvalid = true;
+			return new Expression(PostfixProgram.OP_CONSTANT, Double.MAX_VALUE, null, null);
+		}
+		if (aLeft.isConstant() && (aRight == null || aRight.isConstant())) {
+			return new Expression(PostfixProgram.OP_CONSTANT, fold(aOpcode, aLeft.xConstant,
+					(aRight == null) ? 0 : aRight.xConstant), null, null);
+		}
+		return new Expression(aOpcode, 0, aLeft, aRight);
+	}
+
+	/**
+	 * @return the result of the operator applied against two constant values
+	 */
+	private static double fold(int aOpcode, double aLeft, double aRight) {
+		switch (aOpcode) {
+		case PostfixProgram.OP_ADD:
+			return aLeft + aRight;
+		case PostfixProgram.OP_SUB:
+			return aLeft - aRight;
+		case PostfixProgram.OP_MUL:
+			return aLeft * aRight;
+		case PostfixProgram.OP_DIV:
+			return CompiledExpression.divide(aLeft, aRight);
+		case PostfixProgram.OP_SIN:
+			return Math.sin(aLeft);
+		case PostfixProgram.OP_COS:
+			return Math.cos(aLeft);
+		case PostfixProgram.OP_POW:
+		default:
+			return CompiledExpression.power(aLeft, aRight);
+		}
+	}
+
+	/**
+	 * Recursive method to emit the bytecode of the expression, leaving its (double) result on the operand stack.
+	 *
+	 * @param aExpression the current expression to emit
+	 */
+	private void emit(Expression aExpression) {
+		Expression left = aExpression.xLeft;
+		Expression right = aExpression.xRight;
+		switch (aExpression.xOpcode) {
+		case PostfixProgram.OP_CONSTANT:
+			emitConstant(aExpression.xConstant);
+			break;
+		case PostfixProgram.OP_VARIABLE:
+			emitByte(0x18); // dload
+			emitByte(LOCAL_INPUT);
+			adjustStack(2);
+			break;
+		case PostfixProgram.OP_ADD:
+			emitBinary(left, right, 0x63); // dadd
+			break;
+		case PostfixProgram.OP_SUB:
+			emitBinary(left, right, 0x67); // dsub
+			break;
+		case PostfixProgram.OP_MUL:
+			if (right.isConstant(2.0) || left.isConstant(2.0)) {
+				// Strength reduction: 2*x is exactly the same as x+x.
+				emit(right.isConstant(2.0) ? left : right);
+				emitDuplicate();
+				emitByte(0x63); // dadd
+				adjustStack(-2);
+			} else {
+				emitBinary(left, right, 0x6b); // dmul
+			}
+			break;
+		case PostfixProgram.OP_DIV:
+			if (right.isConstant()) {
+				// A non-zero constant divisor never needs to be checked.
+				emitBinary(left, right, 0x6f); // ddiv
+			} else {
+				emit(left);
+				emit(right);
+				emitDuplicate();
+				emitInvokeStatic(SUPER_CLASS, "isValidDivisor", "(D)I", -2 + 1);
+				emitByte(0x15); // iload
+				emitByte(LOCAL_VALID);
+				adjustStack(1);
+				emitByte(0x7e); // iand
+				emitByte(0x36); // istore
+				emitByte(LOCAL_VALID);
+				adjustStack(-2);
+				emitInvokeStatic(SUPER_CLASS, "divide", "(DD)D", -4 + 2);
+			}
+			break;
+		case PostfixProgram.OP_SIN:
+			emit(left);
+			emitInvokeStatic("java/lang/Math", "sin", "(D)D", 0);
+			break;
+		case PostfixProgram.OP_COS:
+			emit(left);
+			emitInvokeStatic("java/lang/Math", "cos", "(D)D", 0);
+			break;
+		case PostfixProgram.OP_POW:
+			double exponent = right.isConstant() ? Math.min(right.xConstant, 20) : Double.NaN;
+			emit(left);
+			if (exponent == 0) {
+				// Strength reduction: x^0 is always 1 (but the base is still evaluated for its divisions).
+				emitByte(0x58); // pop2
+				adjustStack(-2);
+				emitConstant(1.0);
+			} else if (exponent == 1) {
+				// Strength reduction: x^1 is always x.
+			} else if (exponent == 2) {
+				// Strength reduction: x^2 is exactly x*x.
+				emitDuplicate();
+				emitByte(0x6b); // dmul
+				adjustStack(-2);
+			} else {
+				emit(right);
+				emitInvokeStatic(SUPER_CLASS, "power", "(DD)D", -4 + 2);
+			}
+			break;
+		}
+	}
+
+	/**
+	 * Emit a binary operator that is a single bytecode instruction.
+	 */
+	private void emitBinary(Expression aLeft, Expression aRight, int aInstruction) {
+		emit(aLeft);
+		emit(aRight);
+		emitByte(aInstruction);
+		adjustStack(-2);
+	}
+
+	/**
+	 * Emit the bytecode to push a constant (double) value on to the operand stack.
+	 */
+	private void emitConstant(double aConstant) {
+		if (Double.doubleToRawLongBits(aConstant) == 0L) {
+			emitByte(0x0e); // dconst_0
+		} else if (aConstant == 1.0) {
+			emitByte(0x0f); // dconst_1
+		} else {
+			int index = xPool.getDouble(aConstant);
+			emitByte(0x14); // ldc2_w
+			emitByte(index >> 8);
+			emitByte(index);
+		}
+		adjustStack(2);
+	}
+
+	/**
+	 * Emit the bytecode to duplicate the (double) value on the top of the operand stack.
+	 */
+	private void emitDuplicate() {
+		emitByte(0x5c); // dup2
+		adjustStack(2);
+	}
+
+	/**
+	 * Emit the bytecode to invoke a static method.
+	 */
+	private void emitInvokeStatic(String aClass, String aMethod, String aDescriptor, int aStackChange) {
+		int index = xPool.getMethod(aClass, aMethod, aDescriptor);
+		emitByte(0xb8); // invokestatic
+		emitByte(index >> 8);
+		emitByte(index);
+		adjustStack(aStackChange);
+	}
+
+	private void emitByte(int aByte) {
+		xCode.write(aByte);
+	}
+
+	private void adjustStack(int aSlots) {
+		xStackDepth += aSlots;
+		xMaxStackDepth = Math.max(xMaxStackDepth, xStackDepth);
+	}
+
+	// =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	/**
+	 * The optimized form of an expression (sub)tree that the bytecode gets generated from.
+	 */
+	// =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	private static class Expression {
+		private final int xOpcode;
+		private final double xConstant;
+		private final Expression xLeft;
+		private final Expression xRight;
+
+		private Expression(int aOpcode, double aConstant, Expression aLeft, Expression aRight) {
+			xOpcode = aOpcode;
+			xConstant = aConstant;
+			xLeft = aLeft;
+			xRight = aRight;
+		}
+
+		private boolean isConstant() {
+			return xOpcode == PostfixProgram.OP_CONSTANT;
+		}
+
+		private boolean isConstant(double aValue) {
+			return isConstant() && xConstant == aValue;
+		}
+	}
+
+	// =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	/**
+	 * The constant pool of the generated class file.
+	 */
+	// =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	private static class ConstantPool {
+		private final Map<String, Integer> xIndexes = new HashMap<String, Integer>();
+		private final List<byte[]> xEntries = new ArrayList<byte[]>();
+		private int xNextIndex = 1;
+
+		private int getUtf8(String aValue) {
+			Integer index = xIndexes.get("U" + aValue);
+			if (index == null) {
+				ByteArrayOutputStream entry = new ByteArrayOutputStream();
+				try {
+					DataOutputStream out = new DataOutputStream(entry);
+					out.writeByte(1);
+					out.writeUTF(aValue);
+					out.flush();
+				} catch (IOException e) {
+					e.printStackTrace();
+				}
+				index = add("U" + aValue, entry.toByteArray(), 1);
+			}
+			return index;
+		}
+
+		private int getClass(String aName) {
+			Integer index = xIndexes.get("C" + aName);
+			if (index == null) {
+				int name = getUtf8(aName);
+				index = add("C" + aName, new byte[] { 7, (byte) (name >> 8), (byte) name }, 1);
+			}
+			return index;
+		}
+
+		private int getMethod(String aClass, String aName, String aDescriptor) {
+			String key = "M" + aClass + "." + aName + aDescriptor;
+			Integer index = xIndexes.get(key);
+			if (index == null) {
+				int owner = getClass(aClass);
+				int name = getUtf8(aName);
+				int descriptor = getUtf8(aDescriptor);
+				int nameAndType = add("N" + aName + aDescriptor, new byte[] { 12, (byte) (name >> 8), (byte) name,
+						(byte) (descriptor >> 8), (byte) descriptor }, 1);
+				index = add(key, new byte[] { 10, (byte) (owner >> 8), (byte) owner, (byte) (nameAndType >> 8),
+						(byte) nameAndType }, 1);
+			}
+			return index;
+		}
+
+		private int getDouble(double aValue) {
+			long bits = Double.doubleToRawLongBits(aValue);
+			String key = "D" + bits;
+			Integer index = xIndexes.get(key);
+			if (index == null) {
+				byte[] entry = new byte[9];
+				entry[0] = 6;
+				for (int i = 0; i < 8; i++) {
+					entry[1 + i] = (byte) (bits >>> (56 - (8 * i)));
+				}
+				// Double constants take up two slots within the constant pool.
+				index = add(key, entry, 2);
+			}
+			return index;
+		}
+
+		private int add(String aKey, byte[] aEntry, int aSlots) {
+			Integer index = xIndexes.get(aKey);
+			if (index == null) {
+				index = xNextIndex;
+				xIndexes.put(aKey, index);
+				xEntries.add(aEntry);
+				xNextIndex += aSlots;
+			}
+			return index;
+		}
+
+		private void write(DataOutputStream aOut) throws IOException {
+			aOut.writeShort(xNextIndex);
+			for (byte[] entry : xEntries) {
+				aOut.write(entry);
+			}
+		}
+	}
+
+	// =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	/**
+	 * A class loader that defines a single generated expression class (used when hidden classes are not available).
+	 */
+	// =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	private static class ExpressionClassLoader extends ClassLoader {
+		private ExpressionClassLoader(ClassLoader aParent) {
+			super(aParent);
+		}
+
+		private Class<?> define(byte[] aClassBytes) {
+			return defineClass(GENERATED_CLASS.replace('/', '.'), aClassBytes, 0, aClassBytes.length);
+		}
+	}
+}
@@ -0,0 +1,200 @@
+package edu.stthomas.seis610.tree;
+
+//=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+/**
+ * Simplifies an expression (persistent) tree into a smaller tree that evaluates to exactly the same results. The
+ * simplifications are made from the bottom up:
+ * <ul>
+ * <li>Operators with only constant operands are folded into a single constant (except for a division by zero).</li>
+ * <li>Identities are removed: <code>a*1</code>, <code>1*a</code>, <code>a/1</code>, <code>a-0</code> and (see below)
+ * <code>a+0</code> and <code>0+a</code> simply become <code>a</code>.</li>
+ * <li>Annihilators are folded: <code>x*0</code>, <code>0*x</code> and <code>x-x</code> become the constant 0.</li>
+ * <li>The children of the commutative ADD and MUL operators are put into a canonical order, so that <code>a+b</code>
+ * and <code>b+a</code> end up as the same expression.</li>
+ * </ul>
+ * Every simplification has to hold for every double value (IEEE 754) and must keep the rules for when an evaluation
+ * marks the tree as invalid. So nothing is ever removed that could divide by zero or contains a SIN, COS or POW operator
+ * (those always mark the tree invalid), which is why the annihilators only apply to the variable itself and
+ * <code>x/x</code> is never folded (the training inputs can be zero). Those annihilators are also only exact when all of
+ * the training inputs are finite. Similarly <code>a+0</code> turns a negative zero into a positive zero, which only
+ * makes a difference to the base of an exponent, so it is kept within such a base.
+ *
+ * @version 1.2
+ */
+// =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+public class ExpressionSimplifier {
+
+	/**
+	 * Private default constructor since this class only provides static methods.
+	 */
+	private ExpressionSimplifier() {
+	}
+
+	/**
+	 * Simplify the expression tree, assuming that the variable only ever holds finite values.
+	 *
+	 * @param aRoot the root of the expression tree to simplify
+	 * @return the root of the simplified expression tree (which shares all of the unchanged subtrees)
+	 */
+	public static PersistentNode simplify(PersistentNode aRoot) {
+		return simplify(aRoot, true);
+	}
+
+	/**
+	 * Simplify the expression tree.
+	 *
+	 * @param aRoot the root of the expression tree to simplify
+	 * @param aFiniteVariable the indicator if the variable only ever holds finite values
+	 * @return the root of the simplified expression tree (which shares all of the unchanged subtrees)
+	 */
+	public static PersistentNode simplify(PersistentNode aRoot, boolean aFiniteVariable) {
+		return simplify(aRoot, aFiniteVariable, false);
+	}
+
+	/**
+	 * Recursive method to simplify a subtree after its children have been simplified.
+	 *
+	 * @param aNode the current node within the expression tree
+	 * @param aFiniteVariable the indicator if the variable only ever holds finite values
+	 * @param aSignedZero the indicator if the sign of a zero result matters (the result reaches the base of an exponent)
+	 * @return the simplified subtree
+	 */
+	private static PersistentNode simplify(PersistentNode aNode, boolean aFiniteVariable, boolean aSignedZero) {
+		int opcode = aNode.getOpcode();
+		if (opcode == PostfixProgram.OP_CONSTANT || opcode == PostfixProgram.OP_VARIABLE) {
+			return aNode;
+		}
+
+		// The sign of a zero divisor or of a zero within an exponent or cosine never changes the result.
+		PersistentNode left = simplify(aNode.getLeftChild(), aFiniteVariable, (opcode == PostfixProgram.OP_POW)
+				|| (opcode != PostfixProgram.OP_COS && aSignedZero));
+		PersistentNode right = (aNode.getRightChild() == null) ? null : simplify(aNode.getRightChild(),
+				aFiniteVariable, aSignedZero && opcode != PostfixProgram.OP_DIV && opcode != PostfixProgram.OP_POW);
+
+		switch (opcode) {
+		case PostfixProgram.OP_ADD:
+			if (isConstant(left) && isConstant(right)) {
+				return PersistentNode.constant(left.getConstant() + right.getConstant());
+			}
+			if (compare(left, right) > 0) {
+				PersistentNode swap = left;
+				left = right;
+				right = swap;
+			}
+			if (isZero(left, aSignedZero)) {
+				return right;
+			} else if (isZero(right, aSignedZero)) {
+				return left;
+			}
+			break;
+		case PostfixProgram.OP_SUB:
+			if (isConstant(left) && isConstant(right)) {
+				return PersistentNode.constant(left.getConstant() - right.getConstant());
+			}
+			// Subtracting a positive zero never changes the value (not even a negative zero).
+			if (isConstant(right) && Double.doubleToLongBits(right.getConstant()) == 0L) {
+				return left;
+			} else if (isConstant(right) && right.getConstant() == 0 && !aSignedZero) {
+				return left;
+			} else if (aFiniteVariable && isVariable(left) && isVariable(right)) {
+				return PersistentNode.constant(0.0);
+			}
+			break;
+		case PostfixProgram.OP_MUL:
+			if (isConstant(left) && isConstant(right)) {
+				return PersistentNode.constant(left.getConstant() * right.getConstant());
+			}
+			if (compare(left, right) > 0) {
+				PersistentNode swap = left;
+				left = right;
+				right = swap;
+			}
+			if (isConstant(left) && left.getConstant() == 1) {
+				return right;
+			} else if (isConstant(right) && right.getConstant() == 1) {
+				return left;
+			} else if (aFiniteVariable && !aSignedZero
+					&& ((isVariable(left) && isConstant(right) && right.getConstant() == 0)
+					|| (isConstant(left) && left.getConstant() == 0 && isVariable(right)))) {
+				return PersistentNode.constant(0.0);
+			}
+			break;
+		case PostfixProgram.OP_DIV:
+			if (isConstant(left) && isConstant(right) && right.getConstant() != 0) {
+				return PersistentNode.constant(left.getConstant() / right.getConstant());
+			}
+			if (isConstant(right) && right.getConstant() == 1) {
+				return left;
+			}
+			break;
+		default:
+			// SIN, COS and POW always mark the tree invalid, so they must stay within the tree.
+			break;
+		}
+
+		if (left == aNode.getLeftChild() && right == aNode.getRightChild()) {
+			return aNode;
+		}
+		return PersistentNode.operator(OperatorNode.OperatorType.values()[opcode - PostfixProgram.OP_ADD], left, right);
+	}
+
+	/**
+	 * Compare two subtrees for the canonical order of the children of a commutative operator. Smaller subtrees come
+	 * first, followed by the order of their opcodes, constant values and finally their children.
+	 *
+	 * @param aNode the first subtree to compare
+	 * @param aOtherNode the second subtree to compare
+	 * @return a negative integer, zero, or a positive integer as the first subtree is less than, equal to, or greater
+	 *         than the second subtree
+	 */
+	static int compare(PersistentNode aNode, PersistentNode aOtherNode) {
+		if (aNode == aOtherNode) {
+			return 0;
+		} else if (aNode == null || aOtherNode == null) {
+			return (aNode == null) ? -1 : 1;
+		} else if (aNode.size() != aOtherNode.size()) {
+			return (aNode.size() < aOtherNode.size()) ? -1 : 1;
+		} else if (aNode.getOpcode() != aOtherNode.getOpcode()) {
+			return (aNode.getOpcode() < aOtherNode.getOpcode()) ? -1 : 1;
+		}
+		int result = Double.compare(aNode.getConstant(), aOtherNode.getConstant());
+		if (result == 0) {
+			result = compare(aNode.getLeftChild(), aOtherNode.getLeftChild());
+		}
+		if (result == 0) {
+			result = compare(aNode.getRightChild(), aOtherNode.getRightChild());
+		}
+		return result;
+	}
+
+	/**
+	 * @param aNode the node to check
+	 * @return the indicator if the node is a constant operand
+	 */
+	private static boolean isConstant(PersistentNode aNode) {
+		return aNode.getOpcode() == PostfixProgram.OP_CONSTANT;
+	}
+
+	/**
+	 * @param aNode the node to check
+	 * @return the indicator if the node is the variable
+	 */
+	private static boolean isVariable(PersistentNode aNode) {
+		return aNode.getOpcode() == PostfixProgram.OP_VARIABLE;
+	}
+
+	/**
+	 * Check for a zero constant that can be added to any value without changing it. Adding a negative zero never
+	 * changes the value, while adding a positive zero turns a negative zero into a positive zero.
+	 *
+	 * @param aNode the node to check
+	 * @param aSignedZero the indicator if the sign of a zero result matters
+	 * @return the indicator if the node is an additive identity
+	 */
+	private static boolean isZero(PersistentNode aNode, boolean aSignedZero) {
+		if (!isConstant(aNode) || aNode.getConstant() != 0) {
+			return false;
+		}
+		return !aSignedZero || Double.doubleToLongBits(aNode.getConstant()) == Double.doubleToLongBits(-0.0);
+	}
+}
@@ -0,0 +1,178 @@
+package edu.stthomas.seis610.tree;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Vector;
+
+import edu.stthomas.seis610.gp.GPSettings;
+import edu.stthomas.seis610.gp.TrainingData;
+
+//=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+/**
+ * The FitnessCache remembers the fitness of the expressions that have already been evaluated, so that the individuals
+ * carried forward by reproduction, the clone of the best individual and any other individual with the same structure
+ * as one evaluated before do not need to be evaluated again. The expressions are identified by their postfix program,
+ * which is equal for (and only for) expression trees with the same structure.
+ * <p>
+ * The fitness only holds for the training data it was calculated against, so the cache is cleared whenever it gets
+ * used with different training data or the training data within the Settings changes. The number of cached expressions
+ * is bounded by the Settings, and either the least recently used (LRU) or the oldest (FIFO) expression is evicted once
+ * the cache is full.
+ *
+ * @version 1.2
+ */
+// =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+public class FitnessCache {
+
+	/**
+	 * Define Enumeration to Describe the Different Ways to Evict Expressions from the Cache
+	 */
+	public enum EvictionPolicy {
+		LRU, FIFO;
+	};
+
+	/**
+	 * Define private variables for the Singleton Instance of this class.
+	 */
+	private static FitnessCache xSingletonInstance = null;
+
+	private Map<PostfixProgram, CachedFitness> xEntries;
+	private Vector<TrainingData> xTrainingData;
+	private int xTrainingDataVersion;
+	private long xHitCount = 0;
+	private long xMissCount = 0;
+
+	/**
+	 * Private default constructor for singleton instance of this class.
+	 */
+	private FitnessCache() {
+		clear();
+	}
+
+	/**
+	 * Public static method to get the singleton instance of this class and build it (lazy instantiation) if it is not
+	 * already built.
+	 *
+	 * @return the singleton instance of this class
+	 */
+	public static synchronized FitnessCache getInstance() {
+		if (xSingletonInstance == null) {
+			xSingletonInstance = new FitnessCache();
+		}
+		return xSingletonInstance;
+	}
+
+	/**
+	 * Remove all of the cached expressions and pick up the current size and eviction policy from the Settings.
+	 */
+	public synchronized void clear() {
+		final int maxSize = GPSettings.getFitnessCacheSize();
+		boolean accessOrder = EvictionPolicy.valueOf(GPSettings.getFitnessCacheEviction()) == EvictionPolicy.LRU;
+		xEntries = new LinkedHashMap<PostfixProgram, CachedFitness>(16, 0.75f, accessOrder) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<PostfixProgram, CachedFitness> aEldest) {
+				return size() > maxSize;
+			}
+		};
+		xTrainingData = null;
+	}
+
+	/**
+	 * Lookup the fitness of the program when evaluated against the training data.
+	 *
+	 * @param aProgram the postfix program of the expression tree about to be evaluated
+	 * @param aTrainingData the training data values the expression tree is evaluated against
+	 * @return the cached fitness of the program or null if it has not been evaluated (against this training data)
+	 */
+	public synchronized CachedFitness get(PostfixProgram aProgram, Vector<TrainingData> aTrainingData) {
+		CachedFitness cachedFitness = isCurrent(aTrainingData) ? xEntries.get(aProgram) : null;
+		if (cachedFitness == null) {
+			xMissCount++;
+		} else {
+			xHitCount++;
+		}
+		return cachedFitness;
+	}
+
+	/**
+	 * Remember the fitness of the program when evaluated against the training data.
+	 *
+	 * @param aProgram the postfix program of the expression tree that was evaluated
+	 * @param aTrainingData the training data values the expression tree was evaluated against
+	 * @param aStandardizedFitness the standardized fitness of the expression tree
+	 * @param aValid the indicator if the expression tree was still valid after the evaluation
+	 */
+	public synchronized void put(PostfixProgram aProgram, Vector<TrainingData> aTrainingData,
+			double aStandardizedFitness, boolean aValid) {
+		if (!isCurrent(aTrainingData)) {
+			clear();
+			xTrainingData = aTrainingData;
+			xTrainingDataVersion = GPSettings.getTrainingDataVersion();
+		}
+		xEntries.put(aProgram, new CachedFitness(aStandardizedFitness, aValid));
+	}
+
+	/**
+	 * @return the number of expressions within the cache
+	 */
+	public synchronized int size() {
+		return xEntries.size();
+	}
+
+	/**
+	 * @return the number of lookups that found the fitness within the cache
+	 */
+	public synchronized long getHitCount() {
+		return xHitCount;
+	}
+
+	/**
+	 * @return the number of lookups that did not find the fitness within the cache
+	 */
+	public synchronized long getMissCount() {
+		return xMissCount;
+	}
+
+	/**
+	 * @param aTrainingData the training data values of the lookup
+	 * @return the indicator if the cached fitness values were calculated against the same training data
+	 */
+	private boolean isCurrent(Vector<TrainingData> aTrainingData) {
+		return xTrainingData == aTrainingData && xTrainingDataVersion == GPSettings.getTrainingDataVersion();
+	}
+
+	// =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	/**
+	 * The result of the evaluation of a single expression.
+	 */
+	// =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	public static class CachedFitness {
+		private final double xStandardizedFitness;
+		private final boolean xValid;
+
+		/**
+		 * @param aStandardizedFitness the standardized fitness of the expression tree
+		 * @param aValid the indicator if the expression tree was still valid after the evaluation
+		 */
+		private CachedFitness(double aStandardizedFitness, boolean aValid) {
+			xStandardizedFitness = aStandardizedFitness;
+			xValid = aValid;
+		}
+
+		/**
+		 * @return the standardized fitness of the expression tree
+		 */
+		public double getStandardizedFitness() {
+			return xStandardizedFitness;
+		}
+
+		/**
+		 * @return the indicator if the expression tree was still valid after the evaluation
+		 */
+		public boolean isValid() {
+			return xValid;
+		}
+	}
+}
@@ -95,7 +95,7 @@ public class GPTreeFactory {
 		do {
 			nodeTreeRoot = generateGrowSubtree(0, aMaxHeight);
 			nodeTreeRoot.setNodeType(NodeType.ROOT);
-		} while (nodeTreeRoot.getHeight().intValue() == 0);
+		} while (nodeTreeRoot.getHeight() == 0);
 
 		/*
 		 * Generate the GeneticProgrammingTree to represent this expression node tree for the GP processing.
@@ -4,13 +4,42 @@ import java.util.Vector;
 
 import edu.stthomas.seis610.gp.FitnessDatum;
 import edu.stthomas.seis610.gp.GPSettings;
+import edu.stthomas.seis610.gp.TrainingColumns;
 import edu.stthomas.seis610.gp.TrainingData;
 import edu.stthomas.seis610.tree.BinaryTreeNode.NodeType;
+import edu.stthomas.seis610.tree.FitnessCache.CachedFitness;
+import edu.stthomas.seis610.tree.SubexpressionCache.Subexpression;
 import edu.stthomas.seis610.util.GPException;
 
 public class GeneticProgrammingTree extends BinaryTree implements Comparable<GeneticProgrammingTree> {
+	/**
+	 * Define Enumeration to Describe the Different Ways to Evaluate the Fitness of the Tree
+	 */
+	public enum EvaluationMode {
+		INTERPRETED, POSTFIX, BATCH, TIERED, INCREMENTAL, SHARED;
+	};
+
+	private static final ThreadLocal<BatchEvaluator> xBatchEvaluator = new ThreadLocal<BatchEvaluator>() {
+		@Override
+		protected BatchEvaluator initialValue() {
+			return new BatchEvaluator();
+		}
+	};
+
+	private static final ThreadLocal<IncrementalEvaluator> xIncrementalEvaluator = new ThreadLocal<IncrementalEvaluator>() {
+		@Override
+		protected IncrementalEvaluator initialValue() {
+			return new IncrementalEvaluator();
+		}
+	};
+
 	protected FitnessDatum xFitness = new FitnessDatum();
 	protected Vector<TrainingData> xTrainingData;
+	protected PostfixProgram xProgram;
+	protected CompiledExpression xCompiledExpression;
+	protected LinearGenome xGenome;
+	protected PersistentNode xPersistentRoot;
+	protected boolean xLazyRootValid = true;
 
 	public GeneticProgrammingTree() {
 
@@ -24,6 +53,14 @@ public class GeneticProgrammingTree extends BinaryTree implements Comparable<Gen
 		setTrainingData(aTrainingData);
 	}
 
+	public GeneticProgrammingTree(LinearGenome aGenome) {
+		setGenome(aGenome);
+	}
+
+	public GeneticProgrammingTree(PersistentNode aRoot) {
+		setPersistentRoot(aRoot);
+	}
+
 	/**
 	 * @return the fitness measurement datum associated with this binary tree
 	 */
@@ -53,25 +90,420 @@ public class GeneticProgrammingTree extends BinaryTree implements Comparable<Gen
 	}
 
 	/**
-	 * Resets all of the cached instance variables.
+	 * @param aNode the node that represents the root of the expression tree
+	 */
+	@Override
+	public void setRoot(BinaryTreeNode aNode) {
+		super.setRoot(aNode);
+		xProgram = null;
+		xCompiledExpression = null;
+		xGenome = null;
+		xPersistentRoot = null;
+	}
+
+	/**
+	 * Build the expression node tree from the persistent tree or the linear genome when the individual was created from
+	 * one, since the nodes are only needed once something actually walks the tree.
+	 * 
+	 * @return the root node in the binary tree for the expression
+	 */
+	@Override
+	public BinaryTreeNode getRoot() {
+		if (isRootLazy()) {
+			try {
+				xRoot = (xPersistentRoot != null) ? xPersistentRoot.toNode() : xGenome.decode();
+			} catch (GPException e) {
+				e.printStackTrace();
+			}
+			if (!xLazyRootValid) {
+				xRoot.setTreeNodeInvalid();
+			}
+		}
+		return xRoot;
+	}
+
+	/**
+	 * @return the indicator if the expression node tree has yet to be built from the persistent tree or the genome
+	 */
+	private boolean isRootLazy() {
+		return xRoot == null && (xPersistentRoot != null || xGenome != null);
+	}
+
+	/**
+	 * @param aRoot the persistent tree that represents the expression (the node tree is built lazily from it)
+	 */
+	private void setPersistentRoot(PersistentNode aRoot) {
+		setRoot(null);
+		xPersistentRoot = aRoot;
+		xLazyRootValid = true;
+	}
+
+	/**
+	 * @param aGenome the linear genome that represents the expression (the node tree is built lazily from it)
+	 */
+	private void setGenome(LinearGenome aGenome) {
+		setRoot(null);
+		xGenome = aGenome;
+		xLazyRootValid = true;
+	}
+
+	/**
+	 * Simplify the expression (see {@link ExpressionSimplifier}) against the training data of this tree, or against any
+	 * finite values of the variable when there is no training data.
+	 * 
+	 * @return the persistent (immutable) tree that represents the simplified expression
+	 */
+	public PersistentNode getSimplifiedRoot() {
+		boolean finiteVariable = (getTrainingData() == null)
+				|| TrainingColumns.getInstance(getTrainingData()).areInputsFinite();
+		return ExpressionSimplifier.simplify(getPersistentRoot(), finiteVariable);
+	}
+
+	/**
+	 * Analyze the expression (see {@link IntervalAnalyzer}) over the range of the training input values to find out if
+	 * it is invalid for every training datum without having to evaluate it.
+	 * 
+	 * @return the indicator if the expression is always invalid
+	 */
+	public boolean isAlwaysInvalid() {
+		IntervalAnalyzer analyzer = new IntervalAnalyzer(TrainingColumns.getInstance(getTrainingData()));
+		if (!isRootLazy()) {
+			analyzer.analyze(getRoot());
+		} else if (xPersistentRoot != null) {
+			analyzer.analyze(xPersistentRoot);
+		} else {
+			analyzer.analyze(xGenome);
+		}
+		return analyzer.isAlwaysInvalid();
+	}
+
+	/**
+	 * @return the string representation of the simplified expression
+	 */
+	public String toSimplifiedString() {
+		return new GeneticProgrammingTree(getSimplifiedRoot()).toString();
+	}
+
+	/**
+	 * Lazily convert the expression node tree into its persistent tree. The persistent tree is cached until the tree
+	 * gets modified (mutation, cross-over, etc...) and {@link #reset()} is invoked.
+	 * 
+	 * @return the persistent (immutable) tree that represents the expression node tree
+	 */
+	public PersistentNode getPersistentRoot() {
+		if (xPersistentRoot == null) {
+			xPersistentRoot = PersistentNode.valueOf(getRoot());
+		}
+		return xPersistentRoot;
+	}
+
+	/**
+	 * @return the indicator if the expressions within the tree are valid
+	 */
+	@Override
+	public Boolean isTreeValid() {
+		if (isRootLazy()) {
+			return xLazyRootValid;
+		}
+		return super.isTreeValid();
+	}
+
+	/**
+	 * @return an integer count of the height of the tree
+	 */
+	@Override
+	public Integer getHeight() {
+		if (!isRootLazy()) {
+			return super.getHeight();
+		}
+		return (xPersistentRoot != null) ? xPersistentRoot.getHeight() : xGenome.getHeight();
+	}
+
+	/**
+	 * @return the number of nodes within the expression tree
+	 */
+	public int getSize() {
+		if (!isRootLazy()) {
+			return getRoot().getSubtreeSize();
+		}
+		return (xPersistentRoot != null) ? xPersistentRoot.size() : xGenome.size();
+	}
+
+	/**
+	 * @return the structural hash of the expression tree (equal expression trees always have the same hash)
+	 */
+	@Override
+	public int getStructuralHash() {
+		if (!isRootLazy()) {
+			return super.getStructuralHash();
+		}
+		return (xPersistentRoot != null) ? xPersistentRoot.hashCode() : xGenome.getStructuralHash();
+	}
+
+	/**
+	 * @param aTree the other tree to compare against
+	 * @return true if both trees represent the same expression (the same operators and operands in the same positions)
+	 */
+	@Override
+	public boolean isSameExpression(BinaryTree aTree) {
+		if (getStructuralHash() != aTree.getStructuralHash()) {
+			return false;
+		}
+		if (aTree instanceof GeneticProgrammingTree && isRootLazy()) {
+			// Two programs only have the same instructions when their expressions have the same structure.
+			return (xPersistentRoot != null) ? xPersistentRoot.equals(((GeneticProgrammingTree) aTree)
+					.getPersistentRoot()) : getProgram().equals(((GeneticProgrammingTree) aTree).getProgram());
+		}
+		return super.isSameExpression(aTree);
+	}
+
+	/**
+	 * Mark the tree as invalid after an evaluation (here or within another process) produced an invalid result.
+	 */
+	public void setTreeInvalid() {
+		if (isRootLazy()) {
+			xLazyRootValid = false;
+		} else {
+			getRoot().setTreeNodeInvalid();
+		}
+	}
+
+	/**
+	 * Lazily encode the expression node tree into its linear genome. The genome is cached until the tree gets modified
+	 * (mutation, cross-over, etc...) and {@link #reset()} is invoked.
+	 * 
+	 * @return the linear (prefix-order) genome that represents the expression node tree
+	 */
+	public LinearGenome getGenome() {
+		if (xGenome == null) {
+			xGenome = LinearGenome.encode(getRoot());
+		}
+		return xGenome;
+	}
+
+	/**
+	 * Lazily compile the expression node tree into its postfix program. The compiled program is cached until the tree
+	 * gets modified (mutation, cross-over, etc...) and {@link #reset()} is invoked.
+	 * 
+	 * @return the compiled postfix program that represents the expression node tree
+	 */
+	public PostfixProgram getProgram() {
+		if (xProgram == null) {
+			if (!isRootLazy()) {
+				xProgram = PostfixProgram.compile(getRoot());
+			} else if (xPersistentRoot != null) {
+				xProgram = PostfixProgram.compile(xPersistentRoot);
+			} else {
+				xProgram = PostfixProgram.compile(xGenome);
+			}
+		}
+		return xProgram;
+	}
+
+	/**
+	 * Compile the expression node tree into bytecode so that the fitness of this tree gets calculated at native speed.
+	 * This is only worth the cost for long lived individuals since every compilation generates a new class. The compiled
+	 * expression is kept until the tree gets modified and {@link #reset()} is invoked.
+	 * 
+	 * @return true if the expression node tree has been compiled
+	 */
+	public boolean compile() {
+		xCompiledExpression = ExpressionCompiler.compile(getProgram());
+		return isCompiled();
+	}
+
+	/**
+	 * @return the indicator if the expression node tree has been compiled into bytecode
+	 */
+	public boolean isCompiled() {
+		return xCompiledExpression != null;
+	}
+
+	/**
+	 * Resets all of the cached instance variables. This method must be called whenever the expression node tree has
+	 * been modified because of mutation, cross-over, etc...
 	 */
 	public void reset() {
-		getRoot().resetTreeNodeInvalid();
+		if (isRootLazy()) {
+			xLazyRootValid = true;
+		} else {
+			// The node tree may have been modified in place, so the persistent tree and genome no longer match it.
+			getRoot().resetTreeNodeInvalid();
+			xPersistentRoot = null;
+			xGenome = null;
+		}
 		xFitness.reset();
+		xProgram = null;
+		xCompiledExpression = null;
 	}
 
 	/**
-	 * A recursive way to evaluate the function represented by this tree.
+	 * Calculate the fitness of the function represented by this tree, using the fitness cache when it is enabled within
+	 * the Settings.
 	 * 
-	 * @param aTrainingDatum the input training values (X and Y) of the target (perfect) function
-	 * @return the fitness measurement result of the expression based upon the passed in input value
-	 * @throws GPException
+	 * @return the fitness measurement result of the expression based upon all of the training data values
 	 */
 	public Double calculateFitness() {
+		return calculateFitness(Double.POSITIVE_INFINITY);
+	}
+
+	/**
+	 * Calculate the fitness of the function represented by this tree, but stop as soon as the standardized fitness
+	 * exceeds the cutoff (see {@link #calculateBoundedFitness(double)}).
+	 * 
+	 * @param aCutoff the standardized fitness beyond which the evaluation can stop
+	 * @return the fitness measurement result (or a lower bound of it) of the expression
+	 */
+	public Double calculateFitness(double aCutoff) {
+		// A tree that is already invalid evaluates every training datum to the max value no matter what its expression
+		// is, so only valid trees can share the cached fitness of their expression.
+		if (GPSettings.isFitnessCacheEnabled() && isTreeValid()) {
+			return calculateCachedFitness(aCutoff);
+		}
+		return evaluateFitness(aCutoff);
+	}
+
+	/**
+	 * Finish the calculation of the fitness when it was stopped early and only holds a lower bound of the fitness.
+	 */
+	public void completeFitness() {
+		if (xFitness.isLowerBound()) {
+			calculateFitness();
+		}
+	}
+
+	/**
+	 * Lookup the fitness of the function represented by this tree within the {@link FitnessCache} and only evaluate it
+	 * (and add it to the cache) when it is not found.
+	 * 
+	 * @return the fitness measurement result of the expression based upon all of the training data values
+	 */
+	public Double calculateCachedFitness() {
+		return calculateCachedFitness(Double.POSITIVE_INFINITY);
+	}
+
+	/**
+	 * Lookup the fitness within the {@link FitnessCache} and only evaluate it (against the cutoff) when it is not found.
+	 * Only the fitness of a complete evaluation is added to the cache.
+	 * 
+	 * @param aCutoff the standardized fitness beyond which the evaluation can stop
+	 * @return the fitness measurement result (or a lower bound of it) of the expression
+	 */
+	private Double calculateCachedFitness(double aCutoff) {
+		FitnessCache cache = FitnessCache.getInstance();
+		// The simplified expression is used as the key, so that all of the expressions which simplify to the same
+		// canonical form share their cached fitness.
+		PostfixProgram program = GPSettings.isSimplificationEnabled() ? PostfixProgram.compile(getSimplifiedRoot())
+				: getProgram();
+		CachedFitness cachedFitness = cache.get(program, getTrainingData());
+		if (cachedFitness != null) {
+			if (!cachedFitness.isValid()) {
+				setTreeInvalid();
+			}
+			xFitness.setStandardizedFitness(cachedFitness.getStandardizedFitness());
+			return xFitness.getValue();
+		}
+
+		Double fitness = evaluateFitness(aCutoff);
+		if (!xFitness.isLowerBound()) {
+			cache.put(program, getTrainingData(), xFitness.getStandardizedFitness(), isTreeValid());
+		}
+		return fitness;
+	}
+
+	/**
+	 * Evaluate the fitness of the function represented by this tree, stopping early against the cutoff when there is
+	 * one.
+	 * 
+	 * @param aCutoff the standardized fitness beyond which the evaluation can stop (infinity when there is no cutoff)
+	 * @return the fitness measurement result (or a lower bound of it) of the expression
+	 */
+	private Double evaluateFitness(double aCutoff) {
+		// An expression that is invalid from the very first training datum on only needs to be executed for that datum,
+		// which the postfix program does by itself once it turns invalid.
+		if (GPSettings.isIntervalAnalysisEnabled() && isTreeValid() && isAlwaysInvalid()) {
+			return calculatePostfixFitness();
+		}
+		if (aCutoff < Double.POSITIVE_INFINITY && isTreeValid()) {
+			return calculateBoundedFitness(aCutoff);
+		}
+		return evaluateFitness();
+	}
+
+	/**
+	 * Evaluate the fitness of the function represented by this tree using the evaluation mode specified within the
+	 * Settings, simplifying the expression first when simplification is enabled within the Settings.
+	 * 
+	 * @return the fitness measurement result of the expression based upon all of the training data values
+	 */
+	private Double evaluateFitness() {
+		EvaluationMode mode = EvaluationMode.valueOf(GPSettings.getEvaluationMode());
+		if (GPSettings.isSimplificationEnabled() && isTreeValid()) {
+			return evaluateSimplifiedFitness(mode);
+		}
+		return evaluateFitness(mode);
+	}
+
+	/**
+	 * Evaluate the fitness of the simplified expression (see {@link ExpressionSimplifier}) in place of the expression
+	 * itself. The simplified expression gives exactly the same fitness and validity, it just has less to evaluate.
+	 * 
+	 * @param aMode the evaluation mode to evaluate the simplified expression with
+	 * @return the fitness measurement result of the expression based upon all of the training data values
+	 */
+	private Double evaluateSimplifiedFitness(EvaluationMode aMode) {
+		GeneticProgrammingTree simplifiedTree = new GeneticProgrammingTree(getSimplifiedRoot());
+		simplifiedTree.setTrainingData(getTrainingData());
+		simplifiedTree.evaluateFitness(aMode);
+		if (!simplifiedTree.isTreeValid()) {
+			setTreeInvalid();
+		}
+		xFitness.setStandardizedFitness(simplifiedTree.getFitness().getStandardizedFitness());
+		return xFitness.getValue();
+	}
+
+	/**
+	 * Evaluate the fitness of the function represented by this tree using the evaluation mode. Trees that have been
+	 * compiled into bytecode always use their compiled expression unless the interpreter has been explicitly requested.
+	 * 
+	 * @param aMode the evaluation mode to evaluate the expression with
+	 * @return the fitness measurement result of the expression based upon all of the training data values
+	 */
+	private Double evaluateFitness(EvaluationMode aMode) {
+		if (isCompiled() && aMode != EvaluationMode.INTERPRETED) {
+			return calculateCompiledFitness();
+		}
+		switch (aMode) {
+		case INTERPRETED:
+			return calculateInterpretedFitness();
+		case POSTFIX:
+			return calculatePostfixFitness();
+		case TIERED:
+			return calculateTieredFitness();
+		case INCREMENTAL:
+			return calculateIncrementalFitness();
+		case SHARED:
+			return calculateSharedFitness();
+		case BATCH:
+		default:
+			return calculateBatchFitness();
+		}
+	}
+
+	/**
+	 * A recursive way to calculate the fitness of the function represented by this tree by walking the expression node
+	 * tree for each of the training data values.
+	 * 
+	 * @return the fitness measurement result of the expression based upon all of the training data values
+	 */
+	public Double calculateInterpretedFitness() {
+		// The validity of the evaluation is kept aside (rather than within the nodes) and only recorded at the very end.
+		boolean[] valid = { isTreeValid() };
 		xFitness.clear();
 		for (TrainingData trainingDatum : getTrainingData()) {
 			try {
-				xFitness.add(FitnessDatum.calculateStandardizedFitness(trainingDatum, evaluate(trainingDatum)));
+				double output = valid[0] ? getRoot().evaluateOutput(trainingDatum, valid) : Double.MAX_VALUE;
+				xFitness.add(FitnessDatum.calculateStandardizedFitness(trainingDatum, output));
 			} catch (GPException e) {
 				// When an error occurs during the evaluation, then simply add in the biggest standardized fitness value
 				// into the datum.
@@ -81,16 +513,238 @@ public class GeneticProgrammingTree extends BinaryTree implements Comparable<Gen
 				e.printStackTrace();
 			}
 		}
+		if (!valid[0]) {
+			setTreeInvalid();
+		}
+		return xFitness.getValue();
+	}
+
+	/**
+	 * Calculate the fitness of the function represented by this tree by executing its compiled postfix program against
+	 * each of the training data values. The standardized fitness of each training datum is summed up in a primitive
+	 * double before being assigned to the fitness datum, which gives the same result as adding each value into the datum
+	 * (NaN values are skipped) without all of the boxing and logging in the inner loop.
+	 * <p>
+	 * Once an evaluation marks the tree as invalid, all of the following training data evaluate to the max value just
+	 * like they do when recursively evaluating the expression node tree.
+	 * 
+	 * @return the fitness measurement result of the expression based upon all of the training data values
+	 */
+	public Double calculatePostfixFitness() {
+		PostfixProgram program = getProgram();
+		double[] stack = program.newStack();
+		boolean valid = isTreeValid();
+		double standardizedFitness = 0.0;
+		for (TrainingData trainingDatum : getTrainingData()) {
+			double output = Double.MAX_VALUE;
+			if (valid) {
+				valid = program.execute(trainingDatum.getInputData(), stack);
+				output = stack[0];
+			}
+			double fitness = Math.abs(trainingDatum.getOutputData() - output);
+			if (!Double.isNaN(fitness)) {
+				standardizedFitness += fitness;
+			}
+		}
+		if (!valid) {
+			setTreeInvalid();
+		}
+		xFitness.setStandardizedFitness(standardizedFitness);
+		return xFitness.getValue();
+	}
+
+	/**
+	 * Calculate the fitness of the function represented by this tree one training datum at a time (just like
+	 * {@link #calculatePostfixFitness()}), but stop as soon as the standardized fitness summed up so far exceeds the
+	 * cutoff. Since the standardized fitness of each training datum is never negative, the partial sum is a lower bound
+	 * of the actual fitness and is recorded as such in the fitness datum.
+	 * <p>
+	 * A stopped evaluation leaves the tree exactly as it was (even when it already turned invalid), so that
+	 * {@link #completeFitness()} can later evaluate the tree again from the start and get exactly the same fitness as if
+	 * it had never been stopped.
+	 * 
+	 * @param aCutoff the standardized fitness beyond which the evaluation can stop
+	 * @return the fitness measurement result (or a lower bound of it) of the expression
+	 */
+	public Double calculateBoundedFitness(double aCutoff) {
+		PostfixProgram program = GPSettings.isSimplificationEnabled() ? PostfixProgram.compile(getSimplifiedRoot())
+				: getProgram();
+		CompiledExpression expression = GPSettings.isSimplificationEnabled() ? null : xCompiledExpression;
+		double[] stack = program.newStack();
+		double[] result = new double[1];
+		Vector<TrainingData> trainingData = getTrainingData();
+		boolean valid = isTreeValid();
+		double standardizedFitness = 0.0;
+		for (int i = 0; i < trainingData.size(); i++) {
+			TrainingData trainingDatum = trainingData.elementAt(i);
+			double output = Double.MAX_VALUE;
+			if (valid && expression != null) {
+				valid = expression.execute(trainingDatum.getInputData(), result);
+				output = result[0];
+			} else if (valid) {
+				valid = program.execute(trainingDatum.getInputData(), stack);
+				output = stack[0];
+			}
+			double fitness = Math.abs(trainingDatum.getOutputData() - output);
+			if (!Double.isNaN(fitness)) {
+				standardizedFitness += fitness;
+			}
+			if (standardizedFitness > aCutoff && i < trainingData.size() - 1) {
+				xFitness.setLowerBound(standardizedFitness);
+				return xFitness.getValue();
+			}
+		}
+		if (!valid) {
+			setTreeInvalid();
+		}
+		xFitness.setStandardizedFitness(standardizedFitness);
+		return xFitness.getValue();
+	}
+
+	/**
+	 * Calculate the fitness of the function represented by this tree by executing its compiled (bytecode) expression
+	 * against each of the training data values. The rules are the same as {@link #calculatePostfixFitness()}.
+	 * 
+	 * @return the fitness measurement result of the expression based upon all of the training data values
+	 */
+	public Double calculateCompiledFitness() {
+		CompiledExpression expression = xCompiledExpression;
+		double[] result = new double[1];
+		boolean valid = isTreeValid();
+		double standardizedFitness = 0.0;
+		for (TrainingData trainingDatum : getTrainingData()) {
+			double output = Double.MAX_VALUE;
+			if (valid) {
+				valid = expression.execute(trainingDatum.getInputData(), result);
+				output = result[0];
+			}
+			double fitness = Math.abs(trainingDatum.getOutputData() - output);
+			if (!Double.isNaN(fitness)) {
+				standardizedFitness += fitness;
+			}
+		}
+		if (!valid) {
+			setTreeInvalid();
+		}
+		xFitness.setStandardizedFitness(standardizedFitness);
+		return xFitness.getValue();
+	}
+
+	/**
+	 * Calculate the fitness of the function represented by this tree with the {@link TieredEvaluator}, which starts out
+	 * evaluating the compiled postfix program column-wise and switches over to the compiled (bytecode) expression once the
+	 * same expression has been evaluated often enough for it to be compiled.
+	 * 
+	 * @return the fitness measurement result of the expression based upon all of the training data values
+	 */
+	public Double calculateTieredFitness() {
+		xCompiledExpression = TieredEvaluator.getInstance().recordEvaluation(getProgram());
+		if (isCompiled()) {
+			return calculateCompiledFitness();
+		}
+		return calculateBatchFitness();
+	}
+
+	/**
+	 * Calculate the fitness of the function represented by this tree by evaluating its compiled postfix program
+	 * column-wise over all of the training data values at once.
+	 * 
+	 * @return the fitness measurement result of the expression based upon all of the training data values
+	 */
+	public Double calculateBatchFitness() {
+		BatchEvaluator evaluator = xBatchEvaluator.get();
+		double standardizedFitness = evaluator.evaluate(getProgram(), TrainingColumns.getInstance(getTrainingData()),
+				isTreeValid());
+		if (!evaluator.isValid()) {
+			setTreeInvalid();
+		}
+		xFitness.setStandardizedFitness(standardizedFitness);
+		return xFitness.getValue();
+	}
+
+	/**
+	 * Calculate the fitness of the function represented by this tree column-wise over all of the training data values,
+	 * reusing the output columns cached within the nodes by earlier evaluations. After a cross-over or mutation only the
+	 * nodes along the path from the splice point up to the root need to be evaluated again.
+	 * 
+	 * @return the fitness measurement result of the expression based upon all of the training data values
+	 */
+	public Double calculateIncrementalFitness() {
+		IncrementalEvaluator evaluator = xIncrementalEvaluator.get();
+		double standardizedFitness = evaluator.evaluate(getRoot(), TrainingColumns.getInstance(getTrainingData()),
+				isTreeValid());
+		if (!evaluator.isValid()) {
+			setTreeInvalid();
+		}
+		xFitness.setStandardizedFitness(standardizedFitness);
+		return xFitness.getValue();
+	}
+
+	/**
+	 * Calculate the fitness of the function represented by this tree from the output columns of the subexpressions
+	 * shared by the whole population within the {@link SubexpressionCache}, so that a subtree that appears in many
+	 * individuals only gets evaluated once.
+	 * 
+	 * @return the fitness measurement result of the expression based upon all of the training data values
+	 */
+	public Double calculateSharedFitness() {
+		TrainingColumns columns = TrainingColumns.getInstance(getTrainingData());
+		double standardizedFitness;
+		if (isTreeValid()) {
+			Subexpression subexpression = SubexpressionCache.getInstance().evaluate(getRoot(), columns);
+			standardizedFitness = BatchEvaluator.reduce(subexpression.getOutputs(), 0, columns.getOutputs(),
+					columns.size(), subexpression.getFirstInvalid());
+			if (subexpression.getFirstInvalid() < columns.size()) {
+				setTreeInvalid();
+			}
+		} else {
+			// An invalid tree simply evaluates to the max value for all of the training data.
+			standardizedFitness = BatchEvaluator.reduce(null, Double.MAX_VALUE, columns.getOutputs(), columns.size(), -1);
+		}
+		xFitness.setStandardizedFitness(standardizedFitness);
 		return xFitness.getValue();
 	}
 
 	/**
 	 * Selects a random tree node from the expression tree and mutates that node into a newly generated subtree that is
-	 * in turn spliced back into existing tree.
+	 * in turn spliced back into existing tree. When rejecting invalid offspring is enabled within the Settings, a
+	 * mutation that turns the expression into one that is always invalid (see {@link #isAlwaysInvalid()}) is undone.
 	 * 
 	 * @throws GPException
 	 */
 	public void mutate() throws GPException {
+		GeneticProgrammingTree original = null;
+		if (GPSettings.isRejectInvalidOffspringEnabled()) {
+			original = (GeneticProgrammingTree) clone();
+		}
+
+		if (GPSettings.isLinearGenomeEnabled()) {
+			mutateGenome();
+		} else if (GPSettings.isPersistentTreesEnabled()) {
+			mutatePersistentTree();
+		} else {
+			mutateNodeTree();
+		}
+
+		if (original != null && isAlwaysInvalid() && !original.isAlwaysInvalid()) {
+			if (original.xRoot != null) {
+				setRoot(original.xRoot);
+			} else if (original.xPersistentRoot != null) {
+				setPersistentRoot(original.xPersistentRoot);
+			} else {
+				setGenome(original.xGenome);
+			}
+			this.reset();
+			xGenome = original.xGenome;
+		}
+	}
+
+	/**
+	 * Mutate the expression node tree in place.
+	 * 
+	 * @throws GPException
+	 */
+	private void mutateNodeTree() throws GPException {
 		// Randomly select an individual node from anywhere within the expression tree as the target for mutation.
 		BinaryTreeNode existingSubtreeNode = getRandomTreeNode();
 
@@ -124,16 +778,83 @@ public class GeneticProgrammingTree extends BinaryTree implements Comparable<Gen
 		this.reset();
 	}
 
+	/**
+	 * Mutate the tree by splicing a newly generated subtree into its linear genome. The same random numbers are drawn
+	 * (and the same node gets selected) as when mutating the expression node tree directly.
+	 * 
+	 * @throws GPException
+	 */
+	private void mutateGenome() throws GPException {
+		LinearGenome genome = getGenome();
+		int mutationPoint = genome.getPrefixIndex(GPSettings.getRandomInt(genome.size()));
+		Integer newSubtreeHeight = GPSettings.getRandomInt(GPSettings.getMaxHtOfMutationSubtree()) + 1;
+		BinaryTreeNode newSubtreeRoot = GPTreeFactory.generateGrowSubtree(newSubtreeHeight);
+
+		LinearGenome mutatedGenome = genome.splice(mutationPoint, LinearGenome.encode(newSubtreeRoot), 0);
+		this.setGenome(mutatedGenome);
+		this.reset();
+	}
+
+	/**
+	 * Mutate the tree by replacing a subtree of its persistent tree, which only rebuilds the nodes along the path from
+	 * the mutation point up to the root. The same random numbers are drawn (and the same node gets selected) as when
+	 * mutating the expression node tree directly.
+	 * 
+	 * @throws GPException
+	 */
+	private void mutatePersistentTree() throws GPException {
+		PersistentNode root = getPersistentRoot();
+		int mutationPoint = GPSettings.getRandomInt(root.size());
+		Integer newSubtreeHeight = GPSettings.getRandomInt(GPSettings.getMaxHtOfMutationSubtree()) + 1;
+		BinaryTreeNode newSubtreeRoot = GPTreeFactory.generateGrowSubtree(newSubtreeHeight);
+
+		this.setPersistentRoot(root.replace(mutationPoint, PersistentNode.valueOf(newSubtreeRoot)));
+		this.reset();
+	}
+
+	/**
+	 * Individuals share their persistent tree or genome (rather than deep copying the node tree) when the node tree has
+	 * yet to be built from one, or when persistent trees are enabled within the Settings.
+	 * 
+	 * @return a deep copy of the root node or null when the clone shares the persistent tree or genome instead
+	 */
+	@Override
+	protected BinaryTreeNode cloneRoot() {
+		if (isRootLazy()) {
+			return null;
+		}
+		if (GPSettings.isPersistentTreesEnabled()) {
+			getPersistentRoot();
+			return null;
+		}
+		return super.cloneRoot();
+	}
+
 	@Override
 	public Object clone() {
 		GeneticProgrammingTree newClone = (GeneticProgrammingTree) super.clone();
 		newClone.setFitness((FitnessDatum) getFitness().clone());
 
+		// The clone has exactly the same expression, so it can share the (immutable) compiled forms of this tree.
+		newClone.xProgram = xProgram;
+		newClone.xCompiledExpression = xCompiledExpression;
+		newClone.xGenome = xGenome;
+		if (newClone.xRoot == null) {
+			newClone.xPersistentRoot = xPersistentRoot;
+			newClone.xLazyRootValid = isTreeValid();
+		}
+
 		return newClone;
 	}
 
 	@Override
 	public int compareTo(GeneticProgrammingTree otherGPT) {
+		// A lower bound of the fitness can only be compared once it is already worse than the fitness of the other tree,
+		// otherwise the fitness of both trees has to be completed first.
+		if (!this.getFitness().isComparable(otherGPT.getFitness())) {
+			this.completeFitness();
+			otherGPT.completeFitness();
+		}
 		return this.getFitness().compareTo(otherGPT.getFitness());
 	}
 }
@@ -0,0 +1,101 @@
+package edu.stthomas.seis610.tree;
+
+import java.util.Arrays;
+
+import edu.stthomas.seis610.gp.TrainingColumns;
+
+//=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+/**
+ * The IncrementalEvaluator evaluates an expression node tree column-wise over all of the training data (just like the
+ * {@link BatchEvaluator}) but keeps the output column of every node within the node itself. The output columns survive
+ * cloning and are only discarded for the nodes along the path from a changed node up to the root, so after a cross-over
+ * or mutation only that path needs to be evaluated again while every untouched subtree reuses its cached column.
+ * <p>
+ * Along with its output column each node also keeps the index of the first training datum that invalidates its
+ * subtree (a division by zero, or always the first datum for the SIN, COS and POW operators). The evaluation of the tree
+ * is invalid from the smallest of these indexes on, which gives the same results as {@link OperatorNode#evaluateOutput}.
+ *
+ * @version 1.2
+ */
+// =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+public class IncrementalEvaluator {
+
+	private boolean xValid = true;
+
+	/**
+	 * @return the indicator if the last evaluated tree is still valid
+	 */
+	public boolean isValid() {
+		return xValid;
+	}
+
+	/**
+	 * Calculate the standardized fitness of an expression node tree, reusing (and filling in) the output columns cached
+	 * within its nodes.
+	 *
+	 * @param aRoot the root node of the expression tree to evaluate
+	 * @param aColumns the training data values in columns
+	 * @param aValid the indicator if the tree is valid before the evaluation
+	 * @return the total standardized fitness of the expression tree
+	 */
+	public double evaluate(BinaryTreeNode aRoot, TrainingColumns aColumns, boolean aValid) {
+		final int size = aColumns.size();
+		if (!aValid) {
+			// An invalid tree simply evaluates to the max value for all of the training data.
+			xValid = false;
+			return BatchEvaluator.reduce(null, Double.MAX_VALUE, aColumns.getOutputs(), size, -1);
+		}
+
+		double[] results = getOutputs(aRoot, aColumns);
+		xValid = (aRoot.xFirstInvalid >= size);
+		return BatchEvaluator.reduce(results, 0, aColumns.getOutputs(), size, aRoot.xFirstInvalid);
+	}
+
+	/**
+	 * Recursive method to get the output column of a node, computing (and caching) it from the output columns of its
+	 * children when it is not already cached for the training data.
+	 *
+	 * @param aNode the current node within the expression tree
+	 * @param aColumns the training data values in columns
+	 * @return the output column of the node
+	 */
+	private static double[] getOutputs(BinaryTreeNode aNode, TrainingColumns aColumns) {
+		if (aNode.xOutputs != null && aNode.xOutputColumns == aColumns) {
+			return aNode.xOutputs;
+		}
+
+		final int size = aColumns.size();
+		double[] outputs;
+		int firstInvalid = size;
+		if (aNode instanceof OperandNode) {
+			OperandNode operand = (OperandNode) aNode;
+			if (operand.isVariable()) {
+				// No need to copy the inputs, simply refer to the column of the training data.
+				outputs = aColumns.getInputs();
+			} else {
+				outputs = new double[size];
+				Arrays.fill(outputs, operand.getValue());
+			}
+		} else {
+			OperatorNode operator = (OperatorNode) aNode;
+			int opcode = PostfixProgram.getOpcode(operator.getOperator());
+			double[] left = getOutputs(operator.getLeftChild(), aColumns);
+			firstInvalid = operator.getLeftChild().xFirstInvalid;
+			double[] right = null;
+			if (operator.getNumberOfChildren() > 1) {
+				right = getOutputs(operator.getRightChild(), aColumns);
+				firstInvalid = Math.min(firstInvalid, operator.getRightChild().xFirstInvalid);
+			}
+			outputs = new double[size];
+			firstInvalid = Math.min(firstInvalid, BatchEvaluator.applyOperator(opcode, left, right, outputs, size));
+			if (opcode == PostfixProgram.OP_SIN || opcode == PostfixProgram.OP_COS || opcode == PostfixProgram.OP_POW) {
+				firstInvalid = 0;
+			}
+		}
+
+		aNode.xOutputs = outputs;
+		aNode.xOutputColumns = aColumns;
+		aNode.xFirstInvalid = firstInvalid;
+		return outputs;
+	}
+}
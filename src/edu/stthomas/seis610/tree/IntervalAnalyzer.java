@@ -0,0 +1,281 @@
+package edu.stthomas.seis610.tree;
+
+import edu.stthomas.seis610.gp.TrainingColumns;
+
+//=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+/**
+ * The IntervalAnalyzer bounds the range of values each subtree of an expression can take on over the range of the
+ * training input values (interval arithmetic), without evaluating the expression for any of the training data. This
+ * tells ahead of time whether an expression can ever be valid:
+ * <ul>
+ * <li>An expression with a SIN, COS or POW operator, or with a divisor whose range is only zero, is <i>always
+ * invalid</i>. It is already invalid for the very first training datum.</li>
+ * <li>An expression with a divisor whose range includes zero <i>may be invalid</i>.</li>
+ * <li>An expression whose range reaches infinity may blow up (overflow) for some of the training data.</li>
+ * </ul>
+ * Since every IEEE 754 operation is correctly rounded (and rounding never changes the order of two values), computing
+ * the bounds with the same double operations as the evaluation always gives bounds that hold for the evaluation as
+ * well. Any subtree whose bounds are not finite (or could be NaN) is simply treated as having an unknown range.
+ * <p>
+ * Note: The analyzer keeps the results of the last analysis so an analyzer must not be shared between threads.
+ *
+ * @version 1.2
+ */
+// =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+public class IntervalAnalyzer {
+
+	private final Interval xInput;
+	private boolean xAlwaysInvalid;
+	private boolean xMaybeInvalid;
+
+	/**
+	 * Constructor to create an analyzer for the range of the input values.
+	 *
+	 * @param aMinInput the smallest input (X) value
+	 * @param aMaxInput the largest input (X) value
+	 */
+	public IntervalAnalyzer(double aMinInput, double aMaxInput) {
+		Interval input = Interval.valueOf(aMinInput, aMaxInput);
+		xInput = (input.isBounded() && aMinInput <= aMaxInput) ? input : Interval.UNKNOWN;
+	}
+
+	/**
+	 * Constructor to create an analyzer for the range of the input values of the training data.
+	 *
+	 * @param aColumns the training data values in columns
+	 */
+	public IntervalAnalyzer(TrainingColumns aColumns) {
+		this(aColumns.getMinInput(), aColumns.getMaxInput());
+	}
+
+	/**
+	 * @return the indicator if the last analyzed expression is invalid for every training datum
+	 */
+	public boolean isAlwaysInvalid() {
+		return xAlwaysInvalid;
+	}
+
+	/**
+	 * @return the indicator if the last analyzed expression may be invalid for some of the training data
+	 */
+	public boolean isMaybeInvalid() {
+		return xMaybeInvalid;
+	}
+
+	/**
+	 * Analyze the expression node tree.
+	 *
+	 * @param aRoot the root node of the expression tree to analyze
+	 * @return the range of the values of the expression
+	 */
+	public Interval analyze(BinaryTreeNode aRoot) {
+		xAlwaysInvalid = false;
+		xMaybeInvalid = false;
+		return getRange(aRoot);
+	}
+
+	/**
+	 * Analyze the persistent expression tree.
+	 *
+	 * @param aRoot the root of the persistent expression tree to analyze
+	 * @return the range of the values of the expression
+	 */
+	public Interval analyze(PersistentNode aRoot) {
+		xAlwaysInvalid = false;
+		xMaybeInvalid = false;
+		return getRange(aRoot);
+	}
+
+	/**
+	 * Analyze the linear genome of an expression tree.
+	 *
+	 * @param aGenome the genome of the expression tree to analyze
+	 * @return the range of the values of the expression
+	 */
+	public Interval analyze(LinearGenome aGenome) {
+		xAlwaysInvalid = false;
+		xMaybeInvalid = false;
+		return getRange(aGenome, new int[] { 0 });
+	}
+
+	/**
+	 * Recursive method to get the range of the values of an expression node (and its subtree).
+	 *
+	 * @param aNode the current node within the expression tree
+	 * @return the range of the values of the subtree
+	 */
+	private Interval getRange(BinaryTreeNode aNode) {
+		if (aNode instanceof OperandNode) {
+			OperandNode operand = (OperandNode) aNode;
+			return operand.isVariable() ? xInput : Interval.valueOf(operand.getValue(), operand.getValue());
+		}
+
+		OperatorNode operator = (OperatorNode) aNode;
+		Interval left = getRange(operator.getLeftChild());
+		Interval right = (operator.getNumberOfChildren() > 1) ? getRange(operator.getRightChild()) : null;
+		return getRange(PostfixProgram.getOpcode(operator.getOperator()), left, right);
+	}
+
+	/**
+	 * Recursive method to get the range of the values of a persistent node (and its subtree).
+	 *
+	 * @param aNode the current node within the persistent tree
+	 * @return the range of the values of the subtree
+	 */
+	private Interval getRange(PersistentNode aNode) {
+		switch (aNode.getOpcode()) {
+		case PostfixProgram.OP_VARIABLE:
+			return xInput;
+		case PostfixProgram.OP_CONSTANT:
+			return Interval.valueOf(aNode.getConstant(), aNode.getConstant());
+		default:
+			Interval left = getRange(aNode.getLeftChild());
+			Interval right = (aNode.getRightChild() != null) ? getRange(aNode.getRightChild()) : null;
+			return getRange(aNode.getOpcode(), left, right);
+		}
+	}
+
+	/**
+	 * Recursive method to get the range of the values of a genome node (and its subtree) at the cursor.
+	 *
+	 * @param aGenome the genome being analyzed
+	 * @param aCursor the index of the next node to analyze (updated as the nodes are analyzed)
+	 * @return the range of the values of the subtree
+	 */
+	private Interval getRange(LinearGenome aGenome, int[] aCursor) {
+		int index = aCursor[0]++;
+		int opcode = aGenome.getOpcode(index);
+		switch (opcode) {
+		case PostfixProgram.OP_VARIABLE:
+			return xInput;
+		case PostfixProgram.OP_CONSTANT:
+			return Interval.valueOf(aGenome.getConstant(index), aGenome.getConstant(index));
+		default:
+			Interval left = getRange(aGenome, aCursor);
+			Interval right = (opcode != PostfixProgram.OP_SIN && opcode != PostfixProgram.OP_COS) ? getRange(aGenome,
+					aCursor) : null;
+			return getRange(opcode, left, right);
+		}
+	}
+
+	/**
+	 * Get the range of the values of an operator from the ranges of its operands, and note whether it makes the
+	 * expression (maybe) invalid.
+	 *
+	 * @param aOpcode the opcode of the operator
+	 * @param aLeft the range of the left operand
+	 * @param aRight the range of the right operand (null for unary operators)
+	 * @return the range of the values of the operator
+	 */
+	private Interval getRange(int aOpcode, Interval aLeft, Interval aRight) {
+		switch (aOpcode) {
+		case PostfixProgram.OP_ADD:
+			if (!aLeft.isBounded() || !aRight.isBounded()) {
+				return Interval.UNKNOWN;
+			}
+			return Interval.valueOf(aLeft.xLow + aRight.xLow, aLeft.xHigh + aRight.xHigh);
+		case PostfixProgram.OP_SUB:
+			if (!aLeft.isBounded() || !aRight.isBounded()) {
+				return Interval.UNKNOWN;
+			}
+			return Interval.valueOf(aLeft.xLow - aRight.xHigh, aLeft.xHigh - aRight.xLow);
+		case PostfixProgram.OP_MUL:
+			if (!aLeft.isBounded() || !aRight.isBounded()) {
+				return Interval.UNKNOWN;
+			}
+			return Interval.valueOf(aLeft.xLow * aRight.xLow, aLeft.xLow * aRight.xHigh, aLeft.xHigh * aRight.xLow,
+					aLeft.xHigh * aRight.xHigh);
+		case PostfixProgram.OP_DIV:
+			if (aRight.xLow == 0 && aRight.xHigh == 0) {
+				xAlwaysInvalid = true;
+				return Interval.UNKNOWN;
+			} else if (!aRight.isBounded() || aRight.contains(0)) {
+				xMaybeInvalid = true;
+				return Interval.UNKNOWN;
+			} else if (!aLeft.isBounded()) {
+				return Interval.UNKNOWN;
+			}
+			return Interval.valueOf(aLeft.xLow / aRight.xLow, aLeft.xLow / aRight.xHigh, aLeft.xHigh / aRight.xLow,
+					aLeft.xHigh / aRight.xHigh);
+		case PostfixProgram.OP_SIN:
+		case PostfixProgram.OP_COS:
+			xAlwaysInvalid = true;
+			return aLeft.isBounded() ? Interval.valueOf(-1.0, 1.0) : Interval.UNKNOWN;
+		default:
+			xAlwaysInvalid = true;
+			return Interval.UNKNOWN;
+		}
+	}
+
+	// =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	/**
+	 * The closed range [low, high] of the values of a subtree. The unknown range may hold any value (including NaN).
+	 */
+	// =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	public static class Interval {
+		public static final Interval UNKNOWN = new Interval(Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY);
+
+		private final double xLow;
+		private final double xHigh;
+
+		/**
+		 * @param aLow the lower bound of the range
+		 * @param aHigh the upper bound of the range
+		 */
+		private Interval(double aLow, double aHigh) {
+			xLow = aLow;
+			xHigh = aHigh;
+		}
+
+		/**
+		 * @param aBounds the candidate bounds of the range
+		 * @return the smallest range that holds all of the bounds (or the unknown range when any of them is NaN)
+		 */
+		private static Interval valueOf(double... aBounds) {
+			double low = Double.POSITIVE_INFINITY;
+			double high = Double.NEGATIVE_INFINITY;
+			for (double bound : aBounds) {
+				if (Double.isNaN(bound)) {
+					return UNKNOWN;
+				}
+				low = Math.min(low, bound);
+				high = Math.max(high, bound);
+			}
+			return new Interval(low, high);
+		}
+
+		/**
+		 * @return the lower bound of the range
+		 */
+		public double getLow() {
+			return xLow;
+		}
+
+		/**
+		 * @return the upper bound of the range
+		 */
+		public double getHigh() {
+			return xHigh;
+		}
+
+		/**
+		 * @return the indicator if both bounds of the range are finite (so it can never hold an infinite or NaN value)
+		 */
+		public boolean isBounded() {
+			return !Double.isInfinite(xLow) && !Double.isInfinite(xHigh);
+		}
+
+		/**
+		 * @param aValue the value to check
+		 * @return the indicator if the value lies within the range
+		 */
+		public boolean contains(double aValue) {
+			return xLow <= aValue && aValue <= xHigh;
+		}
+
+		@Override
+		public String toString() {
+			return "[" + xLow + ", " + xHigh + "]";
+		}
+	}
+}
@@ -0,0 +1,357 @@
+package edu.stthomas.seis610.tree;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+import edu.stthomas.seis610.tree.BinaryTreeNode.NodeType;
+import edu.stthomas.seis610.tree.OperatorNode.OperatorType;
+import edu.stthomas.seis610.util.GPException;
+
+//=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+/**
+ * A linear (prefix-order) encoding of an expression node tree. Each node is a single byte opcode (the same opcodes as
+ * the {@link PostfixProgram}) with a parallel array holding the constant operand values. Since every node is followed
+ * by all of the nodes of its subtree, a subtree is always a contiguous range of the arrays whose end is found by a
+ * simple scan of the arity of the opcodes. This turns cross-over and subtree mutation into a few array copies rather
+ * than deep copies of the parents followed by the relinking of the parent, child and node type references.
+ * <p>
+ * Genomes are immutable, so they can be shared freely. The same encoding is also written by {@link #toByteArray()} as
+ * a compact binary format for storing or transferring individuals.
+ *
+ * @version 1.2
+ */
+// =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+public class LinearGenome {
+
+	/**
+	 * Define the Arity (Number of Children) of each Opcode
+	 */
+	private static final int[] ARITY = { 0, 0, 2, 2, 2, 2, 1, 1, 2 };
+
+	private final byte[] xOpcodes;
+	private final double[] xConstants;
+	private int[] xPrefixIndexes;
+
+	/**
+	 * Private constructor, genomes are only built through {@link #encode(BinaryTreeNode)} or from other genomes.
+	 *
+	 * @param aOpcodes the opcodes of the nodes in prefix-order
+	 * @param aConstants the constant operand values (parallel to the opcodes)
+	 */
+	private LinearGenome(byte[] aOpcodes, double[] aConstants) {
+		xOpcodes = aOpcodes;
+		xConstants = aConstants;
+	}
+
+	/**
+	 * Encode the expression node tree (or subtree) starting at the passed in node.
+	 *
+	 * @param aRoot the root node of the expression tree to encode
+	 * @return the newly encoded genome for the expression tree
+	 */
+	public static LinearGenome encode(BinaryTreeNode aRoot) {
+		int size = countNodes(aRoot);
+		LinearGenome genome = new LinearGenome(new byte[size], new double[size]);
+		genome.encode(aRoot, 0);
+		return genome;
+	}
+
+	/**
+	 * Read a genome back in from the binary format written by {@link #toByteArray()}.
+	 *
+	 * @param aBytes the binary format of the genome
+	 * @return the genome read from the bytes
+	 * @throws GPException
+	 */
+	public static LinearGenome fromByteArray(byte[] aBytes) throws GPException {
+		try {
+			DataInputStream input = new DataInputStream(new ByteArrayInputStream(aBytes));
+			int size = input.readInt();
+			byte[] opcodes = new byte[size];
+			double[] constants = new double[size];
+			input.readFully(opcodes);
+			for (int i = 0; i < size; i++) {
+				if (opcodes[i] == PostfixProgram.OP_CONSTANT) {
+					constants[i] = input.readDouble();
+				}
+			}
+			LinearGenome genome = new LinearGenome(opcodes, constants);
+			if (size == 0 || genome.getSubtreeEnd(0) != size) {
+				throw new GPException("Invalid genome encountered: " + Arrays.toString(opcodes));
+			}
+			return genome;
+		} catch (IOException | ArrayIndexOutOfBoundsException e) {
+			throw new GPException("Unable to read genome: " + e);
+		}
+	}
+
+	/**
+	 * Write the genome in its binary format: the number of nodes, the opcodes and then only the constant values (so a
+	 * node takes a single byte unless it is a constant).
+	 *
+	 * @return the binary format of the genome
+	 */
+	public byte[] toByteArray() {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(4 + xOpcodes.length * 4);
+		try {
+			DataOutputStream output = new DataOutputStream(bytes);
+			output.writeInt(xOpcodes.length);
+			output.write(xOpcodes);
+			for (int i = 0; i < xOpcodes.length; i++) {
+				if (xOpcodes[i] == PostfixProgram.OP_CONSTANT) {
+					output.writeDouble(xConstants[i]);
+				}
+			}
+			output.flush();
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+		return bytes.toByteArray();
+	}
+
+	/**
+	 * @return the number of nodes within the genome
+	 */
+	public int size() {
+		return xOpcodes.length;
+	}
+
+	/**
+	 * @param aIndex the (prefix-order) index of the node whose subtree to find the end of
+	 * @return the index following the last node of the subtree
+	 */
+	public int getSubtreeEnd(int aIndex) {
+		int index = aIndex;
+		int pending = 1;
+		while (pending > 0) {
+			pending += ARITY[xOpcodes[index++]] - 1;
+		}
+		return index;
+	}
+
+	/**
+	 * @return the height of the expression tree represented by the genome
+	 */
+	public int getHeight() {
+		// Walk the nodes backwards so the heights of the children are always known before their parent is reached.
+		int[] heights = new int[xOpcodes.length];
+		int top = -1;
+		for (int i = xOpcodes.length - 1; i >= 0; i--) {
+			int height = 0;
+			for (int child = 0; child < ARITY[xOpcodes[i]]; child++) {
+				height = Math.max(height, 1 + heights[top--]);
+			}
+			heights[++top] = height;
+		}
+		return heights[0];
+	}
+
+	/**
+	 * @return the structural hash of the expression tree represented by the genome (the same hash as its node tree)
+	 */
+	public int getStructuralHash() {
+		// Walk the nodes backwards so the hashes of the children are always known before their parent is reached.
+		int[] hashes = new int[xOpcodes.length];
+		int top = -1;
+		for (int i = xOpcodes.length - 1; i >= 0; i--) {
+			int leftHash = (ARITY[xOpcodes[i]] > 0) ? hashes[top--] : 0;
+			int rightHash = (ARITY[xOpcodes[i]] > 1) ? hashes[top--] : 0;
+			hashes[++top] = BinaryTreeNode.getStructuralHash(BinaryTreeNode.getDataHash(getOpcode(i), getConstant(i)),
+					leftHash, rightHash);
+		}
+		return hashes[0];
+	}
+
+	/**
+	 * @param aIndex the (prefix-order) index of the node
+	 * @return the opcode of the node
+	 */
+	public int getOpcode(int aIndex) {
+		return xOpcodes[aIndex];
+	}
+
+	/**
+	 * @param aIndex the (prefix-order) index of the node
+	 * @return the constant operand value of the node (only meaningful for {@link PostfixProgram#OP_CONSTANT})
+	 */
+	public double getConstant(int aIndex) {
+		return (xOpcodes[aIndex] == PostfixProgram.OP_CONSTANT) ? xConstants[aIndex] : 0.0;
+	}
+
+	/**
+	 * Translate the index of a node in "post-order" (the order used by {@link BinaryTree#getRandomTreeNode()}) into its
+	 * index within the genome, so that a random node selection picks the same node for both representations.
+	 *
+	 * @param aPostOrderIndex the index of the node in post-order
+	 * @return the index of the same node in prefix-order
+	 */
+	public int getPrefixIndex(int aPostOrderIndex) {
+		if (xPrefixIndexes == null) {
+			// A node is preceded in post-order by all of its descendants and by the nodes before it in prefix-order
+			// other than its ancestors, so postOrder = prefix - depth + (subtreeSize - 1).
+			int size = xOpcodes.length;
+			int[] subtreeSizes = new int[size];
+			int[] stack = new int[size];
+			int top = -1;
+			for (int i = size - 1; i >= 0; i--) {
+				subtreeSizes[i] = 1;
+				for (int child = 0; child < ARITY[xOpcodes[i]]; child++) {
+					subtreeSizes[i] += stack[top--];
+				}
+				stack[++top] = subtreeSizes[i];
+			}
+
+			// Reuse the stack to hold the number of children still pending for each of the ancestors of the node.
+			int[] prefixIndexes = new int[size];
+			top = -1;
+			for (int i = 0; i < size; i++) {
+				prefixIndexes[i - (top + 1) + (subtreeSizes[i] - 1)] = i;
+				if (ARITY[xOpcodes[i]] > 0) {
+					stack[++top] = ARITY[xOpcodes[i]];
+				} else {
+					while (top >= 0 && --stack[top] == 0) {
+						top--;
+					}
+				}
+			}
+			xPrefixIndexes = prefixIndexes;
+		}
+		return xPrefixIndexes[aPostOrderIndex];
+	}
+
+	/**
+	 * Build a new genome with the subtree at a node of this genome replaced by a subtree of another genome.
+	 *
+	 * @param aIndex the (prefix-order) index of the node in this genome whose subtree is replaced
+	 * @param aDonor the genome that contains the subtree to splice in
+	 * @param aDonorIndex the (prefix-order) index of the node in the donor genome whose subtree is spliced in
+	 * @return the newly built genome
+	 */
+	public LinearGenome splice(int aIndex, LinearGenome aDonor, int aDonorIndex) {
+		int end = getSubtreeEnd(aIndex);
+		int donorEnd = aDonor.getSubtreeEnd(aDonorIndex);
+		int donorLength = donorEnd - aDonorIndex;
+		int tailLength = xOpcodes.length - end;
+		int size = aIndex + donorLength + tailLength;
+
+		byte[] opcodes = Arrays.copyOf(xOpcodes, size);
+		double[] constants = Arrays.copyOf(xConstants, size);
+		System.arraycopy(aDonor.xOpcodes, aDonorIndex, opcodes, aIndex, donorLength);
+		System.arraycopy(aDonor.xConstants, aDonorIndex, constants, aIndex, donorLength);
+		System.arraycopy(xOpcodes, end, opcodes, aIndex + donorLength, tailLength);
+		System.arraycopy(xConstants, end, constants, aIndex + donorLength, tailLength);
+		return new LinearGenome(opcodes, constants);
+	}
+
+	/**
+	 * Decode the genome back into an expression node tree.
+	 *
+	 * @return the root node of the newly built expression tree
+	 * @throws GPException
+	 */
+	public BinaryTreeNode decode() throws GPException {
+		int[] cursor = { 0 };
+		BinaryTreeNode root = decode(cursor);
+		root.setNodeType(NodeType.ROOT);
+		return root;
+	}
+
+	/**
+	 * Recursive method to build the node (and its subtree) at the cursor.
+	 *
+	 * @param aCursor the index of the next node to decode (updated as the nodes are decoded)
+	 * @return the newly built node
+	 * @throws GPException
+	 */
+	private BinaryTreeNode decode(int[] aCursor) throws GPException {
+		int index = aCursor[0]++;
+		int opcode = xOpcodes[index];
+		if (opcode == PostfixProgram.OP_VARIABLE) {
+			OperandNode operand = new OperandNode(0.0);
+			operand.setVariable(true);
+			return operand;
+		} else if (opcode == PostfixProgram.OP_CONSTANT) {
+			return new OperandNode(xConstants[index]);
+		}
+
+		OperatorNode operator = new OperatorNode(OperatorType.values()[opcode - PostfixProgram.OP_ADD]);
+		BinaryTreeNode leftChild = decode(aCursor);
+		leftChild.setNodeType(NodeType.LEFT);
+		leftChild.setParent(operator);
+		operator.setLeftChild(leftChild);
+		if (ARITY[opcode] > 1) {
+			BinaryTreeNode rightChild = decode(aCursor);
+			rightChild.setNodeType(NodeType.RIGHT);
+			rightChild.setParent(operator);
+			operator.setRightChild(rightChild);
+		}
+		return operator;
+	}
+
+	/**
+	 * Recursive method to encode the node and all of its children in prefix-order.
+	 *
+	 * @param aNode the current node within the expression tree
+	 * @param aIndex the index to encode the node at
+	 * @return the index following the last node of the subtree
+	 */
+	private int encode(BinaryTreeNode aNode, int aIndex) {
+		if (aNode instanceof OperandNode) {
+			OperandNode operand = (OperandNode) aNode;
+			if (operand.isVariable()) {
+				xOpcodes[aIndex] = PostfixProgram.OP_VARIABLE;
+			} else {
+				xOpcodes[aIndex] = PostfixProgram.OP_CONSTANT;
+				xConstants[aIndex] = operand.getValue();
+			}
+			return aIndex + 1;
+		}
+
+		OperatorNode operator = (OperatorNode) aNode;
+		xOpcodes[aIndex] = (byte) PostfixProgram.getOpcode(operator.getOperator());
+		int index = encode(operator.getLeftChild(), aIndex + 1);
+		if (operator.getNumberOfChildren() > 1) {
+			index = encode(operator.getRightChild(), index);
+		}
+		return index;
+	}
+
+	/**
+	 * @param aNode the current node within the expression tree
+	 * @return the number of nodes within the subtree
+	 */
+	private static int countNodes(BinaryTreeNode aNode) {
+		int count = 1;
+		if (aNode.hasLeftChild()) {
+			count += countNodes(aNode.getLeftChild());
+		}
+		if (aNode.hasRightChild()) {
+			count += countNodes(aNode.getRightChild());
+		}
+		return count;
+	}
+
+	@Override
+	public String toString() {
+		StringBuffer outputBuf = new StringBuffer();
+		for (int i = 0; i < xOpcodes.length; i++) {
+			if (i > 0)
+				outputBuf.append(" ");
+			switch (xOpcodes[i]) {
+			case PostfixProgram.OP_CONSTANT:
+				outputBuf.append((int) xConstants[i]);
+				break;
+			case PostfixProgram.OP_VARIABLE:
+				outputBuf.append("x");
+				break;
+			default:
+				outputBuf.append(OperatorType.values()[xOpcodes[i] - PostfixProgram.OP_ADD]);
+			}
+		}
+		return outputBuf.toString();
+	}
+}
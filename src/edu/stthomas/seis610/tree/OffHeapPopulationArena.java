@@ -0,0 +1,530 @@
+package edu.stthomas.seis610.tree;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import edu.stthomas.seis610.gp.GPSettings;
+import edu.stthomas.seis610.gp.TrainingColumns;
+import edu.stthomas.seis610.tree.BinaryTreeNode.NodeType;
+import edu.stthomas.seis610.tree.OperatorNode.OperatorType;
+import edu.stthomas.seis610.util.GPException;
+
+//=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+/**
+ * An off-heap version of the {@link PopulationArena} for very large populations (millions of individuals). The encoded
+ * genomes of the individuals are kept in direct (native) memory buffers outside of the Java heap, so the garbage
+ * collector never has to scan or copy them and the heap stays small no matter how large the population gets.
+ * <p>
+ * Each node is a fixed size record (opcode, subtree size and constant value) and the nodes of an individual are stored
+ * next to each other in "post-order", so every subtree is a contiguous range of records that ends with its root. Each
+ * individual is a record within a second buffer (first node, number of nodes, stack depth, flags and fitness).
+ * Evaluation reads the records directly out of the buffers and reproduction, cross-over and mutation copy ranges of
+ * records from one buffer to another.
+ * <p>
+ * The buffers are allocated once and are only replaced by larger ones when they run out of room, so an arena is meant to
+ * be recycled with {@link #clear()} between generations. A single buffer is limited to 2GB, which is about 134 million
+ * nodes.
+ * <p>
+ * Note: An arena is not thread safe.
+ *
+ * @version 1.2
+ */
+// =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+public class OffHeapPopulationArena {
+
+	/**
+	 * Define Constants for the Layout of a Node Record
+	 */
+	private static final int NODE_OPCODE = 0;
+	private static final int NODE_SUBTREE_SIZE = 4;
+	private static final int NODE_CONSTANT = 8;
+	private static final int NODE_RECORD_SIZE = 16;
+
+	/**
+	 * Define Constants for the Layout of an Individual Record
+	 */
+	private static final int INDIVIDUAL_START = 0;
+	private static final int INDIVIDUAL_SIZE = 4;
+	private static final int INDIVIDUAL_STACK_DEPTH = 8;
+	private static final int INDIVIDUAL_FLAGS = 12;
+	private static final int INDIVIDUAL_FITNESS = 16;
+	private static final int INDIVIDUAL_RECORD_SIZE = 24;
+
+	private static final int FLAG_ALWAYS_INVALID = 1;
+	private static final int FLAG_INVALID = 2;
+
+	private ByteBuffer xNodes;
+	private ByteBuffer xIndividuals;
+	private int xNodeCount = 0;
+	private int xIndividualCount = 0;
+
+	private double[] xStack = new double[0];
+	private int[] xLinkStack = new int[0];
+
+	/**
+	 * Constructor to create an arena with enough room for the expected number of individuals and nodes.
+	 *
+	 * @param aIndividualCapacity the number of individuals to allocate room for
+	 * @param aNodeCapacity the total number of nodes (over all of the individuals) to allocate room for
+	 */
+	public OffHeapPopulationArena(int aIndividualCapacity, int aNodeCapacity) {
+		xNodes = allocate(Math.max(1, aNodeCapacity), NODE_RECORD_SIZE);
+		xIndividuals = allocate(Math.max(1, aIndividualCapacity), INDIVIDUAL_RECORD_SIZE);
+	}
+
+	/**
+	 * Remove all of the individuals from the arena so that it can be reused for another generation. None of the native
+	 * memory is released.
+	 */
+	public void clear() {
+		xNodeCount = 0;
+		xIndividualCount = 0;
+	}
+
+	/**
+	 * @return the number of individuals within the arena
+	 */
+	public int getIndividualCount() {
+		return xIndividualCount;
+	}
+
+	/**
+	 * @return the total number of nodes (over all of the individuals) within the arena
+	 */
+	public int getNodeCount() {
+		return xNodeCount;
+	}
+
+	/**
+	 * @param aIndividual the index of the individual within the arena
+	 * @return the number of nodes within the individual
+	 */
+	public int getSize(int aIndividual) {
+		return xIndividuals.getInt(aIndividual * INDIVIDUAL_RECORD_SIZE + INDIVIDUAL_SIZE);
+	}
+
+	/**
+	 * @param aIndividual the index of the individual within the arena
+	 * @return the height of the expression tree of the individual
+	 */
+	public int getHeight(int aIndividual) {
+		// The node records have no room for the subtree heights, so work them out from the bottom up (post-order).
+		int start = getStart(aIndividual);
+		int end = start + getSize(aIndividual);
+		if (xLinkStack.length < end - start) {
+			xLinkStack = new int[end - start];
+		}
+		int top = -1;
+		for (int slot = start; slot < end; slot++) {
+			int opcode = xNodes.getInt(slot * NODE_RECORD_SIZE + NODE_OPCODE);
+			int height = 0;
+			if (opcode == PostfixProgram.OP_SIN || opcode == PostfixProgram.OP_COS) {
+				height = 1 + xLinkStack[top--];
+			} else if (opcode != PostfixProgram.OP_CONSTANT && opcode != PostfixProgram.OP_VARIABLE) {
+				height = 1 + Math.max(xLinkStack[top--], xLinkStack[top--]);
+			}
+			xLinkStack[++top] = height;
+		}
+		return xLinkStack[0];
+	}
+
+	/**
+	 * @param aIndividual the index of the individual within the arena
+	 * @param aNode the index of the node within the individual (in post-order)
+	 * @return the number of nodes within the subtree starting at the node
+	 */
+	public int getSubtreeSize(int aIndividual, int aNode) {
+		return xNodes.getInt((getStart(aIndividual) + aNode) * NODE_RECORD_SIZE + NODE_SUBTREE_SIZE);
+	}
+
+	/**
+	 * @param aIndividual the index of the individual within the arena
+	 * @return the standardized fitness of the individual calculated by {@link #calculateFitness(int, TrainingColumns)}
+	 */
+	public double getFitness(int aIndividual) {
+		return xIndividuals.getDouble(aIndividual * INDIVIDUAL_RECORD_SIZE + INDIVIDUAL_FITNESS);
+	}
+
+	/**
+	 * @param aIndividual the index of the individual within the arena
+	 * @return the indicator if the expression tree of the individual is valid
+	 */
+	public boolean isValid(int aIndividual) {
+		return (getFlags(aIndividual) & FLAG_INVALID) == 0;
+	}
+
+	/**
+	 * Randomly select a single node from all of the nodes of the individual. The same random number is drawn as
+	 * {@link BinaryTree#getRandomTreeNode()} and the nodes are in the same order, so both select the same node.
+	 *
+	 * @param aIndividual the index of the individual within the arena
+	 * @return the index of the randomly selected node within the individual (in post-order)
+	 */
+	public int getRandomNode(int aIndividual) {
+		return GPSettings.getRandomInt(getSize(aIndividual));
+	}
+
+	/**
+	 * Add a new individual into the arena from its expression node tree.
+	 *
+	 * @param aRoot the root node of the expression tree of the individual
+	 * @return the index of the new individual within the arena
+	 */
+	public int add(BinaryTreeNode aRoot) {
+		int start = xNodeCount;
+		append(aRoot);
+		return addIndividual(start);
+	}
+
+	/**
+	 * Add a copy of an individual from another (or the same) arena into this arena.
+	 *
+	 * @param aSource the arena that contains the individual to copy
+	 * @param aIndividual the index of the individual within the source arena
+	 * @return the index of the new individual within the arena
+	 */
+	public int copy(OffHeapPopulationArena aSource, int aIndividual) {
+		int start = xNodeCount;
+		appendRange(aSource, aSource.getStart(aIndividual), aSource.getSize(aIndividual));
+		int individual = addIndividual(start);
+		int record = individual * INDIVIDUAL_RECORD_SIZE;
+		xIndividuals.putInt(record + INDIVIDUAL_FLAGS, aSource.getFlags(aIndividual));
+		xIndividuals.putDouble(record + INDIVIDUAL_FITNESS, aSource.getFitness(aIndividual));
+		return individual;
+	}
+
+	/**
+	 * Add a new individual into the arena that is the result of replacing a subtree of the X parent with a subtree of
+	 * the Y parent (one of the two offspring of a cross-over operation).
+	 *
+	 * @param aSourceX the arena that contains the X parent
+	 * @param aIndividualX the index of the X parent within its arena
+	 * @param aNodeX the index of the node (in post-order) within the X parent whose subtree is replaced
+	 * @param aSourceY the arena that contains the Y parent
+	 * @param aIndividualY the index of the Y parent within its arena
+	 * @param aNodeY the index of the node (in post-order) within the Y parent whose subtree is spliced in
+	 * @return the index of the new individual within the arena
+	 */
+	public int crossover(OffHeapPopulationArena aSourceX, int aIndividualX, int aNodeX,
+			OffHeapPopulationArena aSourceY, int aIndividualY, int aNodeY) {
+		int start = xNodeCount;
+		int slotY = aSourceY.getStart(aIndividualY) + aNodeY;
+		int sizeY = aSourceY.xNodes.getInt(slotY * NODE_RECORD_SIZE + NODE_SUBTREE_SIZE);
+		appendAround(aSourceX, aIndividualX, aNodeX, aSourceY, slotY - sizeY + 1, sizeY, null);
+		return addIndividual(start);
+	}
+
+	/**
+	 * Add a new individual into the arena that is the result of replacing a subtree of an individual with a newly
+	 * generated subtree (a mutation operation).
+	 *
+	 * @param aSource the arena that contains the individual to mutate
+	 * @param aIndividual the index of the individual within the source arena
+	 * @param aNode the index of the node (in post-order) within the individual whose subtree is replaced
+	 * @param aSubtree the root node of the new subtree to splice in
+	 * @return the index of the new individual within the arena
+	 */
+	public int mutate(OffHeapPopulationArena aSource, int aIndividual, int aNode, BinaryTreeNode aSubtree) {
+		int start = xNodeCount;
+		appendAround(aSource, aIndividual, aNode, null, 0, 0, aSubtree);
+		return addIndividual(start);
+	}
+
+	/**
+	 * Decode an individual back into an expression node tree.
+	 *
+	 * @param aIndividual the index of the individual within the arena
+	 * @return the newly built expression tree of the individual
+	 * @throws GPException
+	 */
+	public GeneticProgrammingTree toTree(int aIndividual) throws GPException {
+		BinaryTreeNode root = toNode(getStart(aIndividual) + getSize(aIndividual) - 1);
+		root.setNodeType(NodeType.ROOT);
+		return new GeneticProgrammingTree(root);
+	}
+
+	/**
+	 * Calculate the standardized fitness of an individual by executing its nodes directly out of native memory against
+	 * each of the training data values. The evaluation rules are the same as
+	 * {@link PostfixProgram#execute(double, double[])} and once a training datum marks the tree as invalid, all of the
+	 * following training data evaluate to the max value.
+	 *
+	 * @param aIndividual the index of the individual within the arena
+	 * @param aColumns the columns of the training data to evaluate the individual against
+	 * @return the standardized fitness of the individual
+	 */
+	public double calculateFitness(int aIndividual, TrainingColumns aColumns) {
+		final double[] inputs = aColumns.getInputs();
+		final double[] outputs = aColumns.getOutputs();
+		int record = aIndividual * INDIVIDUAL_RECORD_SIZE;
+		int stackDepth = xIndividuals.getInt(record + INDIVIDUAL_STACK_DEPTH);
+		if (xStack.length < stackDepth) {
+			xStack = new double[stackDepth];
+		}
+
+		int start = getStart(aIndividual);
+		int end = start + getSize(aIndividual);
+		boolean valid = true;
+		double standardizedFitness = 0.0;
+		for (int i = 0; i < inputs.length; i++) {
+			double output = Double.MAX_VALUE;
+			if (valid) {
+				valid = execute(start, end, (getFlags(aIndividual) & FLAG_ALWAYS_INVALID) == 0, inputs[i]);
+				output = xStack[0];
+			}
+			double fitness = Math.abs(outputs[i] - output);
+			if (!Double.isNaN(fitness)) {
+				standardizedFitness += fitness;
+			}
+		}
+		int flags = getFlags(aIndividual) & ~FLAG_INVALID;
+		xIndividuals.putInt(record + INDIVIDUAL_FLAGS, valid ? flags : (flags | FLAG_INVALID));
+		xIndividuals.putDouble(record + INDIVIDUAL_FITNESS, standardizedFitness);
+		return standardizedFitness;
+	}
+
+	/**
+	 * Execute a range of nodes against a single input value, leaving the result in the first slot of the stack.
+	 *
+	 * @param aStart the slot of the first node
+	 * @param aEnd the slot following the last (root) node
+	 * @param aValid the indicator if the evaluation starts out as valid
+	 * @param aInput the input value (X) to use during the evaluation of the function
+	 * @return true if the evaluation was valid, false if it would have marked the tree as invalid
+	 */
+	private boolean execute(int aStart, int aEnd, boolean aValid, double aInput) {
+		final ByteBuffer nodes = xNodes;
+		final double[] stack = xStack;
+		boolean valid = aValid;
+		int top = -1;
+		for (int offset = aStart * NODE_RECORD_SIZE; offset < aEnd * NODE_RECORD_SIZE; offset += NODE_RECORD_SIZE) {
+			switch (nodes.getInt(offset + NODE_OPCODE)) {
+			case PostfixProgram.OP_CONSTANT:
+				stack[++top] = nodes.getDouble(offset + NODE_CONSTANT);
+				break;
+			case PostfixProgram.OP_VARIABLE:
+				stack[++top] = aInput;
+				break;
+			case PostfixProgram.OP_ADD:
+				top--;
+				stack[top] = stack[top] + stack[top + 1];
+				break;
+			case PostfixProgram.OP_SUB:
+				top--;
+				stack[top] = stack[top] - stack[top + 1];
+				break;
+			case PostfixProgram.OP_MUL:
+				top--;
+				stack[top] = stack[top] * stack[top + 1];
+				break;
+			case PostfixProgram.OP_DIV:
+				top--;
+				if (stack[top + 1] != 0) {
+					stack[top] = stack[top] / stack[top + 1];
+				} else {
+					stack[top] = Double.MAX_VALUE;
+					valid = false;
+				}
+				break;
+			case PostfixProgram.OP_SIN:
+				stack[top] = Math.sin(stack[top]);
+				break;
+			case PostfixProgram.OP_COS:
+				stack[top] = Math.cos(stack[top]);
+				break;
+			case PostfixProgram.OP_POW:
+				top--;
+				stack[top] = Math.pow(stack[top], Math.min(stack[top + 1], 20));
+				break;
+			}
+		}
+		return valid;
+	}
+
+	private int getStart(int aIndividual) {
+		return xIndividuals.getInt(aIndividual * INDIVIDUAL_RECORD_SIZE + INDIVIDUAL_START);
+	}
+
+	private int getFlags(int aIndividual) {
+		return xIndividuals.getInt(aIndividual * INDIVIDUAL_RECORD_SIZE + INDIVIDUAL_FLAGS);
+	}
+
+	/**
+	 * Recursive method to build the expression node tree for the subtree ending at the slot.
+	 *
+	 * @param aSlot the slot of the root node of the subtree
+	 * @return the newly built node
+	 * @throws GPException
+	 */
+	private BinaryTreeNode toNode(int aSlot) throws GPException {
+		int offset = aSlot * NODE_RECORD_SIZE;
+		int opcode = xNodes.getInt(offset + NODE_OPCODE);
+		if (opcode == PostfixProgram.OP_VARIABLE) {
+			OperandNode operand = new OperandNode(0.0);
+			operand.setVariable(true);
+			return operand;
+		} else if (opcode == PostfixProgram.OP_CONSTANT) {
+			return new OperandNode(xNodes.getDouble(offset + NODE_CONSTANT));
+		}
+
+		// In post-order the right child is the node just before its parent and the left child comes before all of the
+		// nodes of the right subtree.
+		OperatorNode operator = new OperatorNode(OperatorType.values()[opcode - PostfixProgram.OP_ADD]);
+		int leftSlot = aSlot - 1;
+		if (operator.getNumberOfChildren() > 1) {
+			BinaryTreeNode rightChild = toNode(aSlot - 1);
+			rightChild.setNodeType(NodeType.RIGHT);
+			rightChild.setParent(operator);
+			operator.setRightChild(rightChild);
+			leftSlot -= xNodes.getInt((aSlot - 1) * NODE_RECORD_SIZE + NODE_SUBTREE_SIZE);
+		}
+		BinaryTreeNode leftChild = toNode(leftSlot);
+		leftChild.setNodeType(NodeType.LEFT);
+		leftChild.setParent(operator);
+		operator.setLeftChild(leftChild);
+		return operator;
+	}
+
+	/**
+	 * Append the nodes of an individual with the subtree at one of its nodes replaced by either a range of nodes from
+	 * another arena or a new expression node tree.
+	 */
+	private void appendAround(OffHeapPopulationArena aSource, int aIndividual, int aNode,
+			OffHeapPopulationArena aInsertSource, int aInsertStart, int aInsertSize, BinaryTreeNode aInsertTree) {
+		int start = aSource.getStart(aIndividual);
+		int slot = start + aNode;
+		int subtreeStart = slot - aSource.xNodes.getInt(slot * NODE_RECORD_SIZE + NODE_SUBTREE_SIZE) + 1;
+		int end = start + aSource.getSize(aIndividual);
+
+		appendRange(aSource, start, subtreeStart - start);
+		if (aInsertTree != null) {
+			append(aInsertTree);
+		} else {
+			appendRange(aInsertSource, aInsertStart, aInsertSize);
+		}
+		appendRange(aSource, slot + 1, end - slot - 1);
+	}
+
+	/**
+	 * Append a contiguous range of node records from an arena with a single bulk copy of native memory.
+	 */
+	private void appendRange(OffHeapPopulationArena aSource, int aStart, int aLength) {
+		ensureNodeCapacity(xNodeCount + aLength);
+		ByteBuffer source = aSource.xNodes.duplicate();
+		source.limit((aStart + aLength) * NODE_RECORD_SIZE);
+		source.position(aStart * NODE_RECORD_SIZE);
+		ByteBuffer target = xNodes.duplicate();
+		target.position(xNodeCount * NODE_RECORD_SIZE);
+		target.put(source);
+		xNodeCount += aLength;
+	}
+
+	/**
+	 * Recursive method to append the node records of an expression node tree in post-order.
+	 *
+	 * @param aNode the current node within the expression tree
+	 */
+	private void append(BinaryTreeNode aNode) {
+		int opcode;
+		double constant = 0;
+		if (aNode instanceof OperandNode) {
+			OperandNode operand = (OperandNode) aNode;
+			opcode = operand.isVariable() ? PostfixProgram.OP_VARIABLE : PostfixProgram.OP_CONSTANT;
+			constant = operand.isVariable() ? 0 : operand.getValue();
+		} else {
+			OperatorNode operator = (OperatorNode) aNode;
+			append(operator.getLeftChild());
+			if (operator.getNumberOfChildren() > 1) {
+				append(operator.getRightChild());
+			}
+			opcode = PostfixProgram.getOpcode(operator.getOperator());
+		}
+		ensureNodeCapacity(xNodeCount + 1);
+		int offset = xNodeCount * NODE_RECORD_SIZE;
+		xNodes.putInt(offset + NODE_OPCODE, opcode);
+		xNodes.putDouble(offset + NODE_CONSTANT, constant);
+		xNodeCount++;
+	}
+
+	/**
+	 * Register the nodes appended since the start slot as a new individual and link them together (subtree sizes,
+	 * stack depth and flags).
+	 *
+	 * @param aStart the slot of the first node of the individual
+	 * @return the index of the new individual within the arena
+	 */
+	private int addIndividual(int aStart) {
+		if ((xIndividualCount + 1) * INDIVIDUAL_RECORD_SIZE > xIndividuals.capacity()) {
+			xIndividuals = grow(xIndividuals, xIndividualCount * INDIVIDUAL_RECORD_SIZE, (xIndividualCount + 1),
+					INDIVIDUAL_RECORD_SIZE);
+		}
+		int individual = xIndividualCount++;
+		int size = xNodeCount - aStart;
+		if (xLinkStack.length < size) {
+			xLinkStack = new int[size];
+		}
+
+		int top = -1;
+		int maxDepth = 0;
+		int flags = 0;
+		for (int slot = aStart; slot < xNodeCount; slot++) {
+			int offset = slot * NODE_RECORD_SIZE;
+			int opcode = xNodes.getInt(offset + NODE_OPCODE);
+			int subtreeSize = 1;
+			if (opcode == PostfixProgram.OP_SIN || opcode == PostfixProgram.OP_COS) {
+				subtreeSize += xLinkStack[top--];
+			} else if (opcode != PostfixProgram.OP_CONSTANT && opcode != PostfixProgram.OP_VARIABLE) {
+				subtreeSize += xLinkStack[top--];
+				subtreeSize += xLinkStack[top--];
+			}
+			if (opcode == PostfixProgram.OP_SIN || opcode == PostfixProgram.OP_COS || opcode == PostfixProgram.OP_POW) {
+				flags = FLAG_ALWAYS_INVALID;
+			}
+			xNodes.putInt(offset + NODE_SUBTREE_SIZE, subtreeSize);
+			xLinkStack[++top] = subtreeSize;
+			maxDepth = Math.max(maxDepth, top + 1);
+		}
+
+		int record = individual * INDIVIDUAL_RECORD_SIZE;
+		xIndividuals.putInt(record + INDIVIDUAL_START, aStart);
+		xIndividuals.putInt(record + INDIVIDUAL_SIZE, size);
+		xIndividuals.putInt(record + INDIVIDUAL_STACK_DEPTH, maxDepth);
+		xIndividuals.putInt(record + INDIVIDUAL_FLAGS, flags);
+		xIndividuals.putDouble(record + INDIVIDUAL_FITNESS, 0);
+		return individual;
+	}
+
+	private void ensureNodeCapacity(int aCount) {
+		if ((long) aCount * NODE_RECORD_SIZE > xNodes.capacity()) {
+			xNodes = grow(xNodes, xNodeCount * NODE_RECORD_SIZE, aCount, NODE_RECORD_SIZE);
+		}
+	}
+
+	/**
+	 * @param aCount the number of records to allocate room for
+	 * @param aRecordSize the size (in bytes) of each record
+	 * @return a new direct (native memory) buffer
+	 */
+	private static ByteBuffer allocate(long aCount, int aRecordSize) {
+		long bytes = aCount * aRecordSize;
+		if (bytes > Integer.MAX_VALUE) {
+			throw new IllegalStateException("Population arena is limited to " + (Integer.MAX_VALUE / aRecordSize)
+					+ " records.");
+		}
+		return ByteBuffer.allocateDirect((int) bytes).order(ByteOrder.nativeOrder());
+	}
+
+	/**
+	 * Replace a buffer with a (at least twice as) large one and copy the used part of the old buffer into it.
+	 */
+	private static ByteBuffer grow(ByteBuffer aBuffer, int aUsedBytes, int aCount, int aRecordSize) {
+		long count = Math.min(Math.max(aCount, 2L * aBuffer.capacity() / aRecordSize), Integer.MAX_VALUE / aRecordSize);
+		ByteBuffer buffer = allocate(Math.max(aCount, count), aRecordSize);
+		ByteBuffer source = aBuffer.duplicate();
+		source.limit(aUsedBytes);
+		source.position(0);
+		buffer.put(source);
+		buffer.clear();
+		return buffer;
+	}
+}
@@ -14,7 +14,14 @@ import edu.stthomas.seis610.util.GPException;
 // =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
 public class OperandNode extends BinaryTreeNode {
 	private final static String _DEFAULT_VARIABLE = new String("x");
-	private boolean xVariable;
+
+	/**
+	 * Define Constant for the Variable Index of a Constant Operand
+	 */
+	public final static int NO_VARIABLE = -1;
+
+	private double xValue;
+	private int xVariableIndex = NO_VARIABLE;
 
 	/**
 	 * Constructor to create a new operand node with either a variable or constant value.
@@ -31,9 +38,9 @@ public class OperandNode extends BinaryTreeNode {
 	 * 
 	 * @param aOperand the constant value to assign to this node
 	 */
-	public OperandNode(Double aOperand) {
+	public OperandNode(double aOperand) {
 		super();
-		setData(aOperand);
+		setValue(aOperand);
 	}
 
 	/**
@@ -44,7 +51,7 @@ public class OperandNode extends BinaryTreeNode {
 		if (aOperand.equalsIgnoreCase(_DEFAULT_VARIABLE)) {
 			setVariable(true);
 		} else {
-			setData(new Double(Double.parseDouble(aOperand)));
+			setValue(Double.parseDouble(aOperand));
 		}
 	}
 
@@ -67,14 +74,14 @@ public class OperandNode extends BinaryTreeNode {
 	/**
 	 * @returns an integer count of the height of the subtree
 	 */
-	public Integer getHeight() {
+	public int getHeight() {
 		return 0;
 	}
 
 	/**
 	 * @returns an integer count of the number of children this node contains
 	 */
-	public Integer getNumberOfChildren() {
+	public int getNumberOfChildren() {
 		return 0;
 	}
 
@@ -82,39 +89,78 @@ public class OperandNode extends BinaryTreeNode {
 	 * @returns a boolean indicator if this is a variable for the expression
 	 */
 	public boolean isVariable() {
-		return xVariable;
+		return xVariableIndex != NO_VARIABLE;
 	}
 
 	/**
 	 * @param aVariable indicator if this is a variable for the expression
 	 */
 	public void setVariable(boolean aVariable) {
-		this.xVariable = aVariable;
+		this.xVariableIndex = aVariable ? 0 : NO_VARIABLE;
+		updateSubtreeIndex();
 	}
 
 	/**
-	 * @param aData the generic data object to assign to this node
+	 * @returns the index of the variable for the expression (or {@link #NO_VARIABLE} for a constant)
 	 */
-	@Override
-	public void setData(Object data) {
-		super.setData(data);
+	public int getVariableIndex() {
+		return xVariableIndex;
+	}
+
+	/**
+	 * @returns the constant value of this operand (only meaningful when this is not a variable)
+	 */
+	public double getValue() {
+		return xValue;
+	}
+
+	/**
+	 * @param aValue the constant value to assign to this operand
+	 */
+	public void setValue(double aValue) {
+		this.xValue = aValue;
 		setVariable(false);
 	}
 
+	/**
+	 * @returns the hash of the variable or constant value of this node on its own
+	 */
+	@Override
+	protected int getDataHash() {
+		if (isVariable()) {
+			return getDataHash(PostfixProgram.OP_VARIABLE, 0.0);
+		} else {
+			return getDataHash(PostfixProgram.OP_CONSTANT, xValue);
+		}
+	}
+
+	/**
+	 * @returns the variable name or the (boxed) constant value associated with this node
+	 */
+	@Override
+	public Object getData() {
+		if (isVariable()) {
+			return _DEFAULT_VARIABLE;
+		} else {
+			return xValue;
+		}
+	}
+
 	/**
 	 * Recursively evaluate the expression represented by this node and return the result of that expression back up the
 	 * tree. Make sure to protect against an invalid division (divide by zero) and set the indicator that the tree will
 	 * not produce a valid result.
 	 * 
 	 * @param aTrainingDatum the input training value (X) to use during the evaluation of the function
+	 * @param aValid the (single element) indicator if the evaluation produced a valid result; an operand is always valid
 	 * @returns the terminal value (variable or constant) associated with this operand node
 	 * @throws GPException
 	 */
-	public Double evaluateOutput(TrainingData aTrainingDatum) throws GPException {
+	public double evaluateOutput(TrainingData aTrainingDatum, boolean[] aValid) throws GPException {
 		if (isVariable()) {
 			return aTrainingDatum.getInputData();
 		} else {
-			return (Double) getData();
+			return xValue;
 		}
 	}
 
@@ -123,8 +169,7 @@ public class OperandNode extends BinaryTreeNode {
 		if (isVariable()) {
 			return "x";
 		} else {
-			Double value = (Double) getData();
-			int operandInt = value.intValue();
+			int operandInt = (int) xValue;
 			return String.valueOf(operandInt);
 		}
 	}
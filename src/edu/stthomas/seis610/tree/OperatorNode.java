@@ -42,6 +42,8 @@ public class OperatorNode extends BinaryTreeNode {
 		};
 	};
 
+	private OperatorType xOperator;
+
 	/**
 	 * Constructor to create a new operator node with the specified operator.
 	 * 
@@ -65,17 +67,17 @@ public class OperatorNode extends BinaryTreeNode {
 	/**
 	 * @returns an integer count of the height of the subtree
 	 */
-	public Integer getHeight() {
-		// Should always have a left child no matter what type of operator, but a right child may not always exist.
-		return (1 + Math.max(getLeftChild().getHeight().intValue(), (hasRightChild() ? getRightChild().getHeight().intValue() : 0)));
+	public int getHeight() {
+		// The height is cached within the node and kept up to date as the children get spliced in or out.
+		return xSubtreeHeight;
 	}
 
 	/**
 	 * @returns an integer count of the number of children this node contains
 	 */
-	public Integer getNumberOfChildren() {
+	public int getNumberOfChildren() {
 		// Should always have a left child no matter what type of operator, but a right child may not always exist.
-		switch (getOperator()) {
+		switch (xOperator) {
 		case ADD:
 		case SUB:
 		case MUL:
@@ -93,7 +95,7 @@ public class OperatorNode extends BinaryTreeNode {
 	 * @returns the operator type (enum) associated with this node
 	 */
 	public OperatorType getOperator() {
-		return OperatorType.valueOf((String) getData());
+		return xOperator;
 	}
 
 	/**
@@ -101,62 +103,77 @@ public class OperatorNode extends BinaryTreeNode {
 	 */
 	public void setOperator(OperatorType aOperator) {
 		// TODO throw exception if an invalid operator is passed in
-		setData(aOperator.name());
+		this.xOperator = aOperator;
+		updateSubtreeIndex();
+	}
+
+	/**
+	 * @returns the hash of the operator of this node on its own
+	 */
+	@Override
+	protected int getDataHash() {
+		return getDataHash(PostfixProgram.getOpcode(xOperator), 0.0);
+	}
+
+	/**
+	 * @returns the operator type (enum) associated with this node
+	 */
+	@Override
+	public Object getData() {
+		return xOperator;
 	}
 
 	/**
 	 * Recursively evaluate the expression represented by this node and return the result of that expression back up the
-	 * tree. Make sure to protect against an invalid division (divide by zero) and set the indicator that the tree will
-	 * not produce a valid result.
+	 * tree. Make sure to protect against an invalid division (divide by zero) and clear the indicator that the evaluation
+	 * will produce a valid result. The nodes themselves are never changed, so that the same tree can safely be evaluated
+	 * by more than one thread.
 	 * 
-	 * In the case of an invalid tree, in addition to setting the invalid indicator simply return a large (max) value
-	 * back to the caller.
+	 * An invalid division simply returns a large (max) value back to the caller.
 	 * 
 	 * @param aTrainingDatum the input training value (X) to use during the evaluation of the function
+	 * @param aValid the (single element) indicator if the evaluation produced a valid result; it is only ever cleared
 	 * @returns the evaluated result of the expression based upon the the type of operator in this node
 	 * @throws GPException
 	 */
-	public Double evaluateOutput(TrainingData aTrainingDatum) throws GPException {
-		Double output = Double.MAX_VALUE;
-		if (isTreeNodeValid()) {
-			switch (getOperator()) {
-			case ADD:
-				output = getLeftChild().evaluateOutput(aTrainingDatum) + getRightChild().evaluateOutput(aTrainingDatum);
-				break;
-			case SUB:
-				output = getLeftChild().evaluateOutput(aTrainingDatum) - getRightChild().evaluateOutput(aTrainingDatum);
-				break;
-			case MUL:
-				output = getLeftChild().evaluateOutput(aTrainingDatum) * getRightChild().evaluateOutput(aTrainingDatum);
-				break;
-			case DIV:
-				Double rightTreeValue = getRightChild().evaluateOutput(aTrainingDatum);
-				if (rightTreeValue != 0) {
-					output = getLeftChild().evaluateOutput(aTrainingDatum) / rightTreeValue;
-				} else {
-					setTreeNodeInvalid();
-				}
-				break;
-			case SIN:
-				output = Math.sin(getLeftChild().evaluateOutput(aTrainingDatum));
-				setTreeNodeInvalid();
-				break;
-			case COS:
-				output = Math.cos(getLeftChild().evaluateOutput(aTrainingDatum));
-				setTreeNodeInvalid();
-				break;
-			case POW:
-				output = Math.pow(getLeftChild().evaluateOutput(aTrainingDatum),
-						Math.min(getRightChild().evaluateOutput(aTrainingDatum), 20));
-				setTreeNodeInvalid();
-				break;
-			default:
-				throw new GPException("Invalid operator encountered during evaluation: " + getOperator());
+	public double evaluateOutput(TrainingData aTrainingDatum, boolean[] aValid) throws GPException {
+		double output = Double.MAX_VALUE;
+		switch (xOperator) {
+		case ADD:
+			output = getLeftChild().evaluateOutput(aTrainingDatum, aValid)
+					+ getRightChild().evaluateOutput(aTrainingDatum, aValid);
+			break;
+		case SUB:
+			output = getLeftChild().evaluateOutput(aTrainingDatum, aValid)
+					- getRightChild().evaluateOutput(aTrainingDatum, aValid);
+			break;
+		case MUL:
+			output = getLeftChild().evaluateOutput(aTrainingDatum, aValid)
+					* getRightChild().evaluateOutput(aTrainingDatum, aValid);
+			break;
+		case DIV:
+			double rightTreeValue = getRightChild().evaluateOutput(aTrainingDatum, aValid);
+			if (rightTreeValue != 0) {
+				output = getLeftChild().evaluateOutput(aTrainingDatum, aValid) / rightTreeValue;
+			} else {
+				aValid[0] = false;
 			}
-		} else {
-			// Make sure that the invalid indicator gets "walked" up the tree through the parents until we get to the
-			// root node so that it is quickly visible to the rest of the GP processing.
-			setTreeNodeInvalid();
+			break;
+		case SIN:
+			output = Math.sin(getLeftChild().evaluateOutput(aTrainingDatum, aValid));
+			aValid[0] = false;
+			break;
+		case COS:
+			output = Math.cos(getLeftChild().evaluateOutput(aTrainingDatum, aValid));
+			aValid[0] = false;
+			break;
+		case POW:
+			output = Math.pow(getLeftChild().evaluateOutput(aTrainingDatum, aValid),
+					Math.min(getRightChild().evaluateOutput(aTrainingDatum, aValid), 20));
+			aValid[0] = false;
+			break;
+		default:
+			throw new GPException("Invalid operator encountered during evaluation: " + getOperator());
 		}
 		return output;
 	}
@@ -0,0 +1,279 @@
+package edu.stthomas.seis610.tree;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import edu.stthomas.seis610.tree.BinaryTreeNode.NodeType;
+import edu.stthomas.seis610.tree.OperatorNode.OperatorType;
+import edu.stthomas.seis610.util.GPException;
+
+//=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+/**
+ * An immutable (persistent) version of an expression tree node. Unlike the {@link BinaryTreeNode} there are no parent
+ * references or node types, so a subtree can be shared by any number of trees at the same time. Cross-over and
+ * mutation only rebuild the nodes along the path from the splice point up to the root and share every other subtree
+ * with the parents, and cloning an individual does not need to copy anything at all.
+ * <p>
+ * The operand leaves are interned as flyweights, so there is only ever a single node for the variable and for each of
+ * the constant values. Each node also caches the size, height and structural hash of its subtree, which lets a node be
+ * found by its "post-order" index by descending from the root rather than by building a list of every node within the
+ * tree, and lets different expressions be told apart without walking them.
+ * <p>
+ * Since the nodes can never change they are also safe to share across threads.
+ *
+ * @version 1.2
+ */
+// =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+public final class PersistentNode {
+
+	/**
+	 * Define the Flyweight Instances of the Operand Leaves
+	 */
+	private static final PersistentNode VARIABLE = new PersistentNode(PostfixProgram.OP_VARIABLE, 0.0, null, null);
+	private static final ConcurrentMap<Double, PersistentNode> xConstants = new ConcurrentHashMap<Double, PersistentNode>();
+
+	private final int xOpcode;
+	private final double xConstant;
+	private final PersistentNode xLeftChild;
+	private final PersistentNode xRightChild;
+	private final int xSize;
+	private final int xHeight;
+	private final int xStructuralHash;
+
+	/**
+	 * Private constructor, nodes are only built through the static factory methods.
+	 *
+	 * @param aOpcode the opcode (the same opcodes as the {@link PostfixProgram}) of the node
+	 * @param aConstant the constant operand value (only meaningful for {@link PostfixProgram#OP_CONSTANT})
+	 * @param aLeftChild the left child (or null) of the node
+	 * @param aRightChild the right child (or null) of the node
+	 */
+	private PersistentNode(int aOpcode, double aConstant, PersistentNode aLeftChild, PersistentNode aRightChild) {
+		xOpcode = aOpcode;
+		xConstant = aConstant;
+		xLeftChild = aLeftChild;
+		xRightChild = aRightChild;
+		int size = 1;
+		int height = 0;
+		int leftHash = 0;
+		int rightHash = 0;
+		if (aLeftChild != null) {
+			size += aLeftChild.xSize;
+			height = 1 + aLeftChild.xHeight;
+			leftHash = aLeftChild.xStructuralHash;
+		}
+		if (aRightChild != null) {
+			size += aRightChild.xSize;
+			height = Math.max(height, 1 + aRightChild.xHeight);
+			rightHash = aRightChild.xStructuralHash;
+		}
+		xSize = size;
+		xHeight = height;
+		xStructuralHash = BinaryTreeNode.getStructuralHash(BinaryTreeNode.getDataHash(aOpcode, aConstant), leftHash,
+				rightHash);
+	}
+
+	/**
+	 * @return the (flyweight) node for the variable of the expression
+	 */
+	public static PersistentNode variable() {
+		return VARIABLE;
+	}
+
+	/**
+	 * @param aValue the constant value of the operand
+	 * @return the (flyweight) node for the constant value
+	 */
+	public static PersistentNode constant(double aValue) {
+		PersistentNode node = xConstants.get(aValue);
+		if (node == null) {
+			PersistentNode newNode = new PersistentNode(PostfixProgram.OP_CONSTANT, aValue, null, null);
+			node = xConstants.putIfAbsent(aValue, newNode);
+			if (node == null) {
+				node = newNode;
+			}
+		}
+		return node;
+	}
+
+	/**
+	 * @param aOperator the operator type of the node
+	 * @param aLeftChild the left child of the node
+	 * @param aRightChild the right child of the node (null for the unary operators)
+	 * @return the newly built operator node
+	 */
+	public static PersistentNode operator(OperatorType aOperator, PersistentNode aLeftChild, PersistentNode aRightChild) {
+		return new PersistentNode(PostfixProgram.getOpcode(aOperator), 0.0, aLeftChild, aRightChild);
+	}
+
+	/**
+	 * Convert the expression node tree (or subtree) starting at the passed in node.
+	 *
+	 * @param aNode the root node of the expression tree to convert
+	 * @return the root of the newly built persistent tree
+	 */
+	public static PersistentNode valueOf(BinaryTreeNode aNode) {
+		if (aNode instanceof OperandNode) {
+			OperandNode operand = (OperandNode) aNode;
+			return operand.isVariable() ? variable() : constant(operand.getValue());
+		}
+
+		OperatorNode operator = (OperatorNode) aNode;
+		return operator(operator.getOperator(), valueOf(operator.getLeftChild()),
+				(operator.getNumberOfChildren() > 1) ? valueOf(operator.getRightChild()) : null);
+	}
+
+	/**
+	 * @return the opcode (the same opcodes as the {@link PostfixProgram}) of the node
+	 */
+	public int getOpcode() {
+		return xOpcode;
+	}
+
+	/**
+	 * @return the constant operand value of the node (only meaningful for {@link PostfixProgram#OP_CONSTANT})
+	 */
+	public double getConstant() {
+		return xConstant;
+	}
+
+	/**
+	 * @return the left child (or null) of the node
+	 */
+	public PersistentNode getLeftChild() {
+		return xLeftChild;
+	}
+
+	/**
+	 * @return the right child (or null) of the node
+	 */
+	public PersistentNode getRightChild() {
+		return xRightChild;
+	}
+
+	/**
+	 * @return the number of nodes within the subtree
+	 */
+	public int size() {
+		return xSize;
+	}
+
+	/**
+	 * @return an integer count of the height of the subtree
+	 */
+	public int getHeight() {
+		return xHeight;
+	}
+
+	/**
+	 * Find a node by its index in "post-order" (the order used by {@link BinaryTree#getRandomTreeNode()}), so that a
+	 * random node selection picks the same node for both representations.
+	 *
+	 * @param aPostOrderIndex the index of the node in post-order
+	 * @return the node at the index
+	 */
+	public PersistentNode getNode(int aPostOrderIndex) {
+		PersistentNode node = this;
+		int index = aPostOrderIndex;
+		while (index != node.xSize - 1) {
+			// The left subtree comes first, followed by the right subtree and finally the node itself.
+			if (index < node.xLeftChild.xSize) {
+				node = node.xLeftChild;
+			} else {
+				index -= node.xLeftChild.xSize;
+				node = node.xRightChild;
+			}
+		}
+		return node;
+	}
+
+	/**
+	 * Build a new tree with the subtree at a node of this tree replaced by another subtree. Only the nodes along the
+	 * path from the replaced node up to the root are rebuilt, all of the other subtrees are shared with this tree.
+	 *
+	 * @param aPostOrderIndex the index in post-order of the node whose subtree is replaced
+	 * @param aSubtree the subtree to splice in
+	 * @return the root of the newly built tree
+	 */
+	public PersistentNode replace(int aPostOrderIndex, PersistentNode aSubtree) {
+		if (aPostOrderIndex == xSize - 1) {
+			return aSubtree;
+		} else if (aPostOrderIndex < xLeftChild.xSize) {
+			return new PersistentNode(xOpcode, xConstant, xLeftChild.replace(aPostOrderIndex, aSubtree), xRightChild);
+		} else {
+			return new PersistentNode(xOpcode, xConstant, xLeftChild, xRightChild.replace(aPostOrderIndex
+					- xLeftChild.xSize, aSubtree));
+		}
+	}
+
+	/**
+	 * Two persistent trees are equal when they represent the same expression, which is decided without walking the
+	 * trees whenever they share the same subtrees (or flyweight leaves) or have different structural hashes.
+	 */
+	@Override
+	public boolean equals(Object aObject) {
+		if (this == aObject) {
+			return true;
+		}
+		if (!(aObject instanceof PersistentNode)) {
+			return false;
+		}
+		PersistentNode otherNode = (PersistentNode) aObject;
+		if (xStructuralHash != otherNode.xStructuralHash || xSize != otherNode.xSize || xOpcode != otherNode.xOpcode
+				|| Double.doubleToLongBits(xConstant) != Double.doubleToLongBits(otherNode.xConstant)) {
+			return false;
+		}
+		return (xLeftChild == null ? otherNode.xLeftChild == null : xLeftChild.equals(otherNode.xLeftChild))
+				&& (xRightChild == null ? otherNode.xRightChild == null : xRightChild.equals(otherNode.xRightChild));
+	}
+
+	/**
+	 * @return the structural hash of the tree, which is the same as that of the equivalent expression node tree
+	 */
+	@Override
+	public int hashCode() {
+		return xStructuralHash;
+	}
+
+	/**
+	 * Build an (unshared) expression node tree from this persistent tree.
+	 *
+	 * @return the root node of the newly built expression tree
+	 * @throws GPException
+	 */
+	public BinaryTreeNode toNode() throws GPException {
+		BinaryTreeNode root = toNode(this);
+		root.setNodeType(NodeType.ROOT);
+		return root;
+	}
+
+	/**
+	 * Recursive method to build the expression node (and its subtree) for a persistent node.
+	 *
+	 * @param aNode the current node within the persistent tree
+	 * @return the newly built node
+	 * @throws GPException
+	 */
+	private static BinaryTreeNode toNode(PersistentNode aNode) throws GPException {
+		if (aNode.xOpcode == PostfixProgram.OP_VARIABLE) {
+			OperandNode operand = new OperandNode(0.0);
+			operand.setVariable(true);
+			return operand;
+		} else if (aNode.xOpcode == PostfixProgram.OP_CONSTANT) {
+			return new OperandNode(aNode.xConstant);
+		}
+
+		OperatorNode operator = new OperatorNode(OperatorType.values()[aNode.xOpcode - PostfixProgram.OP_ADD]);
+		BinaryTreeNode leftChild = toNode(aNode.xLeftChild);
+		leftChild.setNodeType(NodeType.LEFT);
+		leftChild.setParent(operator);
+		operator.setLeftChild(leftChild);
+		if (aNode.xRightChild != null) {
+			BinaryTreeNode rightChild = toNode(aNode.xRightChild);
+			rightChild.setNodeType(NodeType.RIGHT);
+			rightChild.setParent(operator);
+			operator.setRightChild(rightChild);
+		}
+		return operator;
+	}
+}
@@ -0,0 +1,500 @@
+package edu.stthomas.seis610.tree;
+
+import java.util.Arrays;
+
+import edu.stthomas.seis610.gp.GPSettings;
+import edu.stthomas.seis610.gp.TrainingColumns;
+import edu.stthomas.seis610.tree.BinaryTreeNode.NodeType;
+import edu.stthomas.seis610.tree.OperatorNode.OperatorType;
+import edu.stthomas.seis610.util.GPException;
+
+//=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+/**
+ * A population store that keeps all of the individuals of a generation in a handful of contiguous primitive arrays
+ * (struct-of-arrays) rather than as a separate graph of node objects per individual. Each node of every individual is
+ * a slot within the parallel opcode, constant, left child, right child, subtree size and subtree height arrays, and the
+ * nodes of an individual are stored next to each other in "post-order" (the same order as {@link PostfixProgram} and
+ * {@link BinaryTree#getPostOrderList()}). Because of that every subtree is a contiguous range of slots that ends with
+ * its root, so reproduction, cross-over and mutation are simply a few array copies.
+ * <p>
+ * The arrays are allocated once and only grow when needed, so an arena is meant to be recycled with {@link #clear()}:
+ * keep two arenas (the current and the next generation) and swap them every generation.
+ * <p>
+ * Note: An arena is not thread safe.
+ *
+ * @version 1.2
+ */
+// =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+public class PopulationArena {
+	private static final int NO_CHILD = -1;
+
+	/**
+	 * The nodes of all of the individuals.
+	 */
+	private int[] xOpcodes;
+	private double[] xConstants;
+	private int[] xLeftChildren;
+	private int[] xRightChildren;
+	private int[] xSubtreeSizes;
+	private int[] xSubtreeHeights;
+	private int xNodeCount = 0;
+
+	/**
+	 * The individuals (as ranges of nodes) and their fitness.
+	 */
+	private int[] xStarts;
+	private int[] xSizes;
+	private int[] xStackDepths;
+	private boolean[] xAlwaysInvalid;
+	private boolean[] xValid;
+	private double[] xFitness;
+	private int xIndividualCount = 0;
+
+	private double[] xStack = new double[0];
+	private int[] xLinkStack = new int[0];
+
+	/**
+	 * Constructor to create an arena with enough room for the expected number of individuals and nodes.
+	 *
+	 * @param aIndividualCapacity the number of individuals to allocate room for
+	 * @param aNodeCapacity the total number of nodes (over all of the individuals) to allocate room for
+	 */
+	public PopulationArena(int aIndividualCapacity, int aNodeCapacity) {
+		int individualCapacity = Math.max(1, aIndividualCapacity);
+		int nodeCapacity = Math.max(1, aNodeCapacity);
+		xOpcodes = new int[nodeCapacity];
+		xConstants = new double[nodeCapacity];
+		xLeftChildren = new int[nodeCapacity];
+		xRightChildren = new int[nodeCapacity];
+		xSubtreeSizes = new int[nodeCapacity];
+		xSubtreeHeights = new int[nodeCapacity];
+		xStarts = new int[individualCapacity];
+		xSizes = new int[individualCapacity];
+		xStackDepths = new int[individualCapacity];
+		xAlwaysInvalid = new boolean[individualCapacity];
+		xValid = new boolean[individualCapacity];
+		xFitness = new double[individualCapacity];
+	}
+
+	/**
+	 * Remove all of the individuals from the arena so that it can be reused for another generation. None of the arrays
+	 * are released.
+	 */
+	public void clear() {
+		xNodeCount = 0;
+		xIndividualCount = 0;
+	}
+
+	/**
+	 * @return the number of individuals within the arena
+	 */
+	public int getIndividualCount() {
+		return xIndividualCount;
+	}
+
+	/**
+	 * @return the total number of nodes (over all of the individuals) within the arena
+	 */
+	public int getNodeCount() {
+		return xNodeCount;
+	}
+
+	/**
+	 * @param aIndividual the index of the individual within the arena
+	 * @return the number of nodes within the individual
+	 */
+	public int getSize(int aIndividual) {
+		return xSizes[aIndividual];
+	}
+
+	/**
+	 * @param aIndividual the index of the individual within the arena
+	 * @return the height of the expression tree of the individual
+	 */
+	public int getHeight(int aIndividual) {
+		return xSubtreeHeights[getRootSlot(aIndividual)];
+	}
+
+	/**
+	 * @param aIndividual the index of the individual within the arena
+	 * @param aNode the index of the node within the individual (in post-order)
+	 * @return the number of nodes within the subtree starting at the node
+	 */
+	public int getSubtreeSize(int aIndividual, int aNode) {
+		return xSubtreeSizes[xStarts[aIndividual] + aNode];
+	}
+
+	/**
+	 * @param aIndividual the index of the individual within the arena
+	 * @param aNode the index of the node within the individual (in post-order)
+	 * @return the height of the subtree starting at the node
+	 */
+	public int getSubtreeHeight(int aIndividual, int aNode) {
+		return xSubtreeHeights[xStarts[aIndividual] + aNode];
+	}
+
+	/**
+	 * @param aIndividual the index of the individual within the arena
+	 * @return the standardized fitness of the individual calculated by {@link #calculateFitness(int, TrainingColumns)}
+	 */
+	public double getFitness(int aIndividual) {
+		return xFitness[aIndividual];
+	}
+
+	/**
+	 * @param aIndividual the index of the individual within the arena
+	 * @return the indicator if the expression tree of the individual is valid
+	 */
+	public boolean isValid(int aIndividual) {
+		return xValid[aIndividual];
+	}
+
+	/**
+	 * Randomly select a single node from all of the nodes of the individual. The same random number is drawn as
+	 * {@link BinaryTree#getRandomTreeNode()} and the nodes are in the same order, so both select the same node.
+	 *
+	 * @param aIndividual the index of the individual within the arena
+	 * @return the index of the randomly selected node within the individual (in post-order)
+	 */
+	public int getRandomNode(int aIndividual) {
+		return GPSettings.getRandomInt(xSizes[aIndividual]);
+	}
+
+	/**
+	 * Add a new individual into the arena from its expression node tree.
+	 *
+	 * @param aRoot the root node of the expression tree of the individual
+	 * @return the index of the new individual within the arena
+	 */
+	public int add(BinaryTreeNode aRoot) {
+		int start = xNodeCount;
+		append(aRoot);
+		return addIndividual(start);
+	}
+
+	/**
+	 * Add a copy of an individual from another (or the same) arena into this arena.
+	 *
+	 * @param aSource the arena that contains the individual to copy
+	 * @param aIndividual the index of the individual within the source arena
+	 * @return the index of the new individual within the arena
+	 */
+	public int copy(PopulationArena aSource, int aIndividual) {
+		int start = xNodeCount;
+		appendRange(aSource, aSource.xStarts[aIndividual], aSource.xSizes[aIndividual]);
+		int individual = addIndividual(start);
+		xValid[individual] = aSource.xValid[aIndividual];
+		xFitness[individual] = aSource.xFitness[aIndividual];
+		return individual;
+	}
+
+	/**
+	 * Add a new individual into the arena that is the result of replacing a subtree of the X parent with a subtree of
+	 * the Y parent (one of the two offspring of a cross-over operation).
+	 *
+	 * @param aSourceX the arena that contains the X parent
+	 * @param aIndividualX the index of the X parent within its arena
+	 * @param aNodeX the index of the node (in post-order) within the X parent whose subtree is replaced
+	 * @param aSourceY the arena that contains the Y parent
+	 * @param aIndividualY the index of the Y parent within its arena
+	 * @param aNodeY the index of the node (in post-order) within the Y parent whose subtree is spliced in
+	 * @return the index of the new individual within the arena
+	 */
+	public int crossover(PopulationArena aSourceX, int aIndividualX, int aNodeX, PopulationArena aSourceY,
+			int aIndividualY, int aNodeY) {
+		int start = xNodeCount;
+		int slotY = aSourceY.xStarts[aIndividualY] + aNodeY;
+		int sizeY = aSourceY.xSubtreeSizes[slotY];
+		appendAround(aSourceX, aIndividualX, aNodeX, aSourceY, slotY - sizeY + 1, sizeY, null);
+		return addIndividual(start);
+	}
+
+	/**
+	 * Add a new individual into the arena that is the result of replacing a subtree of an individual with a newly
+	 * generated subtree (a mutation operation).
+	 *
+	 * @param aSource the arena that contains the individual to mutate
+	 * @param aIndividual the index of the individual within the source arena
+	 * @param aNode the index of the node (in post-order) within the individual whose subtree is replaced
+	 * @param aSubtree the root node of the new subtree to splice in
+	 * @return the index of the new individual within the arena
+	 */
+	public int mutate(PopulationArena aSource, int aIndividual, int aNode, BinaryTreeNode aSubtree) {
+		int start = xNodeCount;
+		appendAround(aSource, aIndividual, aNode, null, 0, 0, aSubtree);
+		return addIndividual(start);
+	}
+
+	/**
+	 * Decode an individual back into an expression node tree.
+	 *
+	 * @param aIndividual the index of the individual within the arena
+	 * @return the newly built expression tree of the individual
+	 * @throws GPException
+	 */
+	public GeneticProgrammingTree toTree(int aIndividual) throws GPException {
+		BinaryTreeNode root = toNode(getRootSlot(aIndividual));
+		root.setNodeType(NodeType.ROOT);
+		return new GeneticProgrammingTree(root);
+	}
+
+	/**
+	 * Calculate the standardized fitness of an individual by executing its nodes directly out of the arena against each
+	 * of the training data values. The evaluation rules are the same as {@link PostfixProgram#execute(double, double[])}
+	 * and once a training datum marks the tree as invalid, all of the following training data evaluate to the max value.
+	 *
+	 * @param aIndividual the index of the individual within the arena
+	 * @param aColumns the columns of the training data to evaluate the individual against
+	 * @return the standardized fitness of the individual
+	 */
+	public double calculateFitness(int aIndividual, TrainingColumns aColumns) {
+		final double[] inputs = aColumns.getInputs();
+		final double[] outputs = aColumns.getOutputs();
+		if (xStack.length < xStackDepths[aIndividual]) {
+			xStack = new double[xStackDepths[aIndividual]];
+		}
+
+		boolean valid = true;
+		double standardizedFitness = 0.0;
+		for (int i = 0; i < inputs.length; i++) {
+			double output = Double.MAX_VALUE;
+			if (valid) {
+				valid = execute(aIndividual, inputs[i]);
+				output = xStack[0];
+			}
+			double fitness = Math.abs(outputs[i] - output);
+			if (!Double.isNaN(fitness)) {
+				standardizedFitness += fitness;
+			}
+		}
+		xValid[aIndividual] = valid;
+		xFitness[aIndividual] = standardizedFitness;
+		return standardizedFitness;
+	}
+
+	/**
+	 * Execute the nodes of the individual against a single input value, leaving the result in the first slot of the
+	 * stack.
+	 *
+	 * @param aIndividual the index of the individual within the arena
+	 * @param aInput the input value (X) to use during the evaluation of the function
+	 * @return true if the evaluation was valid, false if it would have marked the tree as invalid
+	 */
+	private boolean execute(int aIndividual, double aInput) {
+		final int[] opcodes = xOpcodes;
+		final double[] stack = xStack;
+		boolean valid = !xAlwaysInvalid[aIndividual];
+		int top = -1;
+		int end = xStarts[aIndividual] + xSizes[aIndividual];
+		for (int slot = xStarts[aIndividual]; slot < end; slot++) {
+			switch (opcodes[slot]) {
+			case PostfixProgram.OP_CONSTANT:
+				stack[++top] = xConstants[slot];
+				break;
+			case PostfixProgram.OP_VARIABLE:
+				stack[++top] = aInput;
+				break;
+			case PostfixProgram.OP_ADD:
+				top--;
+				stack[top] = stack[top] + stack[top + 1];
+				break;
+			case PostfixProgram.OP_SUB:
+				top--;
+				stack[top] = stack[top] - stack[top + 1];
+				break;
+			case PostfixProgram.OP_MUL:
+				top--;
+				stack[top] = stack[top] * stack[top + 1];
+				break;
+			case PostfixProgram.OP_DIV:
+				top--;
+				if (stack[top + 1] != 0) {
+					stack[top] = stack[top] / stack[top + 1];
+				} else {
+					stack[top] = Double.MAX_VALUE;
+					valid = false;
+				}
+				break;
+			case PostfixProgram.OP_SIN:
+				stack[top] = Math.sin(stack[top]);
+				break;
+			case PostfixProgram.OP_COS:
+				stack[top] = Math.cos(stack[top]);
+				break;
+			case PostfixProgram.OP_POW:
+				top--;
+				stack[top] = Math.pow(stack[top], Math.min(stack[top + 1], 20));
+				break;
+			}
+		}
+		return valid;
+	}
+
+	/**
+	 * @param aIndividual the index of the individual within the arena
+	 * @return the slot of the root node of the individual (its last node)
+	 */
+	private int getRootSlot(int aIndividual) {
+		return xStarts[aIndividual] + xSizes[aIndividual] - 1;
+	}
+
+	/**
+	 * Recursive method to build the expression node tree for the subtree ending at the slot.
+	 *
+	 * @param aSlot the slot of the root node of the subtree
+	 * @return the newly built node
+	 * @throws GPException
+	 */
+	private BinaryTreeNode toNode(int aSlot) throws GPException {
+		int opcode = xOpcodes[aSlot];
+		if (opcode == PostfixProgram.OP_VARIABLE) {
+			OperandNode operand = new OperandNode(0.0);
+			operand.setVariable(true);
+			return operand;
+		} else if (opcode == PostfixProgram.OP_CONSTANT) {
+			return new OperandNode(xConstants[aSlot]);
+		}
+
+		OperatorNode operator = new OperatorNode(OperatorType.values()[opcode - PostfixProgram.OP_ADD]);
+		BinaryTreeNode leftChild = toNode(xLeftChildren[aSlot]);
+		leftChild.setNodeType(NodeType.LEFT);
+		leftChild.setParent(operator);
+		operator.setLeftChild(leftChild);
+		if (xRightChildren[aSlot] != NO_CHILD) {
+			BinaryTreeNode rightChild = toNode(xRightChildren[aSlot]);
+			rightChild.setNodeType(NodeType.RIGHT);
+			rightChild.setParent(operator);
+			operator.setRightChild(rightChild);
+		}
+		return operator;
+	}
+
+	/**
+	 * Append the nodes of an individual with the subtree at one of its nodes replaced by either a range of nodes from
+	 * another arena or a new expression node tree.
+	 */
+	private void appendAround(PopulationArena aSource, int aIndividual, int aNode, PopulationArena aInsertSource,
+			int aInsertStart, int aInsertSize, BinaryTreeNode aInsertTree) {
+		int start = aSource.xStarts[aIndividual];
+		int slot = start + aNode;
+		int subtreeStart = slot - aSource.xSubtreeSizes[slot] + 1;
+		int end = start + aSource.xSizes[aIndividual];
+
+		appendRange(aSource, start, subtreeStart - start);
+		if (aInsertTree != null) {
+			append(aInsertTree);
+		} else {
+			appendRange(aInsertSource, aInsertStart, aInsertSize);
+		}
+		appendRange(aSource, slot + 1, end - slot - 1);
+	}
+
+	/**
+	 * Append a contiguous range of nodes (opcodes and constants only) from an arena.
+	 */
+	private void appendRange(PopulationArena aSource, int aStart, int aLength) {
+		ensureNodeCapacity(xNodeCount + aLength);
+		System.arraycopy(aSource.xOpcodes, aStart, xOpcodes, xNodeCount, aLength);
+		System.arraycopy(aSource.xConstants, aStart, xConstants, xNodeCount, aLength);
+		xNodeCount += aLength;
+	}
+
+	/**
+	 * Recursive method to append the nodes (opcodes and constants only) of an expression node tree in post-order.
+	 *
+	 * @param aNode the current node within the expression tree
+	 */
+	private void append(BinaryTreeNode aNode) {
+		ensureNodeCapacity(xNodeCount + 1);
+		if (aNode instanceof OperandNode) {
+			OperandNode operand = (OperandNode) aNode;
+			xOpcodes[xNodeCount] = operand.isVariable() ? PostfixProgram.OP_VARIABLE : PostfixProgram.OP_CONSTANT;
+			xConstants[xNodeCount] = operand.isVariable() ? 0 : operand.getValue();
+		} else {
+			OperatorNode operator = (OperatorNode) aNode;
+			append(operator.getLeftChild());
+			if (operator.getNumberOfChildren() > 1) {
+				append(operator.getRightChild());
+			}
+			ensureNodeCapacity(xNodeCount + 1);
+			xOpcodes[xNodeCount] = PostfixProgram.getOpcode(operator.getOperator());
+			xConstants[xNodeCount] = 0;
+		}
+		xNodeCount++;
+	}
+
+	/**
+	 * Register the nodes appended since the start slot as a new individual and link them together (child slots,
+	 * subtree sizes and heights, stack depth).
+	 *
+	 * @param aStart the slot of the first node of the individual
+	 * @return the index of the new individual within the arena
+	 */
+	private int addIndividual(int aStart) {
+		ensureIndividualCapacity(xIndividualCount + 1);
+		int individual = xIndividualCount++;
+		xStarts[individual] = aStart;
+		xSizes[individual] = xNodeCount - aStart;
+		xValid[individual] = true;
+		xFitness[individual] = 0;
+
+		if (xLinkStack.length < xSizes[individual]) {
+			xLinkStack = new int[xSizes[individual]];
+		}
+		int top = -1;
+		int maxDepth = 0;
+		boolean alwaysInvalid = false;
+		for (int slot = aStart; slot < xNodeCount; slot++) {
+			int opcode = xOpcodes[slot];
+			int left = NO_CHILD;
+			int right = NO_CHILD;
+			if (opcode == PostfixProgram.OP_CONSTANT || opcode == PostfixProgram.OP_VARIABLE) {
+				xSubtreeSizes[slot] = 1;
+				xSubtreeHeights[slot] = 0;
+			} else if (opcode == PostfixProgram.OP_SIN || opcode == PostfixProgram.OP_COS) {
+				left = xLinkStack[top--];
+				xSubtreeSizes[slot] = 1 + xSubtreeSizes[left];
+				xSubtreeHeights[slot] = 1 + xSubtreeHeights[left];
+			} else {
+				right = xLinkStack[top--];
+				left = xLinkStack[top--];
+				xSubtreeSizes[slot] = 1 + xSubtreeSizes[left] + xSubtreeSizes[right];
+				xSubtreeHeights[slot] = 1 + Math.max(xSubtreeHeights[left], xSubtreeHeights[right]);
+			}
+			if (opcode == PostfixProgram.OP_SIN || opcode == PostfixProgram.OP_COS || opcode == PostfixProgram.OP_POW) {
+				alwaysInvalid = true;
+			}
+			xLeftChildren[slot] = left;
+			xRightChildren[slot] = right;
+			xLinkStack[++top] = slot;
+			maxDepth = Math.max(maxDepth, top + 1);
+		}
+		xStackDepths[individual] = maxDepth;
+		xAlwaysInvalid[individual] = alwaysInvalid;
+		return individual;
+	}
+
+	private void ensureNodeCapacity(int aCapacity) {
+		if (aCapacity > xOpcodes.length) {
+			int capacity = Math.max(aCapacity, xOpcodes.length * 2);
+			xOpcodes = Arrays.copyOf(xOpcodes, capacity);
+			xConstants = Arrays.copyOf(xConstants, capacity);
+			xLeftChildren = Arrays.copyOf(xLeftChildren, capacity);
+			xRightChildren = Arrays.copyOf(xRightChildren, capacity);
+			xSubtreeSizes = Arrays.copyOf(xSubtreeSizes, capacity);
+			xSubtreeHeights = Arrays.copyOf(xSubtreeHeights, capacity);
+		}
+	}
+
+	private void ensureIndividualCapacity(int aCapacity) {
+		if (aCapacity > xStarts.length) {
+			int capacity = Math.max(aCapacity, xStarts.length * 2);
+			xStarts = Arrays.copyOf(xStarts, capacity);
+			xSizes = Arrays.copyOf(xSizes, capacity);
+			xStackDepths = Arrays.copyOf(xStackDepths, capacity);
+			xAlwaysInvalid = Arrays.copyOf(xAlwaysInvalid, capacity);
+			xValid = Arrays.copyOf(xValid, capacity);
+			xFitness = Arrays.copyOf(xFitness, capacity);
+		}
+	}
+}
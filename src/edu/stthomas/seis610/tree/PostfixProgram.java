@@ -0,0 +1,376 @@
+package edu.stthomas.seis610.tree;
+
+import java.util.Arrays;
+
+import edu.stthomas.seis610.tree.OperatorNode.OperatorType;
+
+//=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+/**
+ * A flattened (compiled) version of an expression node tree. The nodes of the tree are laid out in "post-order" as a
+ * compact array of integer opcodes with a parallel array holding the constant operand values, which allows the
+ * expression to be evaluated by a tight stack machine that works entirely with primitive doubles instead of walking the
+ * object graph of the tree (with all of its boxing and virtual dispatch) for every training datum.
+ * <p>
+ * The evaluation rules match those of {@link OperatorNode#evaluateOutput}: a division by zero produces the max value
+ * and marks the evaluation as invalid, while the SIN, COS and POW operators always mark the evaluation as invalid.
+ *
+ * @version 1.2
+ */
+// =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+public class PostfixProgram {
+
+	/**
+	 * Define Constants for the Opcodes of the Program
+	 */
+	public final static int OP_CONSTANT = 0;
+	public final static int OP_VARIABLE = 1;
+	public final static int OP_ADD = 2;
+	public final static int OP_SUB = 3;
+	public final static int OP_MUL = 4;
+	public final static int OP_DIV = 5;
+	public final static int OP_SIN = 6;
+	public final static int OP_COS = 7;
+	public final static int OP_POW = 8;
+
+	private final int[] xOpcodes;
+	private final double[] xConstants;
+	private final int xMaxStackDepth;
+	private final boolean xAlwaysInvalid;
+	private final int xHashCode;
+
+	/**
+	 * Private constructor, programs are only built through {@link #compile(BinaryTreeNode)}.
+	 *
+	 * @param aOpcodes the opcodes of the program in post-order
+	 * @param aConstants the constant operand values (parallel to the opcodes)
+	 * @param aMaxStackDepth the max depth of the stack needed to execute the program
+	 * @param aAlwaysInvalid indicator if the program contains an operator that always invalidates the evaluation
+	 */
+	private PostfixProgram(int[] aOpcodes, double[] aConstants, int aMaxStackDepth, boolean aAlwaysInvalid) {
+		xOpcodes = aOpcodes;
+		xConstants = aConstants;
+		xMaxStackDepth = aMaxStackDepth;
+		xAlwaysInvalid = aAlwaysInvalid;
+		xHashCode = 31 * Arrays.hashCode(aOpcodes) + Arrays.hashCode(aConstants);
+	}
+
+	/**
+	 * Compile the expression node tree (or subtree) starting at the passed in node into a postfix program.
+	 *
+	 * @param aRoot the root node of the expression tree to compile
+	 * @return the newly compiled program for the expression tree
+	 */
+	public static PostfixProgram compile(BinaryTreeNode aRoot) {
+		Compiler compiler = new Compiler();
+		compiler.emit(aRoot);
+		return new PostfixProgram(Arrays.copyOf(compiler.xOpcodes, compiler.xLength), Arrays.copyOf(
+				compiler.xConstants, compiler.xLength), compiler.xMaxDepth, compiler.xAlwaysInvalid);
+	}
+
+	/**
+	 * Compile the persistent tree (or subtree) starting at the passed in node into a postfix program.
+	 *
+	 * @param aRoot the root node of the persistent tree to compile
+	 * @return the newly compiled program for the persistent tree
+	 */
+	public static PostfixProgram compile(PersistentNode aRoot) {
+		Compiler compiler = new Compiler();
+		compiler.emit(aRoot);
+		return new PostfixProgram(Arrays.copyOf(compiler.xOpcodes, compiler.xLength), Arrays.copyOf(
+				compiler.xConstants, compiler.xLength), compiler.xMaxDepth, compiler.xAlwaysInvalid);
+	}
+
+	/**
+	 * Compile the linear genome into a postfix program.
+	 *
+	 * @param aGenome the genome of the expression tree to compile
+	 * @return the newly compiled program for the genome
+	 */
+	public static PostfixProgram compile(LinearGenome aGenome) {
+		Compiler compiler = new Compiler();
+		compiler.emit(aGenome, 0);
+		return new PostfixProgram(Arrays.copyOf(compiler.xOpcodes, compiler.xLength), Arrays.copyOf(
+				compiler.xConstants, compiler.xLength), compiler.xMaxDepth, compiler.xAlwaysInvalid);
+	}
+
+	/**
+	 * @param aOperator the operator type to translate
+	 * @return the opcode that represents the operator type
+	 */
+	public static int getOpcode(OperatorType aOperator) {
+		switch (aOperator) {
+		case ADD:
+			return OP_ADD;
+		case SUB:
+			return OP_SUB;
+		case MUL:
+			return OP_MUL;
+		case DIV:
+			return OP_DIV;
+		case SIN:
+			return OP_SIN;
+		case COS:
+			return OP_COS;
+		case POW:
+		default:
+			return OP_POW;
+		}
+	}
+
+	/**
+	 * @return the number of instructions (nodes) within the program
+	 */
+	public int getLength() {
+		return xOpcodes.length;
+	}
+
+	/**
+	 * @return the max depth of the stack needed to execute the program
+	 */
+	public int getMaxStackDepth() {
+		return xMaxStackDepth;
+	}
+
+	/**
+	 * @return a new stack large enough to execute this program
+	 */
+	public double[] newStack() {
+		return new double[xMaxStackDepth];
+	}
+
+	/**
+	 * @return the indicator if the program contains an operator (SIN, COS or POW) that always invalidates the tree
+	 */
+	public boolean isAlwaysInvalid() {
+		return xAlwaysInvalid;
+	}
+
+	/**
+	 * @param aIndex the index of the instruction within the program
+	 * @return the opcode of the instruction
+	 */
+	public int getOpcode(int aIndex) {
+		return xOpcodes[aIndex];
+	}
+
+	/**
+	 * @param aIndex the index of the instruction within the program
+	 * @return the constant operand value of the instruction (only meaningful for {@link #OP_CONSTANT})
+	 */
+	public double getConstant(int aIndex) {
+		return xConstants[aIndex];
+	}
+
+	/**
+	 * Execute the program against a single input value. The stack is supplied by the caller so that the execution does
+	 * not allocate anything and so that a single stack can be reused across all of the training data.
+	 *
+	 * @param aInput the input value (X) to use during the evaluation of the function
+	 * @param aStack the work stack (at least {@link #getMaxStackDepth()} long); the result is left in aStack[0]
+	 * @return true if the evaluation was valid, false if it would have marked the tree as invalid
+	 */
+	public boolean execute(double aInput, double[] aStack) {
+		final int[] opcodes = xOpcodes;
+		final double[] constants = xConstants;
+		boolean valid = !xAlwaysInvalid;
+		int top = -1;
+		for (int pc = 0; pc < opcodes.length; pc++) {
+			switch (opcodes[pc]) {
+			case OP_CONSTANT:
+				aStack[++top] = constants[pc];
+				break;
+			case OP_VARIABLE:
+				aStack[++top] = aInput;
+				break;
+			case OP_ADD:
+				top--;
+				aStack[top] = aStack[top] + aStack[top + 1];
+				break;
+			case OP_SUB:
+				top--;
+				aStack[top] = aStack[top] - aStack[top + 1];
+				break;
+			case OP_MUL:
+				top--;
+				aStack[top] = aStack[top] * aStack[top + 1];
+				break;
+			case OP_DIV:
+				top--;
+				if (aStack[top + 1] != 0) {
+					aStack[top] = aStack[top] / aStack[top + 1];
+				} else {
+					aStack[top] = Double.MAX_VALUE;
+					valid = false;
+				}
+				break;
+			case OP_SIN:
+				aStack[top] = Math.sin(aStack[top]);
+				break;
+			case OP_COS:
+				aStack[top] = Math.cos(aStack[top]);
+				break;
+			case OP_POW:
+				top--;
+				aStack[top] = Math.pow(aStack[top], Math.min(aStack[top + 1], 20));
+				break;
+			}
+		}
+		return valid;
+	}
+
+	/**
+	 * Two programs are equal when they have exactly the same instructions, which means that their expression trees have
+	 * the same structure (the same operators and operands in the same positions).
+	 */
+	@Override
+	public boolean equals(Object aObject) {
+		if (this == aObject) {
+			return true;
+		}
+		if (!(aObject instanceof PostfixProgram)) {
+			return false;
+		}
+		PostfixProgram otherProgram = (PostfixProgram) aObject;
+		return xHashCode == otherProgram.xHashCode && Arrays.equals(xOpcodes, otherProgram.xOpcodes)
+				&& Arrays.equals(xConstants, otherProgram.xConstants);
+	}
+
+	@Override
+	public int hashCode() {
+		return xHashCode;
+	}
+
+	@Override
+	public String toString() {
+		StringBuffer outputBuf = new StringBuffer();
+		for (int pc = 0; pc < xOpcodes.length; pc++) {
+			if (pc > 0)
+				outputBuf.append(" ");
+			switch (xOpcodes[pc]) {
+			case OP_CONSTANT:
+				outputBuf.append((int) xConstants[pc]);
+				break;
+			case OP_VARIABLE:
+				outputBuf.append("x");
+				break;
+			default:
+				outputBuf.append(OperatorType.values()[xOpcodes[pc] - OP_ADD]);
+			}
+		}
+		return outputBuf.toString();
+	}
+
+	// =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	/**
+	 * Helper that walks the expression node tree and emits the instructions of the program in post-order.
+	 */
+	// =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	private static class Compiler {
+		private int[] xOpcodes = new int[32];
+		private double[] xConstants = new double[32];
+		private int xLength = 0;
+		private int xDepth = 0;
+		private int xMaxDepth = 0;
+		private boolean xAlwaysInvalid = false;
+
+		/**
+		 * Recursive method to emit the instructions for the node and all of its children.
+		 *
+		 * @param aNode the current node within the expression tree
+		 */
+		private void emit(BinaryTreeNode aNode) {
+			if (aNode instanceof OperandNode) {
+				OperandNode operand = (OperandNode) aNode;
+				if (operand.isVariable()) {
+					append(OP_VARIABLE, 0);
+				} else {
+					append(OP_CONSTANT, operand.getValue());
+				}
+				push();
+			} else {
+				OperatorNode operator = (OperatorNode) aNode;
+				int opcode = getOpcode(operator.getOperator());
+				emit(operator.getLeftChild());
+				if (operator.getNumberOfChildren() > 1) {
+					emit(operator.getRightChild());
+					xDepth--;
+				}
+				if (opcode == OP_SIN || opcode == OP_COS || opcode == OP_POW) {
+					xAlwaysInvalid = true;
+				}
+				append(opcode, 0);
+			}
+		}
+
+		/**
+		 * Recursive method to emit the instructions for the persistent node and all of its children.
+		 *
+		 * @param aNode the current node within the persistent tree
+		 */
+		private void emit(PersistentNode aNode) {
+			int opcode = aNode.getOpcode();
+			if (opcode == OP_CONSTANT || opcode == OP_VARIABLE) {
+				append(opcode, aNode.getConstant());
+				push();
+			} else {
+				emit(aNode.getLeftChild());
+				if (aNode.getRightChild() != null) {
+					emit(aNode.getRightChild());
+					xDepth--;
+				}
+				if (opcode == OP_SIN || opcode == OP_COS || opcode == OP_POW) {
+					xAlwaysInvalid = true;
+				}
+				append(opcode, 0);
+			}
+		}
+
+		/**
+		 * Recursive method to emit the instructions for the genome node and all of its children.
+		 *
+		 * @param aGenome the genome being compiled
+		 * @param aIndex the (prefix-order) index of the current node within the genome
+		 * @return the index following the last node of the subtree
+		 */
+		private int emit(LinearGenome aGenome, int aIndex) {
+			int opcode = aGenome.getOpcode(aIndex);
+			if (opcode == OP_CONSTANT || opcode == OP_VARIABLE) {
+				append(opcode, aGenome.getConstant(aIndex));
+				push();
+				return aIndex + 1;
+			}
+			int index = emit(aGenome, aIndex + 1);
+			if (opcode != OP_SIN && opcode != OP_COS) {
+				index = emit(aGenome, index);
+				xDepth--;
+			}
+			if (opcode == OP_SIN || opcode == OP_COS || opcode == OP_POW) {
+				xAlwaysInvalid = true;
+			}
+			append(opcode, 0);
+			return index;
+		}
+
+		/**
+		 * Track the depth of the stack as values are pushed on to it.
+		 */
+		private void push() {
+			xDepth++;
+			xMaxDepth = Math.max(xMaxDepth, xDepth);
+		}
+
+		/**
+		 * @param aOpcode the opcode of the instruction to append to the program
+		 * @param aConstant the constant operand value of the instruction
+		 */
+		private void append(int aOpcode, double aConstant) {
+			if (xLength == xOpcodes.length) {
+				xOpcodes = Arrays.copyOf(xOpcodes, xLength * 2);
+				xConstants = Arrays.copyOf(xConstants, xLength * 2);
+			}
+			xOpcodes[xLength] = aOpcode;
+			xConstants[xLength] = aConstant;
+			xLength++;
+		}
+	}
+}
@@ -0,0 +1,242 @@
+package edu.stthomas.seis610.tree;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import edu.stthomas.seis610.gp.GPSettings;
+import edu.stthomas.seis610.gp.TrainingColumns;
+
+//=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+/**
+ * The SubexpressionCache merges the expression trees of the whole population into a single shared DAG (directed
+ * acyclic graph) of distinct subexpressions. Every subtree is "hash-consed" from the bottom up: a subexpression is
+ * identified by its operator (or operand) together with the (already shared) subexpressions of its children, so any
+ * two identical subtrees anywhere within the population map to the very same subexpression. The output column of each
+ * subexpression over the training data is computed only once and then reused by every individual that contains it.
+ * <p>
+ * The subexpressions are kept across generations, since the offspring share most of their subtrees with their
+ * parents. Only the most recently used subexpressions are kept (bounded by the Settings), and all of them are discarded
+ * whenever the training data changes.
+ *
+ * @version 1.2
+ */
+// =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+public class SubexpressionCache {
+
+	/**
+	 * Define private variables for the Singleton Instance of this class.
+	 */
+	private static SubexpressionCache xSingletonInstance = null;
+
+	private Map<Subexpression, Subexpression> xSubexpressions;
+	private TrainingColumns xColumns;
+	private long xEvaluationCount = 0;
+
+	/**
+	 * Private default constructor for singleton instance of this class.
+	 */
+	private SubexpressionCache() {
+		clear();
+	}
+
+	/**
+	 * Public static method to get the singleton instance of this class and build it (lazy instantiation) if it is not
+	 * already built.
+	 *
+	 * @return the singleton instance of this class
+	 */
+	public static synchronized SubexpressionCache getInstance() {
+		if (xSingletonInstance == null) {
+			xSingletonInstance = new SubexpressionCache();
+		}
+		return xSingletonInstance;
+	}
+
+	/**
+	 * Remove all of the shared subexpressions and pick up the current size from the Settings.
+	 */
+	public synchronized void clear() {
+		final int maxSize = GPSettings.getSubexpressionCacheSize();
+		xSubexpressions = new LinkedHashMap<Subexpression, Subexpression>(1024, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Subexpression, Subexpression> aEldest) {
+				return size() > maxSize;
+			}
+		};
+		xColumns = null;
+	}
+
+	/**
+	 * Merge the expression node tree into the shared subexpressions and make sure that the output columns of all of its
+	 * subexpressions have been computed.
+	 *
+	 * @param aRoot the root node of the expression tree to evaluate
+	 * @param aColumns the training data values in columns
+	 * @return the shared subexpression of the whole expression tree
+	 */
+	public synchronized Subexpression evaluate(BinaryTreeNode aRoot, TrainingColumns aColumns) {
+		if (xColumns != aColumns) {
+			clear();
+			xColumns = aColumns;
+		}
+		Subexpression root = intern(aRoot);
+		computeOutputs(root);
+		return root;
+	}
+
+	/**
+	 * @return the number of shared subexpressions
+	 */
+	public synchronized int size() {
+		return xSubexpressions.size();
+	}
+
+	/**
+	 * @return the number of (distinct) subexpressions whose output columns have been computed
+	 */
+	public synchronized long getEvaluationCount() {
+		return xEvaluationCount;
+	}
+
+	/**
+	 * Recursive method to find (or add) the shared subexpression of the node and all of its children.
+	 *
+	 * @param aNode the current node within the expression tree
+	 * @return the shared subexpression for the subtree starting at the node
+	 */
+	private Subexpression intern(BinaryTreeNode aNode) {
+		Subexpression probe;
+		if (aNode instanceof OperandNode) {
+			OperandNode operand = (OperandNode) aNode;
+			if (operand.isVariable()) {
+				probe = new Subexpression(PostfixProgram.OP_VARIABLE, 0.0, null, null);
+			} else {
+				probe = new Subexpression(PostfixProgram.OP_CONSTANT, operand.getValue(), null, null);
+			}
+		} else {
+			OperatorNode operator = (OperatorNode) aNode;
+			Subexpression left = intern(operator.getLeftChild());
+			Subexpression right = (operator.getNumberOfChildren() > 1) ? intern(operator.getRightChild()) : null;
+			probe = new Subexpression(PostfixProgram.getOpcode(operator.getOperator()), 0.0, left, right);
+		}
+
+		Subexpression subexpression = xSubexpressions.get(probe);
+		if (subexpression == null) {
+			subexpression = probe;
+			xSubexpressions.put(probe, probe);
+		}
+		return subexpression;
+	}
+
+	/**
+	 * Recursive method to compute the output columns of the subexpression and its children (unless already computed).
+	 *
+	 * @param aSubexpression the current subexpression
+	 */
+	private void computeOutputs(Subexpression aSubexpression) {
+		if (aSubexpression.xOutputs != null) {
+			return;
+		}
+
+		final int size = xColumns.size();
+		double[] outputs;
+		int firstInvalid = size;
+		switch (aSubexpression.xOpcode) {
+		case PostfixProgram.OP_VARIABLE:
+			// No need to copy the inputs, simply refer to the column of the training data.
+			outputs = xColumns.getInputs();
+			break;
+		case PostfixProgram.OP_CONSTANT:
+			outputs = new double[size];
+			Arrays.fill(outputs, aSubexpression.xConstant);
+			break;
+		default:
+			Subexpression left = aSubexpression.xLeft;
+			Subexpression right = aSubexpression.xRight;
+			computeOutputs(left);
+			firstInvalid = left.xFirstInvalid;
+			if (right != null) {
+				computeOutputs(right);
+				firstInvalid = Math.min(firstInvalid, right.xFirstInvalid);
+			}
+			outputs = new double[size];
+			firstInvalid = Math.min(firstInvalid, BatchEvaluator.applyOperator(aSubexpression.xOpcode, left.xOutputs,
+					(right == null) ? null : right.xOutputs, outputs, size));
+			if (aSubexpression.xOpcode == PostfixProgram.OP_SIN || aSubexpression.xOpcode == PostfixProgram.OP_COS
+					|| aSubexpression.xOpcode == PostfixProgram.OP_POW) {
+				firstInvalid = 0;
+			}
+		}
+		aSubexpression.xFirstInvalid = firstInvalid;
+		aSubexpression.xOutputs = outputs;
+		xEvaluationCount++;
+	}
+
+	// =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	/**
+	 * A single distinct subexpression within the shared DAG. Two subexpressions are equal when they have the same
+	 * operator (or operand) and the very same (shared) subexpressions as their children.
+	 */
+	// =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	public static class Subexpression {
+		private final int xOpcode;
+		private final double xConstant;
+		private final Subexpression xLeft;
+		private final Subexpression xRight;
+		private final int xHashCode;
+		private double[] xOutputs;
+		private int xFirstInvalid;
+
+		/**
+		 * @param aOpcode the opcode (the same opcodes as the {@link PostfixProgram}) of the subexpression
+		 * @param aConstant the constant operand value (only meaningful for {@link PostfixProgram#OP_CONSTANT})
+		 * @param aLeft the shared subexpression of the left child (or null)
+		 * @param aRight the shared subexpression of the right child (or null)
+		 */
+		private Subexpression(int aOpcode, double aConstant, Subexpression aLeft, Subexpression aRight) {
+			xOpcode = aOpcode;
+			xConstant = aConstant;
+			xLeft = aLeft;
+			xRight = aRight;
+			xHashCode = BinaryTreeNode.getStructuralHash(BinaryTreeNode.getDataHash(aOpcode, aConstant),
+					(aLeft == null) ? 0 : aLeft.xHashCode, (aRight == null) ? 0 : aRight.xHashCode);
+		}
+
+		/**
+		 * @return the output column of the subexpression over the training data
+		 */
+		public double[] getOutputs() {
+			return xOutputs;
+		}
+
+		/**
+		 * @return the index of the first training datum that invalidates the subexpression (or the number of training
+		 *         data values when none does)
+		 */
+		public int getFirstInvalid() {
+			return xFirstInvalid;
+		}
+
+		@Override
+		public boolean equals(Object aObject) {
+			if (this == aObject) {
+				return true;
+			}
+			if (!(aObject instanceof Subexpression)) {
+				return false;
+			}
+			Subexpression otherSubexpression = (Subexpression) aObject;
+			return xHashCode == otherSubexpression.xHashCode && xOpcode == otherSubexpression.xOpcode
+					&& Double.doubleToLongBits(xConstant) == Double.doubleToLongBits(otherSubexpression.xConstant)
+					&& xLeft == otherSubexpression.xLeft && xRight == otherSubexpression.xRight;
+		}
+
+		@Override
+		public int hashCode() {
+			return xHashCode;
+		}
+	}
+}
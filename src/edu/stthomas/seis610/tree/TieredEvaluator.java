@@ -0,0 +1,161 @@
+package edu.stthomas.seis610.tree;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import edu.stthomas.seis610.gp.GPSettings;
+
+//=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+/**
+ * The TieredEvaluator decides when an expression tree is worth compiling into bytecode. Most of the offspring created
+ * by cross-over and mutation are evaluated once and then die off, so compiling them would only waste time. Instead the
+ * number of evaluations of each expression (by its structure, so clones of the same individual are counted together)
+ * is tracked, and once an expression has been evaluated the number of times given by the compilation threshold within
+ * the Settings it gets compiled on a background thread. Until the compiled expression is ready the expression simply
+ * keeps being evaluated by the (postfix) interpreter.
+ * <p>
+ * Only the most recently evaluated expressions are tracked (and only a limited number of them wait for the compiler)
+ * so the memory used by this class stays bounded no matter how many generations are run.
+ *
+ * @version 1.2
+ */
+// =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+public class TieredEvaluator {
+	private static final int MAX_PROFILES = 10000;
+	private static final int MAX_QUEUED_COMPILATIONS = 256;
+
+	/**
+	 * Define private variables for the Singleton Instance of this class.
+	 */
+	private static TieredEvaluator xSingletonInstance = null;
+
+	private final ExecutorService xCompiler;
+	private final Map<PostfixProgram, Profile> xProfiles = new LinkedHashMap<PostfixProgram, Profile>(16, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<PostfixProgram, Profile> aEldest) {
+			return size() > MAX_PROFILES;
+		}
+	};
+
+	/**
+	 * Private default constructor for singleton instance of this class.
+	 */
+	private TieredEvaluator() {
+		xCompiler = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<Runnable>(
+				MAX_QUEUED_COMPILATIONS), new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable aRunnable) {
+				Thread thread = new Thread(aRunnable, "TieredEvaluator-Compiler");
+				thread.setDaemon(true);
+				thread.setPriority(Thread.MIN_PRIORITY);
+				return thread;
+			}
+		});
+	}
+
+	/**
+	 * Public static method to get the singleton instance of this class and build it (lazy instantiation) if it is not
+	 * already built.
+	 *
+	 * @return the singleton instance of this class
+	 */
+	public static synchronized TieredEvaluator getInstance() {
+		if (xSingletonInstance == null) {
+			xSingletonInstance = new TieredEvaluator();
+		}
+		return xSingletonInstance;
+	}
+
+	/**
+	 * Record another evaluation of the program and queue it for compilation once it crosses the compilation threshold.
+	 *
+	 * @param aProgram the postfix program of the expression tree that is about to be evaluated
+	 * @return the compiled expression for the program if it is ready, otherwise null
+	 */
+	public synchronized CompiledExpression recordEvaluation(PostfixProgram aProgram) {
+		Profile profile = xProfiles.get(aProgram);
+		if (profile == null) {
+			profile = new Profile();
+			xProfiles.put(aProgram, profile);
+		}
+		profile.xEvaluations++;
+		if (profile.xCompiledExpression == null && !profile.xQueued
+				&& profile.xEvaluations >= GPSettings.getCompilationThreshold()) {
+			profile.xQueued = true;
+			queueCompilation(aProgram, profile);
+		}
+		return profile.xCompiledExpression;
+	}
+
+	/**
+	 * @param aProgram the postfix program of an expression tree
+	 * @return the number of times the program has been evaluated (0 if it is not being tracked)
+	 */
+	public synchronized int getEvaluationCount(PostfixProgram aProgram) {
+		Profile profile = xProfiles.get(aProgram);
+		return (profile == null) ? 0 : profile.xEvaluations;
+	}
+
+	/**
+	 * @param aProgram the postfix program of an expression tree
+	 * @return the indicator if the compiled expression for the program is ready
+	 */
+	public synchronized boolean isCompiled(PostfixProgram aProgram) {
+		Profile profile = xProfiles.get(aProgram);
+		return (profile != null) && (profile.xCompiledExpression != null);
+	}
+
+	/**
+	 * Compile the program on the background thread and store the compiled expression into its profile when done. When
+	 * the compiler already has too many programs waiting the program is simply left with the interpreter, and it gets
+	 * queued again by a later evaluation. A program whose profile has been evicted by the time the compiler gets to it
+	 * is no longer worth compiling and is skipped.
+	 *
+	 * @param aProgram the postfix program to compile
+	 * @param aProfile the profile of the program
+	 */
+	private void queueCompilation(final PostfixProgram aProgram, final Profile aProfile) {
+		try {
+			xCompiler.execute(new Runnable() {
+				@Override
+				public void run() {
+					synchronized (TieredEvaluator.this) {
+						if (xProfiles.get(aProgram) != aProfile) {
+							return;
+						}
+					}
+					CompiledExpression compiledExpression = ExpressionCompiler.compile(aProgram);
+					synchronized (TieredEvaluator.this) {
+						aProfile.xCompiledExpression = compiledExpression;
+						if (compiledExpression == null) {
+							// Failed to compile, so leave this program with the interpreter from now on.
+							aProfile.xEvaluations = Integer.MIN_VALUE;
+							aProfile.xQueued = false;
+						}
+					}
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			aProfile.xQueued = false;
+		}
+	}
+
+	// =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	/**
+	 * The evaluation history of a single program.
+	 */
+	// =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+	private static class Profile {
+		private int xEvaluations = 0;
+		private boolean xQueued = false;
+		private CompiledExpression xCompiledExpression;
+	}
+}
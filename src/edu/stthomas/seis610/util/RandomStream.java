@@ -0,0 +1,134 @@
+package edu.stthomas.seis610.util;
+
+import java.util.Random;
+
+//=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+/**
+ * A stream of random numbers that is confined to a single thread (at a time) and can be split into independent child
+ * streams in a deterministic way. Each worker thread draws from its own stream, so there is no contention on a shared
+ * seed and a seeded run gives exactly the same results no matter how many threads it uses, as long as the streams are
+ * split off (and handed out to the work) in the same order.
+ * <p>
+ * The stream generates exactly the same sequence of numbers as {@link java.util.Random} for the same seed (the same
+ * 48-bit linear congruential generator), so seeded runs keep producing the very same expression trees. Unlike
+ * {@link java.util.Random} the seed is a plain field rather than an atomic one, which is why a stream must never be
+ * shared between threads. The seed of a child stream is the next 64 bits of its parent scrambled with the SplitMix64
+ * finalizer, so that the child streams of neighbouring draws are not correlated with each other.
+ *
+ * @version 1.2
+ */
+// =-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=
+public class RandomStream {
+	private static final long MULTIPLIER = 0x5DEECE66DL;
+	private static final long ADDEND = 0xBL;
+	private static final long MASK = (1L << 48) - 1;
+
+	private long xSeed;
+
+	/**
+	 * Constructor to create a stream with a seed that is very likely to be distinct from any other stream.
+	 */
+	public RandomStream() {
+		this(new Random().nextLong());
+	}
+
+	/**
+	 * Constructor to create a stream with the seed.
+	 *
+	 * @param aSeed the initial seed
+	 */
+	public RandomStream(long aSeed) {
+		setSeed(aSeed);
+	}
+
+	/**
+	 * Set the seed of the stream (the same way as {@link java.util.Random#setSeed(long)}).
+	 *
+	 * @param aSeed the initial seed
+	 */
+	public void setSeed(long aSeed) {
+		xSeed = (aSeed ^ MULTIPLIER) & MASK;
+	}
+
+	/**
+	 * @param aBits the number of random bits (1 - 32) to generate
+	 * @return the next random bits of the stream
+	 */
+	private int next(int aBits) {
+		xSeed = (xSeed * MULTIPLIER + ADDEND) & MASK;
+		return (int) (xSeed >>> (48 - aBits));
+	}
+
+	/**
+	 * @param aBound the (exclusive) upper bound of the random number; must be positive
+	 * @return the next uniformly distributed random number between 0 (inclusive) and the bound (exclusive)
+	 */
+	public int nextInt(int aBound) {
+		if (aBound <= 0) {
+			throw new IllegalArgumentException("bound must be positive");
+		}
+
+		int r = next(31);
+		int m = aBound - 1;
+		if ((aBound & m) == 0) {
+			// The bound is a power of 2, so simply take the high order bits.
+			return (int) ((aBound * (long) r) >> 31);
+		}
+		// Reject the values from the incomplete last range so that every value is equally likely.
+		for (int u = r; u - (r = u % aBound) + m < 0; u = next(31)) {
+		}
+		return r;
+	}
+
+	/**
+	 * Fill the array with random numbers, giving exactly the same numbers as calling {@link #nextInt(int)} once for
+	 * each of the elements.
+	 *
+	 * @param aBound the (exclusive) upper bound of the random numbers; must be positive
+	 * @param aValues the array to fill with the random numbers
+	 * @return the array of random numbers
+	 */
+	public int[] nextInts(int aBound, int[] aValues) {
+		for (int i = 0; i < aValues.length; i++) {
+			aValues[i] = nextInt(aBound);
+		}
+		return aValues;
+	}
+
+	/**
+	 * @return the next uniformly distributed random number between 0.0 (inclusive) and 1.0 (exclusive)
+	 */
+	public double nextDouble() {
+		return (((long) next(26) << 27) + next(27)) * 0x1.0p-53;
+	}
+
+	/**
+	 * @return the next uniformly distributed random long value
+	 */
+	public long nextLong() {
+		return ((long) next(32) << 32) + next(32);
+	}
+
+	/**
+	 * Split off a new (independent) stream from this stream. Splitting advances this stream, so splitting the streams
+	 * in the same order always gives the same child streams.
+	 *
+	 * @return the new child stream
+	 */
+	public RandomStream split() {
+		return new RandomStream(mix64(nextLong()));
+	}
+
+	/**
+	 * The SplitMix64 finalizer that scrambles all of the bits of the value.
+	 *
+	 * @param aValue the value to scramble
+	 * @return the scrambled value
+	 */
+	private static long mix64(long aValue) {
+		long z = aValue;
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
+	}
+}